@@ -6,10 +6,24 @@ import com.accountservice.repository.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.command.AccountValidatePayload;
+import com.project.kafkamessagemodels.payload.command.BalanceReversalPayload;
+import com.project.kafkamessagemodels.payload.command.BalanceUpdatePayload;
+import com.project.kafkamessagemodels.payload.command.CheckBalancePayload;
+import com.project.kafkamessagemodels.payload.command.CreatePendingTransactionPayload;
+import com.project.kafkamessagemodels.payload.command.MarkTransactionFailedPayload;
+import com.project.kafkamessagemodels.payload.command.PaymentMethodValidatePayload;
+import com.project.kafkamessagemodels.payload.command.ReleaseFundsPayload;
+import com.project.kafkamessagemodels.payload.command.ReserveFundsPayload;
+import com.project.kafkamessagemodels.payload.command.ReverseSettlementPayload;
+import com.project.kafkamessagemodels.payload.command.SettleTransactionPayload;
+import com.project.kafkamessagemodels.payload.command.UpdateTransactionStatusPayload;
+import com.project.kafkamessagemodels.payload.event.FundsReservedPayload;
+import com.project.kafkamessagemodels.payload.event.TransactionCreatedPayload;
+import com.project.kafkaplatform.KafkaPublisher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -25,7 +39,7 @@ import java.util.UUID;
 public class KafkaCommandHandlerService {
 
 //    private final PaymentMethodService paymentMethodService;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaPublisher kafkaPublisher;
     private final ObjectMapper objectMapper;
     private final PaymentMethodRepository paymentMethodRepository;
     private final TradingAccountRepository tradingAccountRepository;
@@ -49,8 +63,9 @@ public class KafkaCommandHandlerService {
     public void handleAccountValidation(CommandMessage command) {
         log.info("Handling ACCOUNT_VALIDATE command for saga: {}", command.getSagaId());
 
-        String userId = command.getPayloadValue("userId");
-        String accountId = command.getPayloadValue("accountId");
+        AccountValidatePayload payload = AccountValidatePayload.from(command);
+        String userId = payload.getUserId();
+        String accountId = payload.getAccountId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -100,7 +115,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(commonEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(commonEventsTopic, command.getSagaId(), event);
             log.info("Sent ACCOUNT_VALIDATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -117,7 +132,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(commonEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(commonEventsTopic, event.getSagaId(), event);
             log.info("Sent ACCOUNT_VALIDATION_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -131,8 +146,9 @@ public class KafkaCommandHandlerService {
     public void handleValidatePaymentMethod(CommandMessage command) {
         log.info("Handling PAYMENT_METHOD_VALIDATE command for saga: {}", command.getSagaId());
 
-        String paymentMethodId = command.getPayloadValue("paymentMethodId");
-        String userId = command.getPayloadValue("userId");
+        PaymentMethodValidatePayload payload = PaymentMethodValidatePayload.from(command);
+        String paymentMethodId = payload.getPaymentMethodId();
+        String userId = payload.getUserId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -182,7 +198,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(commonEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(commonEventsTopic, command.getSagaId(), event);
             log.info("Sent PAYMENT_METHOD_VALID response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -199,7 +215,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(commonEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(commonEventsTopic, event.getSagaId(), event);
             log.info("Sent PAYMENT_METHOD_INVALID response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -211,18 +227,9 @@ public class KafkaCommandHandlerService {
      * Handle ACCOUNT_CHECK_BALANCE command
      */
     public void handleCheckBalance(CommandMessage command) {
-        Object amountObj = command.getPayloadValue("amount");
-        String accountId = command.getPayloadValue("accountId");
-        BigDecimal amount;
-        if (amountObj instanceof BigDecimal) {
-            amount = (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            amount = BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            amount = new BigDecimal((String) amountObj);
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
+        CheckBalancePayload payload = CheckBalancePayload.from(command);
+        String accountId = payload.getAccountId();
+        BigDecimal amount = payload.getAmount();
         EventMessage event = new EventMessage();
         event.setMessageId(UUID.randomUUID().toString());
         event.setSagaId(command.getSagaId());
@@ -241,7 +248,7 @@ public class KafkaCommandHandlerService {
 
         event.setType("BALANCE_VALID");
         try {
-            kafkaTemplate.send(withdrawalEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(withdrawalEventsTopic, event.getSagaId(), event);
             log.info("Sent BALANCE_VALID response for saga: {}", event.getSagaId());
         } catch (Exception e) {
             log.error("Error sending failure event", e);
@@ -257,7 +264,7 @@ public class KafkaCommandHandlerService {
         event.setErrorCode(errorCode);
         event.setErrorMessage(errorMessage);
         try {
-            kafkaTemplate.send(withdrawalEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(withdrawalEventsTopic, event.getSagaId(), event);
             log.info("Sent BALANCE_VALIDATION_ERROR response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -271,22 +278,12 @@ public class KafkaCommandHandlerService {
     public void handleCreateDepositPendingTransaction(CommandMessage command) {
         log.info("Handling ACCOUNT_CREATE_DEPOSIT_PENDING_TRANSACTION command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-//         Safe conversion from any numeric type to BigDecimal
-        Object amountObj = command.getPayloadValue("amount");
-        BigDecimal amount;
-        if (amountObj instanceof BigDecimal) {
-            amount = (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            amount = BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            amount = new BigDecimal((String) amountObj);
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-        String currency = command.getPayloadValue("currency");
-        String description = command.getPayloadValue("description");
-        String paymentMethodId = command.getPayloadValue("paymentMethodId");
+        CreatePendingTransactionPayload payload = CreatePendingTransactionPayload.from(command);
+        String accountId = payload.getAccountId();
+        BigDecimal amount = payload.getAmount();
+        String currency = payload.getCurrency();
+        String description = payload.getDescription();
+        String paymentMethodId = payload.getPaymentMethodId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -325,11 +322,13 @@ public class KafkaCommandHandlerService {
             // Set success response
             event.setType("DEPOSIT_TRANSACTION_CREATED");
             event.setSuccess(true);
-            event.setPayloadValue("transactionId", savedTransaction.getId());
-            event.setPayloadValue("status", savedTransaction.getStatus());
-            event.setPayloadValue("amount", savedTransaction.getAmount());
-            event.setPayloadValue("currency", savedTransaction.getCurrency());
-            event.setPayloadValue("createdAt", savedTransaction.getCreatedAt().toString());
+            TransactionCreatedPayload.builder()
+                    .transactionId(savedTransaction.getId())
+                    .status(savedTransaction.getStatus())
+                    .amount(savedTransaction.getAmount())
+                    .currency(savedTransaction.getCurrency())
+                    .createdAt(savedTransaction.getCreatedAt())
+                    .build().applyTo(event);
 
         } catch (Exception e) {
             log.error("Error creating transaction", e);
@@ -340,7 +339,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(depositEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(depositEventsTopic, command.getSagaId(), event);
             log.info("Sent DEPOSIT_TRANSACTION_CREATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -357,7 +356,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(depositEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(depositEventsTopic, event.getSagaId(), event);
             log.info("Sent DEPOSIT_TRANSACTION_CREATION_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -370,22 +369,12 @@ public class KafkaCommandHandlerService {
      */
     public void handleCreateWithdrawalPendingTransaction(CommandMessage command) {
         log.info("Handling ACCOUNT_CREATE_WITHDRAWAL_PENDING_TRANSACTION command for saga: {}", command.getSagaId());
-        String accountId = command.getPayloadValue("accountId");
-//         Safe conversion from any numeric type to BigDecimal
-        Object amountObj = command.getPayloadValue("amount");
-        BigDecimal amount;
-        if (amountObj instanceof BigDecimal) {
-            amount = (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            amount = BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            amount = new BigDecimal((String) amountObj);
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-        String currency = command.getPayloadValue("currency");
-        String description = command.getPayloadValue("description");
-        String paymentMethodId = command.getPayloadValue("paymentMethodId");
+        CreatePendingTransactionPayload payload = CreatePendingTransactionPayload.from(command);
+        String accountId = payload.getAccountId();
+        BigDecimal amount = payload.getAmount();
+        String currency = payload.getCurrency();
+        String description = payload.getDescription();
+        String paymentMethodId = payload.getPaymentMethodId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -421,11 +410,13 @@ public class KafkaCommandHandlerService {
             // Set success response
             event.setType("WITHDRAWAL_TRANSACTION_CREATED");
             event.setSuccess(true);
-            event.setPayloadValue("transactionId", transactionSaved.getId());
-            event.setPayloadValue("status", transactionSaved.getStatus());
-            event.setPayloadValue("amount", transactionSaved.getAmount());
-            event.setPayloadValue("currency", transactionSaved.getCurrency());
-            event.setPayloadValue("createdAt", transactionSaved.getCreatedAt().toString());
+            TransactionCreatedPayload.builder()
+                    .transactionId(transactionSaved.getId())
+                    .status(transactionSaved.getStatus())
+                    .amount(transactionSaved.getAmount())
+                    .currency(transactionSaved.getCurrency())
+                    .createdAt(transactionSaved.getCreatedAt())
+                    .build().applyTo(event);
 
         } catch (Exception e) {
             log.error("Error creating withdrawal pending transaction", e);
@@ -436,7 +427,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(withdrawalEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(withdrawalEventsTopic, command.getSagaId(), event);
             log.info("Sent WITHDRAWAL_TRANSACTION_CREATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -451,7 +442,7 @@ public class KafkaCommandHandlerService {
         event.setErrorCode(errorCode);
         event.setErrorMessage(errorMessage);
         try {
-            kafkaTemplate.send(withdrawalEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(withdrawalEventsTopic, event.getSagaId(), event);
             log.info("Sent WITHDRAWAL_TRANSACTION_CREATION_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -465,9 +456,10 @@ public class KafkaCommandHandlerService {
     public void handleUpdateTransactionStatus(CommandMessage command) {
         log.info("Handling ACCOUNT_UPDATE_TRANSACTION_STATUS command for saga: {}", command.getSagaId());
 
-        String transactionId = command.getPayloadValue("transactionId");
-        String status = command.getPayloadValue("status");
-        String paymentReference = command.getPayloadValue("paymentReference");
+        UpdateTransactionStatusPayload payload = UpdateTransactionStatusPayload.from(command);
+        String transactionId = payload.getTransactionId();
+        String status = payload.getStatus();
+        String paymentReference = payload.getPaymentReference();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -514,7 +506,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(commonEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(commonEventsTopic, command.getSagaId(), event);
             log.info("Sent TRANSACTION_STATUS_UPDATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -531,7 +523,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(commonEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(commonEventsTopic, event.getSagaId(), event);
             log.info("Sent TRANSACTION_UPDATE_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -545,20 +537,10 @@ public class KafkaCommandHandlerService {
     public void handleDepositUpdateBalance(CommandMessage command) {
         log.info("Handling ACCOUNT_DEPOSIT_UPDATE_BALANCE command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        // Safe conversion from any numeric type to BigDecimal
-        Object amountObj = command.getPayloadValue("amount");
-        BigDecimal amount;
-        if (amountObj instanceof BigDecimal) {
-            amount = (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            amount = BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            amount = new BigDecimal((String) amountObj);
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-        String transactionId = command.getPayloadValue("transactionId");
+        BalanceUpdatePayload payload = BalanceUpdatePayload.from(command);
+        String accountId = payload.getAccountId();
+        BigDecimal amount = payload.getAmount();
+        String transactionId = payload.getTransactionId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -622,7 +604,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(depositEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(depositEventsTopic, command.getSagaId(), event);
             log.info("Sent DEPOSIT_BALANCE_UPDATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -639,7 +621,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(depositEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(depositEventsTopic, event.getSagaId(), event);
             log.info("Sent DEPOSIT_BALANCE_UPDATE_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -653,20 +635,10 @@ public class KafkaCommandHandlerService {
     public void handleWithdrawalUpdateBalance(CommandMessage command) {
         log.info("Handling ACCOUNT_WITHDRAWAL_UPDATE_BALANCE command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        // Safe conversion from any numeric type to BigDecimal
-        Object amountObj = command.getPayloadValue("amount");
-        BigDecimal amount;
-        if (amountObj instanceof BigDecimal) {
-            amount = (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            amount = BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            amount = new BigDecimal((String) amountObj);
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-        String transactionId = command.getPayloadValue("transactionId");
+        BalanceUpdatePayload payload = BalanceUpdatePayload.from(command);
+        String accountId = payload.getAccountId();
+        BigDecimal amount = payload.getAmount();
+        String transactionId = payload.getTransactionId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -735,7 +707,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(withdrawalEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(withdrawalEventsTopic, command.getSagaId(), event);
             log.info("Sent WITHDRAWAL_BALANCE_UPDATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -752,7 +724,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(withdrawalEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(withdrawalEventsTopic, event.getSagaId(), event);
             log.info("Sent BALANCE_UPDATE_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -790,9 +762,10 @@ public class KafkaCommandHandlerService {
     public void handleMarkTransactionFailed(CommandMessage command) {
         log.info("Handling ACCOUNT_MARK_TRANSACTION_FAILED command for saga: {}", command.getSagaId());
 
-        String transactionId = command.getPayloadValue("transactionId");
-        String failureReason = command.getPayloadValue("failureReason");
-        String errorCode = command.getPayloadValue("errorCode");
+        MarkTransactionFailedPayload payload = MarkTransactionFailedPayload.from(command);
+        String transactionId = payload.getTransactionId();
+        String failureReason = payload.getFailureReason();
+        String errorCode = payload.getErrorCode();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -839,7 +812,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(commonEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(commonEventsTopic, command.getSagaId(), event);
             log.info("Sent TRANSACTION_MARKED_FAILED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -856,7 +829,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(commonEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(commonEventsTopic, event.getSagaId(), event);
             log.info("Sent TRANSACTION_MARK_FAILED_ERROR response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -870,21 +843,11 @@ public class KafkaCommandHandlerService {
     public void handleDepositReverseBalanceUpdate(CommandMessage command) {
         log.info("Handling ACCOUNT_DEPOSIT_REVERSE_BALANCE_UPDATE command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        // Safe conversion from any numeric type to BigDecimal
-        Object amountObj = command.getPayloadValue("amount");
-        BigDecimal amount;
-        if (amountObj instanceof BigDecimal) {
-            amount = (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            amount = BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            amount = new BigDecimal((String) amountObj);
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-        String transactionId = command.getPayloadValue("transactionId");
-        String reason = command.getPayloadValue("reason");
+        BalanceReversalPayload payload = BalanceReversalPayload.from(command);
+        String accountId = payload.getAccountId();
+        BigDecimal amount = payload.getAmount();
+        String transactionId = payload.getTransactionId();
+        String reason = payload.getReason();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -912,7 +875,7 @@ public class KafkaCommandHandlerService {
             }
 
             // Get expected values from the original operation
-            BigDecimal originalAmount = command.getPayloadValue("amount");
+            BigDecimal originalAmount = payload.getAmount();
             BigDecimal expectedAvailable = null;
 
             // Get the original event data if possible from the saga
@@ -1009,7 +972,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(depositEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(depositEventsTopic, command.getSagaId(), event);
             log.info("Sent DEPOSIT_BALANCE_REVERSAL_COMPLETED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -1026,7 +989,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(depositEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(depositEventsTopic, event.getSagaId(), event);
             log.info("Sent DEPOSIT_BALANCE_REVERSAL_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -1040,21 +1003,11 @@ public class KafkaCommandHandlerService {
     public void handleWithdrawalReverseBalanceUpdate(CommandMessage command) {
         log.info("Handling ACCOUNT_WITHDRAWAL_REVERSE_BALANCE_UPDATE command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        // Safe conversion from any numeric type to BigDecimal
-        Object amountObj = command.getPayloadValue("amount");
-        BigDecimal amount;
-        if (amountObj instanceof BigDecimal) {
-            amount = (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            amount = BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            amount = new BigDecimal((String) amountObj);
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-        String transactionId = command.getPayloadValue("transactionId");
-        String reason = command.getPayloadValue("reason");
+        BalanceReversalPayload payload = BalanceReversalPayload.from(command);
+        String accountId = payload.getAccountId();
+        BigDecimal amount = payload.getAmount();
+        String transactionId = payload.getTransactionId();
+        String reason = payload.getReason();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -1155,7 +1108,7 @@ public class KafkaCommandHandlerService {
         }
         // Send the response event
         try {
-            kafkaTemplate.send(withdrawalEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(withdrawalEventsTopic, command.getSagaId(), event);
             log.info("Sent WITHDRAWAL_BALANCE_REVERSAL_COMPLETED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -1172,7 +1125,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(withdrawalEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(withdrawalEventsTopic, event.getSagaId(), event);
             log.info("Sent WITHDRAWAL_BALANCE_REVERSAL_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -1186,8 +1139,9 @@ public class KafkaCommandHandlerService {
     public void handleVerifyAccountStatus(CommandMessage command) {
         log.info("Handling ACCOUNT_VERIFY_STATUS command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        String userId = command.getPayloadValue("userId");
+        AccountValidatePayload payload = AccountValidatePayload.from(command);
+        String accountId = payload.getAccountId();
+        String userId = payload.getUserId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -1243,7 +1197,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send("account.events.order-buy", command.getSagaId(), event);
+            kafkaPublisher.publish("account.events.order-buy", command.getSagaId(), event);
             log.info("Sent ACCOUNT_STATUS_VERIFIED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -1260,7 +1214,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send("account.events.order-buy", event.getSagaId(), event);
+            kafkaPublisher.publish("account.events.order-buy", event.getSagaId(), event);
             log.info("Sent ACCOUNT_STATUS_INVALID response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -1274,13 +1228,13 @@ public class KafkaCommandHandlerService {
     public void handleReserveFunds(CommandMessage command) {
         log.info("Handling ACCOUNT_RESERVE_FUNDS command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        String orderId = command.getPayloadValue("orderId");
-        String stockSymbol = command.getPayloadValue("stockSymbol");
+        ReserveFundsPayload payload = ReserveFundsPayload.from(command);
+        String accountId = payload.getAccountId();
+        String orderId = payload.getOrderId();
+        String stockSymbol = payload.getStockSymbol();
 
         // Handle different possible formats of amount
-        Object amountObj = command.getPayloadValue("amount");
-        BigDecimal amount = convertToBigDecimal(amountObj);
+        BigDecimal amount = payload.getAmount();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -1341,16 +1295,18 @@ public class KafkaCommandHandlerService {
             // Set success response
             event.setType("FUNDS_RESERVED");
             event.setSuccess(true);
-            event.setPayloadValue("reservationId", savedReservation.getId());
-            event.setPayloadValue("accountId", accountId);
-            event.setPayloadValue("orderId", orderId);
-            event.setPayloadValue("amount", amount);
-            event.setPayloadValue("stockSymbol", stockSymbol);
-            event.setPayloadValue("reservedAt", savedReservation.getCreatedAt().toString());
-            event.setPayloadValue("expiresAt", savedReservation.getExpiresAt().toString());
-            event.setPayloadValue("newAvailableBalance", newAvailable);
-            event.setPayloadValue("newReservedBalance", newReserved);
-            event.setPayloadValue("newTotalBalance", balance.getTotal());
+            FundsReservedPayload.builder()
+                    .reservationId(savedReservation.getId())
+                    .accountId(accountId)
+                    .orderId(orderId)
+                    .amount(amount)
+                    .stockSymbol(stockSymbol)
+                    .reservedAt(savedReservation.getCreatedAt())
+                    .expiresAt(savedReservation.getExpiresAt())
+                    .newAvailableBalance(newAvailable)
+                    .newReservedBalance(newReserved)
+                    .newTotalBalance(balance.getTotal())
+                    .build().applyTo(event);
 
         } catch (Exception e) {
             log.error("Error reserving funds", e);
@@ -1361,7 +1317,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send("account.events.order-buy", command.getSagaId(), event);
+            kafkaPublisher.publish("account.events.order-buy", command.getSagaId(), event);
             log.info("Sent FUNDS_RESERVED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -1378,7 +1334,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send("account.events.order-buy", event.getSagaId(), event);
+            kafkaPublisher.publish("account.events.order-buy", event.getSagaId(), event);
             log.info("Sent FUNDS_RESERVATION_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -1386,30 +1342,16 @@ public class KafkaCommandHandlerService {
         }
     }
 
-    /**
-     * Helper method to safely convert any numeric type to BigDecimal
-     */
-    private BigDecimal convertToBigDecimal(Object amountObj) {
-        if (amountObj instanceof BigDecimal) {
-            return (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            return BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            return new BigDecimal((String) amountObj);
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-    }
-
     /**
      * Handle ACCOUNT_RELEASE_FUNDS command (compensation)
      */
     public void handleReleaseFunds(CommandMessage command) {
         log.info("Handling ACCOUNT_RELEASE_FUNDS command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        String reservationId = command.getPayloadValue("reservationId");
-        String orderId = command.getPayloadValue("orderId");
+        ReleaseFundsPayload payload = ReleaseFundsPayload.from(command);
+        String accountId = payload.getAccountId();
+        String reservationId = payload.getReservationId();
+        String orderId = payload.getOrderId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -1436,7 +1378,7 @@ public class KafkaCommandHandlerService {
                 event.setPayloadValue("releasedAt", Instant.now().toString());
                 event.setPayloadValue("status", "ALREADY_RELEASED");
 
-                kafkaTemplate.send("account.events.order-buy", command.getSagaId(), event);
+                kafkaPublisher.publish("account.events.order-buy", command.getSagaId(), event);
                 return;
             }
 
@@ -1491,7 +1433,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send("account.events.order-buy", command.getSagaId(), event);
+            kafkaPublisher.publish("account.events.order-buy", command.getSagaId(), event);
             log.info("Sent funds release response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -1505,13 +1447,13 @@ public class KafkaCommandHandlerService {
     public void handleSettleTransaction(CommandMessage command) {
         log.info("Handling ACCOUNT_SETTLE_TRANSACTION command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        String reservationId = command.getPayloadValue("reservationId");
-        String orderId = command.getPayloadValue("orderId");
+        SettleTransactionPayload payload = SettleTransactionPayload.from(command);
+        String accountId = payload.getAccountId();
+        String reservationId = payload.getReservationId();
+        String orderId = payload.getOrderId();
 
         // Get the final amount to settle (could be different from initial reserved amount)
-        Object finalAmountObj = command.getPayloadValue("finalAmount");
-        BigDecimal finalAmount = convertToBigDecimal(finalAmountObj);
+        BigDecimal finalAmount = payload.getFinalAmount();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -1636,7 +1578,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send("account.events.order-buy", command.getSagaId(), event);
+            kafkaPublisher.publish("account.events.order-buy", command.getSagaId(), event);
             log.info("Sent TRANSACTION_SETTLED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -1653,7 +1595,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send("account.events.order-buy", event.getSagaId(), event);
+            kafkaPublisher.publish("account.events.order-buy", event.getSagaId(), event);
             log.info("Sent TRANSACTION_SETTLEMENT_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -1668,13 +1610,13 @@ public class KafkaCommandHandlerService {
     public void handleReverseSettlement(CommandMessage command) {
         log.info("Handling ACCOUNT_REVERSE_SETTLEMENT command for saga: {}", command.getSagaId());
 
-        String accountId = command.getPayloadValue("accountId");
-        String reservationId = command.getPayloadValue("reservationId");
-        String orderId = command.getPayloadValue("orderId");
+        ReverseSettlementPayload payload = ReverseSettlementPayload.from(command);
+        String accountId = payload.getAccountId();
+        String reservationId = payload.getReservationId();
+        String orderId = payload.getOrderId();
 
         // Get the amount to reverse
-        Object amountObj = command.getPayloadValue("amount");
-        BigDecimal amount = convertToBigDecimal(amountObj);
+        BigDecimal amount = payload.getAmount();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -1695,7 +1637,7 @@ public class KafkaCommandHandlerService {
                 event.setPayloadValue("accountId", accountId);
                 event.setPayloadValue("status", "ACCOUNT_NOT_FOUND");
 
-                kafkaTemplate.send("account.events.order-buy", command.getSagaId(), event);
+                kafkaPublisher.publish("account.events.order-buy", command.getSagaId(), event);
                 return;
             }
 
@@ -1710,7 +1652,7 @@ public class KafkaCommandHandlerService {
                 event.setPayloadValue("accountId", accountId);
                 event.setPayloadValue("status", "BALANCE_NOT_FOUND");
 
-                kafkaTemplate.send("account.events.order-buy", command.getSagaId(), event);
+                kafkaPublisher.publish("account.events.order-buy", command.getSagaId(), event);
                 return;
             }
 
@@ -1771,7 +1713,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send("account.events.order-buy", command.getSagaId(), event);
+            kafkaPublisher.publish("account.events.order-buy", command.getSagaId(), event);
             log.info("Sent SETTLEMENT_REVERSED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
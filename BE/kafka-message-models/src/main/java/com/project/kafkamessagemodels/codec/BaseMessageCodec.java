@@ -0,0 +1,137 @@
+package com.project.kafkamessagemodels.codec;
+
+import com.project.kafkamessagemodels.model.BaseMessage;
+
+import java.util.UUID;
+
+/**
+ * Encodes the fields every message shares.
+ *
+ * Fields are preceded by a presence bitmask so null fields take no space. Bits 0-7 are used
+ * for the common fields, subclasses number their own fields from {@link #FIRST_SUBCLASS_BIT}.
+ */
+abstract class BaseMessageCodec<T extends BaseMessage> implements MessageCodec<T> {
+
+    protected static final int FIRST_SUBCLASS_BIT = 8;
+
+    private static final int MESSAGE_ID = 0;
+    private static final int MESSAGE_ID_UUID = 1;
+    private static final int SAGA_ID = 2;
+    private static final int STEP_ID = 3;
+    private static final int TYPE = 4;
+    private static final int TIMESTAMP = 5;
+    private static final int SOURCE_SERVICE = 6;
+    private static final int VERSION = 7;
+
+    @Override
+    public final void encode(T message, BinaryWriter writer) {
+        UUID messageUuid = asUuid(message.getMessageId());
+
+        long fields = 0;
+        fields |= bit(MESSAGE_ID, message.getMessageId() != null && messageUuid == null);
+        fields |= bit(MESSAGE_ID_UUID, messageUuid != null);
+        fields |= bit(SAGA_ID, message.getSagaId() != null);
+        fields |= bit(STEP_ID, message.getStepId() != null);
+        fields |= bit(TYPE, message.getType() != null);
+        fields |= bit(TIMESTAMP, message.getTimestamp() != null);
+        fields |= bit(SOURCE_SERVICE, message.getSourceService() != null);
+        fields |= bit(VERSION, message.getVersion() != null);
+        fields |= presentFields(message);
+        writer.writeVarLong(fields);
+
+        if (has(fields, MESSAGE_ID)) {
+            writer.writeString(message.getMessageId());
+        }
+        if (has(fields, MESSAGE_ID_UUID)) {
+            writer.writeUuid(messageUuid);
+        }
+        if (has(fields, SAGA_ID)) {
+            writer.writeString(message.getSagaId());
+        }
+        if (has(fields, STEP_ID)) {
+            writer.writeSignedVarLong(message.getStepId());
+        }
+        if (has(fields, TYPE)) {
+            writer.writeString(message.getType());
+        }
+        if (has(fields, TIMESTAMP)) {
+            writer.writeInstant(message.getTimestamp());
+        }
+        if (has(fields, SOURCE_SERVICE)) {
+            writer.writeString(message.getSourceService());
+        }
+        if (has(fields, VERSION)) {
+            writer.writeSignedVarLong(message.getVersion());
+        }
+        encodeFields(message, fields, writer);
+    }
+
+    @Override
+    public final T decode(BinaryReader reader) {
+        long fields = reader.readVarLong();
+        T message = newMessage();
+
+        if (has(fields, MESSAGE_ID)) {
+            message.setMessageId(reader.readString());
+        }
+        if (has(fields, MESSAGE_ID_UUID)) {
+            message.setMessageId(reader.readUuid().toString());
+        }
+        if (has(fields, SAGA_ID)) {
+            message.setSagaId(reader.readString());
+        }
+        if (has(fields, STEP_ID)) {
+            message.setStepId((int) reader.readSignedVarLong());
+        }
+        if (has(fields, TYPE)) {
+            message.setType(reader.readString());
+        }
+        if (has(fields, TIMESTAMP)) {
+            message.setTimestamp(reader.readInstant());
+        }
+        if (has(fields, SOURCE_SERVICE)) {
+            message.setSourceService(reader.readString());
+        }
+        if (has(fields, VERSION)) {
+            message.setVersion((int) reader.readSignedVarLong());
+        }
+        decodeFields(message, fields, reader);
+        return message;
+    }
+
+    protected abstract T newMessage();
+
+    /**
+     * @return presence bits of the subclass fields
+     */
+    protected abstract long presentFields(T message);
+
+    protected abstract void encodeFields(T message, long fields, BinaryWriter writer);
+
+    /**
+     * Read the subclass fields. Fields absent from the message must be set to null explicitly,
+     * since new messages start with the defaults of their no-args constructor.
+     */
+    protected abstract void decodeFields(T message, long fields, BinaryReader reader);
+
+    protected static long bit(int index, boolean set) {
+        return set ? 1L << index : 0L;
+    }
+
+    protected static boolean has(long fields, int index) {
+        return (fields & (1L << index)) != 0;
+    }
+
+    // Message ids are random UUIDs; only the canonical form is packed so the text round-trips
+    private static UUID asUuid(String messageId) {
+        if (messageId == null || messageId.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(messageId);
+            return uuid.toString().equals(messageId) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
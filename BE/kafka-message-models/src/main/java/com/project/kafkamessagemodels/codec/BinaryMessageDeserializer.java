@@ -0,0 +1,62 @@
+package com.project.kafkamessagemodels.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * Deserializer that reads both formats: binary messages are decoded through the codec
+ * registry, anything else is passed to the fallback deserializer, normally the JSON one.
+ * The fallback is configured with the same properties.
+ */
+public class BinaryMessageDeserializer<T> implements Deserializer<T> {
+
+    private final MessageCodecRegistry registry;
+    private final Deserializer<T> fallback;
+
+    public BinaryMessageDeserializer(Deserializer<T> fallback) {
+        this(MessageCodecRegistry.standard(), fallback);
+    }
+
+    public BinaryMessageDeserializer(MessageCodecRegistry registry, Deserializer<T> fallback) {
+        this.registry = registry;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        fallback.configure(configs, isKey);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (MessageCodecRegistry.isBinary(data)) {
+            return decode(topic, data);
+        }
+        return fallback.deserialize(topic, data);
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        if (MessageCodecRegistry.isBinary(data)) {
+            return decode(topic, data);
+        }
+        return fallback.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        fallback.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T decode(String topic, byte[] data) {
+        try {
+            return (T) registry.decode(data);
+        } catch (MessageCodecException e) {
+            throw new SerializationException("Cannot decode binary message from topic " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.project.kafkamessagemodels.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serializer that writes the binary format to the topics listed in {@link #BINARY_TOPICS_CONFIG}
+ * and hands every other topic, and message types without a codec, to a fallback serializer,
+ * normally the JSON one.
+ *
+ * Topics are switched to binary one at a time, after every consumer of the topic reads with a
+ * {@link BinaryMessageDeserializer}. The fallback is configured with the same properties.
+ */
+public class BinaryMessageSerializer<T> implements Serializer<T> {
+
+    /**
+     * Comma separated topics to write in the binary format, or {@code *} for all topics
+     */
+    public static final String BINARY_TOPICS_CONFIG = "message.codec.binary-topics";
+
+    private final MessageCodecRegistry registry;
+    private final Serializer<T> fallback;
+    private Set<String> binaryTopics = Collections.emptySet();
+    private boolean allTopics;
+
+    public BinaryMessageSerializer(Serializer<T> fallback) {
+        this(MessageCodecRegistry.standard(), fallback);
+    }
+
+    public BinaryMessageSerializer(MessageCodecRegistry registry, Serializer<T> fallback) {
+        this.registry = registry;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object topics = configs.get(BINARY_TOPICS_CONFIG);
+        if (topics != null) {
+            Set<String> parsed = new HashSet<>();
+            for (String topic : topics.toString().split(",")) {
+                if (!topic.trim().isEmpty()) {
+                    parsed.add(topic.trim());
+                }
+            }
+            allTopics = parsed.contains("*");
+            binaryTopics = parsed;
+        }
+        fallback.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (writesBinary(topic, data)) {
+            return encode(topic, data);
+        }
+        return fallback.serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data) {
+        if (writesBinary(topic, data)) {
+            return encode(topic, data);
+        }
+        return fallback.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        fallback.close();
+    }
+
+    private boolean writesBinary(String topic, T data) {
+        return data != null
+                && (allTopics || binaryTopics.contains(topic))
+                && registry.canEncode(data.getClass());
+    }
+
+    private byte[] encode(String topic, T data) {
+        try {
+            return registry.encode(data);
+        } catch (MessageCodecException e) {
+            throw new SerializationException("Cannot encode message for topic " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.project.kafkamessagemodels.codec;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads the encodings written by {@link BinaryWriter}.
+ *
+ * Payload values come back as the types they were written with where the format keeps them:
+ * integers as Integer or Long depending on magnitude, doubles as Double, decimals (and
+ * BigIntegers) as BigDecimal with their original scale and instants as Instant, nested objects
+ * as maps and arrays as lists. Consumers read them through {@code PayloadValues}, which accepts
+ * these as well as the types the JSON deserializer produces.
+ */
+public final class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryReader(byte[] buffer, int offset) {
+        this.buffer = buffer;
+        this.position = offset;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public byte[] readBytes() {
+        int length = readVarInt();
+        require(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+
+    public int readVarInt() {
+        long value = readVarLong();
+        if (value > 0xFFFFFFFFL) {
+            throw new MessageCodecException("Varint out of int range at offset " + position);
+        }
+        return (int) value;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new MessageCodecException("Malformed varint at offset " + position);
+    }
+
+    public long readSignedVarLong() {
+        long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        require(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public Instant readInstant() {
+        long seconds = readSignedVarLong();
+        return Instant.ofEpochSecond(seconds, readVarInt());
+    }
+
+    public UUID readUuid() {
+        return new UUID(readLong(), readLong());
+    }
+
+    public Map<String, String> readStringMap() {
+        int count = readVarInt();
+        Map<String, String> map = new HashMap<>(capacityFor(count));
+        for (int i = 0; i < count; i++) {
+            map.put(readString(), readString());
+        }
+        return map;
+    }
+
+    public Map<String, Object> readValueMap() {
+        int count = readVarInt();
+        Map<String, Object> map = new LinkedHashMap<>(capacityFor(count));
+        for (int i = 0; i < count; i++) {
+            map.put(readString(), readValue());
+        }
+        return map;
+    }
+
+    public Object readValue() {
+        int tag = readByte();
+        switch (tag) {
+            case ValueTag.NULL:
+                return null;
+            case ValueTag.STRING:
+                return readString();
+            case ValueTag.TRUE:
+                return Boolean.TRUE;
+            case ValueTag.FALSE:
+                return Boolean.FALSE;
+            case ValueTag.INTEGER:
+                long value = readSignedVarLong();
+                if (value == (int) value) {
+                    return (int) value;
+                }
+                return value;
+            case ValueTag.DOUBLE:
+                return Double.longBitsToDouble(readLong());
+            case ValueTag.DECIMAL:
+                int scale = (int) readSignedVarLong();
+                return new BigDecimal(new BigInteger(readBytes()), scale);
+            case ValueTag.INSTANT:
+                return readInstant();
+            case ValueTag.MAP:
+                return readValueMap();
+            case ValueTag.LIST:
+                int size = readVarInt();
+                List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue());
+                }
+                return list;
+            case ValueTag.JSON:
+                return ValueTag.fromJson(readBytes());
+            default:
+                throw new MessageCodecException("Unknown value tag " + tag + " at offset " + (position - 1));
+        }
+    }
+
+    public boolean hasRemaining() {
+        return position < buffer.length;
+    }
+
+    private long readLong() {
+        require(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    private void require(int length) {
+        if (length < 0 || position + length > buffer.length) {
+            throw new MessageCodecException("Truncated message: needed " + length + " bytes at offset " + position);
+        }
+    }
+
+    // Counts come off the wire, so do not let a corrupt one pre-size a huge map
+    private static int capacityFor(int count) {
+        return Math.min(count, 1024) * 4 / 3 + 1;
+    }
+}
@@ -0,0 +1,181 @@
+package com.project.kafkamessagemodels.codec;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Growable buffer with the primitive encodings used by the binary message codecs.
+ *
+ * Integers are written as unsigned or zig-zag varints, strings as a varint length followed
+ * by UTF-8 bytes, and payload values as a one byte {@link ValueTag} followed by the value.
+ */
+public final class BinaryWriter {
+
+    private byte[] buffer;
+    private int position;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        writeRaw(bytes);
+    }
+
+    public void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeString(String value) {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void writeInstant(Instant value) {
+        writeSignedVarLong(value.getEpochSecond());
+        writeVarInt(value.getNano());
+    }
+
+    public void writeUuid(UUID value) {
+        writeLong(value.getMostSignificantBits());
+        writeLong(value.getLeastSignificantBits());
+    }
+
+    /**
+     * Write a string map as a count followed by key/value pairs. Null values are not kept.
+     */
+    public void writeStringMap(Map<String, String> map) {
+        int count = 0;
+        for (String value : map.values()) {
+            if (value != null) {
+                count++;
+            }
+        }
+        writeVarInt(count);
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (entry.getValue() != null) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Write a free-form payload map as a count followed by key/tagged value pairs.
+     */
+    public void writeValueMap(Map<?, ?> map) {
+        writeVarInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeString(String.valueOf(entry.getKey()));
+            writeValue(entry.getValue());
+        }
+    }
+
+    /**
+     * Write a payload value with its type tag. Types without a dedicated tag are embedded as
+     * JSON so they decode to exactly what the JSON deserializer would have produced.
+     */
+    public void writeValue(Object value) {
+        if (value == null) {
+            writeByte(ValueTag.NULL);
+        } else if (value instanceof String) {
+            writeByte(ValueTag.STRING);
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? ValueTag.TRUE : ValueTag.FALSE);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            writeByte(ValueTag.INTEGER);
+            writeSignedVarLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            writeByte(ValueTag.DOUBLE);
+            writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            // Widen through the decimal text, as a JSON round trip would
+            writeByte(ValueTag.DOUBLE);
+            writeLong(Double.doubleToRawLongBits(Double.parseDouble(value.toString())));
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            writeByte(ValueTag.DECIMAL);
+            writeSignedVarLong(decimal.scale());
+            writeBytes(decimal.unscaledValue().toByteArray());
+        } else if (value instanceof BigInteger) {
+            writeByte(ValueTag.DECIMAL);
+            writeSignedVarLong(0);
+            writeBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof Instant) {
+            writeByte(ValueTag.INSTANT);
+            writeInstant((Instant) value);
+        } else if (value instanceof Enum) {
+            writeByte(ValueTag.STRING);
+            writeString(((Enum<?>) value).name());
+        } else if (value instanceof UUID || value instanceof Character) {
+            writeByte(ValueTag.STRING);
+            writeString(value.toString());
+        } else if (value instanceof Map) {
+            writeByte(ValueTag.MAP);
+            writeValueMap((Map<?, ?>) value);
+        } else if (value instanceof Collection) {
+            Collection<?> elements = (Collection<?>) value;
+            writeByte(ValueTag.LIST);
+            writeVarInt(elements.size());
+            for (Object element : elements) {
+                writeValue(element);
+            }
+        } else {
+            writeByte(ValueTag.JSON);
+            writeBytes(ValueTag.toJson(value));
+        }
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void writeLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeRaw(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.project.kafkamessagemodels.codec;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+
+/**
+ * Version 1 of the {@link CommandMessage} schema
+ */
+public class CommandMessageCodecV1 extends BaseMessageCodec<CommandMessage> {
+
+    public static final int SCHEMA_ID = 1;
+
+    private static final int PAYLOAD = FIRST_SUBCLASS_BIT;
+    private static final int METADATA = FIRST_SUBCLASS_BIT + 1;
+    private static final int IS_COMPENSATION = FIRST_SUBCLASS_BIT + 2;
+    private static final int IS_COMPENSATION_TRUE = FIRST_SUBCLASS_BIT + 3;
+    private static final int TARGET_SERVICE = FIRST_SUBCLASS_BIT + 4;
+
+    @Override
+    public Class<CommandMessage> messageType() {
+        return CommandMessage.class;
+    }
+
+    @Override
+    public int schemaId() {
+        return SCHEMA_ID;
+    }
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    protected CommandMessage newMessage() {
+        return new CommandMessage();
+    }
+
+    @Override
+    protected long presentFields(CommandMessage message) {
+        return bit(PAYLOAD, message.getPayload() != null)
+                | bit(METADATA, message.getMetadata() != null)
+                | bit(IS_COMPENSATION, message.getIsCompensation() != null)
+                | bit(IS_COMPENSATION_TRUE, Boolean.TRUE.equals(message.getIsCompensation()))
+                | bit(TARGET_SERVICE, message.getTargetService() != null);
+    }
+
+    @Override
+    protected void encodeFields(CommandMessage message, long fields, BinaryWriter writer) {
+        if (has(fields, PAYLOAD)) {
+            writer.writeValueMap(message.getPayload());
+        }
+        if (has(fields, METADATA)) {
+            writer.writeStringMap(message.getMetadata());
+        }
+        if (has(fields, TARGET_SERVICE)) {
+            writer.writeString(message.getTargetService());
+        }
+    }
+
+    @Override
+    protected void decodeFields(CommandMessage message, long fields, BinaryReader reader) {
+        message.setPayload(has(fields, PAYLOAD) ? reader.readValueMap() : null);
+        message.setMetadata(has(fields, METADATA) ? reader.readStringMap() : null);
+        message.setIsCompensation(has(fields, IS_COMPENSATION) ? has(fields, IS_COMPENSATION_TRUE) : null);
+        message.setTargetService(has(fields, TARGET_SERVICE) ? reader.readString() : null);
+    }
+}
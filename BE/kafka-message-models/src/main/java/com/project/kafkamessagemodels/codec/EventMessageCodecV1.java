@@ -0,0 +1,67 @@
+package com.project.kafkamessagemodels.codec;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+
+/**
+ * Version 1 of the {@link EventMessage} schema
+ */
+public class EventMessageCodecV1 extends BaseMessageCodec<EventMessage> {
+
+    public static final int SCHEMA_ID = 2;
+
+    private static final int PAYLOAD = FIRST_SUBCLASS_BIT;
+    private static final int SUCCESS = FIRST_SUBCLASS_BIT + 1;
+    private static final int SUCCESS_TRUE = FIRST_SUBCLASS_BIT + 2;
+    private static final int ERROR_CODE = FIRST_SUBCLASS_BIT + 3;
+    private static final int ERROR_MESSAGE = FIRST_SUBCLASS_BIT + 4;
+
+    @Override
+    public Class<EventMessage> messageType() {
+        return EventMessage.class;
+    }
+
+    @Override
+    public int schemaId() {
+        return SCHEMA_ID;
+    }
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    protected EventMessage newMessage() {
+        return new EventMessage();
+    }
+
+    @Override
+    protected long presentFields(EventMessage message) {
+        return bit(PAYLOAD, message.getPayload() != null)
+                | bit(SUCCESS, message.getSuccess() != null)
+                | bit(SUCCESS_TRUE, Boolean.TRUE.equals(message.getSuccess()))
+                | bit(ERROR_CODE, message.getErrorCode() != null)
+                | bit(ERROR_MESSAGE, message.getErrorMessage() != null);
+    }
+
+    @Override
+    protected void encodeFields(EventMessage message, long fields, BinaryWriter writer) {
+        if (has(fields, PAYLOAD)) {
+            writer.writeValueMap(message.getPayload());
+        }
+        if (has(fields, ERROR_CODE)) {
+            writer.writeString(message.getErrorCode());
+        }
+        if (has(fields, ERROR_MESSAGE)) {
+            writer.writeString(message.getErrorMessage());
+        }
+    }
+
+    @Override
+    protected void decodeFields(EventMessage message, long fields, BinaryReader reader) {
+        message.setPayload(has(fields, PAYLOAD) ? reader.readValueMap() : null);
+        message.setSuccess(has(fields, SUCCESS) ? has(fields, SUCCESS_TRUE) : null);
+        message.setErrorCode(has(fields, ERROR_CODE) ? reader.readString() : null);
+        message.setErrorMessage(has(fields, ERROR_MESSAGE) ? reader.readString() : null);
+    }
+}
@@ -0,0 +1,31 @@
+package com.project.kafkamessagemodels.codec;
+
+/**
+ * Encodes one message type in one version of its binary schema.
+ *
+ * A codec only handles the message body; the frame that identifies the schema and version is
+ * written by the {@link MessageCodecRegistry}. Once a version has been deployed its encoding
+ * must not change: a changed layout is a new codec with a higher version, registered next to
+ * the old one so messages already in the topics can still be read.
+ */
+public interface MessageCodec<T> {
+
+    /**
+     * @return the message class this codec encodes
+     */
+    Class<T> messageType();
+
+    /**
+     * @return identifier of the schema on the wire, shared by all versions of a message type
+     */
+    int schemaId();
+
+    /**
+     * @return version of the schema this codec writes and reads
+     */
+    int version();
+
+    void encode(T message, BinaryWriter writer);
+
+    T decode(BinaryReader reader);
+}
@@ -0,0 +1,15 @@
+package com.project.kafkamessagemodels.codec;
+
+/**
+ * Thrown when a message cannot be encoded or decoded by the binary codec
+ */
+public class MessageCodecException extends RuntimeException {
+
+    public MessageCodecException(String message) {
+        super(message);
+    }
+
+    public MessageCodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
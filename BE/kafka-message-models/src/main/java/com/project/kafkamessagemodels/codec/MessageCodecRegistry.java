@@ -0,0 +1,91 @@
+package com.project.kafkamessagemodels.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Knows every binary schema version a service can read and the version it writes.
+ *
+ * Binary messages start with a three byte frame: a magic byte, the schema id and the schema
+ * version. The magic byte is zero, which never starts a JSON document, so a consumer can tell
+ * binary and JSON messages apart and read both while producers migrate topic by topic.
+ * Messages are written with the highest registered version of their type and read with
+ * whichever version their frame names.
+ */
+public class MessageCodecRegistry {
+
+    public static final byte MAGIC = 0x00;
+
+    private static final int FRAME_LENGTH = 3;
+
+    private final Map<Integer, MessageCodec<?>> readers = new HashMap<>();
+    private final Map<Class<?>, MessageCodec<?>> writers = new HashMap<>();
+
+    /**
+     * @return a registry with the codecs of all shared message types
+     */
+    public static MessageCodecRegistry standard() {
+        return new MessageCodecRegistry()
+                .register(new CommandMessageCodecV1())
+                .register(new EventMessageCodecV1());
+    }
+
+    public MessageCodecRegistry register(MessageCodec<?> codec) {
+        if (codec.schemaId() <= 0 || codec.schemaId() > 0xFF || codec.version() <= 0 || codec.version() > 0xFF) {
+            throw new IllegalArgumentException("Schema id and version must be between 1 and 255");
+        }
+        MessageCodec<?> existing = readers.putIfAbsent(key(codec.schemaId(), codec.version()), codec);
+        if (existing != null && existing != codec) {
+            throw new IllegalArgumentException("Schema " + codec.schemaId() + " version " + codec.version()
+                    + " is already registered");
+        }
+        writers.merge(codec.messageType(), codec, (current, candidate) ->
+                candidate.version() > current.version() ? candidate : current);
+        return this;
+    }
+
+    public boolean canEncode(Class<?> messageType) {
+        return writers.containsKey(messageType);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> byte[] encode(T message) {
+        MessageCodec<T> codec = (MessageCodec<T>) writers.get(message.getClass());
+        if (codec == null) {
+            throw new MessageCodecException("No binary codec registered for " + message.getClass().getName());
+        }
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeByte(MAGIC);
+        writer.writeByte(codec.schemaId());
+        writer.writeByte(codec.version());
+        codec.encode(message, writer);
+        return writer.toByteArray();
+    }
+
+    public Object decode(byte[] data) {
+        if (!isBinary(data) || data.length < FRAME_LENGTH) {
+            throw new MessageCodecException("Not a binary message");
+        }
+        int schemaId = data[1] & 0xFF;
+        int version = data[2] & 0xFF;
+        MessageCodec<?> codec = readers.get(key(schemaId, version));
+        if (codec == null) {
+            throw new MessageCodecException("Unknown schema " + schemaId + " version " + version
+                    + "; the producer is newer than this consumer");
+        }
+        BinaryReader reader = new BinaryReader(data, FRAME_LENGTH);
+        Object message = codec.decode(reader);
+        if (reader.hasRemaining()) {
+            throw new MessageCodecException("Trailing bytes after schema " + schemaId + " version " + version);
+        }
+        return message;
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    private static int key(int schemaId, int version) {
+        return (schemaId << 8) | version;
+    }
+}
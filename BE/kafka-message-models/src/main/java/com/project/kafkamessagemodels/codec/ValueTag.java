@@ -0,0 +1,48 @@
+package com.project.kafkamessagemodels.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+
+/**
+ * Type tags of payload values on the wire. Tags are part of the wire format: existing values
+ * must never be renumbered, new types get new numbers.
+ */
+final class ValueTag {
+
+    static final int NULL = 0;
+    static final int STRING = 1;
+    static final int TRUE = 2;
+    static final int FALSE = 3;
+    static final int INTEGER = 4;
+    static final int DOUBLE = 5;
+    static final int DECIMAL = 6;
+    static final int INSTANT = 7;
+    static final int MAP = 8;
+    static final int LIST = 9;
+    static final int JSON = 10;
+
+    // Same date handling as the JSON serializer the services used before, so embedded values match
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private ValueTag() {
+    }
+
+    static byte[] toJson(Object value) {
+        try {
+            return JSON_MAPPER.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new MessageCodecException("Cannot encode payload value of type " + value.getClass().getName(), e);
+        }
+    }
+
+    static Object fromJson(byte[] json) {
+        try {
+            return JSON_MAPPER.readValue(json, Object.class);
+        } catch (IOException e) {
+            throw new MessageCodecException("Cannot decode embedded JSON payload value", e);
+        }
+    }
+}
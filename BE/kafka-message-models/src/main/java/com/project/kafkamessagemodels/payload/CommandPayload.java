@@ -0,0 +1,28 @@
+package com.project.kafkamessagemodels.payload;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Typed view of a command payload. Each implementation reads itself from a
+ * {@link CommandMessage} with a static {@code from} method and writes the same keys back.
+ */
+public interface CommandPayload {
+
+    /**
+     * Put the payload fields into a raw payload map
+     */
+    void writeTo(Map<String, Object> payload);
+
+    /**
+     * Set the payload fields on a command
+     */
+    default void applyTo(CommandMessage command) {
+        if (command.getPayload() == null) {
+            command.setPayload(new HashMap<>());
+        }
+        writeTo(command.getPayload());
+    }
+}
@@ -0,0 +1,28 @@
+package com.project.kafkamessagemodels.payload;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Typed view of an event payload. Each implementation reads itself from an
+ * {@link EventMessage} with a static {@code from} method and writes the same keys back.
+ */
+public interface EventPayload {
+
+    /**
+     * Put the payload fields into a raw payload map
+     */
+    void writeTo(Map<String, Object> payload);
+
+    /**
+     * Set the payload fields on an event
+     */
+    default void applyTo(EventMessage event) {
+        if (event.getPayload() == null) {
+            event.setPayload(new HashMap<>());
+        }
+        writeTo(event.getPayload());
+    }
+}
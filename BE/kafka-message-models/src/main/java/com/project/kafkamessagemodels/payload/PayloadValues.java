@@ -0,0 +1,119 @@
+package com.project.kafkamessagemodels.payload;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Conversions from raw payload values to the canonical types of the typed payloads.
+ *
+ * Payload values arrive as whatever the wire format produced: a BigDecimal sent as JSON comes
+ * back as a Double, or as an Integer when it has no fraction, and timestamps come back as
+ * ISO-8601 strings or epoch seconds. The binary format keeps BigDecimal and Instant as they
+ * were sent. Amounts and prices are always BigDecimal, quantities Integer and timestamps
+ * Instant once they have been through this class.
+ */
+public final class PayloadValues {
+
+    private PayloadValues() {
+    }
+
+    public static String string(Map<String, Object> payload, String key) {
+        return toStringValue(get(payload, key));
+    }
+
+    public static BigDecimal decimal(Map<String, Object> payload, String key) {
+        return toDecimal(get(payload, key));
+    }
+
+    public static Integer integer(Map<String, Object> payload, String key) {
+        return toInteger(get(payload, key));
+    }
+
+    public static Instant instant(Map<String, Object> payload, String key) {
+        return toInstant(get(payload, key));
+    }
+
+    /**
+     * Put a value unless it is null. Instants are written as ISO-8601 strings, the form the
+     * services have always exchanged them in.
+     */
+    public static void put(Map<String, Object> payload, String key, Object value) {
+        if (value != null) {
+            payload.put(key, value instanceof Instant ? value.toString() : value);
+        }
+    }
+
+    public static String toStringValue(Object value) {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Doubles are converted through their shortest decimal form, so 0.1 becomes 0.1 rather than
+     * the binary expansion of the nearest double.
+     */
+    public static BigDecimal toDecimal(Object value) {
+        if (value == null || value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof Double) {
+            return BigDecimal.valueOf((Double) value);
+        }
+        if (value instanceof Float) {
+            return new BigDecimal(value.toString());
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        if (value instanceof String) {
+            try {
+                return new BigDecimal(((String) value).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a valid number: " + value, e);
+            }
+        }
+        throw new IllegalArgumentException("Not a valid number: " + value);
+    }
+
+    public static Integer toInteger(Object value) {
+        if (value == null || value instanceof Integer) {
+            return (Integer) value;
+        }
+        try {
+            return toDecimal(value).intValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not a valid integer: " + value, e);
+        }
+    }
+
+    /**
+     * Accepts an Instant, an ISO-8601 string or epoch seconds with an optional fraction, the
+     * form the JSON serializer writes instants in.
+     */
+    public static Instant toInstant(Object value) {
+        if (value == null || value instanceof Instant) {
+            return (Instant) value;
+        }
+        if (value instanceof String) {
+            return Instant.parse((String) value);
+        }
+        if (value instanceof Number) {
+            BigDecimal seconds = toDecimal(value);
+            long wholeSeconds = seconds.longValue();
+            int nanos = seconds.subtract(BigDecimal.valueOf(wholeSeconds)).movePointRight(9).intValue();
+            return Instant.ofEpochSecond(wholeSeconds, nanos);
+        }
+        throw new IllegalArgumentException("Not a valid instant: " + value);
+    }
+
+    private static Object get(Map<String, Object> payload, String key) {
+        return payload != null ? payload.get(key) : null;
+    }
+}
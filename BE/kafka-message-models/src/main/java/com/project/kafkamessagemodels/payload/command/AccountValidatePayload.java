@@ -0,0 +1,33 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_VALIDATE and ACCOUNT_VERIFY_STATUS
+ */
+@Value
+@Builder
+public class AccountValidatePayload implements CommandPayload {
+
+    String accountId;
+    String userId;
+
+    public static AccountValidatePayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new AccountValidatePayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "userId"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "userId", userId);
+    }
+}
@@ -0,0 +1,40 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_DEPOSIT_REVERSE_BALANCE_UPDATE and ACCOUNT_WITHDRAWAL_REVERSE_BALANCE_UPDATE
+ */
+@Value
+@Builder
+public class BalanceReversalPayload implements CommandPayload {
+
+    String accountId;
+    String transactionId;
+    BigDecimal amount;
+    String reason;
+
+    public static BalanceReversalPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new BalanceReversalPayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "transactionId"),
+                PayloadValues.decimal(payload, "amount"),
+                PayloadValues.string(payload, "reason"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "transactionId", transactionId);
+        PayloadValues.put(payload, "amount", amount);
+        PayloadValues.put(payload, "reason", reason);
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_DEPOSIT_UPDATE_BALANCE and ACCOUNT_WITHDRAWAL_UPDATE_BALANCE
+ */
+@Value
+@Builder
+public class BalanceUpdatePayload implements CommandPayload {
+
+    String accountId;
+    String transactionId;
+    BigDecimal amount;
+
+    public static BalanceUpdatePayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new BalanceUpdatePayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "transactionId"),
+                PayloadValues.decimal(payload, "amount"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "transactionId", transactionId);
+        PayloadValues.put(payload, "amount", amount);
+    }
+}
@@ -0,0 +1,33 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of BROKER_CANCEL_ORDER
+ */
+@Value
+@Builder
+public class BrokerCancelOrderPayload implements CommandPayload {
+
+    String orderId;
+    String brokerOrderId;
+
+    public static BrokerCancelOrderPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new BrokerCancelOrderPayload(
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "brokerOrderId"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "brokerOrderId", brokerOrderId);
+    }
+}
@@ -0,0 +1,43 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_CHECK_BALANCE
+ */
+@Value
+@Builder
+public class CheckBalancePayload implements CommandPayload {
+
+    String accountId;
+    String userId;
+    String paymentMethodId;
+    BigDecimal amount;
+    String currency;
+
+    public static CheckBalancePayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new CheckBalancePayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "userId"),
+                PayloadValues.string(payload, "paymentMethodId"),
+                PayloadValues.decimal(payload, "amount"),
+                PayloadValues.string(payload, "currency"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "userId", userId);
+        PayloadValues.put(payload, "paymentMethodId", paymentMethodId);
+        PayloadValues.put(payload, "amount", amount);
+        PayloadValues.put(payload, "currency", currency);
+    }
+}
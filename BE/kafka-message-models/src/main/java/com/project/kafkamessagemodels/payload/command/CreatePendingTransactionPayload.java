@@ -0,0 +1,46 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_CREATE_DEPOSIT_PENDING_TRANSACTION and ACCOUNT_CREATE_WITHDRAWAL_PENDING_TRANSACTION
+ */
+@Value
+@Builder
+public class CreatePendingTransactionPayload implements CommandPayload {
+
+    String accountId;
+    String userId;
+    String paymentMethodId;
+    BigDecimal amount;
+    String currency;
+    String description;
+
+    public static CreatePendingTransactionPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new CreatePendingTransactionPayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "userId"),
+                PayloadValues.string(payload, "paymentMethodId"),
+                PayloadValues.decimal(payload, "amount"),
+                PayloadValues.string(payload, "currency"),
+                PayloadValues.string(payload, "description"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "userId", userId);
+        PayloadValues.put(payload, "paymentMethodId", paymentMethodId);
+        PayloadValues.put(payload, "amount", amount);
+        PayloadValues.put(payload, "currency", currency);
+        PayloadValues.put(payload, "description", description);
+    }
+}
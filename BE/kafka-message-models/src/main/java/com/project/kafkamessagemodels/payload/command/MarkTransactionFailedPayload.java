@@ -0,0 +1,36 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_MARK_TRANSACTION_FAILED
+ */
+@Value
+@Builder
+public class MarkTransactionFailedPayload implements CommandPayload {
+
+    String transactionId;
+    String failureReason;
+    String errorCode;
+
+    public static MarkTransactionFailedPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new MarkTransactionFailedPayload(
+                PayloadValues.string(payload, "transactionId"),
+                PayloadValues.string(payload, "failureReason"),
+                PayloadValues.string(payload, "errorCode"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "transactionId", transactionId);
+        PayloadValues.put(payload, "failureReason", failureReason);
+        PayloadValues.put(payload, "errorCode", errorCode);
+    }
+}
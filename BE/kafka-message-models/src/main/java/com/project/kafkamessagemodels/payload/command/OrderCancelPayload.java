@@ -0,0 +1,33 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of ORDER_CANCEL
+ */
+@Value
+@Builder
+public class OrderCancelPayload implements CommandPayload {
+
+    String orderId;
+    String reason;
+
+    public static OrderCancelPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new OrderCancelPayload(
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "reason"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "reason", reason);
+    }
+}
@@ -0,0 +1,49 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ORDER_CREATE
+ */
+@Value
+@Builder
+public class OrderCreatePayload implements CommandPayload {
+
+    String userId;
+    String accountId;
+    String stockSymbol;
+    String orderType;
+    Integer quantity;
+    BigDecimal limitPrice;
+    String timeInForce;
+
+    public static OrderCreatePayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new OrderCreatePayload(
+                PayloadValues.string(payload, "userId"),
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "stockSymbol"),
+                PayloadValues.string(payload, "orderType"),
+                PayloadValues.integer(payload, "quantity"),
+                PayloadValues.decimal(payload, "limitPrice"),
+                PayloadValues.string(payload, "timeInForce"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "userId", userId);
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+        PayloadValues.put(payload, "orderType", orderType);
+        PayloadValues.put(payload, "quantity", quantity);
+        PayloadValues.put(payload, "limitPrice", limitPrice);
+        PayloadValues.put(payload, "timeInForce", timeInForce);
+    }
+}
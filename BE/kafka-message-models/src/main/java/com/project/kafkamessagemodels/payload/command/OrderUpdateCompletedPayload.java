@@ -0,0 +1,30 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of ORDER_UPDATE_COMPLETED
+ */
+@Value
+@Builder
+public class OrderUpdateCompletedPayload implements CommandPayload {
+
+    String orderId;
+
+    public static OrderUpdateCompletedPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new OrderUpdateCompletedPayload(
+                PayloadValues.string(payload, "orderId"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+    }
+}
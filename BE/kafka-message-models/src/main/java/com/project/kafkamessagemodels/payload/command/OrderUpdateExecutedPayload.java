@@ -0,0 +1,40 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ORDER_UPDATE_EXECUTED
+ */
+@Value
+@Builder
+public class OrderUpdateExecutedPayload implements CommandPayload {
+
+    String orderId;
+    String brokerOrderId;
+    Integer executedQuantity;
+    BigDecimal executionPrice;
+
+    public static OrderUpdateExecutedPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new OrderUpdateExecutedPayload(
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "brokerOrderId"),
+                PayloadValues.integer(payload, "executedQuantity"),
+                PayloadValues.decimal(payload, "executionPrice"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "brokerOrderId", brokerOrderId);
+        PayloadValues.put(payload, "executedQuantity", executedQuantity);
+        PayloadValues.put(payload, "executionPrice", executionPrice);
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ORDER_UPDATE_VALIDATED
+ */
+@Value
+@Builder
+public class OrderUpdateValidatedPayload implements CommandPayload {
+
+    String orderId;
+    String reservationId;
+    BigDecimal price;
+
+    public static OrderUpdateValidatedPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new OrderUpdateValidatedPayload(
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "reservationId"),
+                PayloadValues.decimal(payload, "price"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "reservationId", reservationId);
+        PayloadValues.put(payload, "price", price);
+    }
+}
@@ -0,0 +1,43 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of PAYMENT_PROCESS_DEPOSIT and PAYMENT_PROCESS_WITHDRAWAL
+ */
+@Value
+@Builder
+public class PaymentProcessPayload implements CommandPayload {
+
+    String paymentMethodId;
+    String accountId;
+    String transactionId;
+    BigDecimal amount;
+    String currency;
+
+    public static PaymentProcessPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new PaymentProcessPayload(
+                PayloadValues.string(payload, "paymentMethodId"),
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "transactionId"),
+                PayloadValues.decimal(payload, "amount"),
+                PayloadValues.string(payload, "currency"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "paymentMethodId", paymentMethodId);
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "transactionId", transactionId);
+        PayloadValues.put(payload, "amount", amount);
+        PayloadValues.put(payload, "currency", currency);
+    }
+}
@@ -0,0 +1,40 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of PAYMENT_REVERSE_DEPOSIT and PAYMENT_REVERSE_WITHDRAWAL
+ */
+@Value
+@Builder
+public class PaymentReversalPayload implements CommandPayload {
+
+    String paymentReference;
+    String transactionId;
+    BigDecimal amount;
+    String reason;
+
+    public static PaymentReversalPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new PaymentReversalPayload(
+                PayloadValues.string(payload, "paymentReference"),
+                PayloadValues.string(payload, "transactionId"),
+                PayloadValues.decimal(payload, "amount"),
+                PayloadValues.string(payload, "reason"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "paymentReference", paymentReference);
+        PayloadValues.put(payload, "transactionId", transactionId);
+        PayloadValues.put(payload, "amount", amount);
+        PayloadValues.put(payload, "reason", reason);
+    }
+}
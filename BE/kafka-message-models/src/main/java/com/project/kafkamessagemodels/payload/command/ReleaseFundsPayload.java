@@ -0,0 +1,36 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_RELEASE_FUNDS
+ */
+@Value
+@Builder
+public class ReleaseFundsPayload implements CommandPayload {
+
+    String accountId;
+    String orderId;
+    String reservationId;
+
+    public static ReleaseFundsPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new ReleaseFundsPayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "reservationId"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "reservationId", reservationId);
+    }
+}
@@ -0,0 +1,42 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of PORTFOLIO_REMOVE_POSITIONS
+ */
+@Value
+@Builder
+public class RemovePositionsPayload implements CommandPayload {
+
+    String userId;
+    String accountId;
+    String orderId;
+    String stockSymbol;
+    Integer quantity;
+
+    public static RemovePositionsPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new RemovePositionsPayload(
+                PayloadValues.string(payload, "userId"),
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "stockSymbol"),
+                PayloadValues.integer(payload, "quantity"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "userId", userId);
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+        PayloadValues.put(payload, "quantity", quantity);
+    }
+}
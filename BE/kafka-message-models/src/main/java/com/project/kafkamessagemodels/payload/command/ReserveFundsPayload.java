@@ -0,0 +1,40 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_RESERVE_FUNDS
+ */
+@Value
+@Builder
+public class ReserveFundsPayload implements CommandPayload {
+
+    String accountId;
+    String orderId;
+    String stockSymbol;
+    BigDecimal amount;
+
+    public static ReserveFundsPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new ReserveFundsPayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "stockSymbol"),
+                PayloadValues.decimal(payload, "amount"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+        PayloadValues.put(payload, "amount", amount);
+    }
+}
@@ -0,0 +1,40 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_REVERSE_SETTLEMENT
+ */
+@Value
+@Builder
+public class ReverseSettlementPayload implements CommandPayload {
+
+    String accountId;
+    String orderId;
+    String reservationId;
+    BigDecimal amount;
+
+    public static ReverseSettlementPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new ReverseSettlementPayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "reservationId"),
+                PayloadValues.decimal(payload, "amount"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "reservationId", reservationId);
+        PayloadValues.put(payload, "amount", amount);
+    }
+}
@@ -0,0 +1,40 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_SETTLE_TRANSACTION
+ */
+@Value
+@Builder
+public class SettleTransactionPayload implements CommandPayload {
+
+    String accountId;
+    String orderId;
+    String reservationId;
+    BigDecimal finalAmount;
+
+    public static SettleTransactionPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new SettleTransactionPayload(
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "reservationId"),
+                PayloadValues.decimal(payload, "finalAmount"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "reservationId", reservationId);
+        PayloadValues.put(payload, "finalAmount", finalAmount);
+    }
+}
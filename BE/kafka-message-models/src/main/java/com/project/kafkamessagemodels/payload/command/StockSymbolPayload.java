@@ -0,0 +1,30 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of MARKET_VALIDATE_STOCK and MARKET_GET_PRICE
+ */
+@Value
+@Builder
+public class StockSymbolPayload implements CommandPayload {
+
+    String stockSymbol;
+
+    public static StockSymbolPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new StockSymbolPayload(
+                PayloadValues.string(payload, "stockSymbol"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+    }
+}
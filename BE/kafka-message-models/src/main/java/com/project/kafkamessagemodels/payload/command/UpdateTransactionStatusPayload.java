@@ -0,0 +1,36 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of ACCOUNT_UPDATE_TRANSACTION_STATUS
+ */
+@Value
+@Builder
+public class UpdateTransactionStatusPayload implements CommandPayload {
+
+    String transactionId;
+    String status;
+    String paymentReference;
+
+    public static UpdateTransactionStatusPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new UpdateTransactionStatusPayload(
+                PayloadValues.string(payload, "transactionId"),
+                PayloadValues.string(payload, "status"),
+                PayloadValues.string(payload, "paymentReference"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "transactionId", transactionId);
+        PayloadValues.put(payload, "status", status);
+        PayloadValues.put(payload, "paymentReference", paymentReference);
+    }
+}
@@ -0,0 +1,33 @@
+package com.project.kafkamessagemodels.payload.command;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.payload.CommandPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Payload of USER_VERIFY_IDENTITY
+ */
+@Value
+@Builder
+public class UserVerifyIdentityPayload implements CommandPayload {
+
+    String userId;
+    String verificationType;
+
+    public static UserVerifyIdentityPayload from(CommandMessage command) {
+        Map<String, Object> payload = command.getPayload();
+        return new UserVerifyIdentityPayload(
+                PayloadValues.string(payload, "userId"),
+                PayloadValues.string(payload, "verificationType"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "userId", userId);
+        PayloadValues.put(payload, "verificationType", verificationType);
+    }
+}
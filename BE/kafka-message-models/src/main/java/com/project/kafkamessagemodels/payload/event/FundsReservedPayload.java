@@ -0,0 +1,59 @@
+package com.project.kafkamessagemodels.payload.event;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.EventPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payload of FUNDS_RESERVED
+ */
+@Value
+@Builder
+public class FundsReservedPayload implements EventPayload {
+
+    String reservationId;
+    String accountId;
+    String orderId;
+    String stockSymbol;
+    BigDecimal amount;
+    Instant reservedAt;
+    Instant expiresAt;
+    BigDecimal newAvailableBalance;
+    BigDecimal newReservedBalance;
+    BigDecimal newTotalBalance;
+
+    public static FundsReservedPayload from(EventMessage event) {
+        Map<String, Object> payload = event.getPayload();
+        return new FundsReservedPayload(
+                PayloadValues.string(payload, "reservationId"),
+                PayloadValues.string(payload, "accountId"),
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "stockSymbol"),
+                PayloadValues.decimal(payload, "amount"),
+                PayloadValues.instant(payload, "reservedAt"),
+                PayloadValues.instant(payload, "expiresAt"),
+                PayloadValues.decimal(payload, "newAvailableBalance"),
+                PayloadValues.decimal(payload, "newReservedBalance"),
+                PayloadValues.decimal(payload, "newTotalBalance"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "reservationId", reservationId);
+        PayloadValues.put(payload, "accountId", accountId);
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+        PayloadValues.put(payload, "amount", amount);
+        PayloadValues.put(payload, "reservedAt", reservedAt);
+        PayloadValues.put(payload, "expiresAt", expiresAt);
+        PayloadValues.put(payload, "newAvailableBalance", newAvailableBalance);
+        PayloadValues.put(payload, "newReservedBalance", newReservedBalance);
+        PayloadValues.put(payload, "newTotalBalance", newTotalBalance);
+    }
+}
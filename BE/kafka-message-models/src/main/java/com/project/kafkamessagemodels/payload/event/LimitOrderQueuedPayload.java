@@ -0,0 +1,50 @@
+package com.project.kafkamessagemodels.payload.event;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.EventPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payload of LIMIT_ORDER_QUEUED
+ */
+@Value
+@Builder
+public class LimitOrderQueuedPayload implements EventPayload {
+
+    String orderId;
+    String stockSymbol;
+    BigDecimal limitPrice;
+    BigDecimal currentPrice;
+    Instant queuedAt;
+    Instant expiresAt;
+    String status;
+
+    public static LimitOrderQueuedPayload from(EventMessage event) {
+        Map<String, Object> payload = event.getPayload();
+        return new LimitOrderQueuedPayload(
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "stockSymbol"),
+                PayloadValues.decimal(payload, "limitPrice"),
+                PayloadValues.decimal(payload, "currentPrice"),
+                PayloadValues.instant(payload, "queuedAt"),
+                PayloadValues.instant(payload, "expiresAt"),
+                PayloadValues.string(payload, "status"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+        PayloadValues.put(payload, "limitPrice", limitPrice);
+        PayloadValues.put(payload, "currentPrice", currentPrice);
+        PayloadValues.put(payload, "queuedAt", queuedAt);
+        PayloadValues.put(payload, "expiresAt", expiresAt);
+        PayloadValues.put(payload, "status", status);
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.kafkamessagemodels.payload.event;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.EventPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payload of ORDER_CREATED
+ */
+@Value
+@Builder
+public class OrderCreatedPayload implements EventPayload {
+
+    String orderId;
+    String status;
+    Instant createdAt;
+
+    public static OrderCreatedPayload from(EventMessage event) {
+        Map<String, Object> payload = event.getPayload();
+        return new OrderCreatedPayload(
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "status"),
+                PayloadValues.instant(payload, "createdAt"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "status", status);
+        PayloadValues.put(payload, "createdAt", createdAt);
+    }
+}
@@ -0,0 +1,50 @@
+package com.project.kafkamessagemodels.payload.event;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.EventPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payload of ORDER_EXECUTED_BY_BROKER
+ */
+@Value
+@Builder
+public class OrderExecutedByBrokerPayload implements EventPayload {
+
+    String orderId;
+    String brokerOrderId;
+    String stockSymbol;
+    BigDecimal executionPrice;
+    Integer executedQuantity;
+    Instant executedAt;
+    String status;
+
+    public static OrderExecutedByBrokerPayload from(EventMessage event) {
+        Map<String, Object> payload = event.getPayload();
+        return new OrderExecutedByBrokerPayload(
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "brokerOrderId"),
+                PayloadValues.string(payload, "stockSymbol"),
+                PayloadValues.decimal(payload, "executionPrice"),
+                PayloadValues.integer(payload, "executedQuantity"),
+                PayloadValues.instant(payload, "executedAt"),
+                PayloadValues.string(payload, "status"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "brokerOrderId", brokerOrderId);
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+        PayloadValues.put(payload, "executionPrice", executionPrice);
+        PayloadValues.put(payload, "executedQuantity", executedQuantity);
+        PayloadValues.put(payload, "executedAt", executedAt);
+        PayloadValues.put(payload, "status", status);
+    }
+}
@@ -0,0 +1,44 @@
+package com.project.kafkamessagemodels.payload.event;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.EventPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payload of ORDER_EXPIRED
+ */
+@Value
+@Builder
+public class OrderExpiredPayload implements EventPayload {
+
+    String orderId;
+    String stockSymbol;
+    BigDecimal limitPrice;
+    Instant expiredAt;
+    String status;
+
+    public static OrderExpiredPayload from(EventMessage event) {
+        Map<String, Object> payload = event.getPayload();
+        return new OrderExpiredPayload(
+                PayloadValues.string(payload, "orderId"),
+                PayloadValues.string(payload, "stockSymbol"),
+                PayloadValues.decimal(payload, "limitPrice"),
+                PayloadValues.instant(payload, "expiredAt"),
+                PayloadValues.string(payload, "status"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "orderId", orderId);
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+        PayloadValues.put(payload, "limitPrice", limitPrice);
+        PayloadValues.put(payload, "expiredAt", expiredAt);
+        PayloadValues.put(payload, "status", status);
+    }
+}
@@ -0,0 +1,40 @@
+package com.project.kafkamessagemodels.payload.event;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.EventPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Payload of DEPOSIT_PAYMENT_PROCESSED and WITHDRAWAL_PAYMENT_PROCESSED
+ */
+@Value
+@Builder
+public class PaymentProcessedPayload implements EventPayload {
+
+    String paymentReference;
+    String transactionId;
+    BigDecimal amount;
+    String currency;
+
+    public static PaymentProcessedPayload from(EventMessage event) {
+        Map<String, Object> payload = event.getPayload();
+        return new PaymentProcessedPayload(
+                PayloadValues.string(payload, "paymentReference"),
+                PayloadValues.string(payload, "transactionId"),
+                PayloadValues.decimal(payload, "amount"),
+                PayloadValues.string(payload, "currency"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "paymentReference", paymentReference);
+        PayloadValues.put(payload, "transactionId", transactionId);
+        PayloadValues.put(payload, "amount", amount);
+        PayloadValues.put(payload, "currency", currency);
+    }
+}
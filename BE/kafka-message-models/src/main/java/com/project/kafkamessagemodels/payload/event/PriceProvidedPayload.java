@@ -0,0 +1,38 @@
+package com.project.kafkamessagemodels.payload.event;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.EventPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payload of PRICE_PROVIDED
+ */
+@Value
+@Builder
+public class PriceProvidedPayload implements EventPayload {
+
+    String stockSymbol;
+    BigDecimal currentPrice;
+    Instant timestamp;
+
+    public static PriceProvidedPayload from(EventMessage event) {
+        Map<String, Object> payload = event.getPayload();
+        return new PriceProvidedPayload(
+                PayloadValues.string(payload, "stockSymbol"),
+                PayloadValues.decimal(payload, "currentPrice"),
+                PayloadValues.instant(payload, "timestamp"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "stockSymbol", stockSymbol);
+        PayloadValues.put(payload, "currentPrice", currentPrice);
+        PayloadValues.put(payload, "timestamp", timestamp);
+    }
+}
@@ -0,0 +1,44 @@
+package com.project.kafkamessagemodels.payload.event;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.EventPayload;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payload of DEPOSIT_TRANSACTION_CREATED and WITHDRAWAL_TRANSACTION_CREATED
+ */
+@Value
+@Builder
+public class TransactionCreatedPayload implements EventPayload {
+
+    String transactionId;
+    String status;
+    BigDecimal amount;
+    String currency;
+    Instant createdAt;
+
+    public static TransactionCreatedPayload from(EventMessage event) {
+        Map<String, Object> payload = event.getPayload();
+        return new TransactionCreatedPayload(
+                PayloadValues.string(payload, "transactionId"),
+                PayloadValues.string(payload, "status"),
+                PayloadValues.decimal(payload, "amount"),
+                PayloadValues.string(payload, "currency"),
+                PayloadValues.instant(payload, "createdAt"));
+    }
+
+    @Override
+    public void writeTo(Map<String, Object> payload) {
+        PayloadValues.put(payload, "transactionId", transactionId);
+        PayloadValues.put(payload, "status", status);
+        PayloadValues.put(payload, "amount", amount);
+        PayloadValues.put(payload, "currency", currency);
+        PayloadValues.put(payload, "createdAt", createdAt);
+    }
+}
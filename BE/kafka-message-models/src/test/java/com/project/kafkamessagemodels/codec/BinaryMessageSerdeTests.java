@@ -0,0 +1,87 @@
+package com.project.kafkamessagemodels.codec;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryMessageSerdeTests {
+
+    private static final byte[] JSON = "{\"sagaId\":\"saga-1\"}".getBytes(StandardCharsets.UTF_8);
+
+    // Stands in for the JSON serializer and deserializer
+    private final Serializer<Object> jsonSerializer = (topic, data) -> JSON;
+    private final Deserializer<Object> jsonDeserializer =
+            (topic, data) -> "json:" + new String(data, StandardCharsets.UTF_8);
+
+    @Test
+    void sniffsTheMagicByte() {
+        assertThat(MessageCodecRegistry.isBinary(MessageCodecRegistry.standard().encode(event()))).isTrue();
+        assertThat(MessageCodecRegistry.isBinary(JSON)).isFalse();
+        assertThat(MessageCodecRegistry.isBinary(new byte[0])).isFalse();
+        assertThat(MessageCodecRegistry.isBinary(null)).isFalse();
+    }
+
+    @Test
+    void writesBinaryOnlyToConfiguredTopics() {
+        BinaryMessageSerializer<Object> serializer = new BinaryMessageSerializer<>(jsonSerializer);
+        serializer.configure(Map.of(BinaryMessageSerializer.BINARY_TOPICS_CONFIG, " saga.events , other"), false);
+
+        assertThat(serializer.serialize("saga.events", event())[0]).isEqualTo(MessageCodecRegistry.MAGIC);
+        assertThat(serializer.serialize("other", new RecordHeaders(), event())[0]).isEqualTo(MessageCodecRegistry.MAGIC);
+        assertThat(serializer.serialize("json.topic", event())).isEqualTo(JSON);
+        // Types without a codec always go to the fallback
+        assertThat(serializer.serialize("saga.events", "text")).isEqualTo(JSON);
+    }
+
+    @Test
+    void writesBinaryToAllTopics() {
+        BinaryMessageSerializer<Object> serializer = new BinaryMessageSerializer<>(jsonSerializer);
+        serializer.configure(Map.of(BinaryMessageSerializer.BINARY_TOPICS_CONFIG, "*"), false);
+
+        assertThat(serializer.serialize("any.topic", event())[0]).isEqualTo(MessageCodecRegistry.MAGIC);
+    }
+
+    @Test
+    void readsBothFormats() {
+        BinaryMessageSerializer<Object> serializer = new BinaryMessageSerializer<>(jsonSerializer);
+        serializer.configure(Map.of(BinaryMessageSerializer.BINARY_TOPICS_CONFIG, "saga.events"), false);
+        BinaryMessageDeserializer<Object> deserializer = new BinaryMessageDeserializer<>(jsonDeserializer);
+        deserializer.configure(Map.of(), false);
+
+        EventMessage event = event();
+        assertThat(deserializer.deserialize("saga.events", serializer.serialize("saga.events", event)))
+                .isEqualTo(event);
+        assertThat(deserializer.deserialize("saga.events", new RecordHeaders(), serializer.serialize("saga.events", event)))
+                .isEqualTo(event);
+        assertThat(deserializer.deserialize("json.topic", serializer.serialize("json.topic", event)))
+                .isEqualTo("json:{\"sagaId\":\"saga-1\"}");
+        assertThat(deserializer.deserialize("json.topic", new RecordHeaders(), JSON))
+                .isEqualTo("json:{\"sagaId\":\"saga-1\"}");
+    }
+
+    @Test
+    void corruptBinaryMessageIsASerializationError() {
+        BinaryMessageDeserializer<Object> deserializer = new BinaryMessageDeserializer<>(jsonDeserializer);
+
+        assertThatThrownBy(() -> deserializer.deserialize("saga.events", new byte[]{MessageCodecRegistry.MAGIC, 9, 1}))
+                .isInstanceOf(SerializationException.class)
+                .hasMessageContaining("saga.events")
+                .hasCauseInstanceOf(MessageCodecException.class);
+    }
+
+    private static EventMessage event() {
+        EventMessage event = EventMessage.createSuccessEvent("saga-1", 1, "FUNDS_RESERVED", "ACCOUNT_SERVICE");
+        event.setPayloadValue("amount", new BigDecimal("100.00"));
+        return event;
+    }
+}
@@ -0,0 +1,259 @@
+package com.project.kafkamessagemodels.codec;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.model.EventMessage;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageCodecRegistryTests {
+
+    private final MessageCodecRegistry registry = MessageCodecRegistry.standard();
+
+    private enum Side {
+        BUY
+    }
+
+    // No value tag of its own, so it is embedded as JSON
+    record Lot(String symbol, int quantity) {
+    }
+
+    @Test
+    void commandRoundTrip() {
+        CommandMessage command = new CommandMessage();
+        command.setMessageId(UUID.randomUUID().toString());
+        command.setSagaId("saga-1");
+        command.setStepId(3);
+        command.setType("BROKER_EXECUTE_ORDER");
+        command.setTimestamp(Instant.parse("2024-01-01T00:00:00.123456789Z"));
+        command.setSourceService("SAGA_ORCHESTRATOR");
+        command.setVersion(2);
+        command.setTargetService("MOCK_BROKERAGE_SERVICE");
+        command.setIsCompensation(true);
+        command.setPayloadValue("orderId", "order-1");
+        command.setPayloadValue("limitPrice", new BigDecimal("123.4500"));
+        command.setMetadataValue("traceId", "trace-1");
+
+        byte[] encoded = registry.encode(command);
+
+        assertThat(Arrays.copyOf(encoded, 3))
+                .containsExactly(MessageCodecRegistry.MAGIC, CommandMessageCodecV1.SCHEMA_ID, 1);
+        assertThat(registry.decode(encoded)).isEqualTo(command);
+    }
+
+    @Test
+    void eventRoundTrip() {
+        EventMessage event = EventMessage.createFailureEvent(
+                "saga-1", 4, "ORDER_EXPIRED", "MOCK_BROKERAGE_SERVICE", "EXPIRED", "Order expired");
+        // Message ids that are not canonical UUIDs are kept as text
+        event.setMessageId("not-a-uuid");
+        event.setTimestamp(Instant.now());
+        event.setPayloadValue("orderId", "order-1");
+
+        byte[] encoded = registry.encode(event);
+
+        assertThat(Arrays.copyOf(encoded, 3))
+                .containsExactly(MessageCodecRegistry.MAGIC, EventMessageCodecV1.SCHEMA_ID, 1);
+        assertThat(registry.decode(encoded)).isEqualTo(event);
+    }
+
+    @Test
+    void absentFieldsDecodeAsNull() {
+        EventMessage event = new EventMessage();
+        event.setPayload(null);
+        event.setSuccess(null);
+
+        EventMessage decoded = (EventMessage) registry.decode(registry.encode(event));
+
+        assertThat(decoded).isEqualTo(event);
+        assertThat(decoded.getPayload()).isNull();
+        assertThat(decoded.getSuccess()).isNull();
+
+        CommandMessage command = new CommandMessage();
+        command.setPayload(null);
+        command.setIsCompensation(false);
+
+        assertThat(registry.decode(registry.encode(command))).isEqualTo(command);
+    }
+
+    @Test
+    void payloadValuesKeepTheirType() {
+        Instant instant = Instant.parse("2024-01-01T00:00:00.123456789Z");
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("price", new BigDecimal("10.10"));
+        nested.put("symbols", List.of("AAPL", "MSFT"));
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("null", null);
+        payload.put("string", "text");
+        payload.put("true", true);
+        payload.put("false", false);
+        payload.put("int", 42);
+        payload.put("negativeInt", -42);
+        payload.put("long", Long.MAX_VALUE);
+        payload.put("double", 0.1);
+        payload.put("decimal", new BigDecimal("123.4500"));
+        payload.put("negativeDecimal", new BigDecimal("-0.000001"));
+        payload.put("largeDecimal", new BigDecimal("123456789012345678901234567890.5"));
+        payload.put("instant", instant);
+        payload.put("preEpochInstant", Instant.parse("1960-06-01T12:00:00.5Z"));
+        payload.put("map", nested);
+        payload.put("list", List.of(1, "two", new BigDecimal("3.0")));
+        payload.put("emptyList", List.of());
+
+        Map<String, Object> decoded = roundTrip(payload);
+
+        assertThat(decoded).containsExactlyEntriesOf(payload);
+        assertThat(((BigDecimal) decoded.get("decimal")).scale()).isEqualTo(4);
+        assertThat(decoded.get("long")).isInstanceOf(Long.class);
+        assertThat(decoded.get("instant")).isEqualTo(instant);
+    }
+
+    @Test
+    void otherPayloadTypesAreNormalized() {
+        UUID uuid = UUID.randomUUID();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("short", (short) 7);
+        payload.put("byte", (byte) -7);
+        payload.put("float", 1.1f);
+        payload.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+        payload.put("enum", Side.BUY);
+        payload.put("uuid", uuid);
+        payload.put("char", 'x');
+        payload.put("set", new LinkedHashSet<>(List.of("a", "b")));
+
+        Map<String, Object> decoded = roundTrip(payload);
+
+        assertThat(decoded)
+                .containsEntry("short", 7)
+                .containsEntry("byte", -7)
+                .containsEntry("float", 1.1d)
+                .containsEntry("bigInteger", new BigDecimal("123456789012345678901234567890"))
+                .containsEntry("enum", "BUY")
+                .containsEntry("uuid", uuid.toString())
+                .containsEntry("char", "x")
+                .containsEntry("set", List.of("a", "b"));
+    }
+
+    @Test
+    void typesWithoutTagFallBackToJson() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("lot", new Lot("AAPL", 10));
+        payload.put("lots", List.of(new Lot("MSFT", 5)));
+
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeValue(new Lot("AAPL", 10));
+        assertThat(writer.toByteArray()[0]).isEqualTo((byte) ValueTag.JSON);
+
+        assertThat(roundTrip(payload))
+                .containsEntry("lot", Map.of("symbol", "AAPL", "quantity", 10))
+                .containsEntry("lots", List.of(Map.of("symbol", "MSFT", "quantity", 5)));
+    }
+
+    @Test
+    void everyValueTagIsReadBack() {
+        Object[] values = {null, "text", true, false, 1, 0.5d, new BigDecimal("1.50"),
+                Instant.now().truncatedTo(ChronoUnit.MICROS), Map.of("k", "v"), List.of("e"), new Lot("AAPL", 1)};
+        int[] tags = {ValueTag.NULL, ValueTag.STRING, ValueTag.TRUE, ValueTag.FALSE, ValueTag.INTEGER,
+                ValueTag.DOUBLE, ValueTag.DECIMAL, ValueTag.INSTANT, ValueTag.MAP, ValueTag.LIST, ValueTag.JSON};
+
+        for (int i = 0; i < values.length; i++) {
+            BinaryWriter writer = new BinaryWriter();
+            writer.writeValue(values[i]);
+            byte[] bytes = writer.toByteArray();
+
+            assertThat(bytes[0] & 0xFF).as("tag of %s", values[i]).isEqualTo(tags[i]);
+            BinaryReader reader = new BinaryReader(bytes, 0);
+            Object read = reader.readValue();
+            assertThat(reader.hasRemaining()).isFalse();
+            if (values[i] instanceof Lot) {
+                assertThat(read).isEqualTo(Map.of("symbol", "AAPL", "quantity", 1));
+            } else {
+                assertThat(read).isEqualTo(values[i]);
+            }
+        }
+    }
+
+    @Test
+    void varintsRoundTrip() {
+        long[] values = {0, 1, -1, 63, -64, 64, 127, 128, 16383, 16384,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        BinaryWriter writer = new BinaryWriter(16);
+        for (long value : values) {
+            writer.writeSignedVarLong(value);
+            writer.writeVarLong(value);
+        }
+        writer.writeVarInt(-1);
+
+        BinaryReader reader = new BinaryReader(writer.toByteArray(), 0);
+        for (long value : values) {
+            assertThat(reader.readSignedVarLong()).isEqualTo(value);
+            assertThat(reader.readVarLong()).isEqualTo(value);
+        }
+        assertThat(reader.readVarInt()).isEqualTo(-1);
+        assertThat(reader.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void rejectsUnknownSchemaVersion() {
+        byte[] encoded = registry.encode(new EventMessage());
+        encoded[2] = 2;
+
+        assertThatThrownBy(() -> registry.decode(encoded))
+                .isInstanceOf(MessageCodecException.class)
+                .hasMessageContaining("Unknown schema " + EventMessageCodecV1.SCHEMA_ID + " version 2");
+    }
+
+    @Test
+    void rejectsTruncatedAndTrailingBytes() {
+        EventMessage event = new EventMessage();
+        event.setSagaId("saga-1");
+        byte[] encoded = registry.encode(event);
+
+        assertThatThrownBy(() -> registry.decode(Arrays.copyOf(encoded, encoded.length - 1)))
+                .isInstanceOf(MessageCodecException.class)
+                .hasMessageContaining("Truncated");
+        assertThatThrownBy(() -> registry.decode(Arrays.copyOf(encoded, encoded.length + 1)))
+                .isInstanceOf(MessageCodecException.class)
+                .hasMessageContaining("Trailing bytes");
+        assertThatThrownBy(() -> registry.decode(new byte[]{MessageCodecRegistry.MAGIC, 1}))
+                .isInstanceOf(MessageCodecException.class);
+    }
+
+    @Test
+    void highestRegisteredVersionIsWritten() {
+        MessageCodecRegistry versioned = MessageCodecRegistry.standard().register(new CommandMessageCodecV1() {
+            @Override
+            public int version() {
+                return 2;
+            }
+        });
+        CommandMessage command = new CommandMessage();
+        command.setSagaId("saga-1");
+
+        byte[] encoded = versioned.encode(command);
+
+        assertThat(encoded[2]).isEqualTo((byte) 2);
+        assertThat(versioned.decode(encoded)).isEqualTo(command);
+        // Messages written with the older version can still be read
+        assertThat(versioned.decode(registry.encode(command))).isEqualTo(command);
+    }
+
+    private Map<String, Object> roundTrip(Map<String, Object> payload) {
+        EventMessage event = new EventMessage();
+        event.setPayload(payload);
+        return ((EventMessage) registry.decode(registry.encode(event))).getPayload();
+    }
+}
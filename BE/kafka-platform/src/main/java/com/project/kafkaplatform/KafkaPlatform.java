@@ -0,0 +1,173 @@
+package com.project.kafkaplatform;
+
+import com.project.kafkamessagemodels.codec.BinaryMessageDeserializer;
+import com.project.kafkamessagemodels.codec.BinaryMessageSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the Kafka clients of a service from one set of tuning, codecs and metrics.
+ *
+ * Producers batch, compress and write the binary codec on the configured topics. Consumers
+ * read binary and JSON messages alike behind an {@link ErrorHandlingDeserializer}, so a bad
+ * record reaches the error handler instead of failing every poll. Replies sent while a listener
+ * handles a command carry the command's {@link SagaTypeHeader}. When the service has a
+ * {@link MeterRegistry}, each client reports the Kafka client metrics (including consumer lag)
+ * to it.
+ */
+@Slf4j
+public class KafkaPlatform {
+
+    private final KafkaPlatformProperties properties;
+    private final String bootstrapServers;
+    private final String defaultGroupId;
+    private final String binaryTopics;
+    private final MeterRegistry meterRegistry;
+
+    public KafkaPlatform(KafkaPlatformProperties properties, String bootstrapServers, String defaultGroupId,
+                         String binaryTopics, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.bootstrapServers = bootstrapServers;
+        this.defaultGroupId = defaultGroupId;
+        this.binaryTopics = binaryTopics;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <V> ProducerFactory<String, V> producerFactory() {
+        return producerFactory(Collections.emptyMap());
+    }
+
+    /**
+     * Producer factory with the platform settings, overridden by the given producer configs
+     */
+    public <V> ProducerFactory<String, V> producerFactory(Map<String, Object> overrides) {
+        KafkaPlatformProperties.Producer producer = properties.getProducer();
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.ACKS_CONFIG, producer.getAcks());
+        configProps.put(ProducerConfig.RETRIES_CONFIG, producer.getRetries());
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, producer.isIdempotence());
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, producer.getBatchSize());
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, producer.getLingerMs());
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, producer.getCompressionType());
+        configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, producer.getBufferMemory());
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, producer.getMaxInFlightRequestsPerConnection());
+        // Add type information to headers
+        configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, true);
+        configProps.put(BinaryMessageSerializer.BINARY_TOPICS_CONFIG, binaryTopics);
+        // Echo the saga type of the record being handled onto what is sent in reply
+        configProps.put(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG, SagaTypeProducerInterceptor.class.getName());
+        configProps.putAll(overrides);
+
+        DefaultKafkaProducerFactory<String, V> factory = new DefaultKafkaProducerFactory<>(configProps,
+                StringSerializer::new, () -> new BinaryMessageSerializer<>(new JsonSerializer<>()));
+        if (meterRegistry != null) {
+            factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        }
+        return factory;
+    }
+
+    public <V> KafkaTemplate<String, V> kafkaTemplate(ProducerFactory<String, V> producerFactory) {
+        return new KafkaTemplate<>(producerFactory);
+    }
+
+    public <V> ConsumerFactory<String, V> consumerFactory() {
+        return consumerFactory(defaultGroupId, Collections.emptyMap());
+    }
+
+    public <V> ConsumerFactory<String, V> consumerFactory(String groupId) {
+        return consumerFactory(groupId, Collections.emptyMap());
+    }
+
+    /**
+     * Consumer factory for a group with the platform settings, overridden by the given consumer
+     * configs. Offsets are never auto-committed; listeners acknowledge what they processed.
+     */
+    public <V> ConsumerFactory<String, V> consumerFactory(String groupId, Map<String, Object> overrides) {
+        KafkaPlatformProperties.Consumer consumer = properties.getConsumer();
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, consumer.getAutoOffsetReset());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, consumer.getMaxPollRecords());
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, consumer.getFetchMinBytes());
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, consumer.getFetchMaxWaitMs());
+        props.put(JsonDeserializer.TRUSTED_PACKAGES, consumer.getTrustedPackages());
+        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, consumer.getDefaultType());
+        // Add type info for deserialization
+        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, true);
+        props.put(JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false);
+        props.putAll(overrides);
+
+        // Reads binary and JSON messages alike so producers can switch topics over one at a time
+        DefaultKafkaConsumerFactory<String, V> factory = new DefaultKafkaConsumerFactory<>(props,
+                StringDeserializer::new,
+                () -> new ErrorHandlingDeserializer<>(new BinaryMessageDeserializer<>(new JsonDeserializer<>())));
+        if (meterRegistry != null) {
+            factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        }
+        return factory;
+    }
+
+    /**
+     * Record listener container factory with the platform concurrency and ack mode. Listeners
+     * replying to a command echo its saga type, see {@link SagaTypeHeader}.
+     */
+    public <V> ConcurrentKafkaListenerContainerFactory<String, V> listenerContainerFactory(
+            ConsumerFactory<String, V> consumerFactory, CommonErrorHandler errorHandler) {
+        ConcurrentKafkaListenerContainerFactory<String, V> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(properties.getConsumer().getConcurrency());
+        factory.getContainerProperties().setAckMode(properties.getConsumer().getAckMode());
+        factory.setCommonErrorHandler(errorHandler);
+        factory.setRecordInterceptor(new SagaTypeRecordInterceptor<>());
+        return factory;
+    }
+
+    /**
+     * Retries a failed record at a fixed interval, then logs and skips it. Records that can
+     * never succeed are not retried.
+     */
+    public DefaultErrorHandler errorHandler() {
+        KafkaPlatformProperties.Retry retry = properties.getRetry();
+        DefaultErrorHandler handler = new DefaultErrorHandler(
+                (record, exception) -> log.error("Error processing record from {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(), exception.getMessage(), exception),
+                new FixedBackOff(retry.getIntervalMs(), retry.getMaxAttempts())
+        );
+
+        // Add non-retryable exceptions
+        handler.addNotRetryableExceptions(
+                SerializationException.class,
+                DeserializationException.class,
+                IllegalStateException.class
+        );
+
+        return handler;
+    }
+}
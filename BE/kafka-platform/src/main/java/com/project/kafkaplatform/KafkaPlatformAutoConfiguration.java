@@ -0,0 +1,80 @@
+package com.project.kafkaplatform;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+
+/**
+ * Default Kafka beans for every service that has the platform on its classpath.
+ *
+ * Runs before Spring Boot's Kafka auto-configuration, which then backs off. Each bean backs off
+ * in turn when the service defines its own, so a service only declares what differs, for
+ * example extra listener factories built from the {@link KafkaPlatform}.
+ */
+@AutoConfiguration(before = KafkaAutoConfiguration.class)
+@ConditionalOnClass(KafkaTemplate.class)
+@EnableConfigurationProperties(KafkaPlatformProperties.class)
+public class KafkaPlatformAutoConfiguration {
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    // Services that set no group id keep the "<application name>-group" they used before
+    @Value("${spring.kafka.consumer.group-id:${spring.application.name:kafka-platform}-group}")
+    private String groupId;
+
+    // Topics written with the binary message codec; every other topic stays JSON
+    @Value("${kafka.codec.binary-topics:}")
+    private String binaryCodecTopics;
+
+    @Bean
+    @ConditionalOnMissingBean
+    public KafkaPlatform kafkaPlatform(KafkaPlatformProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        return new KafkaPlatform(properties, bootstrapServers, groupId, binaryCodecTopics, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ProducerFactory.class)
+    public ProducerFactory<String, Object> kafkaProducerFactory(KafkaPlatform kafkaPlatform) {
+        return kafkaPlatform.producerFactory();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(KafkaTemplate.class)
+    public KafkaTemplate<String, Object> kafkaTemplate(ProducerFactory<String, Object> kafkaProducerFactory) {
+        return new KafkaTemplate<>(kafkaProducerFactory);
+    }
+
+    @Bean
+    @ConditionalOnBean(name = "kafkaTemplate")
+    @ConditionalOnMissingBean
+    public KafkaPublisher kafkaPublisher(KafkaTemplate<String, Object> kafkaTemplate, KafkaPlatformProperties properties,
+                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        return new KafkaPublisher(kafkaTemplate, properties.getPublisher(), meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(CommonErrorHandler.class)
+    public DefaultErrorHandler kafkaErrorHandler(KafkaPlatform kafkaPlatform) {
+        return kafkaPlatform.errorHandler();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(name = "kafkaListenerContainerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
+            KafkaPlatform kafkaPlatform, CommonErrorHandler kafkaErrorHandler) {
+        return kafkaPlatform.listenerContainerFactory(kafkaPlatform.consumerFactory(), kafkaErrorHandler);
+    }
+}
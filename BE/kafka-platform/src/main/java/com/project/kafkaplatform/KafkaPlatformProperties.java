@@ -0,0 +1,64 @@
+package com.project.kafkaplatform;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.time.Duration;
+
+/**
+ * Tuning for the shared Kafka clients, bound from {@code kafka.platform.*}.
+ *
+ * Connection settings keep coming from {@code spring.kafka.bootstrap-servers} and
+ * {@code spring.kafka.consumer.group-id}, and binary topics from {@code kafka.codec.binary-topics},
+ * so services only set these when they want to move away from the defaults.
+ */
+@Data
+@ConfigurationProperties(prefix = "kafka.platform")
+public class KafkaPlatformProperties {
+
+    private Producer producer = new Producer();
+    private Consumer consumer = new Consumer();
+    private Publisher publisher = new Publisher();
+    private Retry retry = new Retry();
+
+    @Data
+    public static class Producer {
+        private String acks = "all";
+        private int retries = 3;
+        private boolean idempotence = true;
+        // Records to one partition are grouped for up to linger-ms or until a batch fills up
+        private int batchSize = 65536;
+        private int lingerMs = 10;
+        private String compressionType = "lz4";
+        private long bufferMemory = 33554432L;
+        private int maxInFlightRequestsPerConnection = 5;
+    }
+
+    @Data
+    public static class Consumer {
+        private String autoOffsetReset = "earliest";
+        private int maxPollRecords = 500;
+        // The broker waits for fetch-min-bytes or fetch-max-wait-ms before answering a fetch
+        private int fetchMinBytes = 1;
+        private int fetchMaxWaitMs = 500;
+        private String trustedPackages = "*";
+        private String defaultType = "com.project.kafkamessagemodels.model.CommandMessage";
+        private int concurrency = 3;
+        private ContainerProperties.AckMode ackMode = ContainerProperties.AckMode.MANUAL_IMMEDIATE;
+    }
+
+    @Data
+    public static class Publisher {
+        // Sends not yet acknowledged by the broker; further sends wait for a slot
+        private int maxInFlight = 1000;
+        private Duration acquireTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Retry {
+        // Listener retries before the record is logged and skipped
+        private long intervalMs = 1000;
+        private long maxAttempts = 3;
+    }
+}
@@ -0,0 +1,15 @@
+package com.project.kafkaplatform;
+
+/**
+ * Thrown when a record cannot be handed to the producer
+ */
+public class KafkaPublishException extends RuntimeException {
+
+    public KafkaPublishException(String message) {
+        super(message);
+    }
+
+    public KafkaPublishException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
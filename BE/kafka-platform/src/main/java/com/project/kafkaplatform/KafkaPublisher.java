@@ -0,0 +1,144 @@
+package com.project.kafkaplatform;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous sends with a bound on records the broker has not acknowledged yet.
+ *
+ * Each send takes a slot before it is handed to the producer and gives it back when the broker
+ * acknowledges it or it fails. When the broker slows down, callers wait for a slot instead of
+ * filling the producer buffer, and a send that cannot get one within the acquire timeout fails
+ * at once with a {@link KafkaPublishException}. Send latency, failures and in-flight sends are
+ * reported to Micrometer when a registry is available.
+ */
+@Slf4j
+public class KafkaPublisher {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final int maxInFlight;
+    private final long acquireTimeoutNanos;
+    private final Semaphore slots;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejectedCounter;
+    private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> failureTimers = new ConcurrentHashMap<>();
+
+    public KafkaPublisher(KafkaTemplate<String, Object> kafkaTemplate, KafkaPlatformProperties.Publisher properties,
+                          MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.maxInFlight = properties.getMaxInFlight();
+        this.acquireTimeoutNanos = properties.getAcquireTimeout().toNanos();
+        this.slots = new Semaphore(maxInFlight);
+        this.meterRegistry = meterRegistry;
+
+        if (meterRegistry != null) {
+            Gauge.builder("kafka.publisher.in.flight", slots, s -> maxInFlight - s.availablePermits())
+                    .description("Sends waiting for a broker acknowledgement")
+                    .register(meterRegistry);
+            rejectedCounter = Counter.builder("kafka.publisher.rejected")
+                    .description("Sends that found no free slot within the acquire timeout")
+                    .register(meterRegistry);
+        } else {
+            rejectedCounter = null;
+        }
+    }
+
+    /**
+     * Send a record and log it if delivery fails
+     */
+    public void publish(String topic, String key, Object value) {
+        send(topic, key, value).whenComplete((metadata, ex) -> {
+            if (ex != null) {
+                log.error("Failed to publish record with key {} to topic {}", key, topic, ex);
+            }
+        });
+    }
+
+    /**
+     * Send a record. The future completes when the broker acknowledges the record or the send
+     * fails; only a missing slot is reported by throwing.
+     */
+    public CompletableFuture<RecordMetadata> send(String topic, String key, Object value) {
+        acquireSlot(topic);
+
+        long start = System.nanoTime();
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        ProducerRecord<String, Object> record = new ProducerRecord<>(topic, key, value);
+        try {
+            kafkaTemplate.execute(producer -> producer.send(record, (metadata, exception) -> {
+                if (exception == null) {
+                    complete(future, topic, start, metadata);
+                } else {
+                    fail(future, topic, start, exception);
+                }
+            }));
+        } catch (RuntimeException e) {
+            // Rejected before it was queued (serialization, closed producer), so no callback runs
+            fail(future, topic, start, e);
+        }
+        return future;
+    }
+
+    /**
+     * Sends waiting for a broker acknowledgement
+     */
+    public int getInFlight() {
+        return maxInFlight - slots.availablePermits();
+    }
+
+    private void acquireSlot(String topic) {
+        try {
+            if (slots.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaPublishException("Interrupted while waiting to publish to " + topic, e);
+        }
+        if (rejectedCounter != null) {
+            rejectedCounter.increment();
+        }
+        throw new KafkaPublishException("No free publish slot for " + topic + ": "
+                + maxInFlight + " sends are waiting for the broker");
+    }
+
+    // The slot is released by whichever outcome completes the future first, so it is released once
+    private void complete(CompletableFuture<RecordMetadata> future, String topic, long start, RecordMetadata metadata) {
+        if (future.complete(metadata)) {
+            slots.release();
+            record(successTimers, topic, "success", start);
+        }
+    }
+
+    private void fail(CompletableFuture<RecordMetadata> future, String topic, long start, Throwable exception) {
+        if (future.completeExceptionally(exception)) {
+            slots.release();
+            record(failureTimers, topic, "failure", start);
+        }
+    }
+
+    private void record(Map<String, Timer> timers, String topic, String result, long start) {
+        if (meterRegistry == null) {
+            return;
+        }
+        timers.computeIfAbsent(topic, t -> Timer.builder("kafka.publisher.send")
+                        .description("Time from send until the broker acknowledged or the send failed")
+                        .tag("topic", t)
+                        .tag("result", result)
+                        .register(meterRegistry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
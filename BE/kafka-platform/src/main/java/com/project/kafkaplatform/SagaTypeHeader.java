@@ -0,0 +1,43 @@
+package com.project.kafkaplatform;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * The saga type a command or event belongs to, carried as a record header so the orchestrator
+ * can hand a reply straight to the saga service that sent the command.
+ *
+ * The orchestrator stamps it on its commands and participants echo it without code of their
+ * own: while a platform listener container hands a record to a listener, the record's saga type
+ * is held for that thread, and platform producers add it to the records sent from the thread.
+ * Replies sent later from another thread go out without it.
+ */
+public final class SagaTypeHeader {
+
+    public static final String NAME = "saga-type";
+
+    private static final ThreadLocal<byte[]> CURRENT = new ThreadLocal<>();
+
+    private SagaTypeHeader() {
+    }
+
+    /**
+     * Saga type of the record being handled on this thread, or null
+     */
+    static byte[] current() {
+        return CURRENT.get();
+    }
+
+    static void enter(Headers headers) {
+        Header header = headers.lastHeader(NAME);
+        if (header != null) {
+            CURRENT.set(header.value());
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    static void exit() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.kafkaplatform;
+
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.Map;
+
+/**
+ * Adds the saga type of the record being handled on the sending thread to records that do not
+ * carry one yet
+ *
+ * @see SagaTypeHeader
+ */
+public class SagaTypeProducerInterceptor implements ProducerInterceptor<Object, Object> {
+
+    @Override
+    public ProducerRecord<Object, Object> onSend(ProducerRecord<Object, Object> record) {
+        byte[] sagaType = SagaTypeHeader.current();
+        if (sagaType != null && record.headers().lastHeader(SagaTypeHeader.NAME) == null) {
+            record.headers().add(SagaTypeHeader.NAME, sagaType);
+        }
+        return record;
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
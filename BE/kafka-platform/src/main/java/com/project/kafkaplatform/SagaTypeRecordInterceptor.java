@@ -0,0 +1,30 @@
+package com.project.kafkaplatform;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+/**
+ * Holds the saga type of the record being handled for the listener thread
+ *
+ * @see SagaTypeHeader
+ */
+class SagaTypeRecordInterceptor<V> implements RecordInterceptor<String, V> {
+
+    @Override
+    public ConsumerRecord<String, V> intercept(ConsumerRecord<String, V> record, Consumer<String, V> consumer) {
+        SagaTypeHeader.enter(record.headers());
+        return record;
+    }
+
+    // Single-argument variant called by Spring Kafka 2.x containers
+    public ConsumerRecord<String, V> intercept(ConsumerRecord<String, V> record) {
+        SagaTypeHeader.enter(record.headers());
+        return record;
+    }
+
+    @Override
+    public void afterRecord(ConsumerRecord<String, V> record, Consumer<String, V> consumer) {
+        SagaTypeHeader.exit();
+    }
+}
@@ -0,0 +1,34 @@
+package com.project.kafkaplatform;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KafkaPlatformAutoConfigurationTests {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(KafkaPlatformAutoConfiguration.class))
+            .withPropertyValues("spring.application.name=test-service");
+
+    @Test
+    void contextLoads() {
+        contextRunner
+                .withBean(SimpleMeterRegistry.class)
+                .withPropertyValues("kafka.platform.producer.linger-ms=25", "kafka.platform.publisher.max-in-flight=10")
+                .run(context -> {
+                    assertThat(context).hasSingleBean(KafkaTemplate.class);
+                    assertThat(context).hasSingleBean(KafkaPublisher.class);
+                    assertThat(context).hasBean("kafkaListenerContainerFactory");
+                    assertThat(context.getBean(ProducerFactory.class).getConfigurationProperties())
+                            .containsEntry("linger.ms", 25);
+                    assertThat(context.getBean(KafkaPublisher.class).getInFlight()).isZero();
+                    assertThat(context.getBean(KafkaPlatform.class).consumerFactory().getConfigurationProperties())
+                            .containsEntry("group.id", "test-service-group");
+                });
+    }
+}
@@ -3,10 +3,12 @@ package com.stocktrading.marketdata.service;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.command.StockSymbolPayload;
+import com.project.kafkamessagemodels.payload.event.PriceProvidedPayload;
+import com.project.kafkaplatform.KafkaPublisher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -20,7 +22,7 @@ public class KafkaCommandHandlerService {
 
     private final MarketPricePublisher marketPricePublisher;
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaPublisher kafkaPublisher;
     private final Random random = new Random();
 
     @Value("${kafka.topics.market-events}")
@@ -37,7 +39,8 @@ public class KafkaCommandHandlerService {
     public void handleValidateStock(CommandMessage command) {
         log.info("Handling MARKET_VALIDATE_STOCK command for saga: {}", command.getSagaId());
 
-        String stockSymbol = command.getPayloadValue("stockSymbol");
+        StockSymbolPayload payload = StockSymbolPayload.from(command);
+        String stockSymbol = payload.getStockSymbol();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -73,7 +76,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(marketEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(marketEventsTopic, command.getSagaId(), event);
             log.info("Sent STOCK_VALIDATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -86,7 +89,8 @@ public class KafkaCommandHandlerService {
     public void handleGetPrice(CommandMessage command) {
         log.info("Handling MARKET_GET_PRICE command for saga: {}", command.getSagaId());
 
-        String stockSymbol = command.getPayloadValue("stockSymbol");
+        StockSymbolPayload payload = StockSymbolPayload.from(command);
+        String stockSymbol = payload.getStockSymbol();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -105,9 +109,11 @@ public class KafkaCommandHandlerService {
 
                 event.setType("PRICE_PROVIDED");
                 event.setSuccess(true);
-                event.setPayloadValue("stockSymbol", stockSymbol);
-                event.setPayloadValue("currentPrice", price);
-                event.setPayloadValue("timestamp", Instant.now().toString());
+                PriceProvidedPayload.builder()
+                        .stockSymbol(stockSymbol)
+                        .currentPrice(price)
+                        .timestamp(Instant.now())
+                        .build().applyTo(event);
 
                 log.info("Price provided for {}: ${}", stockSymbol, price);
             } else {
@@ -125,7 +131,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(marketEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(marketEventsTopic, command.getSagaId(), event);
             log.info("Sent PRICE_PROVIDED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -142,7 +148,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(marketEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(marketEventsTopic, event.getSagaId(), event);
             log.info("Sent STOCK_VALIDATION_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -160,7 +166,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(marketEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(marketEventsTopic, event.getSagaId(), event);
             log.info("Sent PRICE_RETRIEVAL_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
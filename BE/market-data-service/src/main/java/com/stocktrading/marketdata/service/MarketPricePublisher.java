@@ -1,10 +1,10 @@
 package com.stocktrading.marketdata.service;
 
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkaplatform.KafkaPublisher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -29,7 +29,7 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class MarketPricePublisher {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaPublisher kafkaPublisher;
     private final Random random = new Random();
 
     // Map to store the last price for each symbol to create realistic price movements
@@ -295,7 +295,7 @@ public class MarketPricePublisher {
         event.setPayloadValue("monthChangePercent", stockData.getMonthPercentChange());
 
         // Publish with symbol as key for partitioning
-        kafkaTemplate.send(marketPriceUpdatesTopic, symbol, event);
+        kafkaPublisher.publish(marketPriceUpdatesTopic, symbol, event);
 
         log.info("Published price update for {}: {} (bid: {}, ask: {})",
                 symbol, newPrice, bidPrice, askPrice);
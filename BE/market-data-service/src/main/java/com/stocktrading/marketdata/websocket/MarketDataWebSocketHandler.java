@@ -17,6 +17,7 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.PayloadValues;
 import com.stocktrading.marketdata.service.MarketPricePublisher;
 
 import lombok.extern.slf4j.Slf4j;
@@ -90,9 +91,9 @@ public class MarketDataWebSocketHandler extends TextWebSocketHandler {
         if ("MARKET_PRICES_UPDATED".equals(event.getType())) {
             try {
                 String symbol = event.getPayloadValue("symbol");
-                BigDecimal price = BigDecimal.valueOf((Double) event.getPayloadValue("price"));
-                BigDecimal bidPrice = BigDecimal.valueOf((Double) event.getPayloadValue("bidPrice"));
-                BigDecimal askPrice = BigDecimal.valueOf((Double) event.getPayloadValue("askPrice"));
+                BigDecimal price = PayloadValues.toDecimal(event.getPayloadValue("price"));
+                BigDecimal bidPrice = PayloadValues.toDecimal(event.getPayloadValue("bidPrice"));
+                BigDecimal askPrice = PayloadValues.toDecimal(event.getPayloadValue("askPrice"));
                 Object volumeObj = event.getPayloadValue("volume");
                 Long volume;
                 if (volumeObj instanceof Integer) {
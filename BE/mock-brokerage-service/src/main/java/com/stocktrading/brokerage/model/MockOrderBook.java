@@ -1,41 +1,106 @@
 package com.stocktrading.brokerage.model;
 
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.event.OrderExecutedByBrokerPayload;
+import com.project.kafkamessagemodels.payload.event.OrderExpiredPayload;
+import com.project.kafkaplatform.KafkaPublisher;
 import com.stocktrading.brokerage.service.MarketPriceCache;
+import com.stocktrading.brokerage.service.MarketPriceListener;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Simulates an order book for the mock brokerage
+ * Simulates an order book for the mock brokerage.
+ *
+ * Pending limit orders rest in a {@link SymbolOrderBook} per symbol, in price-time priority,
+ * and are indexed by orderId for lookups and cancels. Whichever of a fill, cancel or expiry
+ * removes an order from the index first owns it; the others leave it alone.
+ *
+ * Orders are matched on every price update of their symbol, so a crossing order is filled as
+ * soon as the price that crosses it arrives. The periodic check is only a safety net.
+ *
+ * Each order's expiry is scheduled for its expiration time on a timer whose queue is ordered
+ * by deadline, and cancelled when the order leaves the book earlier, so orders expire on time
+ * without scanning the book.
+ *
+ * Every change to the pending orders is appended to the {@link OrderBookJournal}, and the book
+ * is rebuilt from it, expiries included, before the service starts consuming commands.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class MockOrderBook {
+public class MockOrderBook implements MarketPriceListener {
 
     private final MarketPriceCache marketPriceCache;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaPublisher kafkaPublisher;
+    private final OrderBookJournal journal;
     private final Random random = new Random();
 
     // Map to store pending limit orders (orderId -> PendingOrder)
     private final Map<String, PendingOrder> pendingOrders = new ConcurrentHashMap<>();
 
+    // Price levels of the pending orders of each symbol
+    private final Map<String, SymbolOrderBook> books = new ConcurrentHashMap<>();
+
+    // Scheduled expiry of each pending order (orderId -> expiry task)
+    private final Map<String, ScheduledFuture<?>> expiries = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor expiryTimer;
+
     @Value("${kafka.topics.broker-events}")
     private String brokerEventsTopic;
 
     @Value("${market.simulation.price-variation:0.02}")
     private double priceVariation; // Default 2% variation for simulated prices
 
+    @PostConstruct
+    public void start() {
+        expiryTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "order-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Drop the tasks of filled and cancelled orders instead of keeping them until their deadline
+        expiryTimer.setRemoveOnCancelPolicy(true);
+
+        for (PendingOrder order : journal.recover()) {
+            pendingOrders.put(order.getOrderId(), order);
+            books.computeIfAbsent(order.getStockSymbol(), symbol -> new SymbolOrderBook()).add(order);
+            scheduleExpiry(order);
+        }
+
+        marketPriceCache.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        expiryTimer.shutdownNow();
+    }
+
+    /**
+     * Fill the orders of the symbol that its new prices cross
+     */
+    @Override
+    public void onPriceUpdate(String symbol) {
+        SymbolOrderBook book = books.get(symbol);
+        if (book != null) {
+            matchCrossingOrders(symbol, book);
+        }
+    }
+
     /**
      * Add a pending order to the order book
      */
@@ -60,7 +125,10 @@ public class MockOrderBook {
                 .sagaId(sagaId)
                 .build();
 
-        pendingOrders.put(orderId, pendingOrder);
+        // Journaled before it can be filled or expired, so its ADD precedes its removal
+        journal.recordAdded(pendingOrder, () -> pendingOrders.put(orderId, pendingOrder));
+        books.computeIfAbsent(stockSymbol, symbol -> new SymbolOrderBook()).add(pendingOrder);
+        scheduleExpiry(pendingOrder);
 
         log.info("LIMIT ORDER ADDED: Added pending {} order to order book: {} at limit price {}. Total pending orders: {}",
                 side, orderId, limitPrice, pendingOrders.size());
@@ -74,6 +142,9 @@ public class MockOrderBook {
     public boolean removePendingOrder(String orderId) {
         PendingOrder removed = pendingOrders.remove(orderId);
         if (removed != null) {
+            removeFromBook(removed);
+            cancelExpiry(orderId);
+            journal.recordRemoved(OrderBookJournal.Operation.CANCEL, orderId);
             log.info("Removed pending order from order book: {}", orderId);
             return true;
         }
@@ -209,40 +280,43 @@ public class MockOrderBook {
     }
 
     /**
-     * Scheduled task to check for expired orders
-     * Runs every minute
+     * Expire the order at its expiration time unless it leaves the book before
      */
-    @Scheduled(fixedRate = 60000)
-    public void checkForExpiredOrders() {
-        // Skip if no pending orders to check
-        if (pendingOrders.isEmpty()) {
+    private void scheduleExpiry(PendingOrder order) {
+        if (order.getExpirationTime() == null) {
             return;
         }
-
-        Instant now = Instant.now();
-        log.debug("Checking for expired orders at {}", now);
-
-        List<String> expiredOrderIds = new ArrayList<>();
-
-        // Find expired orders
-        for (PendingOrder order : pendingOrders.values()) {
-            if (order.getExpirationTime() != null && order.getExpirationTime().isBefore(now)) {
-                expiredOrderIds.add(order.getOrderId());
-
-                // Send ORDER_EXPIRED event
-                sendOrderExpiredEvent(order);
-            }
+        long delayMs = Math.max(0, order.getExpirationTime().toEpochMilli() - System.currentTimeMillis());
+        ScheduledFuture<?> expiry = expiryTimer.schedule(() -> expire(order), delayMs, TimeUnit.MILLISECONDS);
+        expiries.put(order.getOrderId(), expiry);
+        // An expiry already due may have run before it was recorded
+        if (expiry.isDone()) {
+            expiries.remove(order.getOrderId(), expiry);
         }
+    }
 
-        // Remove expired orders
-        for (String orderId : expiredOrderIds) {
-            pendingOrders.remove(orderId);
-            log.info("Removed expired order: {}", orderId);
+    private void cancelExpiry(String orderId) {
+        ScheduledFuture<?> expiry = expiries.remove(orderId);
+        if (expiry != null) {
+            expiry.cancel(false);
         }
+    }
 
-        if (!expiredOrderIds.isEmpty()) {
-            log.info("Removed {} expired orders", expiredOrderIds.size());
+    /**
+     * Remove an order that reached its expiration time; only an order still pending gets an
+     * ORDER_EXPIRED event
+     */
+    private void expire(PendingOrder order) {
+        expiries.remove(order.getOrderId());
+        if (!pendingOrders.remove(order.getOrderId(), order)) {
+            return;
         }
+        removeFromBook(order);
+        journal.recordRemoved(OrderBookJournal.Operation.EXPIRE, order.getOrderId());
+
+        // Send ORDER_EXPIRED event
+        sendOrderExpiredEvent(order);
+        log.info("Removed expired order: {}", order.getOrderId());
     }
 
     /**
@@ -259,13 +333,15 @@ public class MockOrderBook {
                     .success(true)
                     .build();
 
-            event.setPayloadValue("orderId", order.getOrderId());
-            event.setPayloadValue("stockSymbol", order.getStockSymbol());
-            event.setPayloadValue("limitPrice", order.getLimitPrice());
-            event.setPayloadValue("expiredAt", Instant.now().toString());
-            event.setPayloadValue("status", "EXPIRED");
+            OrderExpiredPayload.builder()
+                    .orderId(order.getOrderId())
+                    .stockSymbol(order.getStockSymbol())
+                    .limitPrice(order.getLimitPrice())
+                    .expiredAt(Instant.now())
+                    .status("EXPIRED")
+                    .build().applyTo(event);
 
-            kafkaTemplate.send(brokerEventsTopic, order.getSagaId(), event);
+            kafkaPublisher.publish(brokerEventsTopic, order.getSagaId(), event);
             log.info("Sent ORDER_EXPIRED event for order: {}", order.getOrderId());
         } catch (Exception e) {
             log.error("Error sending ORDER_EXPIRED event", e);
@@ -274,7 +350,8 @@ public class MockOrderBook {
 
     /**
      * Scheduled task to check pending limit orders against current market prices
-     * Runs every 2 seconds, but only if there are pending orders to check
+     * Runs every 5 seconds, only for symbols with pending orders. Orders are normally filled on
+     * the price update that crosses them; this catches orders queued just after that update.
      */
     @Scheduled(fixedRate = 5000)
     public void checkPendingLimitOrders() {
@@ -282,41 +359,48 @@ public class MockOrderBook {
             return; // Nothing to check
         }
 
-        // Only log when actually checking orders (not every 2 seconds)
         log.debug("Checking pending limit orders. Count: {}", pendingOrders.size());
 
-        // Create a copy to avoid concurrent modification
-        List<PendingOrder> ordersToCheck = new ArrayList<>(pendingOrders.values());
+        for (Map.Entry<String, SymbolOrderBook> book : books.entrySet()) {
+            matchCrossingOrders(book.getKey(), book.getValue());
+        }
+    }
 
-        for (PendingOrder order : ordersToCheck) {
-            // For now, only BUY orders are supported
-            if (!"BUY".equals(order.getSide())) {
-                continue;
+    /**
+     * Fill the symbol's pending orders that the current bid and ask prices cross
+     */
+    private void matchCrossingOrders(String stockSymbol, SymbolOrderBook book) {
+        if (book.hasBuys()) {
+            // For BUY orders, execute if askPrice <= limitPrice
+            BigDecimal askPrice = getAskPrice(stockSymbol);
+            for (PendingOrder order : book.takeBuysCrossing(askPrice)) {
+                executeOrder(order, askPrice);
+            }
+        }
+        if (book.hasSells()) {
+            // For SELL orders, execute if bidPrice >= limitPrice
+            BigDecimal bidPrice = getBidPrice(stockSymbol);
+            for (PendingOrder order : book.takeSellsCrossing(bidPrice)) {
+                executeOrder(order, bidPrice);
             }
-
-            checkAndExecuteBuyOrder(order);
         }
     }
 
     /**
-     * Check and execute a buy order if price conditions are met
+     * Compact the journal into a snapshot of the pending orders
      */
-    private void checkAndExecuteBuyOrder(PendingOrder order) {
-        String stockSymbol = order.getStockSymbol();
-        BigDecimal limitPrice = order.getLimitPrice();
-
-        // Get current ask price
-        BigDecimal currentAskPrice = getAskPrice(stockSymbol);
-
-        // For BUY orders, execute if askPrice <= limitPrice
-        boolean shouldExecute = currentAskPrice.compareTo(limitPrice) <= 0;
-
-        // Changed to trace level to reduce output
-        log.trace("Checking BUY order {} - limitPrice: {}, currentAskPrice: {}, shouldExecute: {}",
-                order.getOrderId(), limitPrice, currentAskPrice, shouldExecute);
+    @Scheduled(fixedDelayString = "${broker.journal.snapshot-interval-ms:60000}")
+    public void snapshotJournal() {
+        journal.snapshot(pendingOrders.values());
+    }
 
-        if (shouldExecute) {
-            executeOrder(order, currentAskPrice);
+    /**
+     * Take an order out of its symbol's price levels
+     */
+    private void removeFromBook(PendingOrder order) {
+        SymbolOrderBook book = books.get(order.getStockSymbol());
+        if (book != null) {
+            book.remove(order);
         }
     }
 
@@ -324,8 +408,12 @@ public class MockOrderBook {
      * Execute a pending limit order at the specified price
      */
     private void executeOrder(PendingOrder order, BigDecimal executionPrice) {
-        // First remove from pending orders
-        pendingOrders.remove(order.getOrderId());
+        // First remove from pending orders; a cancel or expiry that got there first wins
+        if (!pendingOrders.remove(order.getOrderId(), order)) {
+            return;
+        }
+        cancelExpiry(order.getOrderId());
+        journal.recordRemoved(OrderBookJournal.Operation.FILL, order.getOrderId());
 
         log.info("Executing limit order: {} for {} shares of {} at price {}",
                 order.getOrderId(), order.getQuantity(), order.getStockSymbol(), executionPrice);
@@ -344,15 +432,17 @@ public class MockOrderBook {
                     .success(true)
                     .build();
 
-            event.setPayloadValue("orderId", order.getOrderId());
-            event.setPayloadValue("brokerOrderId", brokerOrderId);
-            event.setPayloadValue("stockSymbol", order.getStockSymbol());
-            event.setPayloadValue("executionPrice", executionPrice);
-            event.setPayloadValue("executedQuantity", order.getQuantity());
-            event.setPayloadValue("executedAt", Instant.now().toString());
-            event.setPayloadValue("status", "FILLED");
-
-            kafkaTemplate.send(brokerEventsTopic, order.getSagaId(), event);
+            OrderExecutedByBrokerPayload.builder()
+                    .orderId(order.getOrderId())
+                    .brokerOrderId(brokerOrderId)
+                    .stockSymbol(order.getStockSymbol())
+                    .executionPrice(executionPrice)
+                    .executedQuantity(order.getQuantity())
+                    .executedAt(Instant.now())
+                    .status("FILLED")
+                    .build().applyTo(event);
+
+            kafkaPublisher.publish(brokerEventsTopic, order.getSagaId(), event);
             log.info("Sent ORDER_EXECUTED_BY_BROKER event for limit order: {}", order.getOrderId());
         } catch (Exception e) {
             log.error("Error sending ORDER_EXECUTED_BY_BROKER event", e);
@@ -0,0 +1,534 @@
+package com.stocktrading.brokerage.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only journal of the pending order book, so queued limit orders survive a restart.
+ *
+ * Every order added to the book and every cancel, fill and expiry is appended to a
+ * memory-mapped journal segment as a length-prefixed, CRC-checked binary record. A full
+ * segment is closed and the next generation opened. Periodically the whole book is written
+ * to a snapshot file that replaces the segments it covers.
+ *
+ * An order's ADD is journaled before the order goes into the book, under the journal's lock,
+ * so it is written before any fill, cancel or expiry of the order; those are journaled after
+ * the book has applied them. A snapshot copies the book only after the segments it covers have
+ * been closed, so every record of those segments is in the snapshot. Records of the following
+ * segment may or may not be; they are replayed on top, where an ADD or removal the snapshot
+ * already reflects changes nothing. Should a removal still come before its ADD, replay keeps
+ * the removal, since order ids are never reused.
+ *
+ * On startup the latest snapshot is loaded and the newer segments replayed up to their first
+ * torn or empty record, then appends continue in a new segment. Records reach the file when
+ * the process dies but are only forced to disk on rotation and shutdown.
+ *
+ * The journal lives under the broker data directory ({@code broker.data-dir}), which has to be
+ * on a persistent volume for the book to survive the container being replaced.
+ */
+@Slf4j
+@Component
+public class OrderBookJournal {
+
+    /**
+     * Journaled changes of the order book
+     */
+    public enum Operation {
+        ADD, CANCEL, FILL, EXPIRE
+    }
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final Pattern SNAPSHOT_TEMP_NAME = Pattern.compile("snapshot-(\\d+)\\.bin\\.tmp");
+    private static final int SNAPSHOT_MAGIC = 0x4d4f4253;
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    @Value("${broker.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${broker.journal.dir:${broker.data-dir:data}/order-book}")
+    private String directory;
+
+    @Value("${broker.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    private Path dir;
+    private long generation;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private long snapshotGeneration = -1;
+    private boolean dirty;
+
+    /**
+     * Load the pending orders from the latest snapshot and the segments written after it, and
+     * open a new segment for appends
+     */
+    public synchronized Collection<PendingOrder> recover() {
+        if (!enabled) {
+            return List.of();
+        }
+
+        long start = System.nanoTime();
+        Map<String, PendingOrder> orders = new LinkedHashMap<>();
+        // Orders removed before their ADD was replayed
+        Set<String> removed = new HashSet<>();
+        int replayed = 0;
+        try {
+            dir = Paths.get(directory);
+            Files.createDirectories(dir);
+            for (Path temp : files(SNAPSHOT_TEMP_NAME)) {
+                // Left by a snapshot interrupted before its rename; the segments it covers are still there
+                Files.delete(temp);
+            }
+
+            long lastGeneration = -1;
+            Path snapshot = latest(SNAPSHOT_NAME);
+            if (snapshot != null) {
+                snapshotGeneration = generationOf(snapshot, SNAPSHOT_NAME);
+                readSnapshot(snapshot, orders, removed);
+                lastGeneration = snapshotGeneration;
+            }
+            for (Path file : files(SEGMENT_NAME)) {
+                long fileGeneration = generationOf(file, SEGMENT_NAME);
+                if (fileGeneration > snapshotGeneration) {
+                    int records = replaySegment(file, orders, removed);
+                    if (records == 0) {
+                        // Left empty by an earlier run; its generation is still counted below
+                        Files.delete(file);
+                    }
+                    replayed += records;
+                }
+                lastGeneration = Math.max(lastGeneration, fileGeneration);
+            }
+
+            openSegment(lastGeneration + 1);
+            // Compact the replayed segments into a snapshot even if nothing new is journaled
+            dirty = replayed > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover order book journal from " + directory, e);
+        }
+
+        log.info("Recovered {} pending orders from {} (snapshot {}, {} journal records) in {} ms",
+                orders.size(), dir, snapshotGeneration, replayed, (System.nanoTime() - start) / 1_000_000);
+        return orders.values();
+    }
+
+    /**
+     * Journal an order and then add it to the book, before anything else can see it
+     *
+     * @param addToBook puts the order in the book; runs under the journal's lock so a snapshot
+     *                  cannot close the segment holding the ADD before the order is in the book
+     */
+    public void recordAdded(PendingOrder order, Runnable addToBook) {
+        byte[] body = enabled ? encode(Operation.ADD, order) : null;
+        synchronized (this) {
+            if (body != null) {
+                append(body);
+            }
+            addToBook.run();
+        }
+    }
+
+    /**
+     * Journal an order leaving the book
+     */
+    public void recordRemoved(Operation operation, String orderId) {
+        if (enabled) {
+            append(encode(operation, PendingOrder.builder().orderId(orderId).build()));
+        }
+    }
+
+    /**
+     * Write the book to a snapshot and drop the segments it covers, if anything was journaled
+     * since the last one
+     *
+     * @param book live view of the pending orders, read after the current segment is closed
+     */
+    public void snapshot(Collection<PendingOrder> book) {
+        long covered;
+        synchronized (this) {
+            if (!enabled || !dirty || segment == null) {
+                return;
+            }
+            covered = generation;
+            try {
+                openSegment(generation + 1);
+                dirty = false;
+            } catch (IOException e) {
+                log.error("Failed to rotate order book journal before snapshot", e);
+                return;
+            }
+        }
+
+        try {
+            long start = System.nanoTime();
+            int written = writeSnapshot(covered, book);
+            synchronized (this) {
+                snapshotGeneration = covered;
+            }
+            deleteCoveredFiles(covered);
+            log.info("Wrote order book snapshot {} with {} pending orders in {} ms",
+                    covered, written, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.error("Failed to write order book snapshot {}, keeping its journal segments", covered, e);
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closeSegment();
+    }
+
+    private synchronized void append(byte[] body) {
+        if (segment == null) {
+            return;
+        }
+        try {
+            if (segment.remaining() < RECORD_HEADER_BYTES + body.length) {
+                openSegment(generation + 1);
+                if (segment.remaining() < RECORD_HEADER_BYTES + body.length) {
+                    throw new IOException("Journal record of " + body.length + " bytes exceeds the segment size");
+                }
+            }
+            // The checksum goes in before the length, so a record is only valid once complete
+            int position = segment.position();
+            segment.position(position + Integer.BYTES);
+            segment.putInt(checksum(body));
+            segment.put(body);
+            segment.putInt(position, body.length);
+            dirty = true;
+        } catch (IOException e) {
+            log.error("Failed to append to order book journal", e);
+        }
+    }
+
+    private void openSegment(long newGeneration) throws IOException {
+        closeSegment();
+        Path file = dir.resolve(String.format("journal-%016d.log", newGeneration));
+        segmentChannel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentSizeMb * 1024 * 1024);
+        generation = newGeneration;
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.force();
+            segmentChannel.close();
+        } catch (IOException e) {
+            log.error("Failed to close order book journal segment {}", generation, e);
+        }
+        segment = null;
+        segmentChannel = null;
+    }
+
+    private int replaySegment(Path file, Map<String, PendingOrder> orders, Set<String> removed) throws IOException {
+        int records = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Decoder decoder = new Decoder(buffer, removed);
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int expected = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                int start = buffer.position();
+                crc.reset();
+                crc.update(buffer.duplicate().limit(start + length));
+                if ((int) crc.getValue() != expected) {
+                    log.warn("Stopping replay of {} at a torn record", file.getFileName());
+                    break;
+                }
+                decoder.apply(orders);
+                buffer.position(start + length);
+                records++;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt order book journal segment: " + file, e);
+        }
+        return records;
+    }
+
+    private int writeSnapshot(long covered, Collection<PendingOrder> book) throws IOException {
+        Path target = dir.resolve(String.format("snapshot-%016d.bin", covered));
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        List<byte[]> records = new ArrayList<>();
+        for (PendingOrder order : book) {
+            records.add(encode(Operation.ADD, order));
+        }
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(covered);
+            out.writeInt(records.size());
+            for (byte[] record : records) {
+                out.writeInt(record.length);
+                out.write(record);
+            }
+            // Checksum of everything before it
+            out.flush();
+            out.writeLong(crc.getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return records.size();
+    }
+
+    private void readSnapshot(Path file, Map<String, PendingOrder> orders, Set<String> removed) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int trailer = buffer.limit() - Long.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(trailer));
+            if (buffer.getLong(trailer) != crc.getValue() || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Corrupt order book snapshot: " + file);
+            }
+            buffer.getLong();
+            int count = buffer.getInt();
+            Decoder decoder = new Decoder(buffer, removed);
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                int start = buffer.position();
+                decoder.apply(orders);
+                buffer.position(start + length);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt order book snapshot: " + file, e);
+        }
+    }
+
+    private void deleteCoveredFiles(long covered) throws IOException {
+        for (Path file : files(SEGMENT_NAME)) {
+            if (generationOf(file, SEGMENT_NAME) <= covered) {
+                Files.deleteIfExists(file);
+            }
+        }
+        for (Path file : files(SNAPSHOT_NAME)) {
+            if (generationOf(file, SNAPSHOT_NAME) < covered) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private Path latest(Pattern pattern) throws IOException {
+        List<Path> found = files(pattern);
+        return found.isEmpty() ? null : found.get(found.size() - 1);
+    }
+
+    /**
+     * Files matching the pattern, oldest generation first
+     */
+    private List<Path> files(Pattern pattern) throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.filter(file -> pattern.matcher(file.getFileName().toString()).matches()).forEach(found::add);
+        }
+        found.sort((a, b) -> Long.compare(generationOf(a, pattern), generationOf(b, pattern)));
+        return found;
+    }
+
+    private static long generationOf(Path file, Pattern pattern) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private static byte[] encode(Operation operation, PendingOrder order) {
+        Encoder encoder = new Encoder();
+        encoder.buffer.put((byte) operation.ordinal());
+        encoder.putString(order.getOrderId());
+        if (operation == Operation.ADD) {
+            encoder.putString(order.getStockSymbol());
+            encoder.putString(order.getOrderType());
+            encoder.putString(order.getSide());
+            encoder.ensure(Integer.BYTES);
+            encoder.buffer.putInt(order.getQuantity() != null ? order.getQuantity() : -1);
+            encoder.putDecimal(order.getLimitPrice());
+            encoder.putString(order.getTimeInForce());
+            encoder.putInstant(order.getCreatedAt());
+            encoder.putInstant(order.getExpirationTime());
+            encoder.putString(order.getSagaId());
+        }
+        return encoder.toBytes();
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes a record body; strings are length-prefixed UTF-8 with -1 for null
+     */
+    private static final class Encoder {
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        private void putString(String value) {
+            if (value == null) {
+                ensure(Integer.BYTES);
+                buffer.putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(Integer.BYTES + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void putDecimal(BigDecimal value) {
+            if (value == null) {
+                ensure(Integer.BYTES);
+                buffer.putInt(Integer.MIN_VALUE);
+                return;
+            }
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            ensure(2 * Integer.BYTES + unscaled.length);
+            buffer.putInt(value.scale());
+            buffer.putInt(unscaled.length);
+            buffer.put(unscaled);
+        }
+
+        private void putInstant(Instant value) {
+            ensure(Long.BYTES + Integer.BYTES);
+            buffer.putLong(value != null ? value.getEpochSecond() : Long.MIN_VALUE);
+            buffer.putInt(value != null ? value.getNano() : 0);
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        private byte[] toBytes() {
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
+    /**
+     * Applies record bodies read in place from a mapped file
+     */
+    private static final class Decoder {
+        private static final Operation[] OPERATIONS = Operation.values();
+
+        private final ByteBuffer buffer;
+        private final Set<String> removed;
+        private byte[] scratch = new byte[64];
+
+        private Decoder(ByteBuffer buffer, Set<String> removed) {
+            this.buffer = buffer;
+            this.removed = removed;
+        }
+
+        private void apply(Map<String, PendingOrder> orders) {
+            Operation operation = OPERATIONS[buffer.get()];
+            String orderId = readString();
+            if (operation != Operation.ADD) {
+                if (orders.remove(orderId) == null) {
+                    removed.add(orderId);
+                }
+                return;
+            }
+            PendingOrder order = PendingOrder.builder()
+                    .orderId(orderId)
+                    .stockSymbol(readString())
+                    .orderType(readString())
+                    .side(readString())
+                    .quantity(readQuantity())
+                    .limitPrice(readDecimal())
+                    .timeInForce(readString())
+                    .createdAt(readInstant())
+                    .expirationTime(readInstant())
+                    .sagaId(readString())
+                    .build();
+            // An ADD replayed after the order's removal is stale
+            if (!removed.remove(orderId)) {
+                orders.put(orderId, order);
+            }
+        }
+
+        private String readString() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private Integer readQuantity() {
+            int quantity = buffer.getInt();
+            return quantity >= 0 ? quantity : null;
+        }
+
+        private BigDecimal readDecimal() {
+            int scale = buffer.getInt();
+            if (scale == Integer.MIN_VALUE) {
+                return null;
+            }
+            byte[] unscaled = new byte[buffer.getInt()];
+            buffer.get(unscaled);
+            return new BigDecimal(new BigInteger(unscaled), scale);
+        }
+
+        private Instant readInstant() {
+            long seconds = buffer.getLong();
+            int nanos = buffer.getInt();
+            return seconds != Long.MIN_VALUE ? Instant.ofEpochSecond(seconds, nanos) : null;
+        }
+    }
+}
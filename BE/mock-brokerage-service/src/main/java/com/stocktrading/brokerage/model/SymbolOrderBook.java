@@ -0,0 +1,95 @@
+package com.stocktrading.brokerage.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Resting limit orders of one symbol in price-time priority.
+ *
+ * Buy orders are kept in price levels from the highest limit down, sell orders from the
+ * lowest limit up, and each level holds its orders in arrival order. A price only has to
+ * look at the levels at the top of each side that it crosses, so matching costs one step
+ * per order filled, however many orders rest further from the market.
+ *
+ * Orders are always filled in full, as the mock brokerage does not do partial fills.
+ */
+class SymbolOrderBook {
+
+    private final NavigableMap<BigDecimal, Map<String, PendingOrder>> buyLevels =
+            new TreeMap<>(Comparator.reverseOrder());
+    private final NavigableMap<BigDecimal, Map<String, PendingOrder>> sellLevels = new TreeMap<>();
+
+    synchronized void add(PendingOrder order) {
+        levelsOf(order.getSide())
+                .computeIfAbsent(order.getLimitPrice(), price -> new LinkedHashMap<>())
+                .put(order.getOrderId(), order);
+    }
+
+    synchronized boolean remove(PendingOrder order) {
+        NavigableMap<BigDecimal, Map<String, PendingOrder>> levels = levelsOf(order.getSide());
+        Map<String, PendingOrder> level = levels.get(order.getLimitPrice());
+        if (level == null || level.remove(order.getOrderId()) == null) {
+            return false;
+        }
+        if (level.isEmpty()) {
+            levels.remove(order.getLimitPrice());
+        }
+        return true;
+    }
+
+    /**
+     * Take the buy orders the ask price crosses, best limit first and oldest first within
+     * a level
+     */
+    synchronized List<PendingOrder> takeBuysCrossing(BigDecimal askPrice) {
+        return takeCrossing(buyLevels, level -> level.compareTo(askPrice) >= 0);
+    }
+
+    /**
+     * Take the sell orders the bid price crosses, best limit first and oldest first within
+     * a level
+     */
+    synchronized List<PendingOrder> takeSellsCrossing(BigDecimal bidPrice) {
+        return takeCrossing(sellLevels, level -> level.compareTo(bidPrice) <= 0);
+    }
+
+    synchronized boolean hasBuys() {
+        return !buyLevels.isEmpty();
+    }
+
+    synchronized boolean hasSells() {
+        return !sellLevels.isEmpty();
+    }
+
+    private List<PendingOrder> takeCrossing(NavigableMap<BigDecimal, Map<String, PendingOrder>> levels,
+                                            Predicate<BigDecimal> crosses) {
+        if (levels.isEmpty() || !crosses.test(levels.firstKey())) {
+            return Collections.emptyList();
+        }
+
+        List<PendingOrder> taken = new ArrayList<>();
+        Iterator<Map.Entry<BigDecimal, Map<String, PendingOrder>>> iterator = levels.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BigDecimal, Map<String, PendingOrder>> level = iterator.next();
+            if (!crosses.test(level.getKey())) {
+                break;
+            }
+            taken.addAll(level.getValue().values());
+            iterator.remove();
+        }
+        return taken;
+    }
+
+    private NavigableMap<BigDecimal, Map<String, PendingOrder>> levelsOf(String side) {
+        return "SELL".equals(side) ? sellLevels : buyLevels;
+    }
+}
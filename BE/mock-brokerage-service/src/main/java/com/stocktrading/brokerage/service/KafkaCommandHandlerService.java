@@ -2,12 +2,17 @@ package com.stocktrading.brokerage.service;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.command.BrokerCancelOrderPayload;
+import com.project.kafkamessagemodels.payload.command.BrokerExecuteOrderPayload;
+import com.project.kafkamessagemodels.payload.event.LimitOrderQueuedPayload;
+import com.project.kafkamessagemodels.payload.event.OrderExecutedByBrokerPayload;
+import com.project.kafkamessagemodels.payload.event.OrderExpiredPayload;
+import com.project.kafkaplatform.KafkaPublisher;
 import com.stocktrading.brokerage.model.MockOrderBook;
 import com.stocktrading.brokerage.model.PendingOrder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -17,15 +22,19 @@ import java.util.Random;
 import java.util.UUID;
 
 /**
- * Service for handling order execution commands
+ * Service for handling order execution commands.
+ *
+ * Commands are answered through the {@link LatencySimulator}, after a simulated broker
+ * latency and in order per saga, so the listener thread moves on to the next command at once.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class KafkaCommandHandlerService {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaPublisher kafkaPublisher;
     private final MockOrderBook mockOrderBook;
+    private final LatencySimulator latencySimulator;
     private final Random random = new Random();
 
     @Value("${kafka.topics.broker-events}")
@@ -41,24 +50,20 @@ public class KafkaCommandHandlerService {
     public void handleExecuteOrder(CommandMessage command) {
         log.info("Handling BROKER_EXECUTE_ORDER command for saga: {}", command.getSagaId());
 
-        String orderId = command.getPayloadValue("orderId");
-        String stockSymbol = command.getPayloadValue("stockSymbol");
-        String orderType = command.getPayloadValue("orderType");
-        Integer quantity = command.getPayloadValue("quantity");
-        String timeInForce = command.getPayloadValue("timeInForce");
-
-        // Convert limit price to BigDecimal, handling different formats
-        BigDecimal limitPrice = null;
-        Object limitPriceObj = command.getPayloadValue("limitPrice");
-        if (limitPriceObj != null) {
-            if (limitPriceObj instanceof BigDecimal) {
-                limitPrice = (BigDecimal) limitPriceObj;
-            } else if (limitPriceObj instanceof Number) {
-                limitPrice = BigDecimal.valueOf(((Number) limitPriceObj).doubleValue());
-            } else if (limitPriceObj instanceof String) {
-                limitPrice = new BigDecimal((String) limitPriceObj);
-            }
-        }
+        latencySimulator.submit(command.getSagaId(), () -> executeOrder(command));
+    }
+
+    /**
+     * Execute the order once the simulated latency has passed
+     */
+    private void executeOrder(CommandMessage command) {
+        BrokerExecuteOrderPayload payload = BrokerExecuteOrderPayload.from(command);
+        String orderId = payload.getOrderId();
+        String stockSymbol = payload.getStockSymbol();
+        String orderType = payload.getOrderType();
+        Integer quantity = payload.getQuantity();
+        String timeInForce = payload.getTimeInForce();
+        BigDecimal limitPrice = payload.getLimitPrice();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -69,9 +74,6 @@ public class KafkaCommandHandlerService {
         event.setTimestamp(Instant.now());
 
         try {
-            // Simulate processing delay (100-500ms)
-            simulateProcessingDelay();
-
             // Determine if order execution should succeed based on configured success rate
             boolean orderExecutionSucceeds = random.nextInt(100) < orderExecutionSuccessRate;
 
@@ -116,16 +118,32 @@ public class KafkaCommandHandlerService {
             // Set success response for immediate execution
             event.setType("ORDER_EXECUTED_BY_BROKER");
             event.setSuccess(true);
-            event.setPayloadValue("orderId", orderId);
-            event.setPayloadValue("brokerOrderId", brokerOrderId);
-            event.setPayloadValue("stockSymbol", stockSymbol);
-            event.setPayloadValue("executionPrice", executionPrice);
-            event.setPayloadValue("executedQuantity", quantity);
-            event.setPayloadValue("executedAt", Instant.now().toString());
-            event.setPayloadValue("status", "FILLED");
+            OrderExecutedByBrokerPayload.builder()
+                    .orderId(orderId)
+                    .brokerOrderId(brokerOrderId)
+                    .stockSymbol(stockSymbol)
+                    .executionPrice(executionPrice)
+                    .executedQuantity(quantity)
+                    .executedAt(Instant.now())
+                    .status("FILLED")
+                    .build().applyTo(event);
 
             log.info("Limit order executed immediately: {} for {} shares of {} at ${}",
                     brokerOrderId, quantity, stockSymbol, executionPrice);
+        } else if ("IOC".equals(timeInForce) || "FOK".equals(timeInForce)) {
+            // Immediate-or-cancel and fill-or-kill orders never rest in the book
+            event.setType("ORDER_EXPIRED");
+            event.setSuccess(true);
+            OrderExpiredPayload.builder()
+                    .orderId(orderId)
+                    .stockSymbol(stockSymbol)
+                    .limitPrice(limitPrice)
+                    .expiredAt(Instant.now())
+                    .status("EXPIRED")
+                    .build().applyTo(event);
+
+            log.info("{} limit order not executable at submission, expired: {} for {} shares of {} at limit ${}",
+                    timeInForce, orderId, quantity, stockSymbol, limitPrice);
         } else {
             // Add to order book for later execution
             PendingOrder pendingOrder = mockOrderBook.addPendingOrder(
@@ -135,16 +153,15 @@ public class KafkaCommandHandlerService {
             // Return a "LIMIT_ORDER_QUEUED" event
             event.setType("LIMIT_ORDER_QUEUED");
             event.setSuccess(true);
-            event.setPayloadValue("orderId", orderId);
-            event.setPayloadValue("stockSymbol", stockSymbol);
-            event.setPayloadValue("limitPrice", limitPrice);
-            event.setPayloadValue("currentPrice", mockOrderBook.getCurrentPrice(stockSymbol));
-            event.setPayloadValue("queuedAt", Instant.now().toString());
-            event.setPayloadValue("status", "QUEUED");
-
-            if (pendingOrder.getExpirationTime() != null) {
-                event.setPayloadValue("expiresAt", pendingOrder.getExpirationTime().toString());
-            }
+            LimitOrderQueuedPayload.builder()
+                    .orderId(orderId)
+                    .stockSymbol(stockSymbol)
+                    .limitPrice(limitPrice)
+                    .currentPrice(mockOrderBook.getCurrentPrice(stockSymbol))
+                    .queuedAt(Instant.now())
+                    .status("QUEUED")
+                    .expiresAt(pendingOrder.getExpirationTime())
+                    .build().applyTo(event);
 
             log.info("Limit order queued in order book: {} for {} shares of {} at limit ${}",
                     orderId, quantity, stockSymbol, limitPrice);
@@ -168,13 +185,15 @@ public class KafkaCommandHandlerService {
         // Set success response
         event.setType("ORDER_EXECUTED_BY_BROKER");
         event.setSuccess(true);
-        event.setPayloadValue("orderId", orderId);
-        event.setPayloadValue("brokerOrderId", brokerOrderId);
-        event.setPayloadValue("stockSymbol", stockSymbol);
-        event.setPayloadValue("executionPrice", executionPrice);
-        event.setPayloadValue("executedQuantity", quantity);
-        event.setPayloadValue("executedAt", Instant.now().toString());
-        event.setPayloadValue("status", "FILLED");
+        OrderExecutedByBrokerPayload.builder()
+                .orderId(orderId)
+                .brokerOrderId(brokerOrderId)
+                .stockSymbol(stockSymbol)
+                .executionPrice(executionPrice)
+                .executedQuantity(quantity)
+                .executedAt(Instant.now())
+                .status("FILLED")
+                .build().applyTo(event);
 
         log.info("Market order executed: {} for {} shares of {} at ${}",
                 brokerOrderId, quantity, stockSymbol, executionPrice);
@@ -190,8 +209,16 @@ public class KafkaCommandHandlerService {
     public void handleCancelOrder(CommandMessage command) {
         log.info("Handling BROKER_CANCEL_ORDER command for saga: {}", command.getSagaId());
 
-        String orderId = command.getPayloadValue("orderId");
-        String brokerOrderId = command.getPayloadValue("brokerOrderId");
+        latencySimulator.submit(command.getSagaId(), () -> cancelOrder(command));
+    }
+
+    /**
+     * Cancel the order once the simulated latency, and any execution of it still pending, has passed
+     */
+    private void cancelOrder(CommandMessage command) {
+        BrokerCancelOrderPayload payload = BrokerCancelOrderPayload.from(command);
+        String orderId = payload.getOrderId();
+        String brokerOrderId = payload.getBrokerOrderId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -233,9 +260,6 @@ public class KafkaCommandHandlerService {
                 event.setPayloadValue("note", "Order hadn't been submitted to broker yet, no cancellation needed");
             } else {
                 // Normal cancellation flow for existing broker orders
-                // Simulate processing delay
-                simulateProcessingDelay();
-
                 event.setType("BROKER_ORDER_CANCELLED");
                 event.setSuccess(true);
                 event.setPayloadValue("orderId", orderId);
@@ -277,22 +301,10 @@ public class KafkaCommandHandlerService {
      */
     private void publishEvent(EventMessage event) {
         try {
-            kafkaTemplate.send(brokerEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(brokerEventsTopic, event.getSagaId(), event);
             log.debug("Published event: {} for saga: {}", event.getType(), event.getSagaId());
         } catch (Exception e) {
             log.error("Error publishing event to Kafka", e);
         }
     }
-
-    /**
-     * Simulate processing delay
-     */
-    private void simulateProcessingDelay() {
-        try {
-            // Random delay between 100-500ms
-            Thread.sleep(100 + random.nextInt(400));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,162 @@
+package com.stocktrading.brokerage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulates broker processing latency without holding up the caller.
+ *
+ * Work is handed in with a key and run on a scheduler once a delay sampled from the configured
+ * distribution has passed, so the Kafka listener thread is free again at once. Work of the same
+ * key runs in the order it was submitted, each item's delay starting when the previous one is
+ * done, so an order's cancel never overtakes its execution.
+ *
+ * Distributions ({@code broker.latency.distribution}):
+ * <ul>
+ *   <li>{@code fixed} - always {@code broker.latency.fixed-ms}</li>
+ *   <li>{@code uniform} - between {@code market.simulation.min-processing-time-ms} and
+ *       {@code market.simulation.max-processing-time-ms}</li>
+ *   <li>{@code lognormal} - {@code broker.latency.lognormal.median-ms} scaled by
+ *       e^(N(0, 1) x {@code broker.latency.lognormal.sigma})</li>
+ *   <li>{@code replay} - the millisecond values of {@code broker.latency.replay-file}, one per
+ *       line, in order and over again</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class LatencySimulator {
+
+    private enum Distribution {
+        FIXED, UNIFORM, LOGNORMAL, REPLAY
+    }
+
+    @Value("${broker.latency.distribution:uniform}")
+    private String distributionName;
+
+    @Value("${broker.latency.fixed-ms:250}")
+    private long fixedMs;
+
+    @Value("${market.simulation.min-processing-time-ms:100}")
+    private long minMs;
+
+    @Value("${market.simulation.max-processing-time-ms:500}")
+    private long maxMs;
+
+    @Value("${broker.latency.lognormal.median-ms:200}")
+    private double medianMs;
+
+    @Value("${broker.latency.lognormal.sigma:0.5}")
+    private double sigma;
+
+    @Value("${broker.latency.replay-file:}")
+    private String replayFile;
+
+    @Value("${broker.latency.threads:2}")
+    private int threads;
+
+    private Distribution distribution;
+    private long[] replayedDelays;
+    private final AtomicInteger replayPosition = new AtomicInteger();
+
+    // Last piece of work of each key still pending (key -> its completion)
+    private final Map<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @PostConstruct
+    public void start() {
+        distribution = Distribution.valueOf(distributionName.trim().toUpperCase(Locale.ROOT));
+        if (distribution == Distribution.REPLAY) {
+            replayedDelays = loadReplayFile();
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        scheduler = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "broker-latency-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Simulating broker latency with a {} distribution on {} threads", distribution, threads);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Run the work after a sampled delay, once the earlier work of the same key is done
+     */
+    public void submit(String key, Runnable work) {
+        long delayMs = sampleDelayMs();
+        CompletableFuture<Void> done = tails.compute(key, (k, previous) ->
+                (previous != null ? previous.exceptionally(e -> null) : CompletableFuture.<Void>completedFuture(null))
+                        .thenCompose(ignored -> runAfter(delayMs, work)));
+        done.whenComplete((ignored, e) -> tails.remove(key, done));
+    }
+
+    private long sampleDelayMs() {
+        switch (distribution) {
+            case FIXED:
+                return fixedMs;
+            case LOGNORMAL:
+                return Math.round(medianMs * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+            case REPLAY:
+                return replayedDelays[Math.floorMod(replayPosition.getAndIncrement(), replayedDelays.length)];
+            case UNIFORM:
+            default:
+                return ThreadLocalRandom.current().nextLong(minMs, Math.max(minMs, maxMs) + 1);
+        }
+    }
+
+    /**
+     * Completes when the work has run; work that throws is logged and does not hold up the
+     * work queued behind it
+     */
+    private CompletableFuture<Void> runAfter(long delayMs, Runnable work) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            try {
+                work.run();
+            } catch (Exception e) {
+                log.error("Error in delayed broker work", e);
+            } finally {
+                done.complete(null);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+        return done;
+    }
+
+    private long[] loadReplayFile() {
+        try {
+            long[] delays = Files.readAllLines(Paths.get(replayFile)).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .mapToLong(Long::parseLong)
+                    .toArray();
+            if (delays.length == 0) {
+                throw new IllegalStateException("No latencies in broker latency replay file " + replayFile);
+            }
+            log.info("Loaded {} broker latencies from {}", delays.length, replayFile);
+            return delays;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read broker latency replay file " + replayFile, e);
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.stocktrading.brokerage.service;
 
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.PayloadValues;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Maintains a local cache of market prices that gets updated via Kafka events
+ * Maintains a local cache of market prices that gets updated via Kafka events.
+ * Registered {@link MarketPriceListener}s are told about every update as it arrives.
  */
 @Slf4j
 @Component
@@ -25,6 +29,15 @@ public class MarketPriceCache {
     // Cache of ask prices
     private final Map<String, BigDecimal> askPrices = new ConcurrentHashMap<>();
 
+    private final List<MarketPriceListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Register a listener for price updates
+     */
+    public void addListener(MarketPriceListener listener) {
+        listeners.add(listener);
+    }
+
     /**
      * Get the current market price for a stock symbol
      *
@@ -73,21 +86,23 @@ public class MarketPriceCache {
 
                 if (symbol != null && priceObj != null) {
                     // Convert price to BigDecimal
-                    BigDecimal price = convertToBigDecimal(priceObj);
+                    BigDecimal price = PayloadValues.toDecimal(priceObj);
                     priceCache.put(symbol, price);
 
                     // Update bid/ask prices if available
                     if (bidObj != null) {
-                        bidPrices.put(symbol, convertToBigDecimal(bidObj));
+                        bidPrices.put(symbol, PayloadValues.toDecimal(bidObj));
                     }
 
                     if (askObj != null) {
-                        askPrices.put(symbol, convertToBigDecimal(askObj));
+                        askPrices.put(symbol, PayloadValues.toDecimal(askObj));
                     }
 
                     // Changed from debug to trace to reduce terminal output
                     log.trace("Updated price cache for {}: price={}, bid={}, ask={}",
                             symbol, price, bidPrices.get(symbol), askPrices.get(symbol));
+
+                    notifyListeners(symbol);
                 }
             } catch (Exception e) {
                 log.error("Error processing market price update", e);
@@ -95,20 +110,13 @@ public class MarketPriceCache {
         }
     }
 
-    /**
-     * Helper method to convert different numeric formats to BigDecimal
-     */
-    private BigDecimal convertToBigDecimal(Object value) {
-        if (value instanceof BigDecimal) {
-            return (BigDecimal) value;
-        } else if (value instanceof Double) {
-            return BigDecimal.valueOf((Double) value);
-        } else if (value instanceof Number) {
-            return BigDecimal.valueOf(((Number) value).doubleValue());
-        } else if (value instanceof String) {
-            return new BigDecimal((String) value);
-        } else {
-            throw new IllegalArgumentException("Cannot convert to BigDecimal: " + value);
+    private void notifyListeners(String symbol) {
+        for (MarketPriceListener listener : listeners) {
+            try {
+                listener.onPriceUpdate(symbol);
+            } catch (Exception e) {
+                log.error("Error handling market price update for {}", symbol, e);
+            }
         }
     }
 }
\ No newline at end of file
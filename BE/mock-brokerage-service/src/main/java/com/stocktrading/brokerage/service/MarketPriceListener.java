@@ -0,0 +1,12 @@
+package com.stocktrading.brokerage.service;
+
+/**
+ * Notified by {@link MarketPriceCache} after a symbol's prices have been updated
+ */
+public interface MarketPriceListener {
+
+    /**
+     * Called on the market price consumer thread, once the new prices can be read from the cache
+     */
+    void onPriceUpdate(String symbol);
+}
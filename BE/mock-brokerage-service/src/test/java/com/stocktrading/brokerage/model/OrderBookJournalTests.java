@@ -0,0 +1,222 @@
+package com.stocktrading.brokerage.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderBookJournalTests {
+
+    @TempDir
+    Path dir;
+
+    private final List<OrderBookJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() {
+        opened.forEach(OrderBookJournal::close);
+    }
+
+    @Test
+    void replaysSegmentsWrittenAfterTheSnapshot() throws IOException {
+        Map<String, PendingOrder> book = new LinkedHashMap<>();
+        OrderBookJournal journal = open();
+        assertThat(journal.recover()).isEmpty();
+
+        add(journal, book, order("order-1", "BUY", "150.2500"));
+        add(journal, book, order("order-2", "SELL", "151"));
+        add(journal, book, order("order-3", "BUY", "149.99"));
+        remove(journal, book, OrderBookJournal.Operation.CANCEL, "order-2");
+        journal.snapshot(book.values());
+
+        add(journal, book, order("order-4", "SELL", "152.10"));
+        remove(journal, book, OrderBookJournal.Operation.FILL, "order-1");
+        remove(journal, book, OrderBookJournal.Operation.EXPIRE, "order-3");
+        add(journal, book, order("order-5", "BUY", "148"));
+        journal.close();
+
+        assertThat(files("snapshot-")).hasSize(1);
+        assertThat(recover()).containsExactlyInAnyOrderEntriesOf(book);
+    }
+
+    @Test
+    void stopsReplayAtATornRecord() throws IOException {
+        OrderBookJournal journal = open();
+        journal.recover();
+        PendingOrder kept = order("order-1", "BUY", "100");
+        journal.recordAdded(kept, () -> { });
+        journal.recordAdded(order("order-2", "BUY", "101"), () -> { });
+        journal.close();
+
+        // Flip the last byte of the second record, as if the process died while writing it
+        Path segment = files("journal-").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(header, 0);
+            long second = 2L * Integer.BYTES + header.getInt(0);
+            header.clear();
+            channel.read(header, second);
+            long lastByte = second + 2L * Integer.BYTES + header.getInt(0) - 1;
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, lastByte);
+            value.put(0, (byte) ~value.get(0));
+            channel.write(value.rewind(), lastByte);
+        }
+
+        OrderBookJournal reopened = open();
+        assertThat(reopened.recover()).containsExactly(kept);
+
+        // Appends continue in a new segment and are replayed after the torn one
+        PendingOrder later = order("order-3", "SELL", "102");
+        reopened.recordAdded(later, () -> { });
+        reopened.close();
+
+        assertThat(recover()).containsOnlyKeys("order-1", "order-3").containsEntry("order-3", later);
+    }
+
+    @Test
+    void recoversFromACrashBetweenSnapshotAndSegmentDeletion() throws IOException {
+        Map<String, PendingOrder> book = new LinkedHashMap<>();
+        OrderBookJournal journal = open();
+        journal.recover();
+        add(journal, book, order("order-1", "BUY", "100"));
+        add(journal, book, order("order-2", "BUY", "101"));
+        remove(journal, book, OrderBookJournal.Operation.CANCEL, "order-1");
+
+        // Keep what the snapshot is about to delete
+        Map<Path, byte[]> covered = new HashMap<>();
+        for (Path segment : files("journal-")) {
+            covered.put(segment, Files.readAllBytes(segment));
+        }
+        journal.snapshot(book.values());
+        add(journal, book, order("order-3", "SELL", "102"));
+        journal.close();
+
+        // Put back the covered segments, plus the temporary file of an interrupted later snapshot
+        for (Map.Entry<Path, byte[]> segment : covered.entrySet()) {
+            Files.write(segment.getKey(), segment.getValue());
+        }
+        Path interrupted = dir.resolve(String.format("snapshot-%016d.bin.tmp", 99));
+        Files.write(interrupted, new byte[]{1, 2, 3});
+
+        OrderBookJournal reopened = open();
+        assertThat(toMap(reopened.recover())).containsExactlyInAnyOrderEntriesOf(book);
+        assertThat(interrupted).doesNotExist();
+
+        // The next snapshot drops the leftover segments
+        reopened.snapshot(book.values());
+        reopened.close();
+        assertThat(files("journal-")).noneMatch(covered::containsKey);
+        assertThat(recover()).containsExactlyInAnyOrderEntriesOf(book);
+    }
+
+    @Test
+    void removalJournaledBeforeItsAddKeepsTheOrderOut() throws IOException {
+        Map<String, PendingOrder> book = new LinkedHashMap<>();
+        OrderBookJournal journal = open();
+        journal.recover();
+        add(journal, book, order("order-1", "BUY", "100"));
+        journal.snapshot(book.values());
+
+        // Filled between going into the book and its ADD being written
+        journal.recordRemoved(OrderBookJournal.Operation.FILL, "order-2");
+        journal.recordAdded(order("order-2", "SELL", "101"), () -> { });
+        add(journal, book, order("order-3", "BUY", "102"));
+        journal.close();
+
+        assertThat(recover()).containsExactlyInAnyOrderEntriesOf(book).doesNotContainKey("order-2");
+    }
+
+    @Test
+    void rotatesFullSegments() throws IOException {
+        Map<String, PendingOrder> book = new LinkedHashMap<>();
+        OrderBookJournal journal = open();
+        journal.recover();
+        // Records are about 130 bytes, so this fills several 1 MB segments
+        for (int i = 0; i < 20_000; i++) {
+            add(journal, book, order("order-" + i, i % 2 == 0 ? "BUY" : "SELL", "100." + i));
+            if (i % 3 == 0) {
+                remove(journal, book, OrderBookJournal.Operation.CANCEL, "order-" + i);
+            }
+        }
+        journal.close();
+
+        assertThat(files("journal-")).hasSizeGreaterThan(1);
+        assertThat(recover()).containsExactlyInAnyOrderEntriesOf(book);
+    }
+
+    private OrderBookJournal open() {
+        OrderBookJournal journal = new OrderBookJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentSizeMb", 1);
+        opened.add(journal);
+        return journal;
+    }
+
+    private Map<String, PendingOrder> recover() {
+        OrderBookJournal journal = open();
+        Map<String, PendingOrder> recovered = toMap(journal.recover());
+        journal.close();
+        return recovered;
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> listing = Files.list(dir)) {
+            return listing.filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void add(OrderBookJournal journal, Map<String, PendingOrder> book, PendingOrder order) {
+        journal.recordAdded(order, () -> book.put(order.getOrderId(), order));
+    }
+
+    private static void remove(OrderBookJournal journal, Map<String, PendingOrder> book,
+                               OrderBookJournal.Operation operation, String orderId) {
+        book.remove(orderId);
+        journal.recordRemoved(operation, orderId);
+    }
+
+    private static Map<String, PendingOrder> toMap(Collection<PendingOrder> orders) {
+        Map<String, PendingOrder> map = new LinkedHashMap<>();
+        orders.forEach(order -> map.put(order.getOrderId(), order));
+        return map;
+    }
+
+    private static PendingOrder order(String orderId, String side, String limitPrice) {
+        Instant now = Instant.now();
+        return PendingOrder.builder()
+                .orderId(orderId)
+                .stockSymbol("AAPL")
+                .orderType("LIMIT")
+                .side(side)
+                .quantity(10)
+                .limitPrice(new BigDecimal(limitPrice))
+                .timeInForce("GTC")
+                .createdAt(now)
+                .expirationTime(now.plusSeconds(3600))
+                .sagaId("saga-" + orderId)
+                .build();
+    }
+}
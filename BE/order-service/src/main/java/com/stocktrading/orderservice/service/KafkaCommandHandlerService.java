@@ -2,6 +2,13 @@ package com.stocktrading.orderservice.service;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.command.OrderCancelPayload;
+import com.project.kafkamessagemodels.payload.command.OrderCreatePayload;
+import com.project.kafkamessagemodels.payload.command.OrderUpdateCompletedPayload;
+import com.project.kafkamessagemodels.payload.command.OrderUpdateExecutedPayload;
+import com.project.kafkamessagemodels.payload.command.OrderUpdateValidatedPayload;
+import com.project.kafkamessagemodels.payload.event.OrderCreatedPayload;
+import com.project.kafkaplatform.KafkaPublisher;
 import com.stocktrading.orderservice.model.Order;
 import com.stocktrading.orderservice.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,7 +16,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -23,7 +29,7 @@ import java.util.UUID;
 public class KafkaCommandHandlerService {
 
     private final OrderRepository orderRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaPublisher kafkaPublisher;
 
     //value
     @Value("${kafka.topics.order-events}")
@@ -35,28 +41,15 @@ public class KafkaCommandHandlerService {
     public void handleCreateOrder(CommandMessage command) {
         log.info("Handling ORDER_CREATE command for saga: {}", command.getSagaId());
 
-        String userId = command.getPayloadValue("userId");
-        String accountId = command.getPayloadValue("accountId");
-        String stockSymbol = command.getPayloadValue("stockSymbol");
-        String orderType = command.getPayloadValue("orderType");
-        Integer quantity = command.getPayloadValue("quantity");
-
-        // Safe conversion for limitPrice - handle various number formats
-        BigDecimal limitPrice = null;
-        Object limitPriceObj = command.getPayloadValue("limitPrice");
-        if (limitPriceObj != null) {
-            if (limitPriceObj instanceof BigDecimal) {
-                limitPrice = (BigDecimal) limitPriceObj;
-            } else if (limitPriceObj instanceof Double) {
-                limitPrice = BigDecimal.valueOf((Double) limitPriceObj);
-            } else if (limitPriceObj instanceof Number) {
-                limitPrice = BigDecimal.valueOf(((Number) limitPriceObj).doubleValue());
-            } else if (limitPriceObj instanceof String) {
-                limitPrice = new BigDecimal((String) limitPriceObj);
-            }
-        }
+        OrderCreatePayload payload = OrderCreatePayload.from(command);
+        String userId = payload.getUserId();
+        String accountId = payload.getAccountId();
+        String stockSymbol = payload.getStockSymbol();
+        String orderType = payload.getOrderType();
+        Integer quantity = payload.getQuantity();
 
-        String timeInForce = command.getPayloadValue("timeInForce");
+        BigDecimal limitPrice = payload.getLimitPrice();
+        String timeInForce = payload.getTimeInForce();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -90,9 +83,11 @@ public class KafkaCommandHandlerService {
             // Set success response
             event.setType("ORDER_CREATED");
             event.setSuccess(true);
-            event.setPayloadValue("orderId", savedOrder.getId());
-            event.setPayloadValue("status", savedOrder.getStatus().name());
-            event.setPayloadValue("createdAt", savedOrder.getCreatedAt().toString());
+            OrderCreatedPayload.builder()
+                    .orderId(savedOrder.getId())
+                    .status(savedOrder.getStatus().name())
+                    .createdAt(savedOrder.getCreatedAt())
+                    .build().applyTo(event);
 
             log.info("Order created successfully with ID: {}", savedOrder.getId());
 
@@ -105,7 +100,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(orderEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(orderEventsTopic, command.getSagaId(), event);
             log.info("Sent ORDER_CREATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -118,10 +113,10 @@ public class KafkaCommandHandlerService {
     public void handleUpdateOrderValidated(CommandMessage command) {
         log.info("Handling ORDER_UPDATE_VALIDATED command for saga: {}", command.getSagaId());
 
-        String orderId = command.getPayloadValue("orderId");
-        String reservationId = command.getPayloadValue("reservationId");
-        Object priceObj = command.getPayloadValue("price");
-        BigDecimal price = convertToBigDecimal(priceObj);
+        OrderUpdateValidatedPayload payload = OrderUpdateValidatedPayload.from(command);
+        String orderId = payload.getOrderId();
+        String reservationId = payload.getReservationId();
+        BigDecimal price = payload.getPrice();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -180,7 +175,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(orderEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(orderEventsTopic, command.getSagaId(), event);
             log.info("Sent ORDER_VALIDATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -197,7 +192,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(orderEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(orderEventsTopic, event.getSagaId(), event);
             log.info("Sent ORDER_CREATION_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -215,7 +210,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(orderEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(orderEventsTopic, event.getSagaId(), event);
             log.info("Sent ORDER_VALIDATION_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -223,33 +218,17 @@ public class KafkaCommandHandlerService {
         }
     }
 
-    /**
-     * Helper method to safely convert any numeric type to BigDecimal
-     */
-    private BigDecimal convertToBigDecimal(Object amountObj) {
-        if (amountObj instanceof BigDecimal) {
-            return (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            return BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            return new BigDecimal((String) amountObj);
-        } else if (amountObj == null) {
-            return null;
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-    }
-
     /**
      * Handle ORDER_UPDATE_EXECUTED command
      */
     public void handleUpdateOrderExecuted(CommandMessage command) {
         log.info("Handling ORDER_UPDATE_EXECUTED command for saga: {}", command.getSagaId());
 
-        String orderId = command.getPayloadValue("orderId");
-        BigDecimal executionPrice = convertToBigDecimal(command.getPayloadValue("executionPrice"));
-        Integer executedQuantity = command.getPayloadValue("executedQuantity");
-        String brokerOrderId = command.getPayloadValue("brokerOrderId");
+        OrderUpdateExecutedPayload payload = OrderUpdateExecutedPayload.from(command);
+        String orderId = payload.getOrderId();
+        BigDecimal executionPrice = payload.getExecutionPrice();
+        Integer executedQuantity = payload.getExecutedQuantity();
+        String brokerOrderId = payload.getBrokerOrderId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -310,7 +289,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(orderEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(orderEventsTopic, command.getSagaId(), event);
             log.info("Sent ORDER_EXECUTED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -327,7 +306,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(orderEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(orderEventsTopic, event.getSagaId(), event);
             log.info("Sent ORDER_EXECUTION_UPDATE_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -341,8 +320,9 @@ public class KafkaCommandHandlerService {
     public void handleCancelOrder(CommandMessage command) {
         log.info("Handling ORDER_CANCEL command for saga: {}", command.getSagaId());
 
-        String orderId = command.getPayloadValue("orderId");
-        String reason = command.getPayloadValue("reason");
+        OrderCancelPayload payload = OrderCancelPayload.from(command);
+        String orderId = payload.getOrderId();
+        String reason = payload.getReason();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -364,7 +344,7 @@ public class KafkaCommandHandlerService {
                 event.setPayloadValue("status", "NOT_FOUND");
                 event.setPayloadValue("note", "Order not found, assuming already cancelled");
 
-                kafkaTemplate.send(orderEventsTopic, command.getSagaId(), event);
+                kafkaPublisher.publish(orderEventsTopic, command.getSagaId(), event);
                 return;
             }
 
@@ -381,7 +361,7 @@ public class KafkaCommandHandlerService {
                 event.setPayloadValue("status", order.getStatus().name());
                 event.setPayloadValue("note", "Order already in terminal state: " + order.getStatus());
 
-                kafkaTemplate.send(orderEventsTopic, command.getSagaId(), event);
+                kafkaPublisher.publish(orderEventsTopic, command.getSagaId(), event);
                 return;
             }
 
@@ -418,7 +398,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(orderEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(orderEventsTopic, command.getSagaId(), event);
             log.info("Sent order cancellation response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -431,7 +411,8 @@ public class KafkaCommandHandlerService {
     public void handleUpdateOrderCompleted(CommandMessage command) {
         log.info("Handling ORDER_UPDATE_COMPLETED command for saga: {}", command.getSagaId());
 
-        String orderId = command.getPayloadValue("orderId");
+        OrderUpdateCompletedPayload payload = OrderUpdateCompletedPayload.from(command);
+        String orderId = payload.getOrderId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -487,7 +468,7 @@ public class KafkaCommandHandlerService {
 
        // Send the response event
        try {
-           kafkaTemplate.send(orderEventsTopic, command.getSagaId(), event);
+           kafkaPublisher.publish(orderEventsTopic, command.getSagaId(), event);
            log.info("Sent ORDER_COMPLETED response for saga: {}", command.getSagaId());
        } catch (Exception e) {
            log.error("Error sending event", e);
@@ -504,7 +485,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(orderEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(orderEventsTopic, event.getSagaId(), event);
             log.info("Sent ORDER_COMPLETION_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
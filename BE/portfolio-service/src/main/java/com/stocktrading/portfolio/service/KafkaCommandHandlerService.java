@@ -2,13 +2,15 @@ package com.stocktrading.portfolio.service;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.command.RemovePositionsPayload;
+import com.project.kafkamessagemodels.payload.command.UpdatePositionsPayload;
+import com.project.kafkaplatform.KafkaPublisher;
 import com.stocktrading.portfolio.model.Portfolio;
 import com.stocktrading.portfolio.model.Position;
 import com.stocktrading.portfolio.repository.PortfolioRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -22,7 +24,7 @@ import java.util.UUID;
 public class KafkaCommandHandlerService {
 
     private final PortfolioRepository portfolioRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaPublisher kafkaPublisher;
 
     @Value("${kafka.topics.portfolio-events}")
     private String portfolioEventsTopic;
@@ -33,13 +35,13 @@ public class KafkaCommandHandlerService {
     public void handleUpdatePositions(CommandMessage command) {
         log.info("Handling PORTFOLIO_UPDATE_POSITIONS command for saga: {}", command.getSagaId());
 
-        String userId = command.getPayloadValue("userId");
-        String accountId = command.getPayloadValue("accountId");
-        String stockSymbol = command.getPayloadValue("stockSymbol");
-        Integer quantity = command.getPayloadValue("quantity");
-        Object priceObj = command.getPayloadValue("price");
-        BigDecimal price = convertToBigDecimal(priceObj);
-        String orderId = command.getPayloadValue("orderId");
+        UpdatePositionsPayload payload = UpdatePositionsPayload.from(command);
+        String userId = payload.getUserId();
+        String accountId = payload.getAccountId();
+        String stockSymbol = payload.getStockSymbol();
+        Integer quantity = payload.getQuantity();
+        BigDecimal price = payload.getPrice();
+        String orderId = payload.getOrderId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -94,7 +96,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(portfolioEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(portfolioEventsTopic, command.getSagaId(), event);
             log.info("Sent POSITIONS_UPDATED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -107,11 +109,12 @@ public class KafkaCommandHandlerService {
     public void handleRemovePositions(CommandMessage command) {
         log.info("Handling PORTFOLIO_REMOVE_POSITIONS command for saga: {}", command.getSagaId());
 
-        String userId = command.getPayloadValue("userId");
-        String accountId = command.getPayloadValue("accountId");
-        String stockSymbol = command.getPayloadValue("stockSymbol");
-        Integer quantity = command.getPayloadValue("quantity");
-        String orderId = command.getPayloadValue("orderId");
+        RemovePositionsPayload payload = RemovePositionsPayload.from(command);
+        String userId = payload.getUserId();
+        String accountId = payload.getAccountId();
+        String stockSymbol = payload.getStockSymbol();
+        Integer quantity = payload.getQuantity();
+        String orderId = payload.getOrderId();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -137,7 +140,7 @@ public class KafkaCommandHandlerService {
                 event.setPayloadValue("orderId", orderId);
                 event.setPayloadValue("status", "NO_PORTFOLIO");
 
-                kafkaTemplate.send(portfolioEventsTopic, command.getSagaId(), event);
+                kafkaPublisher.publish(portfolioEventsTopic, command.getSagaId(), event);
                 return;
             }
 
@@ -175,7 +178,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(portfolioEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(portfolioEventsTopic, command.getSagaId(), event);
             log.info("Sent positions removal response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event", e);
@@ -192,7 +195,7 @@ public class KafkaCommandHandlerService {
         event.setErrorMessage(errorMessage);
 
         try {
-            kafkaTemplate.send(portfolioEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(portfolioEventsTopic, event.getSagaId(), event);
             log.info("Sent POSITIONS_UPDATE_FAILED response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {
@@ -224,21 +227,4 @@ public class KafkaCommandHandlerService {
 
         return portfolioRepository.save(newPortfolio);
     }
-
-    /**
-     * Helper method to safely convert any numeric type to BigDecimal
-     */
-    private BigDecimal convertToBigDecimal(Object amountObj) {
-        if (amountObj instanceof BigDecimal) {
-            return (BigDecimal) amountObj;
-        } else if (amountObj instanceof Number) {
-            return BigDecimal.valueOf(((Number) amountObj).doubleValue());
-        } else if (amountObj instanceof String) {
-            return new BigDecimal((String) amountObj);
-        } else if (amountObj == null) {
-            return null;
-        } else {
-            throw new IllegalArgumentException("Amount is not a valid number: " + amountObj);
-        }
-    }
 }
\ No newline at end of file
@@ -2,10 +2,17 @@ package com.stocktrading.kafka.config;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkaplatform.KafkaPlatform;
+import com.stocktrading.kafka.service.SagaPartitionOwnership;
+import lombok.RequiredArgsConstructor;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.RangeAssignor;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,18 +23,23 @@ import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
-import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
-import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.util.backoff.ExponentialBackOff;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @EnableKafka
 @Configuration
+@RequiredArgsConstructor
 public class KafkaConfig {
 
+    public static final String SAGA_EVENTS_LISTENER_ID = "saga-events";
+
+    private final KafkaPlatform kafkaPlatform;
+    private final SagaPartitionOwnership sagaPartitionOwnership;
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
@@ -95,6 +107,32 @@ public class KafkaConfig {
     @Value("${kafka.topics.dlq:saga.dlq}")
     private String dlqTopic;
 
+    // Non-blocking retry tiers of the saga events, in order
+    @Value("${kafka.topics.saga-retry:saga.events.retry-1s,saga.events.retry-10s,saga.events.retry-1m}")
+    private List<String> sagaRetryTopics;
+
+    // Saga topics are keyed by sagaId; retry and dead-letter topics keep the partition count
+    @Value("${saga.state-store.partitions:3}")
+    private int sagaPartitions;
+
+    // Command producer tuned for throughput: the outbox relay sends whole batches at once
+    @Value("${saga.outbox.producer.linger-ms:20}")
+    private int producerLingerMs;
+
+    @Value("${saga.outbox.producer.batch-size:131072}")
+    private int producerBatchSize;
+
+    @Value("${saga.outbox.producer.compression-type:lz4}")
+    private String producerCompressionType;
+
+    // Upper bound on the events handled (and persisted) as one batch
+    @Value("${saga.batch.max-poll-records:500}")
+    private int maxPollRecords;
+
+    // Consumers of the multiplexed event listener; parallelism comes from the worker lanes
+    @Value("${saga.dispatch.consumers:1}")
+    private int eventConsumers;
+
     // Kafka Admin Configuration
     @Bean
     public KafkaAdmin kafkaAdmin() {
@@ -187,7 +225,14 @@ public class KafkaConfig {
 
     @Bean
     public NewTopic dlqTopic() {
-        return new NewTopic(dlqTopic, 1, (short) 1);
+        return new NewTopic(dlqTopic, sagaPartitions, (short) 1);
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics sagaRetryTopics() {
+        return new KafkaAdmin.NewTopics(sagaRetryTopics.stream()
+                .map(topic -> new NewTopic(topic, sagaPartitions, (short) 1))
+                .toArray(NewTopic[]::new));
     }
 
     @Bean
@@ -203,126 +248,94 @@ public class KafkaConfig {
     // Producer Configuration for CommandMessage
     @Bean
     public ProducerFactory<String, CommandMessage> commandProducerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
-        // Add type information to headers
-        configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, true);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put(ProducerConfig.LINGER_MS_CONFIG, producerLingerMs);
+        overrides.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchSize);
+        overrides.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, producerCompressionType);
+        return kafkaPlatform.producerFactory(overrides);
     }
 
     @Bean
     public KafkaTemplate<String, CommandMessage> commandKafkaTemplate() {
-        return new KafkaTemplate<>(commandProducerFactory());
+        return kafkaPlatform.kafkaTemplate(commandProducerFactory());
     }
 
     // Producer for EventMessage
     @Bean
     public ProducerFactory<String, EventMessage> eventProducerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        // Add type info headers
-        configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, true);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        return kafkaPlatform.producerFactory();
     }
 
     @Bean
     public KafkaTemplate<String, EventMessage> eventKafkaTemplate() {
-        return new KafkaTemplate<>(eventProducerFactory());
+        return kafkaPlatform.kafkaTemplate(eventProducerFactory());
     }
 
-    // Consumer Configuration for EventMessage - Deposit Saga
+    // Raw producer for dead letters that could not be deserialized and for DLQ replays
     @Bean
-    public ConsumerFactory<String, EventMessage> depositEventConsumerFactory() {
-        return createEventConsumerFactory(defaultGroupId + "-deposit");
+    public ProducerFactory<String, byte[]> deadLetterProducerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), new ByteArraySerializer());
     }
 
-    // Consumer Configuration for EventMessage - Order Buy Saga
     @Bean
-    public ConsumerFactory<String, EventMessage> orderBuyEventConsumerFactory() {
-        return createEventConsumerFactory(defaultGroupId + "-order-buy");
+    public KafkaTemplate<String, byte[]> deadLetterKafkaTemplate() {
+        return new KafkaTemplate<>(deadLetterProducerFactory());
     }
 
-    // Helper method to create event consumer factory
-    private ConsumerFactory<String, EventMessage> createEventConsumerFactory(String groupId) {
+    // Reads the DLQ as stored, for inspection and replay; offsets are only committed by replays
+    @Bean
+    public ConsumerFactory<String, byte[]> deadLetterConsumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class.getName());
-        // Set trusted packages
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
-        // Use correct package for model class
-        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.project.kafkamessagemodels.model.EventMessage");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, defaultGroupId + "-dlq-replay");
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        // Add type info for deserialization
-        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, true);
-        props.put(JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false);
-
-        return new DefaultKafkaConsumerFactory<>(props);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer());
     }
 
-    // Main container factory for events - used by default for all event listeners
+    // Consumer Configuration for EventMessage
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, EventMessage> eventKafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, EventMessage> factory = new ConcurrentKafkaListenerContainerFactory<>();
-        factory.setConsumerFactory(depositEventConsumerFactory());
-        factory.setConcurrency(3);
-        factory.getContainerProperties().setAckMode(org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL_IMMEDIATE);
-
-        // Configure error handling with dead letter topic
-        DefaultErrorHandler errorHandler = new DefaultErrorHandler(
-                new DeadLetterPublishingRecoverer(eventKafkaTemplate(), (rec, ex) -> new org.apache.kafka.common.TopicPartition(dlqTopic, 0)),
-                new ExponentialBackOff(1000, 2)
-        );
-        factory.setCommonErrorHandler(errorHandler);
-
-        return factory;
+    public ConsumerFactory<String, EventMessage> eventConsumerFactory() {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.project.kafkamessagemodels.model.EventMessage");
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        // Range assignment gives a member the same partition number of every saga topic
+        overrides.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, RangeAssignor.class.getName());
+        return kafkaPlatform.consumerFactory(defaultGroupId, overrides);
     }
 
-    // Order Buy saga specific container factory
+    // Container factory for the multiplexed saga event listener and the DLQ listener
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, EventMessage> orderBuyEventKafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, EventMessage> eventKafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, EventMessage> factory = new ConcurrentKafkaListenerContainerFactory<>();
-        factory.setConsumerFactory(orderBuyEventConsumerFactory());
-        factory.setConcurrency(3);
+        factory.setConsumerFactory(eventConsumerFactory());
+        factory.setConcurrency(eventConsumers);
+        // Listeners receive a whole poll and acknowledge it once it has been persisted
+        factory.setBatchListener(true);
         factory.getContainerProperties().setAckMode(org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL_IMMEDIATE);
 
-        // Configure error handling with dead letter topic
+        // Failing sagas are moved to the retry topics by the batch processor, so only failures of
+        // a whole batch (the database or Kafka being unavailable) get here. Those are retried in
+        // place, since every saga of the batch would fail the same way.
+        ExponentialBackOff backOff = new ExponentialBackOff(1000, 2);
+        backOff.setMaxInterval(30000);
         DefaultErrorHandler errorHandler = new DefaultErrorHandler(
-                new DeadLetterPublishingRecoverer(eventKafkaTemplate(), (rec, ex) -> new org.apache.kafka.common.TopicPartition(dlqTopic, 0)),
-                new ExponentialBackOff(1000, 2)
+                new DeadLetterPublishingRecoverer(eventKafkaTemplate(), (rec, ex) -> new TopicPartition(dlqTopic, -1)),
+                backOff
         );
         factory.setCommonErrorHandler(errorHandler);
 
-        return factory;
-    }
-
-    // Generic error handler bean
-    @Bean
-    public DefaultErrorHandler kafkaErrorHandler() {
-        DefaultErrorHandler handler = new DefaultErrorHandler(
-                (record, exception) -> {
-                    System.err.println("Error processing record: " + exception.getMessage());
-                    exception.printStackTrace();
-                },
-                new ExponentialBackOff(1000, 2) // Retry with exponential backoff
-        );
+        // The saga event consumers decide which saga partitions this instance owns
+        factory.setContainerCustomizer(container -> {
+            if (SAGA_EVENTS_LISTENER_ID.equals(container.getListenerId())) {
+                container.getContainerProperties().setConsumerRebalanceListener(sagaPartitionOwnership);
+            }
+        });
 
-        // Add non-retryable exceptions
-        handler.addNotRetryableExceptions(
-                org.apache.kafka.common.errors.SerializationException.class,
-                org.springframework.kafka.support.serializer.DeserializationException.class
-        );
-
-        return handler;
+        return factory;
     }
-}
\ No newline at end of file
+}
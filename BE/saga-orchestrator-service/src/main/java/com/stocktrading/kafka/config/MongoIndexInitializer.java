@@ -0,0 +1,111 @@
+package com.stocktrading.kafka.config;
+
+import com.stocktrading.kafka.model.DepositSagaState;
+import com.stocktrading.kafka.model.OrderBuySagaState;
+import com.stocktrading.kafka.model.OutboxMessage;
+import com.stocktrading.kafka.model.ProcessedMessage;
+import com.stocktrading.kafka.model.WithdrawalSagaState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Creates the indexes the orchestrator's queries rely on.
+ *
+ * Automatic index creation is disabled in Spring Data MongoDB, so the {@code @Indexed}
+ * annotations on the documents are not applied. Index creation runs off the startup
+ * thread so an unreachable database does not delay the application becoming ready.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexInitializer {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${saga.idempotency.retention-days:14}")
+    private int idempotencyRetentionDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread thread = new Thread(this::ensureIndexes, "mongo-index-initializer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void ensureIndexes() {
+        int failed = 0;
+
+        // Processed messages expire through a TTL index instead of a scheduled bulk delete
+        failed += ensureIndex(ProcessedMessage.class, new Index()
+                .on("processedAt", Sort.Direction.ASC)
+                .named("processedAt_ttl")
+                .expire(Duration.ofDays(idempotencyRetentionDays)));
+        failed += ensureIndex(ProcessedMessage.class, new Index()
+                .on("sagaId", Sort.Direction.ASC)
+                .on("stepId", Sort.Direction.ASC)
+                .named("sagaId_stepId"));
+
+        // Outbox relay polls for due rows of its own partitions in creation order
+        failed += ensureIndex(OutboxMessage.class, new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("partition", Sort.Direction.ASC)
+                .on("nextAttemptAt", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.ASC)
+                .named("status_partition_nextAttemptAt_createdAt"));
+
+        // Saga listings page through these with a (sort field, sagaId) cursor; the status one
+        // also serves the timeout and deadline rebuild queries
+        for (Class<?> sagaType : List.of(DepositSagaState.class, WithdrawalSagaState.class, OrderBuySagaState.class)) {
+            failed += ensureIndex(sagaType, new Index()
+                    .on("status", Sort.Direction.ASC)
+                    .on("currentStepStartTime", Sort.Direction.ASC)
+                    .on("sagaId", Sort.Direction.ASC)
+                    .named("status_currentStepStartTime_sagaId"));
+            failed += ensureIndex(sagaType, new Index()
+                    .on("userId", Sort.Direction.ASC)
+                    .on("startTime", Sort.Direction.ASC)
+                    .on("sagaId", Sort.Direction.ASC)
+                    .named("userId_startTime_sagaId"));
+
+            // The archiver pages through finished sagas past the retention window
+            failed += ensureIndex(sagaType, new Index()
+                    .on("status", Sort.Direction.ASC)
+                    .on("endTime", Sort.Direction.ASC)
+                    .on("sagaId", Sort.Direction.ASC)
+                    .named("status_endTime_sagaId"));
+        }
+
+        if (failed == 0) {
+            log.info("MongoDB indexes verified");
+        } else {
+            log.warn("MongoDB indexes verified, {} could not be created", failed);
+        }
+    }
+
+    /**
+     * Create one index; a failure is logged and does not keep the other indexes from being created
+     *
+     * @return 1 if the index could not be created, 0 otherwise
+     */
+    private int ensureIndex(Class<?> documentType, Index index) {
+        String collection = mongoTemplate.getCollectionName(documentType);
+        try {
+            mongoTemplate.indexOps(collection).ensureIndex(index);
+            return 0;
+        } catch (Exception e) {
+            log.error("Failed to create MongoDB index {} on {}",
+                    index.getIndexOptions().getString("name"), collection, e);
+            return 1;
+        }
+    }
+}
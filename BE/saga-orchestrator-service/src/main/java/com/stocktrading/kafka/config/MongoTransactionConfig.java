@@ -0,0 +1,21 @@
+package com.stocktrading.kafka.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+/**
+ * Multi-document transactions, used to write saga state and its outbox rows atomically.
+ * Requires a replica set; disable with saga.outbox.transactional=false on a standalone server.
+ */
+@Configuration
+@ConditionalOnProperty(name = "saga.outbox.transactional", havingValue = "true", matchIfMissing = true)
+public class MongoTransactionConfig {
+
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new MongoTransactionManager(databaseFactory);
+    }
+}
@@ -0,0 +1,22 @@
+package com.stocktrading.kafka.config;
+
+import com.stocktrading.kafka.utils.StripedExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Worker lanes the consumed saga events are dispatched to
+ */
+@Configuration
+public class SagaEventDispatchConfig {
+
+    // Events of one saga always share a lane; unrelated sagas are handled in parallel
+    @Value("${saga.dispatch.stripes:16}")
+    private int stripes;
+
+    @Bean(destroyMethod = "shutdown")
+    public StripedExecutor sagaEventExecutor() {
+        return new StripedExecutor(stripes, "saga-worker-");
+    }
+}
@@ -0,0 +1,42 @@
+package com.stocktrading.kafka.config;
+
+import com.stocktrading.kafka.model.DepositSagaState;
+import com.stocktrading.kafka.model.OrderBuySagaState;
+import com.stocktrading.kafka.model.WithdrawalSagaState;
+import com.stocktrading.kafka.model.enums.SagaType;
+import com.stocktrading.kafka.service.SagaOutbox;
+import com.stocktrading.kafka.service.SagaPartitionOwnership;
+import com.stocktrading.kafka.service.SagaStateStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * Hot-state stores for the saga types served from memory
+ */
+@Configuration
+public class SagaStateStoreConfig {
+
+    @Value("${saga.state-store.idle-eviction-ms:600000}")
+    private long idleEvictionMs;
+
+    @Bean
+    public SagaStateStore<OrderBuySagaState> orderBuySagaStateStore(MongoTemplate mongoTemplate, SagaOutbox sagaOutbox,
+            SagaPartitionOwnership sagaPartitionOwnership) {
+        return new SagaStateStore<>(OrderBuySagaState.class, SagaType.ORDER_BUY, "id", mongoTemplate, sagaOutbox, sagaPartitionOwnership, idleEvictionMs);
+    }
+
+    @Bean
+    public SagaStateStore<DepositSagaState> depositSagaStateStore(MongoTemplate mongoTemplate, SagaOutbox sagaOutbox,
+            SagaPartitionOwnership sagaPartitionOwnership) {
+        return new SagaStateStore<>(DepositSagaState.class, SagaType.DEPOSIT, "id", mongoTemplate, sagaOutbox, sagaPartitionOwnership, idleEvictionMs);
+    }
+
+    // Older withdrawal documents carry a generated _id, so they are keyed by the sagaId field
+    @Bean
+    public SagaStateStore<WithdrawalSagaState> withdrawalSagaStateStore(MongoTemplate mongoTemplate, SagaOutbox sagaOutbox,
+            SagaPartitionOwnership sagaPartitionOwnership) {
+        return new SagaStateStore<>(WithdrawalSagaState.class, SagaType.WITHDRAWAL, "sagaId", mongoTemplate, sagaOutbox, sagaPartitionOwnership, idleEvictionMs);
+    }
+}
@@ -0,0 +1,48 @@
+package com.stocktrading.kafka.controller;
+
+import com.stocktrading.kafka.dto.DeadLetterDto;
+import com.stocktrading.kafka.dto.DlqReplayResponse;
+import com.stocktrading.kafka.dto.SagaListResponse;
+import com.stocktrading.kafka.service.DeadLetterReplayService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for inspecting and replaying the saga DLQ
+ */
+@Slf4j
+@RestController
+@RequestMapping("sagas/api/v1/dlq")
+@RequiredArgsConstructor
+public class DeadLetterController {
+
+    private final DeadLetterReplayService deadLetterReplayService;
+
+    /**
+     * Get the dead letters not replayed yet
+     */
+    @GetMapping
+    public ResponseEntity<SagaListResponse<DeadLetterDto>> getDeadLetters(
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("Received request to get dead letters");
+
+        List<DeadLetterDto> deadLetters = deadLetterReplayService.peek(Math.max(1, limit));
+        return ResponseEntity.ok(new SagaListResponse<>(deadLetters, deadLetters.size(), null));
+    }
+
+    /**
+     * Replay dead letters to their original topics, all of them or only one saga's
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<DlqReplayResponse> replay(
+            @RequestParam(required = false) String sagaId,
+            @RequestParam(defaultValue = "100") int limit) {
+        log.info("Received request to replay dead letters{}", sagaId != null ? " of saga " + sagaId : "");
+
+        return ResponseEntity.ok(deadLetterReplayService.replay(sagaId, Math.max(1, limit)));
+    }
+}
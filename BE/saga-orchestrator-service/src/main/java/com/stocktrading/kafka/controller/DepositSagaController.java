@@ -3,14 +3,20 @@ package com.stocktrading.kafka.controller;
 
 import com.stocktrading.kafka.dto.*;
 import com.stocktrading.kafka.model.DepositSagaState;
+import com.stocktrading.kafka.model.SagaPage;
 import com.stocktrading.kafka.service.DepositSagaService;
+import com.stocktrading.kafka.service.SagaUpdateStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -25,6 +31,7 @@ import java.util.stream.Collectors;
 public class DepositSagaController {
     
     private final DepositSagaService depositSagaService;
+    private final SagaUpdateStream sagaUpdateStream;
 
     /**
      * Start a new deposit saga
@@ -60,19 +67,58 @@ public class DepositSagaController {
     }
     
     /**
-     * Get all active sagas
+     * Stream a saga's state as server-sent events, from its current state until it finishes
+     */
+    @GetMapping(path = "/{sagaId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSaga(@PathVariable String sagaId) {
+        log.info("Received request to stream deposit saga: {}", sagaId);
+
+        return sagaUpdateStream.stream(sagaId, depositSagaService::findById, this::mapToDepositDto)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Wait for a saga to finish: 200 with the final state, or 202 with the latest state if it
+     * is still running when the timeout passes
+     */
+    @GetMapping("/{sagaId}/await")
+    public DeferredResult<ResponseEntity<DepositSagaDto>> awaitSaga(
+            @PathVariable String sagaId,
+            @RequestParam(defaultValue = "30000") long timeoutMs) {
+        log.info("Received request to await deposit saga: {}", sagaId);
+
+        return sagaUpdateStream.awaitFinished(sagaId, timeoutMs, depositSagaService::findById, this::mapToDepositDto)
+                .orElseGet(() -> {
+                    DeferredResult<ResponseEntity<DepositSagaDto>> notFound = new DeferredResult<>();
+                    notFound.setResult(ResponseEntity.notFound().build());
+                    return notFound;
+                });
+    }
+
+    /**
+     * Get active deposit sagas, one page at a time
      */
     @GetMapping("/active")
-    public ResponseEntity<SagaListResponse> getActiveSagas() {
-        log.info("Received request to get all active sagas");
-        
-        List<DepositSagaState> activeSagas = depositSagaService.findActiveSagas();
-        
-        SagaListResponse response = new SagaListResponse();
-        response.setItems(activeSagas.stream().map(this::mapToDepositDto).collect(Collectors.toList()));
-        response.setCount(activeSagas.size());
-        
-        return ResponseEntity.ok(response);
+    public ResponseEntity<SagaListResponse<DepositSagaDto>> getActiveSagas(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("Received request to get active deposit sagas");
+
+        return ResponseEntity.ok(toListResponse(depositSagaService.findActiveSagas(cursor, limit)));
+    }
+    
+    /**
+     * Get user's deposit sagas, newest first, one page at a time
+     */
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<SagaListResponse<DepositSagaDto>> getUserSagas(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("Received request to get deposit sagas for user: {}", userId);
+
+        return ResponseEntity.ok(toListResponse(depositSagaService.findByUserId(userId, cursor, limit)));
     }
     
     /**
@@ -87,6 +133,14 @@ public class DepositSagaController {
         return ResponseEntity.ok("Timeout check initiated");
     }
     
+    /**
+     * Map a page of sagas to a list response
+     */
+    private SagaListResponse<DepositSagaDto> toListResponse(SagaPage<DepositSagaState> page) {
+        List<DepositSagaDto> items = page.getItems().stream().map(this::mapToDepositDto).collect(Collectors.toList());
+        return new SagaListResponse<>(items, items.size(), page.getNextCursor());
+    }
+
     /**
      * Map a saga state entity to a Deposit DTO
      */
@@ -106,7 +160,10 @@ public class DepositSagaController {
         }
         
         dto.setStatus(saga.getStatus().name());
-        dto.setCompletedSteps(saga.getCompletedSteps());
+        // Copies, since the DTO may be serialized while the saga moves on
+        if (saga.getCompletedSteps() != null) {
+            dto.setCompletedSteps(new ArrayList<>(saga.getCompletedSteps()));
+        }
         dto.setStartTime(saga.getStartTime());
         dto.setEndTime(saga.getEndTime());
         dto.setLastUpdatedTime(saga.getLastUpdatedTime());
@@ -119,7 +176,7 @@ public class DepositSagaController {
         if (saga.getSagaEvents() != null && !saga.getSagaEvents().isEmpty()) {
             int eventsSize = saga.getSagaEvents().size();
             int startIndex = Math.max(0, eventsSize - 10);
-            dto.setRecentEvents(saga.getSagaEvents().subList(startIndex, eventsSize));
+            dto.setRecentEvents(new ArrayList<>(saga.getSagaEvents().subList(startIndex, eventsSize)));
         }
         
         return dto;
@@ -3,15 +3,22 @@ package com.stocktrading.kafka.controller;
 import com.stocktrading.kafka.dto.OrderBuySagaDto;
 import com.stocktrading.kafka.dto.OrderBuySagaRequest;
 import com.stocktrading.kafka.dto.SagaListResponse;
+import com.stocktrading.kafka.exception.SagaNotOwnedException;
 import com.stocktrading.kafka.model.OrderBuySagaState;
+import com.stocktrading.kafka.model.SagaPage;
 import com.stocktrading.kafka.service.OrderBuySagaService;
+import com.stocktrading.kafka.service.SagaUpdateStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -27,6 +34,7 @@ import java.util.stream.Collectors;
 public class OrderSagaController {
 
     private final OrderBuySagaService orderBuySagaService;
+    private final SagaUpdateStream sagaUpdateStream;
 
     /**
      * Cancel an order by user request
@@ -47,6 +55,15 @@ public class OrderSagaController {
                             "message", e.getMessage()
                     )
             );
+        } catch (SagaNotOwnedException e) {
+            // Another orchestrator instance drives this saga; the caller has to retry there
+            log.warn("Cannot cancel order here: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                    Map.of(
+                            "status", "error",
+                            "message", e.getMessage()
+                    )
+            );
         } catch (Exception e) {
             log.error("Error cancelling order saga: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
@@ -95,35 +112,58 @@ public class OrderSagaController {
     }
 
     /**
-     * Get all active order sagas
+     * Stream a saga's state as server-sent events, from its current state until it finishes
      */
-    @GetMapping("/active")
-    public ResponseEntity<SagaListResponse<OrderBuySagaDto>> getActiveSagas() {
-        log.info("Received request to get all active order sagas");
+    @GetMapping(path = "/{sagaId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSaga(@PathVariable String sagaId) {
+        log.info("Received request to stream order saga: {}", sagaId);
 
-        List<OrderBuySagaState> activeSagas = orderBuySagaService.findActiveSagas();
+        return sagaUpdateStream.stream(sagaId, orderBuySagaService::findById, this::mapToDto)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 
-        SagaListResponse<OrderBuySagaDto> response = new SagaListResponse<>();
-        response.setItems(activeSagas.stream().map(this::mapToDto).collect(Collectors.toList()));
-        response.setCount(activeSagas.size());
+    /**
+     * Wait for a saga to finish: 200 with the final state, or 202 with the latest state if it
+     * is still running when the timeout passes
+     */
+    @GetMapping("/{sagaId}/await")
+    public DeferredResult<ResponseEntity<OrderBuySagaDto>> awaitSaga(
+            @PathVariable String sagaId,
+            @RequestParam(defaultValue = "30000") long timeoutMs) {
+        log.info("Received request to await order saga: {}", sagaId);
+
+        return sagaUpdateStream.awaitFinished(sagaId, timeoutMs, orderBuySagaService::findById, this::mapToDto)
+                .orElseGet(() -> {
+                    DeferredResult<ResponseEntity<OrderBuySagaDto>> notFound = new DeferredResult<>();
+                    notFound.setResult(ResponseEntity.notFound().build());
+                    return notFound;
+                });
+    }
 
-        return ResponseEntity.ok(response);
+    /**
+     * Get active order sagas, one page at a time
+     */
+    @GetMapping("/active")
+    public ResponseEntity<SagaListResponse<OrderBuySagaDto>> getActiveSagas(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("Received request to get active order sagas");
+
+        return ResponseEntity.ok(toListResponse(orderBuySagaService.findActiveSagas(cursor, limit)));
     }
 
     /**
-     * Get user's order sagas
+     * Get user's order sagas, newest first, one page at a time
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<SagaListResponse<OrderBuySagaDto>> getUserSagas(@PathVariable String userId) {
+    public ResponseEntity<SagaListResponse<OrderBuySagaDto>> getUserSagas(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         log.info("Received request to get order sagas for user: {}", userId);
 
-        List<OrderBuySagaState> userSagas = orderBuySagaService.findByUserId(userId);
-
-        SagaListResponse<OrderBuySagaDto> response = new SagaListResponse<>();
-        response.setItems(userSagas.stream().map(this::mapToDto).collect(Collectors.toList()));
-        response.setCount(userSagas.size());
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(toListResponse(orderBuySagaService.findByUserId(userId, cursor, limit)));
     }
 
     /**
@@ -138,6 +178,14 @@ public class OrderSagaController {
         return ResponseEntity.ok("Timeout check initiated");
     }
 
+    /**
+     * Map a page of sagas to a list response
+     */
+    private SagaListResponse<OrderBuySagaDto> toListResponse(SagaPage<OrderBuySagaState> page) {
+        List<OrderBuySagaDto> items = page.getItems().stream().map(this::mapToDto).collect(Collectors.toList());
+        return new SagaListResponse<>(items, items.size(), page.getNextCursor());
+    }
+
     /**
      * Map a saga state entity to a DTO
      */
@@ -161,7 +209,10 @@ public class OrderSagaController {
         }
 
         dto.setStatus(saga.getStatus().name());
-        dto.setCompletedSteps(saga.getCompletedSteps());
+        // Copies, since the DTO may be serialized while the saga moves on
+        if (saga.getCompletedSteps() != null) {
+            dto.setCompletedSteps(new ArrayList<>(saga.getCompletedSteps()));
+        }
         dto.setStartTime(saga.getStartTime());
         dto.setEndTime(saga.getEndTime());
         dto.setLastUpdatedTime(saga.getLastUpdatedTime());
@@ -174,7 +225,7 @@ public class OrderSagaController {
         if (saga.getSagaEvents() != null && !saga.getSagaEvents().isEmpty()) {
             int eventsSize = saga.getSagaEvents().size();
             int startIndex = Math.max(0, eventsSize - 10);
-            dto.setRecentEvents(saga.getSagaEvents().subList(startIndex, eventsSize));
+            dto.setRecentEvents(new ArrayList<>(saga.getSagaEvents().subList(startIndex, eventsSize)));
         }
 
         return dto;
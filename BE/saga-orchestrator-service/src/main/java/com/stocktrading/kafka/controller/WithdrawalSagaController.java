@@ -2,6 +2,7 @@ package com.stocktrading.kafka.controller;
 
 
 import com.stocktrading.kafka.dto.*;
+import com.stocktrading.kafka.model.SagaPage;
 import com.stocktrading.kafka.model.WithdrawalSagaState;
 import com.stocktrading.kafka.service.WithdrawalSagaService;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +12,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
@@ -39,6 +42,39 @@ public class WithdrawalSagaController {
         return ResponseEntity.status(HttpStatus.CREATED).body(mapToWithdrawalDto(saga));
     }
 
+    /**
+     * Get active withdrawal sagas, one page at a time
+     */
+    @GetMapping("/active")
+    public ResponseEntity<SagaListResponse<WithdrawalSagaDto>> getActiveSagas(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("Received request to get active withdrawal sagas");
+
+        return ResponseEntity.ok(toListResponse(withdrawalSagaService.findActiveSagas(cursor, limit)));
+    }
+
+    /**
+     * Get user's withdrawal sagas, newest first, one page at a time
+     */
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<SagaListResponse<WithdrawalSagaDto>> getUserSagas(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("Received request to get withdrawal sagas for user: {}", userId);
+
+        return ResponseEntity.ok(toListResponse(withdrawalSagaService.findByUserId(userId, cursor, limit)));
+    }
+
+    /**
+     * Map a page of sagas to a list response
+     */
+    private SagaListResponse<WithdrawalSagaDto> toListResponse(SagaPage<WithdrawalSagaState> page) {
+        List<WithdrawalSagaDto> items = page.getItems().stream().map(this::mapToWithdrawalDto).collect(Collectors.toList());
+        return new SagaListResponse<>(items, items.size(), page.getNextCursor());
+    }
+
     /**
      * Map a saga state entity to a Withdrawal DTO
      */
@@ -0,0 +1,25 @@
+package com.stocktrading.kafka.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * DTO for a saga event waiting in the DLQ
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterDto {
+    private String sagaId;
+    private int partition;
+    private long offset;
+    private Instant deadLetteredAt;
+    private String originalTopic;
+    private Integer originalPartition;
+    private Long originalOffset;
+    private String exceptionClass;
+    private String exceptionMessage;
+}
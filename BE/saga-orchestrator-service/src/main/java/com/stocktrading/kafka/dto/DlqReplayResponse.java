@@ -0,0 +1,18 @@
+package com.stocktrading.kafka.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response DTO for a DLQ replay.
+ * Skipped records belong to other sagas; unroutable records have no original topic and are left out of the replay.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DlqReplayResponse {
+    private int replayed;
+    private int skipped;
+    private int unroutable;
+}
@@ -7,7 +7,8 @@ import lombok.NoArgsConstructor;
 import java.util.List;
 
 /**
- * Generic response DTO for saga lists
+ * Generic response DTO for saga lists.
+ * Lists are paginated; pass nextCursor back to fetch the following page, it is null on the last one.
  */
 @Data
 @NoArgsConstructor
@@ -15,4 +16,5 @@ import java.util.List;
 public class SagaListResponse<T> {
     private List<T> items;
     private int count;
+    private String nextCursor;
 }
\ No newline at end of file
@@ -52,6 +52,32 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(apiError);
     }
     
+    /**
+     * Handle SagaNotOwnedException
+     */
+    @ExceptionHandler(SagaNotOwnedException.class)
+    public ResponseEntity<ApiError> handleSagaNotOwnedException(SagaNotOwnedException ex) {
+        ApiError apiError = ApiError.builder()
+            .status(HttpStatus.CONFLICT.value())
+            .message(ex.getMessage())
+            .build();
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(apiError);
+    }
+    
+    /**
+     * Handle InvalidCursorException
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiError> handleInvalidCursorException(InvalidCursorException ex) {
+        ApiError apiError = ApiError.builder()
+            .status(HttpStatus.BAD_REQUEST.value())
+            .message(ex.getMessage())
+            .build();
+        
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
+    }
+    
     /**
      * Handle SagaExecutionException
      */
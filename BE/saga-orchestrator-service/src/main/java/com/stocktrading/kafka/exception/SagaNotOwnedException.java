@@ -0,0 +1,11 @@
+package com.stocktrading.kafka.exception;
+
+/**
+ * Exception thrown when a saga is changed on an instance that does not own its partition
+ */
+public class SagaNotOwnedException extends RuntimeException {
+
+    public SagaNotOwnedException(String sagaId, int partition) {
+        super("Saga " + sagaId + " belongs to partition " + partition + ", which is owned by another instance");
+    }
+}
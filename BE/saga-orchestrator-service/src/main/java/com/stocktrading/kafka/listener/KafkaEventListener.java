@@ -1,19 +1,37 @@
 package com.stocktrading.kafka.listener;
 
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.stocktrading.kafka.config.KafkaConfig;
 import com.stocktrading.kafka.service.DepositSagaService;
-import com.stocktrading.kafka.service.IdempotencyService;
 import com.stocktrading.kafka.service.OrderBuySagaService;
+import com.stocktrading.kafka.service.SagaEventBatchProcessor;
+import com.stocktrading.kafka.service.SagaEventHandler;
 import com.stocktrading.kafka.service.WithdrawalSagaService;
+import com.stocktrading.kafka.utils.DeadLetterHeaders;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
- * Kafka listener for processing event messages
+ * Kafka listener for processing event messages.
+ * A single consumer subscribes to every saga event topic and hands each poll to the batch
+ * processor, which routes records to the saga services by topic and runs them on per-saga
+ * worker lanes. A batch is acknowledged once its saga changes are persisted.
+ * The same consumer reads the retry topics, which are keyed like the saga topics, so a saga's
+ * retries are read by the instance owning it. The partitions assigned to this consumer decide
+ * which sagas this instance owns.
  */
 @Slf4j
 @Component
@@ -23,209 +41,104 @@ public class KafkaEventListener {
     private final DepositSagaService depositSagaService;
     private final WithdrawalSagaService withdrawalSagaService;
     private final OrderBuySagaService orderBuySagaService;
-    private final IdempotencyService idempotencyService;
+    private final SagaEventBatchProcessor batchProcessor;
 
-    // ====== DEPOSIT SAGA EVENT LISTENERS ======
-    @KafkaListener(
-            topics = "${kafka.topics.account-events.common}",
-            containerFactory = "eventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-account-common"
-    )
-    public void consumeAccountCommonEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received account common event: {}", event.getType());
-            depositSagaService.handleEventMessage(event);
-            withdrawalSagaService.handleEventMessage(event);
-            // Acknowledge the message
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing account common event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    // Deposit and withdrawal topics
+    @Value("${kafka.topics.account-events.common}")
+    private String accountCommonEventsTopic;
 
-    @KafkaListener(
-            topics = "${kafka.topics.user-events.common}",
-            containerFactory = "eventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-user-common"
-    )
-    public void consumeUserCommonEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received user common event: {}", event.getType());
-            depositSagaService.handleEventMessage(event);
-            withdrawalSagaService.handleEventMessage(event);
-            // Acknowledge the message
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing user common event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    @Value("${kafka.topics.user-events.common}")
+    private String userCommonEventsTopic;
 
-    @KafkaListener(
-            topics = "${kafka.topics.account-events.deposit}",
-            containerFactory = "eventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-deposit-account"
-    )
-    public void consumeAccountDepositEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received account deposit event: {}", event.getType());
-            depositSagaService.handleEventMessage(event);
-            // Acknowledge the message
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing account deposit event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    @Value("${kafka.topics.account-events.deposit}")
+    private String accountDepositEventsTopic;
 
-    @KafkaListener(
-            topics = "${kafka.topics.payment-events.deposit}",
-            containerFactory = "eventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-deposit-payment"
-    )
-    public void consumePaymentDepositEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received payment deposit event: {}", event.getType());
-            depositSagaService.handleEventMessage(event);
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing payment deposit event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    @Value("${kafka.topics.payment-events.deposit}")
+    private String paymentDepositEventsTopic;
 
-    // ====== WITHDRAWAL SAGA EVENT LISTENERS ======
-    @KafkaListener(
-            topics = "${kafka.topics.account-events.withdrawal}",
-            containerFactory = "eventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-withdrawal-account"
-    )
-    public void consumeAccountWithdrawalEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received account withdrawal event: {}", event.getType());
-            withdrawalSagaService.handleEventMessage(event);
-            // Acknowledge the message
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing account withdrawal event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    @Value("${kafka.topics.account-events.withdrawal}")
+    private String accountWithdrawalEventsTopic;
 
-    @KafkaListener(
-            topics = "${kafka.topics.payment-events.withdrawal}",
-            containerFactory = "eventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-withdrawal-payment"
-    )
-    public void consumePaymentWithdrawalEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received payment withdrawal event: {}", event.getType());
-            withdrawalSagaService.handleEventMessage(event);
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing payment withdrawal event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    @Value("${kafka.topics.payment-events.withdrawal}")
+    private String paymentWithdrawalEventsTopic;
 
-    // ====== ORDER BUY SAGA EVENT LISTENERS ======
+    // Order buy topics
+    @Value("${kafka.topics.user-events.order-buy}")
+    private String userOrderBuyEventsTopic;
 
-    @KafkaListener(
-            topics = "${kafka.topics.user-events.order-buy}",
-            containerFactory = "orderBuyEventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-order-buy-user"
-    )
-    public void consumeUserOrderBuyEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received user order-buy event: {}", event.getType());
-            orderBuySagaService.handleEventMessage(event);
-            ack.acknowledge();
-            log.debug("Successfully processed and acknowledged user order-buy event: {}", event.getType());
-        } catch (Exception e) {
-            log.error("Error processing user order-buy event: {}", event.getType(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    @Value("${kafka.topics.account-events.order-buy}")
+    private String accountOrderBuyEventsTopic;
 
-    @KafkaListener(
-            topics = "${kafka.topics.account-events.order-buy}",
-            containerFactory = "orderBuyEventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-order-buy-account"
-    )
-    public void consumeAccountOrderBuyEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received account order-buy event: {}", event.getType());
-            orderBuySagaService.handleEventMessage(event);
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing account order-buy event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    @Value("${kafka.topics.order-events}")
+    private String orderEventsTopic;
 
-    @KafkaListener(
-            topics = "${kafka.topics.order-events}",
-            containerFactory = "orderBuyEventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-order-buy-order"
-    )
-    public void consumeOrderEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received order event: {}", event.getType());
-            orderBuySagaService.handleEventMessage(event);
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing order event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
-        }
-    }
+    @Value("${kafka.topics.market-events}")
+    private String marketEventsTopic;
 
-    @KafkaListener(
-            topics = "${kafka.topics.market-events}",
-            containerFactory = "orderBuyEventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-order-buy-market"
-    )
-    public void consumeMarketEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received market event: {}", event.getType());
-            orderBuySagaService.handleEventMessage(event);
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing market event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
+    @Value("${kafka.topics.broker-events}")
+    private String brokerEventsTopic;
+
+    @Value("${kafka.topics.portfolio-events.order-buy}")
+    private String portfolioEventsTopic;
+
+    private final Map<String, List<SagaEventHandler>> handlersByTopic = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // Common topics carry both deposit and withdrawal events
+        handlersByTopic.put(accountCommonEventsTopic, List.of(depositSagaService, withdrawalSagaService));
+        handlersByTopic.put(userCommonEventsTopic, List.of(depositSagaService, withdrawalSagaService));
+        handlersByTopic.put(accountDepositEventsTopic, List.of(depositSagaService));
+        handlersByTopic.put(paymentDepositEventsTopic, List.of(depositSagaService));
+        handlersByTopic.put(accountWithdrawalEventsTopic, List.of(withdrawalSagaService));
+        handlersByTopic.put(paymentWithdrawalEventsTopic, List.of(withdrawalSagaService));
+
+        for (String topic : List.of(userOrderBuyEventsTopic, accountOrderBuyEventsTopic, orderEventsTopic,
+                marketEventsTopic, brokerEventsTopic, portfolioEventsTopic)) {
+            handlersByTopic.put(topic, List.of(orderBuySagaService));
         }
     }
 
+    // ====== SAGA EVENT LISTENER ======
     @KafkaListener(
-            topics = "${kafka.topics.broker-events}",
-            containerFactory = "orderBuyEventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-order-buy-broker"
+            id = KafkaConfig.SAGA_EVENTS_LISTENER_ID,
+            topics = {
+                    "${kafka.topics.account-events.common}",
+                    "${kafka.topics.user-events.common}",
+                    "${kafka.topics.account-events.deposit}",
+                    "${kafka.topics.payment-events.deposit}",
+                    "${kafka.topics.account-events.withdrawal}",
+                    "${kafka.topics.payment-events.withdrawal}",
+                    "${kafka.topics.user-events.order-buy}",
+                    "${kafka.topics.account-events.order-buy}",
+                    "${kafka.topics.order-events}",
+                    "${kafka.topics.market-events}",
+                    "${kafka.topics.broker-events}",
+                    "${kafka.topics.portfolio-events.order-buy}",
+                    "#{'${kafka.topics.saga-retry:saga.events.retry-1s,saga.events.retry-10s,saga.events.retry-1m}'.split(',')}"
+            },
+            containerFactory = "eventKafkaListenerContainerFactory",
+            groupId = "${spring.kafka.consumer.group-id}-saga-events"
     )
-    public void consumeBrokerEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received broker event: {}", event.getType());
-            orderBuySagaService.handleEventMessage(event);
+    public void consumeSagaEvents(List<ConsumerRecord<String, EventMessage>> records, Acknowledgment ack,
+                                  Consumer<?, ?> consumer) {
+        log.debug("Received {} saga events", records.size());
+        Map<TopicPartition, Long> deferred = batchProcessor.process(records, handlersByTopic);
+        if (deferred.isEmpty()) {
             ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing broker event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
+            return;
         }
-    }
 
-    @KafkaListener(
-            topics = "${kafka.topics.portfolio-events.order-buy}",
-            containerFactory = "orderBuyEventKafkaListenerContainerFactory",
-            groupId = "${spring.kafka.consumer.group-id}-order-buy-portfolio"
-    )
-    public void consumePortfolioEvents(@Payload EventMessage event, Acknowledgment ack) {
-        try {
-            log.debug("Received portfolio event: {}", event.getType());
-            orderBuySagaService.handleEventMessage(event);
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing portfolio event: {}", e.getMessage(), e);
-            throw new RuntimeException("Event processing failed", e);
+        // Retry records that are not due yet are read again once their partition resumes
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (ConsumerRecord<String, EventMessage> record : records) {
+            offsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
         }
+        deferred.forEach((partition, offset) -> {
+            offsets.put(partition, new OffsetAndMetadata(offset));
+            consumer.seek(partition, offset);
+        });
+        consumer.commitSync(offsets);
     }
 
 
@@ -235,9 +148,11 @@ public class KafkaEventListener {
             topics = "${kafka.topics.dlq}",
             containerFactory = "eventKafkaListenerContainerFactory"
     )
-    public void consumeDlqMessages(@Payload Object messagePayload, Acknowledgment ack) {
+    public void consumeDlqMessages(List<ConsumerRecord<String, Object>> records, Acknowledgment ack) {
         try {
-            log.warn("Received message in DLQ: {}", messagePayload);
+            records.forEach(record -> log.warn("Received message in DLQ for saga {} from {}-{}@{}: {}",
+                    record.key(), DeadLetterHeaders.originalTopic(record), DeadLetterHeaders.originalPartition(record),
+                    DeadLetterHeaders.originalOffset(record), DeadLetterHeaders.exceptionMessage(record)));
             ack.acknowledge();
         } catch (Exception e) {
             log.error("Error processing DLQ message: {}", e.getMessage(), e);
@@ -3,6 +3,16 @@ package com.stocktrading.kafka.model;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.enums.CommandType;
+import com.project.kafkamessagemodels.payload.command.AccountValidatePayload;
+import com.project.kafkamessagemodels.payload.command.BalanceReversalPayload;
+import com.project.kafkamessagemodels.payload.command.BalanceUpdatePayload;
+import com.project.kafkamessagemodels.payload.command.CreatePendingTransactionPayload;
+import com.project.kafkamessagemodels.payload.command.MarkTransactionFailedPayload;
+import com.project.kafkamessagemodels.payload.command.PaymentMethodValidatePayload;
+import com.project.kafkamessagemodels.payload.command.PaymentProcessPayload;
+import com.project.kafkamessagemodels.payload.command.PaymentReversalPayload;
+import com.project.kafkamessagemodels.payload.command.UpdateTransactionStatusPayload;
+import com.project.kafkamessagemodels.payload.command.UserVerifyIdentityPayload;
 import com.stocktrading.kafka.model.enums.DepositSagaStep;
 import com.stocktrading.kafka.model.enums.SagaStatus;
 import lombok.AllArgsConstructor;
@@ -29,7 +39,7 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "deposit_sagas")
-public class DepositSagaState {
+public class DepositSagaState implements SagaState {
     @Id  // This should map to MongoDB's _id field
     private String id; // Rename from sagaId to id
 
@@ -241,68 +251,88 @@ public class DepositSagaState {
         // Add payload based on command type
         switch (commandType) {
             case USER_VERIFY_IDENTITY:
-                command.setPayloadValue("userId", userId);
-                command.setPayloadValue("verificationType", "BASIC");
+                UserVerifyIdentityPayload.builder()
+                        .userId(userId)
+                        .verificationType("BASIC")
+                        .build().applyTo(command);
                 break;
 
-            case ACCOUNT_VALIDATE: // Add this new case
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("userId", userId);
+            case ACCOUNT_VALIDATE:
+                AccountValidatePayload.builder()
+                        .accountId(accountId)
+                        .userId(userId)
+                        .build().applyTo(command);
                 break;
                 
             case PAYMENT_METHOD_VALIDATE:
-                command.setPayloadValue("paymentMethodId", paymentMethodId);
-                command.setPayloadValue("userId", userId);
-                command.setPayloadValue("amount", amount);
-                command.setPayloadValue("currency", currency);
+                PaymentMethodValidatePayload.builder()
+                        .paymentMethodId(paymentMethodId)
+                        .userId(userId)
+                        .amount(amount)
+                        .currency(currency)
+                        .build().applyTo(command);
                 break;
                 
             case ACCOUNT_CREATE_DEPOSIT_PENDING_TRANSACTION:
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("amount", amount);
-                command.setPayloadValue("currency", currency);
-                command.setPayloadValue("description", "Deposit funds");
-                command.setPayloadValue("paymentMethodId", paymentMethodId);
+                CreatePendingTransactionPayload.builder()
+                        .accountId(accountId)
+                        .amount(amount)
+                        .currency(currency)
+                        .description("Deposit funds")
+                        .paymentMethodId(paymentMethodId)
+                        .build().applyTo(command);
                 break;
                 
             case PAYMENT_PROCESS_DEPOSIT:
-                command.setPayloadValue("paymentMethodId", paymentMethodId);
-                command.setPayloadValue("amount", amount);
-                command.setPayloadValue("currency", currency);
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("transactionId", transactionId);
+                PaymentProcessPayload.builder()
+                        .paymentMethodId(paymentMethodId)
+                        .amount(amount)
+                        .currency(currency)
+                        .accountId(accountId)
+                        .transactionId(transactionId)
+                        .build().applyTo(command);
                 break;
                 
             case ACCOUNT_UPDATE_TRANSACTION_STATUS:
-                command.setPayloadValue("transactionId", transactionId);
-                command.setPayloadValue("status", "COMPLETED");
-                command.setPayloadValue("paymentReference", paymentProcessorTransactionId);
+                UpdateTransactionStatusPayload.builder()
+                        .transactionId(transactionId)
+                        .status("COMPLETED")
+                        .paymentReference(paymentProcessorTransactionId)
+                        .build().applyTo(command);
                 break;
                 
             case ACCOUNT_DEPOSIT_UPDATE_BALANCE:
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("amount", amount);
-                command.setPayloadValue("transactionId", transactionId);
+                BalanceUpdatePayload.builder()
+                        .accountId(accountId)
+                        .amount(amount)
+                        .transactionId(transactionId)
+                        .build().applyTo(command);
                 break;
                 
             case ACCOUNT_DEPOSIT_REVERSE_BALANCE_UPDATE:
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("amount", amount);
-                command.setPayloadValue("transactionId", transactionId);
-                command.setPayloadValue("reason", failureReason);
+                BalanceReversalPayload.builder()
+                        .accountId(accountId)
+                        .amount(amount)
+                        .transactionId(transactionId)
+                        .reason(failureReason)
+                        .build().applyTo(command);
                 break;
                 
             case PAYMENT_REVERSE_DEPOSIT:
-                command.setPayloadValue("paymentReference", paymentProcessorTransactionId);
-                command.setPayloadValue("amount", amount);
-                command.setPayloadValue("reason", failureReason);
-                command.setPayloadValue("transactionId", transactionId);
+                PaymentReversalPayload.builder()
+                        .paymentReference(paymentProcessorTransactionId)
+                        .amount(amount)
+                        .reason(failureReason)
+                        .transactionId(transactionId)
+                        .build().applyTo(command);
                 break;
                 
             case ACCOUNT_MARK_TRANSACTION_FAILED:
-                command.setPayloadValue("transactionId", transactionId);
-                command.setPayloadValue("failureReason", failureReason);
-                command.setPayloadValue("errorCode", "SAGA_FAILURE");
+                MarkTransactionFailedPayload.builder()
+                        .transactionId(transactionId)
+                        .failureReason(failureReason)
+                        .errorCode("SAGA_FAILURE")
+                        .build().applyTo(command);
                 break;
         }
         
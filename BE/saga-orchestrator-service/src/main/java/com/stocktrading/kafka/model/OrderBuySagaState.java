@@ -2,6 +2,22 @@ package com.stocktrading.kafka.model;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.enums.CommandType;
+import com.project.kafkamessagemodels.payload.command.AccountValidatePayload;
+import com.project.kafkamessagemodels.payload.command.BrokerCancelOrderPayload;
+import com.project.kafkamessagemodels.payload.command.BrokerExecuteOrderPayload;
+import com.project.kafkamessagemodels.payload.command.OrderCancelPayload;
+import com.project.kafkamessagemodels.payload.command.OrderCreatePayload;
+import com.project.kafkamessagemodels.payload.command.OrderUpdateCompletedPayload;
+import com.project.kafkamessagemodels.payload.command.OrderUpdateExecutedPayload;
+import com.project.kafkamessagemodels.payload.command.OrderUpdateValidatedPayload;
+import com.project.kafkamessagemodels.payload.command.ReleaseFundsPayload;
+import com.project.kafkamessagemodels.payload.command.RemovePositionsPayload;
+import com.project.kafkamessagemodels.payload.command.ReserveFundsPayload;
+import com.project.kafkamessagemodels.payload.command.ReverseSettlementPayload;
+import com.project.kafkamessagemodels.payload.command.SettleTransactionPayload;
+import com.project.kafkamessagemodels.payload.command.StockSymbolPayload;
+import com.project.kafkamessagemodels.payload.command.UpdatePositionsPayload;
+import com.project.kafkamessagemodels.payload.command.UserVerifyTradingPermissionsPayload;
 import com.stocktrading.kafka.model.enums.OrderBuySagaStep;
 import com.stocktrading.kafka.model.enums.SagaStatus;
 import lombok.AllArgsConstructor;
@@ -28,7 +44,7 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "order_buy_sagas")
-public class OrderBuySagaState {
+public class OrderBuySagaState implements SagaState {
     @Id
     private String id;
 
@@ -52,6 +68,7 @@ public class OrderBuySagaState {
 
     // Saga execution state
     private OrderBuySagaStep currentStep;
+    private List<OrderBuySagaStep> pendingSteps; // Parallel steps still waiting for their event
     private SagaStatus status;
     private List<String> completedSteps;
     private List<SagaEvent> sagaEvents;
@@ -87,6 +104,7 @@ public class OrderBuySagaState {
                 .limitPrice(limitPrice)
                 .timeInForce(timeInForce)
                 .currentStep(OrderBuySagaStep.CREATE_ORDER)
+                .pendingSteps(new ArrayList<>())
                 .status(SagaStatus.STARTED)
                 .completedSteps(new ArrayList<>())
                 .sagaEvents(new ArrayList<>())
@@ -108,8 +126,13 @@ public class OrderBuySagaState {
             completedSteps.add(currentStep.name());
         }
 
+        // Once the order exists, all validation steps are issued together
+        if (currentStep == OrderBuySagaStep.CREATE_ORDER) {
+            pendingSteps = OrderBuySagaStep.parallelValidationSteps("LIMIT".equals(orderType));
+        }
+
         // Use our custom logic to determine the next step
-        OrderBuySagaStep nextStep = determineNextStep();
+        OrderBuySagaStep nextStep = hasPendingSteps() ? pendingSteps.get(0) : determineNextStep();
         currentStep = nextStep;
         currentStepStartTime = Instant.now();
 
@@ -117,6 +140,9 @@ public class OrderBuySagaState {
             status = SagaStatus.COMPLETED;
             endTime = Instant.now();
             addEvent("SAGA_COMPLETED", "Order buy saga completed successfully");
+        } else if (hasPendingSteps()) {
+            status = SagaStatus.IN_PROGRESS;
+            addEvent("STEP_CHANGED", "Moving to parallel steps: " + pendingSteps);
         } else {
             status = SagaStatus.IN_PROGRESS;
             addEvent("STEP_CHANGED", "Moving to step: " + nextStep.getDescription());
@@ -125,6 +151,52 @@ public class OrderBuySagaState {
         lastUpdatedTime = Instant.now();
     }
 
+    /**
+     * Check if the saga is waiting on parallel steps
+     */
+    public boolean hasPendingSteps() {
+        return pendingSteps != null && !pendingSteps.isEmpty();
+    }
+
+    /**
+     * Find the pending parallel step that issues the given command type
+     */
+    public OrderBuySagaStep findPendingStep(CommandType commandType) {
+        if (pendingSteps == null) {
+            return null;
+        }
+        for (OrderBuySagaStep step : pendingSteps) {
+            if (step.getCommandType() == commandType) {
+                return step;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mark one of the parallel steps as completed. When it was the last one outstanding
+     * the saga joins into the next step of the normal flow.
+     *
+     * @return true if all parallel steps have now completed
+     */
+    public boolean completeParallelStep(OrderBuySagaStep step) {
+        pendingSteps.remove(step);
+        completedSteps.add(step.name());
+        addEvent("STEP_COMPLETED", "Completed step: " + step.getDescription());
+        lastUpdatedTime = Instant.now();
+
+        if (!pendingSteps.isEmpty()) {
+            // The deadline still runs from when the parallel steps were issued
+            currentStep = pendingSteps.get(0);
+            return false;
+        }
+
+        currentStep = OrderBuySagaStep.CALCULATE_REQUIRED_FUNDS;
+        currentStepStartTime = Instant.now();
+        addEvent("STEP_CHANGED", "Moving to step: " + currentStep.getDescription());
+        return true;
+    }
+
     /**
      * Handle a step failure
      */
@@ -140,6 +212,7 @@ public class OrderBuySagaState {
      */
     public void startCompensation() {
         status = SagaStatus.COMPENSATING;
+        pendingSteps = new ArrayList<>();
         addEvent("COMPENSATION_STARTED", "Starting compensation process");
 
         // Check which steps have been completed to determine correct compensation chain
@@ -169,6 +242,7 @@ public class OrderBuySagaState {
      */
     public void startCompensation(OrderBuySagaStep firstCompensationStep) {
         status = SagaStatus.COMPENSATING;
+        pendingSteps = new ArrayList<>();
         addEvent("COMPENSATION_STARTED", "Starting compensation process");
 
         currentStep = firstCompensationStep;
@@ -248,11 +322,15 @@ public class OrderBuySagaState {
     /**
      * Create command based on current step
      */
+    public CommandMessage createCommandForCurrentStep() {
+        return createCommandForStep(currentStep);
+    }
+
     /**
-     * Create command based on current step
+     * Create command for the given step
      */
-    public CommandMessage createCommandForCurrentStep() {
-        CommandType commandType = currentStep.getCommandType();
+    public CommandMessage createCommandForStep(OrderBuySagaStep step) {
+        CommandType commandType = step.getCommandType();
         if (commandType == null) {
             return null;
         }
@@ -260,122 +338,156 @@ public class OrderBuySagaState {
         CommandMessage command = new CommandMessage();
         command.setMessageId(null); // Will be auto-generated
         command.setSagaId(sagaId);
-        command.setStepId(currentStep.getStepNumber());
+        command.setStepId(step.getStepNumber());
         command.setType(commandType.name());
         command.setSourceService("SAGA_ORCHESTRATOR");
         command.setTargetService(commandType.getTargetService());
-        command.setIsCompensation(currentStep.isCompensationStep());
+        command.setIsCompensation(step.isCompensationStep());
         command.setTimestamp(Instant.now());
 
         // Add payload based on command type
         switch (commandType) {
             case USER_VERIFY_TRADING_PERMISSIONS:
-                command.setPayloadValue("userId", userId);
-                command.setPayloadValue("orderType", orderType);
+                UserVerifyTradingPermissionsPayload.builder()
+                        .userId(userId)
+                        .orderType(orderType)
+                        .build().applyTo(command);
                 break;
 
             case ACCOUNT_VERIFY_STATUS:
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("userId", userId);
+                AccountValidatePayload.builder()
+                        .accountId(accountId)
+                        .userId(userId)
+                        .build().applyTo(command);
                 break;
 
             case MARKET_VALIDATE_STOCK:
-                command.setPayloadValue("stockSymbol", stockSymbol);
+                StockSymbolPayload.builder()
+                        .stockSymbol(stockSymbol)
+                        .build().applyTo(command);
                 break;
 
             case MARKET_GET_PRICE:
-                command.setPayloadValue("stockSymbol", stockSymbol);
+                StockSymbolPayload.builder()
+                        .stockSymbol(stockSymbol)
+                        .build().applyTo(command);
                 break;
 
             case ACCOUNT_RESERVE_FUNDS:
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("amount", reservedAmount);
-                command.setPayloadValue("orderId", orderId);
-                command.setPayloadValue("stockSymbol", stockSymbol);
+                ReserveFundsPayload.builder()
+                        .accountId(accountId)
+                        .amount(reservedAmount)
+                        .orderId(orderId)
+                        .stockSymbol(stockSymbol)
+                        .build().applyTo(command);
                 break;
 
             case ORDER_CREATE:
-                command.setPayloadValue("userId", userId);
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("stockSymbol", stockSymbol);
-                command.setPayloadValue("orderType", orderType);
-                command.setPayloadValue("quantity", quantity);
-                command.setPayloadValue("limitPrice", limitPrice);
-                command.setPayloadValue("timeInForce", timeInForce);
+                OrderCreatePayload.builder()
+                        .userId(userId)
+                        .accountId(accountId)
+                        .stockSymbol(stockSymbol)
+                        .orderType(orderType)
+                        .quantity(quantity)
+                        .limitPrice(limitPrice)
+                        .timeInForce(timeInForce)
+                        .build().applyTo(command);
                 break;
 
             case ORDER_UPDATE_VALIDATED:
-                command.setPayloadValue("orderId", orderId);
-                command.setPayloadValue("reservationId", reservationId);
-                command.setPayloadValue("price", executionPrice); // Market price or limit price
+                OrderUpdateValidatedPayload.builder()
+                        .orderId(orderId)
+                        .reservationId(reservationId)
+                        .price(executionPrice) // Market price or limit price
+                        .build().applyTo(command);
                 break;
 
             case BROKER_EXECUTE_ORDER:
-                command.setPayloadValue("orderId", orderId);
-                command.setPayloadValue("stockSymbol", stockSymbol);
-                command.setPayloadValue("orderType", orderType);
-                command.setPayloadValue("quantity", quantity);
-                command.setPayloadValue("limitPrice", limitPrice);
-                command.setPayloadValue("timeInForce", timeInForce);
+                BrokerExecuteOrderPayload.builder()
+                        .orderId(orderId)
+                        .stockSymbol(stockSymbol)
+                        .orderType(orderType)
+                        .quantity(quantity)
+                        .limitPrice(limitPrice)
+                        .timeInForce(timeInForce)
+                        .build().applyTo(command);
                 break;
 
             case ORDER_UPDATE_EXECUTED:
-                command.setPayloadValue("orderId", orderId);
-                command.setPayloadValue("executionPrice", executionPrice);
-                command.setPayloadValue("executedQuantity", executedQuantity);
-                command.setPayloadValue("brokerOrderId", brokerOrderId);
+                OrderUpdateExecutedPayload.builder()
+                        .orderId(orderId)
+                        .executionPrice(executionPrice)
+                        .executedQuantity(executedQuantity)
+                        .brokerOrderId(brokerOrderId)
+                        .build().applyTo(command);
                 break;
 
             case PORTFOLIO_UPDATE_POSITIONS:
-                command.setPayloadValue("userId", userId);
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("stockSymbol", stockSymbol);
-                command.setPayloadValue("quantity", executedQuantity);
-                command.setPayloadValue("price", executionPrice);
-                command.setPayloadValue("orderId", orderId);
+                UpdatePositionsPayload.builder()
+                        .userId(userId)
+                        .accountId(accountId)
+                        .stockSymbol(stockSymbol)
+                        .quantity(executedQuantity)
+                        .price(executionPrice)
+                        .orderId(orderId)
+                        .build().applyTo(command);
                 break;
 
             case ACCOUNT_SETTLE_TRANSACTION:
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("reservationId", reservationId);
-                command.setPayloadValue("finalAmount", executionPrice.multiply(new BigDecimal(executedQuantity)));
-                command.setPayloadValue("orderId", orderId);
+                SettleTransactionPayload.builder()
+                        .accountId(accountId)
+                        .reservationId(reservationId)
+                        .finalAmount(executionPrice.multiply(new BigDecimal(executedQuantity)))
+                        .orderId(orderId)
+                        .build().applyTo(command);
                 break;
 
             case ORDER_UPDATE_COMPLETED:
-                command.setPayloadValue("orderId", orderId);
+                OrderUpdateCompletedPayload.builder()
+                        .orderId(orderId)
+                        .build().applyTo(command);
                 break;
 
             // Compensation commands - using service-specific command types
             case ORDER_CANCEL:
-                command.setPayloadValue("orderId", orderId);
-                command.setPayloadValue("reason", failureReason);
+                OrderCancelPayload.builder()
+                        .orderId(orderId)
+                        .reason(failureReason)
+                        .build().applyTo(command);
                 break;
 
             case ACCOUNT_RELEASE_FUNDS:
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("reservationId", reservationId);
-                command.setPayloadValue("orderId", orderId);
+                ReleaseFundsPayload.builder()
+                        .accountId(accountId)
+                        .reservationId(reservationId)
+                        .orderId(orderId)
+                        .build().applyTo(command);
                 break;
 
             case BROKER_CANCEL_ORDER:
-                command.setPayloadValue("orderId", orderId);
-                command.setPayloadValue("brokerOrderId", brokerOrderId);
+                BrokerCancelOrderPayload.builder()
+                        .orderId(orderId)
+                        .brokerOrderId(brokerOrderId)
+                        .build().applyTo(command);
                 break;
 
             case PORTFOLIO_REMOVE_POSITIONS:
-                command.setPayloadValue("userId", userId);
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("stockSymbol", stockSymbol);
-                command.setPayloadValue("quantity", executedQuantity);
-                command.setPayloadValue("orderId", orderId);
+                RemovePositionsPayload.builder()
+                        .userId(userId)
+                        .accountId(accountId)
+                        .stockSymbol(stockSymbol)
+                        .quantity(executedQuantity)
+                        .orderId(orderId)
+                        .build().applyTo(command);
                 break;
 
             case ACCOUNT_REVERSE_SETTLEMENT:
-                command.setPayloadValue("accountId", accountId);
-                command.setPayloadValue("reservationId", reservationId);
-                command.setPayloadValue("orderId", orderId);
-                command.setPayloadValue("amount", executionPrice.multiply(new BigDecimal(executedQuantity)));
+                ReverseSettlementPayload.builder()
+                        .accountId(accountId)
+                        .reservationId(reservationId)
+                        .orderId(orderId)
+                        .amount(executionPrice.multiply(new BigDecimal(executedQuantity)))
+                        .build().applyTo(command);
                 break;
         }
 
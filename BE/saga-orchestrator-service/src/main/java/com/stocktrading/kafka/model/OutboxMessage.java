@@ -0,0 +1,39 @@
+package com.stocktrading.kafka.model;
+
+import com.stocktrading.kafka.model.enums.OutboxStatus;
+import com.stocktrading.kafka.model.enums.SagaType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A command waiting to be published, written together with the saga state that produced it.
+ * Rows are removed by the relay once the broker has acknowledged the send.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "saga_outbox")
+public class OutboxMessage {
+    @Id
+    private String id; // messageId of the command
+
+    private String sagaId;
+    private Integer partition; // Kafka partition the sagaId is keyed to
+    private String topic;
+    private String messageType;
+    private SagaType sagaType; // Sent as the saga-type header, which participants echo on their replies
+    private String payload; // Command serialized as JSON
+
+    private OutboxStatus status;
+    private int attempts;
+    private String lastError;
+    private Instant createdAt;
+    private Instant nextAttemptAt;
+}
@@ -0,0 +1,16 @@
+package com.stocktrading.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a saga listing. The cursor is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class SagaPage<T extends SagaState> {
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,33 @@
+package com.stocktrading.kafka.model;
+
+import com.stocktrading.kafka.model.enums.SagaStatus;
+
+import java.time.Instant;
+
+/**
+ * Common view over the persisted state of every saga type
+ */
+public interface SagaState {
+
+    String getSagaId();
+
+    SagaStatus getStatus();
+
+    Instant getEndTime();
+
+    Instant getStartTime();
+
+    Enum<?> getCurrentStep();
+
+    Instant getCurrentStepStartTime();
+
+    /**
+     * Check if the saga has reached a state it will never leave
+     */
+    default boolean hasFinished() {
+        SagaStatus status = getStatus();
+        return status == SagaStatus.COMPLETED ||
+                status == SagaStatus.COMPENSATION_COMPLETED ||
+                (status == SagaStatus.FAILED && getEndTime() != null);
+    }
+}
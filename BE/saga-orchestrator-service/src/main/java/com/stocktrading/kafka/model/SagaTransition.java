@@ -0,0 +1,25 @@
+package com.stocktrading.kafka.model;
+
+import com.stocktrading.kafka.model.enums.SagaStatus;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of where a saga stood before an event, timeout or user action was applied,
+ * used to work out what the action changed
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class SagaTransition {
+
+    private final SagaStatus status;
+    private final Enum<?> step;
+    private final Instant stepStartTime;
+
+    public static SagaTransition of(SagaState saga) {
+        return new SagaTransition(saga.getStatus(), saga.getCurrentStep(), saga.getCurrentStepStartTime());
+    }
+}
@@ -22,7 +22,7 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "withdrawal_sagas")
-public class WithdrawalSagaState {
+public class WithdrawalSagaState implements SagaState {
     @Id
     private String id;
 
@@ -64,6 +64,7 @@ public class WithdrawalSagaState {
         initialPayload.put("description", description);
 
         return WithdrawalSagaState.builder()
+                .id(sagaId)       // Set the MongoDB _id up front so bulk upserts never create duplicates
                 .sagaId(sagaId)   // Set the business sagaId field
                 .userId(userId)
                 .accountId(accountId)
@@ -2,6 +2,9 @@ package com.stocktrading.kafka.model.enums;
 
 import com.project.kafkamessagemodels.model.enums.CommandType;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Enum defining all steps in the order buy saga
  */
@@ -52,7 +55,23 @@ public enum OrderBuySagaStep {
     }
 
     /**
-     * Get next step in normal flow
+     * Validation steps that do not depend on each other's results. They are issued together
+     * once the order is created and joined before CALCULATE_REQUIRED_FUNDS.
+     * Limit orders are priced with their limit price, so they skip GET_MARKET_PRICE.
+     */
+    public static List<OrderBuySagaStep> parallelValidationSteps(boolean limitOrder) {
+        List<OrderBuySagaStep> steps = new ArrayList<>(List.of(
+                VERIFY_TRADING_PERMISSION, VERIFY_ACCOUNT_STATUS, VALIDATE_STOCK));
+        if (!limitOrder) {
+            steps.add(GET_MARKET_PRICE);
+        }
+        return steps;
+    }
+
+    /**
+     * Get next step in normal flow.
+     * The chain through the validation steps is only followed by sagas started before
+     * those steps ran in parallel; new sagas join them directly into CALCULATE_REQUIRED_FUNDS.
      */
     public OrderBuySagaStep getNextStep() {
         switch (this) {
@@ -0,0 +1,9 @@
+package com.stocktrading.kafka.model.enums;
+
+/**
+ * Enum defining outbox message statuses
+ */
+public enum OutboxStatus {
+    PENDING,    // Waiting to be sent (or retried) by the relay
+    FAILED      // Gave up after the maximum number of send attempts
+}
@@ -0,0 +1,10 @@
+package com.stocktrading.kafka.model.enums;
+
+/**
+ * Enum defining the saga workflows run by the orchestrator
+ */
+public enum SagaType {
+    DEPOSIT,
+    WITHDRAWAL,
+    ORDER_BUY
+}
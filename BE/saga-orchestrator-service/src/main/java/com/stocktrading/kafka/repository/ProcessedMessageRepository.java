@@ -4,7 +4,6 @@ import com.stocktrading.kafka.model.ProcessedMessage;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
-import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -24,9 +23,4 @@ public interface ProcessedMessageRepository extends MongoRepository<ProcessedMes
      * Find processed messages by saga ID and step ID
      */
     ProcessedMessage findBySagaIdAndStepId(String sagaId, Integer stepId);
-    
-    /**
-     * Delete messages older than a certain time
-     */
-    void deleteByProcessedAtBefore(Instant cutoffTime);
 }
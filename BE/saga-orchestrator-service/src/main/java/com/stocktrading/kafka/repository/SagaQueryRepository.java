@@ -0,0 +1,151 @@
+package com.stocktrading.kafka.repository;
+
+import com.stocktrading.kafka.exception.InvalidCursorException;
+import com.stocktrading.kafka.model.SagaPage;
+import com.stocktrading.kafka.model.SagaState;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Paginated saga listings for the REST API.
+ *
+ * Pages are addressed with a keyset cursor over (sort field, sagaId) instead of an offset,
+ * so every page is a bounded index range scan regardless of how deep the client pages.
+ * The bulky parts of a saga are projected away: step data is dropped and only the most
+ * recent events are returned.
+ *
+ * A listing can span several collections, such as a saga collection and its archive. Each is
+ * read up to the page size from the same cursor and the results merged in listing order, so
+ * the cursor stays a position in the combined listing.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SagaQueryRepository {
+
+    public static final int MAX_PAGE_SIZE = 200;
+    private static final int RECENT_EVENTS = 10;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * @param sortField field the listing is ordered by; sagaId breaks ties
+     * @param sortValue reads the sort field from a saga, used to build the next cursor
+     * @param cursor    cursor returned with the previous page, or null for the first page
+     */
+    public <T extends SagaState> SagaPage<T> findPage(Class<T> type, Criteria filter,
+                                                      String sortField, Function<T, Instant> sortValue,
+                                                      Sort.Direction direction, String cursor, int limit) {
+        return findPage(type, List.of(mongoTemplate.getCollectionName(type)), filter,
+                sortField, sortValue, direction, cursor, limit);
+    }
+
+    /**
+     * Page through the sagas of several collections as one listing
+     *
+     * @param collections collections holding sagas of the type, e.g. the saga collection and its archive
+     */
+    public <T extends SagaState> SagaPage<T> findPage(Class<T> type, List<String> collections, Criteria filter,
+                                                      String sortField, Function<T, Instant> sortValue,
+                                                      Sort.Direction direction, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        boolean ascending = direction == Sort.Direction.ASC;
+
+        Query query = new Query(filter);
+        if (cursor != null && !cursor.isEmpty()) {
+            Position after = Position.decode(cursor);
+            Criteria beyondValue = ascending
+                    ? where(sortField).gt(after.value)
+                    : where(sortField).lt(after.value);
+            Criteria beyondSagaId = ascending
+                    ? where(sortField).is(after.value).and("sagaId").gt(after.sagaId)
+                    : where(sortField).is(after.value).and("sagaId").lt(after.sagaId);
+            query.addCriteria(new Criteria().orOperator(beyondValue, beyondSagaId));
+        }
+        query.with(Sort.by(direction, sortField, "sagaId"));
+        query.limit(pageSize + 1);
+        query.fields().exclude("stepData").slice("sagaEvents", -RECENT_EVENTS);
+
+        List<T> sagas = collections.size() == 1
+                ? mongoTemplate.find(query, type, collections.get(0))
+                : merge(type, collections, query, sortValue, direction, pageSize + 1);
+        if (sagas.size() <= pageSize) {
+            return new SagaPage<>(sagas, null);
+        }
+
+        List<T> page = sagas.subList(0, pageSize);
+        T last = page.get(pageSize - 1);
+        return new SagaPage<>(page, new Position(sortValue.apply(last), last.getSagaId()).encode());
+    }
+
+    /**
+     * Read each collection and keep the first sagas of their union in listing order. A saga
+     * being archived can briefly be in both collections, so sagas are taken once.
+     */
+    private <T extends SagaState> List<T> merge(Class<T> type, List<String> collections, Query query,
+                                                Function<T, Instant> sortValue, Sort.Direction direction,
+                                                int limit) {
+        List<T> sagas = new ArrayList<>();
+        for (String collection : collections) {
+            sagas.addAll(mongoTemplate.find(query, type, collection));
+        }
+
+        // Same order as the query's sort, where nulls come first ascending
+        Comparator<T> order = Comparator.comparing(sortValue, Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+                .thenComparing(SagaState::getSagaId);
+        sagas.sort(direction == Sort.Direction.ASC ? order : order.reversed());
+
+        List<T> merged = new ArrayList<>(Math.min(sagas.size(), limit));
+        Set<String> seen = new HashSet<>();
+        for (T saga : sagas) {
+            if (merged.size() == limit) {
+                break;
+            }
+            if (seen.add(saga.getSagaId())) {
+                merged.add(saga);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Position {
+        private final Instant value;
+        private final String sagaId;
+
+        private Position(Instant value, String sagaId) {
+            this.value = value;
+            this.sagaId = sagaId;
+        }
+
+        private String encode() {
+            String raw = value.toEpochMilli() + ":" + sagaId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Position decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf(':');
+                return new Position(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))),
+                        raw.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new InvalidCursorException(cursor);
+            }
+        }
+    }
+}
@@ -14,6 +14,11 @@ import java.util.Optional;
 public interface WithdrawalSagaRepository extends MongoRepository<WithdrawalSagaState, String> {
     Optional<WithdrawalSagaState> getWithdrawalSagaStateBySagaId(String sagaId);
 
+    /**
+     * Find sagas by status
+     */
+    List<WithdrawalSagaState> findByStatusIn(List<SagaStatus> statuses);
+
     /**
      * Find sagas for timeout detection
      */
@@ -0,0 +1,171 @@
+package com.stocktrading.kafka.scheduler;
+
+import com.stocktrading.kafka.model.enums.SagaType;
+import com.stocktrading.kafka.utils.RollingHistogram;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Step timeouts derived from how long each step has actually been taking.
+ *
+ * The saga services report the latency of every step that completed normally, which goes into
+ * a rolling histogram per saga type and step. A step's timeout is its latency at the configured
+ * percentile times the configured multiplier, kept between the floor and ceiling. Until a step
+ * has enough samples in the window its configured timeout is used instead, capped at the same
+ * ceiling, so a step that never answers is still caught.
+ *
+ * Timed-out and failed steps are not sampled; counting them would stretch the timeout every
+ * time it fires. Decisions are cached per step for a second, and exposed as:
+ * <ul>
+ *   <li>{@code saga.step.deadline} - gauge of the current timeout in ms, tagged by type and step</li>
+ *   <li>{@code saga.step.deadline.decisions} - counter of timeouts handed out, tagged by type,
+ *       step and basis ({@code adaptive} or {@code configured})</li>
+ *   <li>{@code saga.step.timeouts} - counter of steps that timed out, tagged by type and step</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdaptiveStepTimeouts {
+
+    private static final long DECISION_TTL_MS = 1000;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${saga.deadline.adaptive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${saga.deadline.adaptive.percentile:0.99}")
+    private double percentile;
+
+    @Value("${saga.deadline.adaptive.multiplier:3.0}")
+    private double multiplier;
+
+    // Samples a step needs in the window before its timeout is derived from them
+    @Value("${saga.deadline.adaptive.min-samples:50}")
+    private long minSamples;
+
+    @Value("${saga.deadline.adaptive.min-timeout-ms:1000}")
+    private long minTimeoutMs;
+
+    @Value("${saga.deadline.adaptive.max-timeout-ms:60000}")
+    private long maxTimeoutMs;
+
+    @Value("${saga.deadline.adaptive.window-ms:600000}")
+    private long windowMs;
+
+    @Value("${saga.deadline.adaptive.window-slots:10}")
+    private int windowSlots;
+
+    private final Map<String, StepStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Timeout for the saga's current step
+     *
+     * @param configured the step's configured timeout, used until enough latencies are known
+     */
+    public Duration timeoutFor(SagaType sagaType, Enum<?> step, Duration configured) {
+        if (!enabled) {
+            return configured;
+        }
+
+        StepStats stepStats = statsFor(sagaType, step);
+        long now = System.currentTimeMillis();
+        Decision decision = stepStats.decision;
+        if (decision == null || now - decision.madeAtMs > DECISION_TTL_MS) {
+            Decision previous = decision;
+            decision = decide(stepStats, configured.toMillis(), now);
+            stepStats.decision = decision;
+            if (previous == null || previous.timeoutMs != decision.timeoutMs) {
+                log.debug("Timeout of {} step {} is now {} ms ({})", sagaType, step, decision.timeoutMs,
+                        decision.adaptive ? "adaptive" : "configured");
+            }
+            stepStats.timeoutMs.set(decision.timeoutMs);
+        }
+
+        (decision.adaptive ? stepStats.adaptiveDecisions : stepStats.configuredDecisions).increment();
+        return Duration.ofMillis(decision.timeoutMs);
+    }
+
+    /**
+     * Record how long a step took to complete normally
+     */
+    public void recordCompletion(SagaType sagaType, Enum<?> step, Duration latency) {
+        if (enabled) {
+            statsFor(sagaType, step).latencies.record(latency.toMillis());
+        }
+    }
+
+    /**
+     * Count a step that missed its timeout
+     */
+    public void recordTimeout(SagaType sagaType, Enum<?> step) {
+        statsFor(sagaType, step).timeouts.increment();
+    }
+
+    private Decision decide(StepStats stepStats, long configuredMs, long now) {
+        if (stepStats.latencies.count() < minSamples) {
+            return new Decision(Math.min(configuredMs, maxTimeoutMs), false, now);
+        }
+        long observedMs = stepStats.latencies.percentile(percentile);
+        long timeoutMs = Math.max(minTimeoutMs, Math.min(maxTimeoutMs, (long) Math.ceil(observedMs * multiplier)));
+        return new Decision(timeoutMs, true, now);
+    }
+
+    private StepStats statsFor(SagaType sagaType, Enum<?> step) {
+        return stats.computeIfAbsent(sagaType.name() + ":" + step.name(), key -> new StepStats(sagaType, step));
+    }
+
+    private static final class Decision {
+        private final long timeoutMs;
+        private final boolean adaptive;
+        private final long madeAtMs;
+
+        private Decision(long timeoutMs, boolean adaptive, long madeAtMs) {
+            this.timeoutMs = timeoutMs;
+            this.adaptive = adaptive;
+            this.madeAtMs = madeAtMs;
+        }
+    }
+
+    private final class StepStats {
+        private final RollingHistogram latencies = new RollingHistogram(Duration.ofMillis(windowMs), windowSlots);
+        private final AtomicLong timeoutMs = new AtomicLong();
+        private final Counter adaptiveDecisions;
+        private final Counter configuredDecisions;
+        private final Counter timeouts;
+        private volatile Decision decision;
+
+        private StepStats(SagaType sagaType, Enum<?> step) {
+            String typeTag = sagaType.name();
+            String stepTag = step.name();
+            Gauge.builder("saga.step.deadline", timeoutMs, AtomicLong::get)
+                    .description("Current timeout of a saga step in milliseconds")
+                    .tags("type", typeTag, "step", stepTag)
+                    .register(meterRegistry);
+            adaptiveDecisions = decisionCounter(typeTag, stepTag, "adaptive");
+            configuredDecisions = decisionCounter(typeTag, stepTag, "configured");
+            timeouts = Counter.builder("saga.step.timeouts")
+                    .description("Saga steps that missed their timeout")
+                    .tags("type", typeTag, "step", stepTag)
+                    .register(meterRegistry);
+        }
+
+        private Counter decisionCounter(String typeTag, String stepTag, String basis) {
+            return Counter.builder("saga.step.deadline.decisions")
+                    .description("Saga step timeouts handed out, by what they were based on")
+                    .tags("type", typeTag, "step", stepTag, "basis", basis)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.stocktrading.kafka.scheduler;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Timer backed by a {@link TimingWheel}.
+ *
+ * Adding and cancelling a task is O(1). The caller drives time forward by calling
+ * {@link #advanceClock} in a loop; it blocks on the delay queue of non-empty buckets, so
+ * an idle timer costs nothing and a due bucket is picked up within its tick. Expired
+ * tasks are handed to the executor so a slow task never holds the clock back.
+ */
+final class DeadlineTimer {
+
+    private final Executor taskExecutor;
+    private final DelayQueue<TimerTaskList> delayQueue = new DelayQueue<>();
+    private final AtomicInteger taskCounter = new AtomicInteger(0);
+    private final TimingWheel timingWheel;
+
+    // Adds take the read lock; advancing the clock takes the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    DeadlineTimer(long tickMs, int wheelSize, Executor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+        this.timingWheel = new TimingWheel(tickMs, wheelSize, clockMs(), taskCounter, delayQueue);
+    }
+
+    /**
+     * Monotonic clock in milliseconds
+     */
+    static long clockMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    TimerTaskEntry schedule(long delayMs, Runnable task) {
+        TimerTaskEntry entry = new TimerTaskEntry(task, clockMs() + delayMs);
+        lock.readLock().lock();
+        try {
+            addTimerTaskEntry(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return entry;
+    }
+
+    /**
+     * Wait up to timeoutMs for a bucket to expire and process every bucket that is due.
+     * Returns false if nothing expired within the timeout.
+     */
+    boolean advanceClock(long timeoutMs) throws InterruptedException {
+        TimerTaskList bucket = delayQueue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (bucket == null) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            while (bucket != null) {
+                timingWheel.advanceClock(bucket.getExpiration());
+                // Re-inserting cascades overflow entries down a level or runs them if due
+                bucket.flush(this::addTimerTaskEntry);
+                bucket = delayQueue.poll();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Number of tasks still armed
+     */
+    int size() {
+        return taskCounter.get();
+    }
+
+    private void addTimerTaskEntry(TimerTaskEntry entry) {
+        if (!timingWheel.add(entry) && !entry.isCancelled()) {
+            taskExecutor.execute(entry.task);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.stocktrading.kafka.scheduler;
+
+import com.stocktrading.kafka.model.enums.SagaType;
+import com.stocktrading.kafka.service.SagaPartitionOwnership;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * In-memory step deadlines for all saga types.
+ *
+ * Saga services arm a deadline whenever a step starts and cancel it when the saga leaves
+ * the step; there is at most one deadline per saga. Deadlines live on a hierarchical
+ * timing wheel with millisecond ticks, and an expired deadline calls the handler the saga
+ * type registered, which re-checks the saga before acting on the timeout.
+ *
+ * Only sagas of partitions this instance owns get deadlines. A deadline that expires after its
+ * partition was revoked is dropped; the new owner arms its own from the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SagaDeadlineTracker {
+
+    private final SagaPartitionOwnership ownership;
+
+    @Value("${saga.deadline.tick-ms:1}")
+    private long tickMs;
+
+    @Value("${saga.deadline.wheel-size:20}")
+    private int wheelSize;
+
+    @Value("${saga.deadline.handler-threads:2}")
+    private int handlerThreads;
+
+    // Delay before a deadline whose handler failed (e.g. database unavailable) fires again
+    @Value("${saga.deadline.retry-delay-ms:5000}")
+    private long retryDelayMs;
+
+    private final Map<SagaType, Consumer<String>> handlers = new ConcurrentHashMap<>();
+    private final Map<String, ArmedDeadline> armed = new ConcurrentHashMap<>();
+
+    private ExecutorService handlerExecutor;
+    private DeadlineTimer timer;
+    private Thread reaper;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        handlerExecutor = Executors.newFixedThreadPool(handlerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "saga-deadline-handler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer = new DeadlineTimer(tickMs, wheelSize, handlerExecutor);
+
+        running = true;
+        reaper = new Thread(this::reap, "saga-deadline-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        reaper.interrupt();
+        handlerExecutor.shutdownNow();
+    }
+
+    /**
+     * Register the callback invoked with the sagaId when a saga of the given type misses its deadline
+     */
+    public void registerHandler(SagaType sagaType, Consumer<String> handler) {
+        handlers.put(sagaType, handler);
+    }
+
+    /**
+     * Arm (or move) the deadline for a saga's current step
+     */
+    public void arm(SagaType sagaType, String sagaId, Instant deadline) {
+        if (!ownership.owns(sagaId)) {
+            cancel(sagaType, sagaId);
+            return;
+        }
+
+        String key = key(sagaType, sagaId);
+        long deadlineMs = deadline.toEpochMilli();
+
+        ArmedDeadline current = armed.get(key);
+        if (current != null && current.deadlineMs == deadlineMs) {
+            return;
+        }
+
+        ArmedDeadline next = new ArmedDeadline(key, sagaType, sagaId, deadlineMs);
+        ArmedDeadline previous = armed.put(key, next);
+        if (previous != null) {
+            previous.cancel();
+        }
+        next.entry = timer.schedule(Math.max(0, deadlineMs - System.currentTimeMillis()), next);
+    }
+
+    /**
+     * Drop the deadline for a saga, if any
+     */
+    public void cancel(SagaType sagaType, String sagaId) {
+        ArmedDeadline previous = armed.remove(key(sagaType, sagaId));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Drop the deadlines of every saga matching the filter
+     */
+    public void cancelIf(Predicate<String> sagaIdFilter) {
+        armed.values().removeIf(deadline -> {
+            if (!sagaIdFilter.test(deadline.sagaId)) {
+                return false;
+            }
+            deadline.cancel();
+            return true;
+        });
+    }
+
+    /**
+     * Number of deadlines currently armed
+     */
+    public int size() {
+        return armed.size();
+    }
+
+    private void reap() {
+        while (running) {
+            try {
+                timer.advanceClock(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error advancing saga deadline timer", e);
+            }
+        }
+    }
+
+    private static String key(SagaType sagaType, String sagaId) {
+        return sagaType.name() + ":" + sagaId;
+    }
+
+    private final class ArmedDeadline implements Runnable {
+        private final String key;
+        private final SagaType sagaType;
+        private final String sagaId;
+        private final long deadlineMs;
+        private volatile TimerTaskEntry entry;
+
+        private ArmedDeadline(String key, SagaType sagaType, String sagaId, long deadlineMs) {
+            this.key = key;
+            this.sagaType = sagaType;
+            this.sagaId = sagaId;
+            this.deadlineMs = deadlineMs;
+        }
+
+        private void cancel() {
+            TimerTaskEntry scheduled = entry;
+            if (scheduled != null) {
+                scheduled.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            // A deadline that was moved or cancelled after it fired is no longer ours to handle
+            if (!armed.remove(key, this)) {
+                return;
+            }
+            if (!ownership.owns(sagaId)) {
+                log.debug("Dropping step deadline of {} saga {}, its partition is no longer owned", sagaType, sagaId);
+                return;
+            }
+
+            Consumer<String> handler = handlers.get(sagaType);
+            if (handler == null) {
+                log.warn("No deadline handler registered for {} sagas", sagaType);
+                return;
+            }
+
+            try {
+                handler.accept(sagaId);
+            } catch (Exception e) {
+                log.error("Error handling step deadline for {} saga {}, retrying in {} ms",
+                        sagaType, sagaId, retryDelayMs, e);
+                arm(sagaType, sagaId, Instant.now().plusMillis(retryDelayMs));
+            }
+        }
+    }
+}
@@ -1,36 +1,82 @@
 package com.stocktrading.kafka.scheduler;
 
 import com.stocktrading.kafka.service.DepositSagaService;
+import com.stocktrading.kafka.service.OrderBuySagaService;
+import com.stocktrading.kafka.service.SagaPartitionListener;
+import com.stocktrading.kafka.service.SagaPartitionOwnership;
 import com.stocktrading.kafka.service.WithdrawalSagaService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
- * Scheduler for saga timeout checking
+ * Scheduler for saga timeout checking.
+ *
+ * Step timeouts are driven by the deadlines in {@link SagaDeadlineTracker}, which the saga
+ * services arm as steps start. Whenever saga partitions are assigned to this instance, the
+ * deadlines of their in-flight sagas are re-armed from the database once, instead of polling
+ * for timed-out sagas; the deadlines of partitions that move away are dropped.
  */
 @Slf4j
 @Component
 @EnableScheduling
 @RequiredArgsConstructor
-public class SagaTimeoutScheduler {
-    
+public class SagaTimeoutScheduler implements SagaPartitionListener {
+
     private final DepositSagaService depositSagaService;
     private final WithdrawalSagaService withdrawalSagaService;
-    
+    private final OrderBuySagaService orderBuySagaService;
+    private final SagaDeadlineTracker deadlineTracker;
+    private final SagaPartitionOwnership ownership;
+
+    // Loads deadlines off the consumer thread so the rebalance is not held up by the database
+    private ExecutorService loader;
+
+    @PostConstruct
+    public void start() {
+        loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "saga-deadline-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        loader.shutdownNow();
+    }
+
+    @Override
+    public void partitionsAssigned(Set<Integer> partitions) {
+        loader.execute(() -> rebuildDeadlines(partitions));
+    }
+
+    @Override
+    public void partitionsReleased(Set<Integer> partitions) {
+        deadlineTracker.cancelIf(sagaId -> partitions.contains(ownership.partitionOf(sagaId)));
+    }
+
     /**
-     * Check for timed-out sagas every 30 seconds
+     * Re-arm step deadlines for the active sagas of the given partitions
      */
-    @Scheduled(fixedRate = 30000)
-    public void checkForTimeouts() {
-        log.debug("Running scheduled timeout check");
-        
+    void rebuildDeadlines(Set<Integer> partitions) {
+        log.info("Rebuilding saga step deadlines for partitions {}", partitions);
+
         try {
-            depositSagaService.checkForTimeouts();
+            int deposits = depositSagaService.rebuildDeadlines(partitions);
+            int withdrawals = withdrawalSagaService.rebuildDeadlines(partitions);
+            int orderBuys = orderBuySagaService.rebuildDeadlines(partitions);
+            log.info("Armed step deadlines for {} deposit, {} withdrawal and {} order-buy sagas",
+                    deposits, withdrawals, orderBuys);
         } catch (Exception e) {
-            log.error("Error during scheduled timeout check", e);
+            log.error("Error rebuilding saga step deadlines", e);
         }
     }
 }
@@ -0,0 +1,42 @@
+package com.stocktrading.kafka.scheduler;
+
+/**
+ * A task scheduled on the timing wheel, linked into the bucket covering its expiration
+ */
+final class TimerTaskEntry {
+
+    final Runnable task;
+    final long expirationMs;
+
+    volatile TimerTaskList list;
+    TimerTaskEntry next;
+    TimerTaskEntry prev;
+
+    private volatile boolean cancelled;
+
+    TimerTaskEntry(Runnable task, long expirationMs) {
+        this.task = task;
+        this.expirationMs = expirationMs;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancel the task and unlink it so its bucket does not keep it alive
+     */
+    void cancel() {
+        cancelled = true;
+        remove();
+    }
+
+    void remove() {
+        // The entry may be moved to another bucket concurrently, so retry until it is unlinked
+        TimerTaskList current = list;
+        while (current != null) {
+            current.remove(this);
+            current = list;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.stocktrading.kafka.scheduler;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hierarchical timing wheel.
+ *
+ * Each wheel has a fixed number of buckets spanning tickMs each. A deadline beyond the
+ * wheel's interval goes to an overflow wheel whose tick is this wheel's whole interval,
+ * created on demand, so any deadline is stored in O(1) with a handful of levels. As the
+ * clock advances, entries in an expired overflow bucket are re-inserted and cascade down
+ * to finer wheels until they expire at the granularity of the lowest tick.
+ *
+ * Not thread safe on its own; {@link DeadlineTimer} serializes clock advances against adds.
+ */
+final class TimingWheel {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final AtomicInteger taskCounter;
+    private final DelayQueue<TimerTaskList> queue;
+    private final TimerTaskList[] buckets;
+
+    // Rounded down to a multiple of tickMs
+    private long currentTimeMs;
+
+    private volatile TimingWheel overflowWheel;
+
+    TimingWheel(long tickMs, int wheelSize, long startMs, AtomicInteger taskCounter,
+                DelayQueue<TimerTaskList> queue) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.taskCounter = taskCounter;
+        this.queue = queue;
+        this.buckets = new TimerTaskList[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new TimerTaskList(taskCounter);
+        }
+        this.currentTimeMs = startMs - (startMs % tickMs);
+    }
+
+    /**
+     * Add an entry; returns false if it is already expired (or cancelled) and should run now
+     */
+    boolean add(TimerTaskEntry entry) {
+        long expiration = entry.expirationMs;
+
+        if (entry.isCancelled()) {
+            return false;
+        } else if (expiration < currentTimeMs + tickMs) {
+            return false;
+        } else if (expiration < currentTimeMs + interval) {
+            long virtualId = expiration / tickMs;
+            TimerTaskList bucket = buckets[(int) (virtualId % wheelSize)];
+            bucket.add(entry);
+
+            // A bucket is reused once its previous round has been flushed, so re-queue it
+            if (bucket.setExpiration(virtualId * tickMs)) {
+                queue.offer(bucket);
+            }
+            return true;
+        } else {
+            if (overflowWheel == null) {
+                addOverflowWheel();
+            }
+            return overflowWheel.add(entry);
+        }
+    }
+
+    void advanceClock(long timeMs) {
+        if (timeMs >= currentTimeMs + tickMs) {
+            currentTimeMs = timeMs - (timeMs % tickMs);
+
+            if (overflowWheel != null) {
+                overflowWheel.advanceClock(currentTimeMs);
+            }
+        }
+    }
+
+    private synchronized void addOverflowWheel() {
+        if (overflowWheel == null) {
+            overflowWheel = new TimingWheel(interval, wheelSize, currentTimeMs, taskCounter, queue);
+        }
+    }
+}
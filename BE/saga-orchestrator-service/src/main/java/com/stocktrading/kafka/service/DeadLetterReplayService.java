@@ -0,0 +1,196 @@
+package com.stocktrading.kafka.service;
+
+import com.stocktrading.kafka.dto.DeadLetterDto;
+import com.stocktrading.kafka.dto.DlqReplayResponse;
+import com.stocktrading.kafka.exception.SagaExecutionException;
+import com.stocktrading.kafka.utils.DeadLetterHeaders;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Inspects and replays the saga DLQ.
+ *
+ * The DLQ is read from the replay cursor, the committed offsets of its own consumer group, up to
+ * the end offsets seen when the call starts. A replay republishes each dead letter, as the bytes
+ * and headers it was first published with, to the topic it was originally read from, where it is
+ * handled like a new delivery. Replays of all sagas move the cursor past what they replayed;
+ * replays of a single saga leave it, so the other sagas' dead letters stay pending.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeadLetterReplayService {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(200);
+    private static final long READ_TIMEOUT_MS = 10000;
+    private static final long SEND_TIMEOUT_MS = 30000;
+
+    private final ConsumerFactory<String, byte[]> deadLetterConsumerFactory;
+    private final KafkaTemplate<String, byte[]> deadLetterKafkaTemplate;
+
+    @Value("${kafka.topics.dlq:saga.dlq}")
+    private String dlqTopic;
+
+    @Value("${saga.dlq.replay-max-records:500}")
+    private int maxRecords;
+
+    /**
+     * Dead letters not replayed yet, oldest first within each partition
+     */
+    public List<DeadLetterDto> peek(int limit) {
+        List<DeadLetterDto> deadLetters = new ArrayList<>();
+        try (Consumer<String, byte[]> consumer = deadLetterConsumerFactory.createConsumer()) {
+            readPending(consumer, record -> {
+                deadLetters.add(mapToDto(record));
+                return deadLetters.size() < limit;
+            });
+        }
+        return deadLetters;
+    }
+
+    /**
+     * Republish dead letters to their original topics
+     *
+     * @param sagaId only replay this saga's dead letters, or all when null
+     * @param limit  most dead letters to replay
+     */
+    public synchronized DlqReplayResponse replay(String sagaId, int limit) {
+        DlqReplayResponse response = new DlqReplayResponse();
+        Map<TopicPartition, OffsetAndMetadata> cursor = new HashMap<>();
+
+        try (Consumer<String, byte[]> consumer = deadLetterConsumerFactory.createConsumer()) {
+            try {
+                readPending(consumer, record -> {
+                    if (sagaId != null && !sagaId.equals(record.key())) {
+                        response.setSkipped(response.getSkipped() + 1);
+                        return true;
+                    }
+
+                    String originalTopic = DeadLetterHeaders.originalTopic(record);
+                    if (originalTopic == null) {
+                        log.error("Dead letter {}-{}@{} has no original topic, not replaying it",
+                                record.topic(), record.partition(), record.offset());
+                        response.setUnroutable(response.getUnroutable() + 1);
+                    } else {
+                        republish(record, originalTopic);
+                        response.setReplayed(response.getReplayed() + 1);
+                    }
+                    cursor.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                    return response.getReplayed() < limit;
+                });
+            } finally {
+                if (sagaId == null && !cursor.isEmpty()) {
+                    consumer.commitSync(cursor);
+                }
+            }
+        }
+
+        log.info("Replayed {} dead letters{}, skipped {}, {} unroutable", response.getReplayed(),
+                sagaId != null ? " of saga " + sagaId : "", response.getSkipped(), response.getUnroutable());
+        return response;
+    }
+
+    /**
+     * Hand the records between the replay cursor and the current end of the DLQ to the visitor,
+     * at most saga.dlq.replay-max-records of them, until it returns false
+     */
+    private void readPending(Consumer<String, byte[]> consumer, Predicate<ConsumerRecord<String, byte[]>> visitor) {
+        List<TopicPartition> partitions = consumer.partitionsFor(dlqTopic).stream()
+                .map(info -> new TopicPartition(info.topic(), info.partition()))
+                .collect(Collectors.toList());
+        consumer.assign(partitions);
+
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+        Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+        for (TopicPartition partition : partitions) {
+            OffsetAndMetadata offset = committed.get(partition);
+            if (offset != null) {
+                consumer.seek(partition, offset.offset());
+            } else {
+                consumer.seekToBeginning(List.of(partition));
+            }
+        }
+
+        Set<TopicPartition> pending = new HashSet<>(partitions);
+        pending.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT_MS;
+        int read = 0;
+
+        while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+            ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+            for (TopicPartition partition : records.partitions()) {
+                for (ConsumerRecord<String, byte[]> record : records.records(partition)) {
+                    if (record.offset() >= endOffsets.get(partition)) {
+                        break;
+                    }
+                    if (read++ >= maxRecords || !visitor.test(record)) {
+                        return;
+                    }
+                }
+            }
+            pending.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+        }
+    }
+
+    private void republish(ConsumerRecord<String, byte[]> record, String originalTopic) {
+        // Drop the dead-letter and retry headers so a new failure starts from the first retry tier
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            if (!header.key().startsWith(DeadLetterHeaders.PREFIX)
+                    && !header.key().equals(SagaRetryRouter.RETRY_ATTEMPT_HEADER)
+                    && !header.key().equals(SagaRetryRouter.RETRY_DUE_AT_HEADER)) {
+                headers.add(header);
+            }
+        }
+
+        try {
+            deadLetterKafkaTemplate.send(new ProducerRecord<>(originalTopic, null, record.key(), record.value(), headers))
+                    .get(SEND_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SagaExecutionException("Interrupted while replaying dead letters", e);
+        } catch (Exception e) {
+            throw new SagaExecutionException("Failed to replay dead letter " + record.topic() + "-"
+                    + record.partition() + "@" + record.offset() + " to " + originalTopic, e);
+        }
+    }
+
+    private DeadLetterDto mapToDto(ConsumerRecord<String, byte[]> record) {
+        return new DeadLetterDto(
+                record.key(),
+                record.partition(),
+                record.offset(),
+                Instant.ofEpochMilli(record.timestamp()),
+                DeadLetterHeaders.originalTopic(record),
+                DeadLetterHeaders.originalPartition(record),
+                DeadLetterHeaders.originalOffset(record),
+                DeadLetterHeaders.exceptionClass(record),
+                DeadLetterHeaders.exceptionMessage(record)
+        );
+    }
+}
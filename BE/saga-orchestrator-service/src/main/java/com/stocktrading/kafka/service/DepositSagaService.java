@@ -5,19 +5,32 @@ import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
 import com.project.kafkamessagemodels.model.enums.CommandType;
 import com.project.kafkamessagemodels.model.enums.EventType;
+import com.project.kafkamessagemodels.payload.event.PaymentProcessedPayload;
+import com.project.kafkamessagemodels.payload.event.TransactionCreatedPayload;
 import com.stocktrading.kafka.model.DepositSagaState;
+import com.stocktrading.kafka.model.SagaPage;
+import com.stocktrading.kafka.model.SagaTransition;
 
 
 import com.stocktrading.kafka.model.enums.DepositSagaStep;
 
 import com.stocktrading.kafka.model.enums.SagaStatus;
+import com.stocktrading.kafka.model.enums.SagaType;
 import com.stocktrading.kafka.model.enums.WithdrawalSagaStep;
 import com.stocktrading.kafka.repository.DepositSagaRepository;
+import com.stocktrading.kafka.repository.SagaQueryRepository;
+import com.stocktrading.kafka.scheduler.AdaptiveStepTimeouts;
+import com.stocktrading.kafka.scheduler.SagaDeadlineTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
@@ -29,11 +42,20 @@ import java.util.*;
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class DepositSagaService {
+public class DepositSagaService implements SagaEventHandler {
     
     private final DepositSagaRepository depositSagaRepository;
-    private final KafkaMessagePublisher messagePublisher;
+    private final SagaStateStore<DepositSagaState> sagaStateStore;
     private final IdempotencyService idempotencyService;
+    private final SagaDeadlineTracker deadlineTracker;
+    private final AdaptiveStepTimeouts stepTimeouts;
+    private final SagaMonitoringService sagaMonitoringService;
+    private final SagaQueryRepository sagaQueryRepository;
+    private final SagaPartitionOwnership partitionOwnership;
+    private final SagaUpdateStream sagaUpdateStream;
+    private final SagaTypeIndex sagaTypeIndex;
+    private final SagaArchiver sagaArchiver;
+    private final MongoTemplate mongoTemplate;
     
     @Value("${saga.deposit.retry.max-attempts}")
     private int maxRetries;
@@ -73,7 +95,7 @@ public class DepositSagaService {
      */
     public DepositSagaState startSaga(String userId, String accountId, BigDecimal amount,
                                      String currency, String paymentMethodId) {
-        String sagaId = UUID.randomUUID().toString();
+        String sagaId = partitionOwnership.newSagaId();
 
         log.debug("Starting saga with sagaId: {}, amount: {} (type: {})",
                 sagaId, amount, amount.getClass().getName());
@@ -85,10 +107,13 @@ public class DepositSagaService {
         log.debug("Saga before save: sagaId={}, amount={} (type={})",
                 saga.getSagaId(), saga.getAmount(), saga.getAmount().getClass().getName());
 
-        depositSagaRepository.save(saga);
+        synchronized (saga) {
+            sagaStateStore.update(saga);
 
-        // Process the first step
-        processNextStep(saga);
+            // Process the first step (checkpoints the saga before the command goes out)
+            processNextStep(saga);
+            afterTransition(null, saga);
+        }
 
         return saga;
     }
@@ -104,7 +129,7 @@ public class DepositSagaService {
             // This can happen for the COMPLETE_SAGA step which doesn't have a command
             if (saga.getCurrentStep() == DepositSagaStep.COMPLETE_SAGA) {
                 saga.moveToNextStep(); // This will mark the saga as COMPLETED
-                depositSagaRepository.save(saga);
+                sagaStateStore.checkpoint(saga);
                 log.info("Deposit saga [{}] completed successfully", saga.getSagaId());
             } else {
                 log.warn("No command defined for step: {} in saga: {}", 
@@ -116,29 +141,37 @@ public class DepositSagaService {
         // Initialize the command
         command.initialize();
         
-        // Save the updated saga state
-        depositSagaRepository.save(saga);
-        
         // Determine the topic based on the command type
         String targetTopic = getTopicForCommandType(CommandType.valueOf(command.getType()));
         
-        // Publish the command
-        messagePublisher.publishCommand(command, targetTopic);
+        // Persist the saga together with the command; the outbox relay publishes it
+        sagaStateStore.checkpoint(saga, command, targetTopic);
         
-        log.info("Published command [{}] for saga [{}] to topic: {}", 
+        log.info("Queued command [{}] for saga [{}] to topic: {}", 
             command.getType(), saga.getSagaId(), targetTopic);
     }
 
+    @Override
+    public SagaType getSagaType() {
+        return SagaType.DEPOSIT;
+    }
+
+    @Override
+    public void preload(Collection<String> sagaIds) {
+        sagaStateStore.preload(sagaIds);
+    }
+
     /**
      * Handle an event message response
      */
+    @Override
     public void handleEventMessage(EventMessage event) {
         String sagaId = event.getSagaId();
 
         log.debug("Handling event [{}] for saga: {}", event.getType(), sagaId);
 
         // Find the saga
-        Optional<DepositSagaState> optionalSaga = depositSagaRepository.getDepositSagaStateBySagaId(sagaId);
+        Optional<DepositSagaState> optionalSaga = sagaStateStore.find(sagaId);
         if (optionalSaga.isEmpty()) {
             log.warn("Received event for unknown saga: {}", sagaId);
             return;
@@ -146,6 +179,17 @@ public class DepositSagaService {
 
         DepositSagaState saga = optionalSaga.get();
 
+        // Serialize with other events and timeouts touching the same saga
+        synchronized (saga) {
+            SagaTransition before = SagaTransition.of(saga);
+            handleEventMessage(saga, event);
+            afterTransition(before, saga);
+        }
+    }
+
+    private void handleEventMessage(DepositSagaState saga, EventMessage event) {
+        String sagaId = saga.getSagaId();
+
         // Log saga state for debugging
         log.debug("Current saga state: id={}, status={}, currentStep={}, isCompensationStep={}",
                 saga.getSagaId(), saga.getStatus(),
@@ -226,7 +270,7 @@ public class DepositSagaService {
         }
 
         // Save the updated saga
-        depositSagaRepository.save(saga);
+        sagaStateStore.update(saga);
 
         // Process the next step if saga is still active
         if (saga.getStatus() == SagaStatus.IN_PROGRESS ||
@@ -290,7 +334,7 @@ public class DepositSagaService {
             saga.startCompensation();
 
             // Save the updated saga
-            depositSagaRepository.save(saga);
+            sagaStateStore.update(saga);
 
             // Start the compensation process
             processNextStep(saga);
@@ -301,7 +345,7 @@ public class DepositSagaService {
             log.info("Saga terminated due to validation failure at step: {}", saga.getCurrentStep().name());
 
             // Save the terminated saga
-            depositSagaRepository.save(saga);
+            sagaStateStore.checkpoint(saga);
         }
     }
 
@@ -323,11 +367,11 @@ public class DepositSagaService {
             
             switch (eventType) {
                 case DEPOSIT_TRANSACTION_CREATED:
-                    saga.setTransactionId(event.getPayloadValue("transactionId"));
+                    saga.setTransactionId(TransactionCreatedPayload.from(event).getTransactionId());
                     break;
                     
                 case DEPOSIT_PAYMENT_PROCESSED:
-                    saga.setPaymentProcessorTransactionId(event.getPayloadValue("paymentReference"));
+                    saga.setPaymentProcessorTransactionId(PaymentProcessedPayload.from(event).getPaymentReference());
                     break;
                     
                 // Store other event data as needed
@@ -471,8 +515,19 @@ public class DepositSagaService {
         List<DepositSagaState> potentiallyTimedOutSagas = 
             depositSagaRepository.findPotentiallyTimedOutSagas(activeStatuses, cutoffTime);
         
-        for (DepositSagaState saga : potentiallyTimedOutSagas) {
-            handlePotentialTimeout(saga);
+        for (DepositSagaState candidate : potentiallyTimedOutSagas) {
+            // Sagas of partitions owned by another instance are timed out there
+            if (!partitionOwnership.owns(candidate.getSagaId())) {
+                continue;
+            }
+            // Always act on the hot instance so in-flight changes are not overwritten
+            sagaStateStore.find(candidate.getSagaId()).ifPresent(saga -> {
+                synchronized (saga) {
+                    SagaTransition before = SagaTransition.of(saga);
+                    handlePotentialTimeout(saga);
+                    afterTransition(before, saga);
+                }
+            });
         }
     }
     
@@ -488,15 +543,17 @@ public class DepositSagaService {
         
         if (saga.isCurrentStepTimedOut(timeout)) {
             log.warn("Step [{}] has timed out for saga: {}", saga.getCurrentStep(), saga.getSagaId());
+            stepTimeouts.recordTimeout(SagaType.DEPOSIT, saga.getCurrentStep());
             
             // Check if we can retry
             if (saga.getRetryCount() < saga.getMaxRetries()) {
                 // Increment retry count
                 saga.incrementRetryCount();
+                saga.setCurrentStepStartTime(Instant.now()); // The retry gets a fresh deadline
                 saga.addEvent("RETRY", "Retrying step " + saga.getCurrentStep() + " after timeout");
                 
-                // Save and retry the step
-                depositSagaRepository.save(saga);
+                // Retry the step
+                sagaStateStore.update(saga);
                 processNextStep(saga);
                 
             } else {
@@ -505,17 +562,87 @@ public class DepositSagaService {
                     saga.getCurrentStep().name());
                 saga.startCompensation();
                 
-                // Save and start compensation
-                depositSagaRepository.save(saga);
+                // Start compensation
+                sagaStateStore.update(saga);
                 processNextStep(saga);
             }
         }
     }
     
+    @PostConstruct
+    public void registerDeadlineHandler() {
+        deadlineTracker.registerHandler(SagaType.DEPOSIT, this::handleStepDeadline);
+    }
+
+    /**
+     * Arm the deadline for the saga's current step, or cancel it once the saga has left
+     * the states that time out
+     */
+    private void trackStepDeadline(DepositSagaState saga) {
+        if ((saga.getStatus() == SagaStatus.STARTED || saga.getStatus() == SagaStatus.IN_PROGRESS)
+                && saga.getCurrentStep() != null && saga.getCurrentStepStartTime() != null) {
+            deadlineTracker.arm(SagaType.DEPOSIT, saga.getSagaId(),
+                    saga.getCurrentStepStartTime().plus(getTimeoutForStep(saga.getCurrentStep())));
+        } else {
+            deadlineTracker.cancel(SagaType.DEPOSIT, saga.getSagaId());
+        }
+    }
+
+    /**
+     * Bookkeeping after an event, timeout or user action has been applied to a saga
+     *
+     * @param before snapshot taken before the change, or null for a newly started saga
+     */
+    private void afterTransition(SagaTransition before, DepositSagaState saga) {
+        trackStepDeadline(saga);
+        sagaMonitoringService.recordTransition(SagaType.DEPOSIT, before, saga);
+        sagaTypeIndex.track(SagaType.DEPOSIT, saga);
+        sagaUpdateStream.publish(saga);
+    }
+
+    /**
+     * Called by the deadline tracker when the current step's deadline expires
+     */
+    private void handleStepDeadline(String sagaId) {
+        sagaStateStore.find(sagaId).ifPresent(saga -> {
+            synchronized (saga) {
+                SagaTransition before = SagaTransition.of(saga);
+                handlePotentialTimeout(saga);
+                afterTransition(before, saga);
+            }
+        });
+    }
+
+    /**
+     * Re-arm the deadlines of the sagas in the given partitions that can time out, used when
+     * the partitions are assigned to this instance
+     */
+    public int rebuildDeadlines(Set<Integer> partitions) {
+        // Only the fields a deadline is computed from
+        Query active = new Query(Criteria.where("status").in(SagaStatus.STARTED, SagaStatus.IN_PROGRESS));
+        active.fields().include("sagaId").include("status").include("currentStep").include("currentStepStartTime");
+        int rebuilt = 0;
+        for (DepositSagaState saga : mongoTemplate.find(active, DepositSagaState.class)) {
+            if (partitions.contains(partitionOwnership.partitionOf(saga.getSagaId()))) {
+                sagaTypeIndex.track(SagaType.DEPOSIT, saga);
+                trackStepDeadline(saga);
+                rebuilt++;
+            }
+        }
+        return rebuilt;
+    }
+
     /**
-     * Get the timeout duration for a specific step
+     * Get the timeout duration for a specific step, adapted to the step's observed latency
      */
     private Duration getTimeoutForStep(DepositSagaStep step) {
+        return stepTimeouts.timeoutFor(SagaType.DEPOSIT, step, getConfiguredTimeoutForStep(step));
+    }
+
+    /**
+     * Get the configured timeout for a specific step, used until its latency is known
+     */
+    private Duration getConfiguredTimeoutForStep(DepositSagaStep step) {
         switch (step) {
             case VERIFY_USER_IDENTITY:
                 return Duration.ofMillis(verifyIdentityTimeout);
@@ -536,18 +663,27 @@ public class DepositSagaService {
     }
     
     /**
-     * Find a saga by ID
+     * Find a saga by ID, in the archive if it finished long ago
      */
     public Optional<DepositSagaState> findById(String sagaId) {
-        return depositSagaRepository.findById(sagaId);
+        return sagaStateStore.find(sagaId).or(() -> sagaArchiver.findArchived(DepositSagaState.class, sagaId));
     }
     
     /**
-     * Find all active sagas
+     * Page through active sagas, the longest-waiting step first
+     */
+    public SagaPage<DepositSagaState> findActiveSagas(String cursor, int limit) {
+        return sagaQueryRepository.findPage(DepositSagaState.class,
+                Criteria.where("status").in(SagaStatus.STARTED, SagaStatus.IN_PROGRESS, SagaStatus.COMPENSATING),
+                "currentStepStartTime", DepositSagaState::getCurrentStepStartTime, Sort.Direction.ASC, cursor, limit);
+    }
+
+    /**
+     * Page through a user's sagas, newest first, archived ones included
      */
-    public List<DepositSagaState> findActiveSagas() {
-        List<SagaStatus> activeStatuses = Arrays.asList(
-            SagaStatus.STARTED, SagaStatus.IN_PROGRESS, SagaStatus.COMPENSATING);
-        return depositSagaRepository.findByStatusIn(activeStatuses);
+    public SagaPage<DepositSagaState> findByUserId(String userId, String cursor, int limit) {
+        return sagaQueryRepository.findPage(DepositSagaState.class,
+                sagaArchiver.collectionsWithArchive(DepositSagaState.class), Criteria.where("userId").is(userId),
+                "startTime", DepositSagaState::getStartTime, Sort.Direction.DESC, cursor, limit);
     }
 }
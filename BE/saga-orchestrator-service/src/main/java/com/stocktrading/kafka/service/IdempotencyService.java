@@ -1,20 +1,36 @@
 package com.stocktrading.kafka.service;
 
+import com.mongodb.client.MongoCursor;
 import com.project.kafkamessagemodels.model.BaseMessage;
 import com.stocktrading.kafka.model.ProcessedMessage;
 import com.stocktrading.kafka.repository.ProcessedMessageRepository;
+import com.stocktrading.kafka.utils.BloomFilter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
 /**
- * Service for ensuring idempotent message processing
+ * Service for ensuring idempotent message processing.
+ *
+ * Lookups go through two local tiers before MongoDB: a bounded LRU of recently processed
+ * message IDs answers redeliveries, and a Bloom filter over every ID still retained in
+ * the processed_messages collection answers the common "never seen" case without a query.
+ * Only Bloom filter hits that are not in the LRU fall through to the database.
  */
 @Slf4j
 @Service
@@ -22,24 +38,70 @@ import java.util.UUID;
 public class IdempotencyService {
 
     private final ProcessedMessageRepository processedMessageRepository;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${saga.idempotency.lru-size:100000}")
+    private int lruSize;
+
+    @Value("${saga.idempotency.bloom.expected-insertions:2000000}")
+    private long bloomExpectedInsertions;
+
+    @Value("${saga.idempotency.bloom.false-positive-rate:0.01}")
+    private double bloomFalsePositiveRate;
+
+    private Map<String, Boolean> recentlyProcessed;
+    private volatile BloomFilter processedFilter;
+
+    // Until the filter holds every retained ID, a negative answer from it is not trustworthy
+    private volatile boolean filterComplete = false;
+
+    @PostConstruct
+    public void init() {
+        recentlyProcessed = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > lruSize;
+            }
+        });
+        processedFilter = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread thread = new Thread(this::rebuildFilter, "idempotency-filter-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
     /**
      * Check if a message has been processed before
      */
     public boolean isProcessed(BaseMessage message) {
-        String messageId = message.getMessageId();
+        String key = cacheKey(message);
+        if (key == null) {
+            return false;
+        }
 
-        // If messageId is null, check by sagaId and stepId combination
-        if (messageId == null) {
-            if (message.getSagaId() == null || message.getStepId() == null) {
-                return false;
-            }
-            return processedMessageRepository.findBySagaIdAndStepId(
-                    message.getSagaId(), message.getStepId()) != null;
+        if (recentlyProcessed.containsKey(key)) {
+            return true;
+        }
+        SagaWriteBatch batch = SagaWriteBatch.current();
+        if (batch != null && batch.hasProcessed(key)) {
+            return true;
+        }
+        if (filterComplete && !processedFilter.mightContain(key)) {
+            return false;
         }
 
-        ProcessedMessage processedMessage = processedMessageRepository.findByMessageId(messageId);
-        return processedMessage != null;
+        // If messageId is null, check by sagaId and stepId combination
+        boolean processed = message.getMessageId() == null
+                ? processedMessageRepository.findBySagaIdAndStepId(message.getSagaId(), message.getStepId()) != null
+                : processedMessageRepository.existsById(key);
+
+        if (processed) {
+            recentlyProcessed.put(key, Boolean.TRUE);
+        }
+        return processed;
     }
 
     /**
@@ -58,9 +120,7 @@ public class IdempotencyService {
             // If this is the case in the Kafka UI image, generate a UUID
             // based on sagaId and stepId to ensure uniqueness
             if (sagaId != null && message.getStepId() != null) {
-                messageId = UUID.nameUUIDFromBytes(
-                        (sagaId + "-" + message.getStepId()).getBytes()
-                ).toString();
+                messageId = stepMessageId(sagaId, message.getStepId());
                 log.info("Generated messageId {} for sagaId {} and stepId {}",
                         messageId, sagaId, message.getStepId());
             } else {
@@ -77,6 +137,17 @@ public class IdempotencyService {
                 result
         );
 
+        // Inside a batch the record is written together with the saga states it belongs to
+        SagaWriteBatch batch = SagaWriteBatch.current();
+        if (batch != null) {
+            batch.addProcessedMessage(processedMessage);
+            return;
+        }
+
+        // Remember locally first so a redelivery is caught even if the write below fails
+        processedFilter.put(messageId);
+        recentlyProcessed.put(messageId, Boolean.TRUE);
+
         try {
             processedMessageRepository.save(processedMessage);
             log.debug("Successfully recorded message processing: {}", messageId);
@@ -85,6 +156,29 @@ public class IdempotencyService {
         }
     }
 
+    /**
+     * Record a batch of processed messages with a single bulk insert
+     */
+    public void recordAll(Collection<ProcessedMessage> processedMessages) {
+        if (processedMessages.isEmpty()) {
+            return;
+        }
+
+        for (ProcessedMessage processedMessage : processedMessages) {
+            processedFilter.put(processedMessage.getMessageId());
+            recentlyProcessed.put(processedMessage.getMessageId(), Boolean.TRUE);
+        }
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProcessedMessage.class)
+                    .insert(new ArrayList<>(processedMessages))
+                    .execute();
+            log.debug("Successfully recorded processing of {} messages", processedMessages.size());
+        } catch (Exception e) {
+            log.error("Failed to record processing of {} messages", processedMessages.size(), e);
+        }
+    }
+
     /**
      * Get previously processed result for a message
      */
@@ -98,12 +192,9 @@ public class IdempotencyService {
             return null;
         }
 
-        ProcessedMessage processedMessage = processedMessageRepository.findByMessageId(message.getMessageId());
-        if (processedMessage == null) {
-            return null;
-        }
-
-        return processedMessage.getResult();
+        return processedMessageRepository.findById(message.getMessageId())
+                .map(ProcessedMessage::getResult)
+                .orElse(null);
     }
 
     /**
@@ -119,21 +210,54 @@ public class IdempotencyService {
     }
 
     /**
-     * Scheduled task to clean up old processed messages
-     * Runs daily at 1 AM
+     * Rebuild the Bloom filter from the IDs still retained in MongoDB.
+     * Expired IDs are removed by the collection's TTL index, so a daily rebuild keeps the
+     * filter from saturating. Runs daily at 1 AM.
      */
     @Scheduled(cron = "0 0 1 * * ?")
-    public void cleanupOldMessages() {
-        log.info("Starting cleanup of old processed messages");
+    public void rebuildFilter() {
+        log.info("Rebuilding processed message filter");
 
-        // Keep messages for 14 days
-        Instant cutoffTime = Instant.now().minus(14, ChronoUnit.DAYS);
+        BloomFilter filter = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate);
+        long loaded = 0;
 
-        try {
-            processedMessageRepository.deleteByProcessedAtBefore(cutoffTime);
-            log.info("Completed cleanup of old processed messages");
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(
+                        mongoTemplate.getCollectionName(ProcessedMessage.class))
+                .find()
+                .projection(new Document("_id", 1))
+                .batchSize(10_000)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                filter.put(String.valueOf(cursor.next().get("_id")));
+                loaded++;
+            }
         } catch (Exception e) {
-            log.error("Failed to cleanup old processed messages", e);
+            log.error("Failed to rebuild processed message filter, falling back to database lookups", e);
+            filterComplete = false;
+            return;
+        }
+
+        // IDs recorded while the rebuild was running are still in the LRU
+        synchronized (recentlyProcessed) {
+            recentlyProcessed.keySet().forEach(filter::put);
+            processedFilter = filter;
+        }
+        filterComplete = true;
+
+        log.info("Processed message filter rebuilt with {} message IDs", loaded);
+    }
+
+    private String cacheKey(BaseMessage message) {
+        if (message.getMessageId() != null) {
+            return message.getMessageId();
+        }
+        if (message.getSagaId() == null || message.getStepId() == null) {
+            return null;
         }
+        return stepMessageId(message.getSagaId(), message.getStepId());
+    }
+
+    private String stepMessageId(String sagaId, Integer stepId) {
+        return UUID.nameUUIDFromBytes((sagaId + "-" + stepId).getBytes()).toString();
     }
-}
\ No newline at end of file
+}
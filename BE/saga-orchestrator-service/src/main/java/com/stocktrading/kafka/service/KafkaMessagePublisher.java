@@ -3,14 +3,19 @@ package com.stocktrading.kafka.service;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkaplatform.SagaTypeHeader;
+import com.stocktrading.kafka.model.enums.SagaType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.util.concurrent.ListenableFutureCallback;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Service for publishing messages to Kafka topics
  */
@@ -23,9 +28,11 @@ public class KafkaMessagePublisher {
     private final KafkaTemplate<String, EventMessage> eventKafkaTemplate;
     
     /**
-     * Publish a command message to a topic
+     * Publish a command message to a topic, tagged with the type of the saga that sent it.
+     * Delivery failures are reported through the returned future; the outbox relay retries them.
      */
-    public void publishCommand(CommandMessage command, String topic) {
+    public ListenableFuture<SendResult<String, CommandMessage>> publishCommand(CommandMessage command, String topic,
+                                                                               SagaType sagaType) {
         if (command.getMessageId() == null) {
             command.initialize();
         }
@@ -36,8 +43,11 @@ public class KafkaMessagePublisher {
         
         log.debug("Publishing command [{}] to topic: {}, key: {}", command.getType(), topic, key);
         
-        ListenableFuture<SendResult<String, CommandMessage>> future = 
-            commandKafkaTemplate.send(topic, key, command);
+        ProducerRecord<String, CommandMessage> record = new ProducerRecord<>(topic, key, command);
+        if (sagaType != null) {
+            record.headers().add(SagaTypeHeader.NAME, sagaType.name().getBytes(StandardCharsets.UTF_8));
+        }
+        ListenableFuture<SendResult<String, CommandMessage>> future = commandKafkaTemplate.send(record);
             
         future.addCallback(new ListenableFutureCallback<>() {
             @Override
@@ -49,10 +59,12 @@ public class KafkaMessagePublisher {
 
             @Override
             public void onFailure(Throwable ex) {
-                log.error("Unable to send command [{}] for saga [{}] to topic: {}", 
-                    command.getType(), command.getSagaId(), topic, ex);
+                log.debug("Unable to send command [{}] for saga [{}] to topic: {}: {}", 
+                    command.getType(), command.getSagaId(), topic, ex.getMessage());
             }
         });
+
+        return future;
     }
     
     /**
@@ -4,17 +4,36 @@ import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
 import com.project.kafkamessagemodels.model.enums.CommandType;
 import com.project.kafkamessagemodels.model.enums.EventType;
+import com.project.kafkamessagemodels.payload.PayloadValues;
+import com.project.kafkamessagemodels.payload.command.OrderCancelPayload;
+import com.project.kafkamessagemodels.payload.event.FundsReservedPayload;
+import com.project.kafkamessagemodels.payload.event.LimitOrderQueuedPayload;
+import com.project.kafkamessagemodels.payload.event.OrderCreatedPayload;
+import com.project.kafkamessagemodels.payload.event.OrderExecutedByBrokerPayload;
+import com.project.kafkamessagemodels.payload.event.OrderExpiredPayload;
 import com.stocktrading.kafka.exception.SagaNotFoundException;
+import com.stocktrading.kafka.exception.SagaNotOwnedException;
 import com.stocktrading.kafka.model.OrderBuySagaState;
+import com.stocktrading.kafka.model.SagaPage;
+import com.stocktrading.kafka.model.SagaTransition;
 import com.stocktrading.kafka.model.enums.OrderBuySagaStep;
 import com.stocktrading.kafka.model.enums.SagaStatus;
+import com.stocktrading.kafka.model.enums.SagaType;
 import com.stocktrading.kafka.repository.OrderBuySagaRepository;
+import com.stocktrading.kafka.repository.SagaQueryRepository;
+import com.stocktrading.kafka.scheduler.AdaptiveStepTimeouts;
+import com.stocktrading.kafka.scheduler.SagaDeadlineTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
@@ -26,11 +45,20 @@ import java.util.*;
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class OrderBuySagaService {
+public class OrderBuySagaService implements SagaEventHandler {
 
     private final OrderBuySagaRepository orderBuySagaRepository;
-    private final KafkaMessagePublisher messagePublisher;
+    private final SagaStateStore<OrderBuySagaState> sagaStateStore;
     private final IdempotencyService idempotencyService;
+    private final SagaDeadlineTracker deadlineTracker;
+    private final AdaptiveStepTimeouts stepTimeouts;
+    private final SagaMonitoringService sagaMonitoringService;
+    private final SagaQueryRepository sagaQueryRepository;
+    private final SagaPartitionOwnership partitionOwnership;
+    private final SagaUpdateStream sagaUpdateStream;
+    private final SagaTypeIndex sagaTypeIndex;
+    private final SagaArchiver sagaArchiver;
+    private final MongoTemplate mongoTemplate;
 
     @Value("${saga.deposit.retry.max-attempts}")
     private int maxRetries;
@@ -45,7 +73,7 @@ public class OrderBuySagaService {
                                        String stockSymbol, String orderType,
                                        Integer quantity, BigDecimal limitPrice,
                                        String timeInForce) {
-        String sagaId = UUID.randomUUID().toString();
+        String sagaId = partitionOwnership.newSagaId();
 
         // Validate order type and required fields
         if ("LIMIT".equals(orderType) && limitPrice == null) {
@@ -60,10 +88,13 @@ public class OrderBuySagaService {
                 sagaId, userId, accountId, stockSymbol, orderType,
                 quantity, limitPrice, timeInForce, maxRetries);
 
-        orderBuySagaRepository.save(saga);
+        synchronized (saga) {
+            sagaStateStore.update(saga);
 
-        // Process the first step
-        processNextStep(saga);
+            // Process the first step (checkpoints the saga before the command goes out)
+            processNextStep(saga);
+            afterTransition(null, saga);
+        }
 
         return saga;
     }
@@ -80,12 +111,29 @@ public class OrderBuySagaService {
             return;
         }
 
+        // Fan out: independent steps go out together and are joined as their events arrive
+        if (saga.hasPendingSteps()) {
+            List<CommandMessage> commands = new ArrayList<>();
+            for (OrderBuySagaStep step : saga.getPendingSteps()) {
+                CommandMessage command = saga.createCommandForStep(step);
+                command.initialize();
+                commands.add(command);
+            }
+
+            sagaStateStore.checkpoint(saga, commands,
+                    command -> getTopicForCommandType(CommandType.valueOf(command.getType())));
+
+            log.info("Queued {} parallel commands {} for saga [{}]",
+                    commands.size(), saga.getPendingSteps(), saga.getSagaId());
+            return;
+        }
+
         CommandMessage command = saga.createCommandForCurrentStep();
         if (command == null) {
             // This can happen for the COMPLETE_SAGA step which doesn't have a command
             if (saga.getCurrentStep() == OrderBuySagaStep.COMPLETE_SAGA) {
                 saga.moveToNextStep(); // This will mark the saga as COMPLETED
-                orderBuySagaRepository.save(saga);
+                sagaStateStore.checkpoint(saga);
                 log.info("Order buy saga [{}] completed successfully", saga.getSagaId());
             } else {
                 log.warn("No command defined for step: {} in saga: {}",
@@ -97,16 +145,13 @@ public class OrderBuySagaService {
         // Initialize the command
         command.initialize();
 
-        // Save the updated saga state
-        orderBuySagaRepository.save(saga);
-
         // Determine the topic based on the command type
         String targetTopic = getTopicForCommandType(CommandType.valueOf(command.getType()));
 
-        // Publish the command
-        messagePublisher.publishCommand(command, targetTopic);
+        // Persist the saga together with the command; the outbox relay publishes it
+        sagaStateStore.checkpoint(saga, command, targetTopic);
 
-        log.info("Published command [{}] for saga [{}] to topic: {}",
+        log.info("Queued command [{}] for saga [{}] to topic: {}",
                 command.getType(), saga.getSagaId(), targetTopic);
     }
     /**
@@ -130,19 +175,7 @@ public class OrderBuySagaService {
                     throw new IllegalStateException("Market price not available");
                 }
 
-                // Handle different price formats
-                if (priceObj instanceof BigDecimal) {
-                    priceToUse = (BigDecimal) priceObj;
-                } else if (priceObj instanceof Double) {
-                    priceToUse = BigDecimal.valueOf((Double) priceObj);
-                } else if (priceObj instanceof Number) {
-                    priceToUse = BigDecimal.valueOf(((Number) priceObj).doubleValue());
-                } else if (priceObj instanceof String) {
-                    priceToUse = new BigDecimal((String) priceObj);
-                } else {
-                    throw new IllegalStateException("Market price is in an unsupported format: " +
-                            priceObj.getClass().getName());
-                }
+                priceToUse = PayloadValues.toDecimal(priceObj);
 
                 log.debug("Using market price for calculation: {}", priceToUse);
             }
@@ -163,7 +196,7 @@ public class OrderBuySagaService {
 
             // Move to the next step
             saga.moveToNextStep();
-            orderBuySagaRepository.save(saga);
+            sagaStateStore.update(saga);
 
             // Process the next step (RESERVE_FUNDS)
             processNextStep(saga);
@@ -171,7 +204,7 @@ public class OrderBuySagaService {
             log.error("Error calculating required funds", e);
             saga.handleFailure("Failed to calculate required funds: " + e.getMessage(),
                     OrderBuySagaStep.CALCULATE_REQUIRED_FUNDS.name());
-            orderBuySagaRepository.save(saga);
+            sagaStateStore.update(saga);
 
             // Cancel the order on calculation failure
             cancelOrder(saga);
@@ -192,34 +225,47 @@ public class OrderBuySagaService {
                 command.setType(CommandType.ORDER_CANCEL.name());
                 command.setSourceService("SAGA_ORCHESTRATOR");
                 command.setTargetService("ORDER_SERVICE");
-                command.setPayloadValue("orderId", saga.getOrderId());
-                command.setPayloadValue("reason", saga.getFailureReason());
+                OrderCancelPayload.builder()
+                        .orderId(saga.getOrderId())
+                        .reason(saga.getFailureReason())
+                        .build().applyTo(command);
 
-                // Publish the command
+                // Queue the command together with the saga state
                 String topic = getTopicForCommandType(CommandType.ORDER_CANCEL);
-                messagePublisher.publishCommand(command, topic);
+                sagaStateStore.checkpoint(saga, command, topic);
                 saga.addEvent("ORDER_CANCELLED", "Order cancelled due to funds calculation failure");
             } else {
                 log.info("No order to cancel - funds calculation failed before order creation");
             }
             saga.setStatus(SagaStatus.COMPENSATION_COMPLETED);
             saga.setEndTime(Instant.now());
-            orderBuySagaRepository.save(saga);
+            sagaStateStore.checkpoint(saga);
 
         } catch (Exception e) {
             log.error("Error cancelling order after funds calculation failure", e);
         }
     }
 
+    @Override
+    public SagaType getSagaType() {
+        return SagaType.ORDER_BUY;
+    }
+
+    @Override
+    public void preload(Collection<String> sagaIds) {
+        sagaStateStore.preload(sagaIds);
+    }
+
     /**
      * Handle an event message response
      */
+    @Override
     public void handleEventMessage(EventMessage event) {
         String sagaId = event.getSagaId();
         log.debug("Handling event [{}] for saga: {}", event.getType(), sagaId);
 
         // Find the saga
-        Optional<OrderBuySagaState> optionalSaga = orderBuySagaRepository.findById(sagaId);
+        Optional<OrderBuySagaState> optionalSaga = sagaStateStore.find(sagaId);
         if (optionalSaga.isEmpty()) {
             log.warn("Received event for unknown saga: {}", sagaId);
             return;
@@ -227,6 +273,17 @@ public class OrderBuySagaService {
 
         OrderBuySagaState saga = optionalSaga.get();
 
+        // Serialize with other events, timeouts and REST calls touching the same saga
+        synchronized (saga) {
+            SagaTransition before = SagaTransition.of(saga);
+            handleEventMessage(saga, event);
+            afterTransition(before, saga);
+        }
+    }
+
+    private void handleEventMessage(OrderBuySagaState saga, EventMessage event) {
+        String sagaId = saga.getSagaId();
+
         // Record processing to ensure idempotency
         if (idempotencyService.isProcessed(event)) {
             log.info("Event [{}] for saga [{}] has already been processed", event.getType(), sagaId);
@@ -293,38 +350,22 @@ public class OrderBuySagaService {
         saga.setStatus(SagaStatus.LIMIT_ORDER_PENDING);
         saga.addEvent("LIMIT_ORDER_QUEUED", "Order added to broker order book for price monitoring");
 
+        LimitOrderQueuedPayload payload = LimitOrderQueuedPayload.from(event);
+
         // Store expiration time if available
-        String expiresAt = event.getPayloadValue("expiresAt");
-        if (expiresAt != null) {
+        if (payload.getExpiresAt() != null) {
+            String expiresAt = payload.getExpiresAt().toString();
             saga.storeStepData("limitOrderExpiresAt", expiresAt);
             saga.addEvent("EXPIRATION_SET", "Order will expire at " + expiresAt);
         }
 
         // Store current market price for reference
-        Object priceObj = event.getPayloadValue("currentPrice");
-        if (priceObj != null) {
-            BigDecimal currentPrice;
-            if (priceObj instanceof BigDecimal) {
-                currentPrice = (BigDecimal) priceObj;
-            } else if (priceObj instanceof Double) {
-                currentPrice = BigDecimal.valueOf((Double) priceObj);
-            } else if (priceObj instanceof Number) {
-                currentPrice = BigDecimal.valueOf(((Number) priceObj).doubleValue());
-            } else if (priceObj instanceof String) {
-                currentPrice = new BigDecimal((String) priceObj);
-            } else {
-                log.warn("Skipping currentMarketPrice storage due to unsupported format: {}",
-                        priceObj.getClass().getName());
-                currentPrice = null;
-            }
-
-            if (currentPrice != null) {
-                saga.storeStepData("currentMarketPrice", currentPrice);
-            }
+        if (payload.getCurrentPrice() != null) {
+            saga.storeStepData("currentMarketPrice", payload.getCurrentPrice());
         }
 
         saga.setLastUpdatedTime(Instant.now());
-        orderBuySagaRepository.save(saga);
+        sagaStateStore.update(saga);
 
         // Record the event as processed
         Map<String, Object> result = new HashMap<>();
@@ -344,11 +385,11 @@ public class OrderBuySagaService {
 
         saga.setStatus(SagaStatus.FAILED);
         saga.setFailureReason("Order expired before execution conditions were met");
-        saga.addEvent("ORDER_EXPIRED", "Limit order expired: " + event.getPayloadValue("expiredAt"));
+        saga.addEvent("ORDER_EXPIRED", "Limit order expired: " + OrderExpiredPayload.from(event).getExpiredAt());
 
         // Save the updated state
         saga.setLastUpdatedTime(Instant.now());
-        orderBuySagaRepository.save(saga);
+        sagaStateStore.update(saga);
 
         // Start compensation
         startCompensation(saga);
@@ -367,28 +408,13 @@ public class OrderBuySagaService {
         log.info("Resuming saga [{}] after limit order execution", saga.getSagaId());
 
         // Update saga with execution details
-        saga.setBrokerOrderId(event.getPayloadValue("brokerOrderId"));
-
-        // Handle type conversion for executedQuantity
-        Object quantityObj = event.getPayloadValue("executedQuantity");
-        if (quantityObj instanceof Integer) {
-            saga.setExecutedQuantity((Integer) quantityObj);
-        } else if (quantityObj instanceof String) {
-            saga.setExecutedQuantity(Integer.parseInt((String) quantityObj));
-        } else if (quantityObj != null) {
-            saga.setExecutedQuantity(((Number) quantityObj).intValue());
-        }
-
-        // Handle type conversion for executionPrice
-        Object priceObj = event.getPayloadValue("executionPrice");
-        if (priceObj instanceof BigDecimal) {
-            saga.setExecutionPrice((BigDecimal) priceObj);
-        } else if (priceObj instanceof Double) {
-            saga.setExecutionPrice(BigDecimal.valueOf((Double) priceObj));
-        } else if (priceObj instanceof Number) {
-            saga.setExecutionPrice(BigDecimal.valueOf(((Number) priceObj).doubleValue()));
-        } else if (priceObj instanceof String) {
-            saga.setExecutionPrice(new BigDecimal((String) priceObj));
+        OrderExecutedByBrokerPayload payload = OrderExecutedByBrokerPayload.from(event);
+        saga.setBrokerOrderId(payload.getBrokerOrderId());
+        if (payload.getExecutedQuantity() != null) {
+            saga.setExecutedQuantity(payload.getExecutedQuantity());
+        }
+        if (payload.getExecutionPrice() != null) {
+            saga.setExecutionPrice(payload.getExecutionPrice());
         }
 
         // Resume the saga at the UPDATE_ORDER_EXECUTED step
@@ -399,7 +425,7 @@ public class OrderBuySagaService {
 
         // Save the updated state
         saga.setLastUpdatedTime(Instant.now());
-        orderBuySagaRepository.save(saga);
+        sagaStateStore.update(saga);
 
         // Continue with next step
         processNextStep(saga);
@@ -424,7 +450,7 @@ public class OrderBuySagaService {
         saga.setLastUpdatedTime(Instant.now());
         saga.addEvent("LIMIT_ORDER_PENDING",
                 "Saga paused while waiting for price conditions to be met");
-        orderBuySagaRepository.save(saga);
+        sagaStateStore.update(saga);
     }
 
 
@@ -437,6 +463,18 @@ public class OrderBuySagaService {
         // Update saga with event data based on event type
         updateSagaWithEventData(saga, event);
 
+        if (saga.hasPendingSteps()) {
+            OrderBuySagaStep step = saga.findPendingStep(EventType.valueOf(event.getType()).getAssociatedCommandType());
+            boolean joined = saga.completeParallelStep(step);
+            sagaStateStore.update(saga);
+
+            // Only the last parallel step to complete moves the saga on
+            if (joined) {
+                processNextStep(saga);
+            }
+            return;
+        }
+
         if (saga.getStatus() == SagaStatus.COMPENSATING) {
             // For compensation steps, handle them differently
             handleCompensationStepSuccess(saga);
@@ -446,7 +484,7 @@ public class OrderBuySagaService {
         }
 
         // Save the updated saga
-        orderBuySagaRepository.save(saga);
+        sagaStateStore.update(saga);
 
         // Process the next step if saga is still active
         if (saga.getStatus() == SagaStatus.IN_PROGRESS ||
@@ -496,13 +534,25 @@ public class OrderBuySagaService {
         log.warn("Processing failure event [{}] for saga [{}]: {}",
                 event.getType(), saga.getSagaId(), event.getErrorMessage());
 
+        // A parallel step fails on its own, not necessarily the one shown as current
+        OrderBuySagaStep failedStep = saga.hasPendingSteps()
+                ? saga.findPendingStep(EventType.valueOf(event.getType()).getAssociatedCommandType())
+                : saga.getCurrentStep();
+
         // Update saga with failure reason
         String failureReason = event.getErrorMessage();
         if (failureReason == null) {
-            failureReason = "Failed in step: " + saga.getCurrentStep().name();
+            failureReason = "Failed in step: " + failedStep.name();
         }
 
-        saga.handleFailure(failureReason, saga.getCurrentStep().name());
+        saga.handleFailure(failureReason, failedStep.name());
+
+        // The order already exists, so a failed parallel step cancels it; events still
+        // outstanding for the other steps no longer match and are ignored
+        if (saga.hasPendingSteps()) {
+            startCompensation(saga);
+            return;
+        }
 
         // Start compensation based on the saga status
 
@@ -515,7 +565,7 @@ public class OrderBuySagaService {
                 // For validation steps, just terminate without compensation
                 saga.setEndTime(Instant.now());
                 saga.addEvent("SAGA_TERMINATED", "Saga terminated due to validation failure");
-                orderBuySagaRepository.save(saga);
+                sagaStateStore.checkpoint(saga);
             } else {
                 // For other steps, start compensation
                 startCompensation(saga);
@@ -545,7 +595,7 @@ public class OrderBuySagaService {
                 )
         );
 
-        orderBuySagaRepository.save(saga);
+        sagaStateStore.update(saga);
         processNextStep(saga);
     }
 
@@ -569,7 +619,7 @@ public class OrderBuySagaService {
             // Store specific data based on event type
             switch (event.getType()) {
                 case "ORDER_CREATED":
-                    saga.setOrderId(event.getPayloadValue("orderId"));
+                    saga.setOrderId(OrderCreatedPayload.from(event).getOrderId());
                     break;
 
                 case "PRICE_PROVIDED":
@@ -578,14 +628,15 @@ public class OrderBuySagaService {
                     break;
 
                 case "FUNDS_RESERVED":
-                    saga.setReservationId(event.getPayloadValue("reservationId"));
+                    saga.setReservationId(FundsReservedPayload.from(event).getReservationId());
                     break;
 
                 case "ORDER_EXECUTED_BY_BROKER":
-                    saga.setBrokerOrderId(event.getPayloadValue("brokerOrderId"));
-                    saga.setExecutedQuantity(event.getPayloadValue("executedQuantity"));
+                    OrderExecutedByBrokerPayload executed = OrderExecutedByBrokerPayload.from(event);
+                    saga.setBrokerOrderId(executed.getBrokerOrderId());
+                    saga.setExecutedQuantity(executed.getExecutedQuantity());
                     if (saga.getExecutionPrice() == null) {
-                        saga.setExecutionPrice(event.getPayloadValue("executionPrice"));
+                        saga.setExecutionPrice(executed.getExecutionPrice());
                     }
                     break;
 
@@ -615,6 +666,11 @@ public class OrderBuySagaService {
             return isEventForCompensationStep(saga, event);
         }
 
+        // While steps run in parallel, any of them may answer first
+        if (saga.hasPendingSteps()) {
+            return isEventForPendingStep(saga, event);
+        }
+
         try {
             EventType eventType = EventType.valueOf(event.getType());
             CommandType expectedCommandType = saga.getCurrentStep().getCommandType();
@@ -648,6 +704,26 @@ public class OrderBuySagaService {
         }
     }
 
+    /**
+     * Check if this event is a response to one of the parallel steps still outstanding
+     */
+    private boolean isEventForPendingStep(OrderBuySagaState saga, EventMessage event) {
+        try {
+            CommandType eventCommandType = EventType.valueOf(event.getType()).getAssociatedCommandType();
+            OrderBuySagaStep step = saga.findPendingStep(eventCommandType);
+            if (step == null) {
+                log.debug("Event command type {} matches none of the pending steps {}",
+                        eventCommandType, saga.getPendingSteps());
+                return false;
+            }
+
+            return event.getStepId() == null || event.getStepId().equals(step.getStepNumber());
+        } catch (Exception e) {
+            log.error("Error checking if event matches a pending step: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
     /**
      * Check if this event is a response to the current compensation step
      */
@@ -714,8 +790,19 @@ public class OrderBuySagaService {
         List<OrderBuySagaState> potentiallyTimedOutSagas =
                 orderBuySagaRepository.findPotentiallyTimedOutSagas(activeStatuses, cutoffTime);
 
-        for (OrderBuySagaState saga : potentiallyTimedOutSagas) {
-            handlePotentialTimeout(saga);
+        for (OrderBuySagaState candidate : potentiallyTimedOutSagas) {
+            // Sagas of partitions owned by another instance are timed out there
+            if (!partitionOwnership.owns(candidate.getSagaId())) {
+                continue;
+            }
+            // Always act on the hot instance so in-flight changes are not overwritten
+            sagaStateStore.find(candidate.getSagaId()).ifPresent(saga -> {
+                synchronized (saga) {
+                    SagaTransition before = SagaTransition.of(saga);
+                    handlePotentialTimeout(saga);
+                    afterTransition(before, saga);
+                }
+            });
         }
     }
 
@@ -727,19 +814,21 @@ public class OrderBuySagaService {
             return;
         }
 
-        Duration timeout = Duration.ofMillis(defaultTimeout);
+        Duration timeout = getTimeoutForStep(saga.getCurrentStep());
 
         if (saga.isCurrentStepTimedOut(timeout)) {
             log.warn("Step [{}] has timed out for saga: {}", saga.getCurrentStep(), saga.getSagaId());
+            stepTimeouts.recordTimeout(SagaType.ORDER_BUY, saga.getCurrentStep());
 
             // Check if we can retry
             if (saga.getRetryCount() < saga.getMaxRetries()) {
                 // Increment retry count
                 saga.incrementRetryCount();
+                saga.setCurrentStepStartTime(Instant.now()); // The retry gets a fresh deadline
                 saga.addEvent("RETRY", "Retrying step " + saga.getCurrentStep() + " after timeout");
 
-                // Save and retry the step
-                orderBuySagaRepository.save(saga);
+                // Retry the step
+                sagaStateStore.update(saga);
                 processNextStep(saga);
 
             } else {
@@ -751,23 +840,100 @@ public class OrderBuySagaService {
         }
     }
 
+    @PostConstruct
+    public void registerDeadlineHandler() {
+        deadlineTracker.registerHandler(SagaType.ORDER_BUY, this::handleStepDeadline);
+    }
+
+    /**
+     * Arm the deadline for the saga's current step, or cancel it once the saga has left
+     * the states that time out
+     */
+    private void trackStepDeadline(OrderBuySagaState saga) {
+        if ((saga.getStatus() == SagaStatus.STARTED || saga.getStatus() == SagaStatus.IN_PROGRESS)
+                && saga.getCurrentStep() != null && saga.getCurrentStepStartTime() != null) {
+            deadlineTracker.arm(SagaType.ORDER_BUY, saga.getSagaId(),
+                    saga.getCurrentStepStartTime().plus(getTimeoutForStep(saga.getCurrentStep())));
+        } else {
+            deadlineTracker.cancel(SagaType.ORDER_BUY, saga.getSagaId());
+        }
+    }
+
+    /**
+     * Bookkeeping after an event, timeout or user action has been applied to a saga
+     *
+     * @param before snapshot taken before the change, or null for a newly started saga
+     */
+    private void afterTransition(SagaTransition before, OrderBuySagaState saga) {
+        trackStepDeadline(saga);
+        sagaMonitoringService.recordTransition(SagaType.ORDER_BUY, before, saga);
+        sagaTypeIndex.track(SagaType.ORDER_BUY, saga);
+        sagaUpdateStream.publish(saga);
+    }
+
+    /**
+     * Called by the deadline tracker when the current step's deadline expires
+     */
+    private void handleStepDeadline(String sagaId) {
+        sagaStateStore.find(sagaId).ifPresent(saga -> {
+            synchronized (saga) {
+                SagaTransition before = SagaTransition.of(saga);
+                handlePotentialTimeout(saga);
+                afterTransition(before, saga);
+            }
+        });
+    }
+
+    /**
+     * Re-arm the deadlines of the sagas in the given partitions that can time out, used when
+     * the partitions are assigned to this instance
+     */
+    public int rebuildDeadlines(Set<Integer> partitions) {
+        // Only the fields a deadline is computed from
+        Query active = new Query(Criteria.where("status").in(SagaStatus.STARTED, SagaStatus.IN_PROGRESS));
+        active.fields().include("sagaId").include("status").include("currentStep").include("currentStepStartTime");
+        int rebuilt = 0;
+        for (OrderBuySagaState saga : mongoTemplate.find(active, OrderBuySagaState.class)) {
+            if (partitions.contains(partitionOwnership.partitionOf(saga.getSagaId()))) {
+                sagaTypeIndex.track(SagaType.ORDER_BUY, saga);
+                trackStepDeadline(saga);
+                rebuilt++;
+            }
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Get the timeout duration for a step, adapted to the step's observed latency
+     */
+    private Duration getTimeoutForStep(OrderBuySagaStep step) {
+        return stepTimeouts.timeoutFor(SagaType.ORDER_BUY, step, Duration.ofMillis(defaultTimeout));
+    }
+
     /**
-     * Repository access methods
+     * Repository access methods; sagas that finished long ago are read from the archive
      */
     public Optional<OrderBuySagaState> findById(String sagaId) {
-        return orderBuySagaRepository.findById(sagaId);
+        return sagaStateStore.find(sagaId).or(() -> sagaArchiver.findArchived(OrderBuySagaState.class, sagaId));
     }
 
-    // Add status LIMIT_ORDER_PENDING to active statuses method
-    public List<OrderBuySagaState> findActiveSagas() {
-        List<SagaStatus> activeStatuses = Arrays.asList(
-                SagaStatus.STARTED, SagaStatus.IN_PROGRESS,
-                SagaStatus.COMPENSATING, SagaStatus.LIMIT_ORDER_PENDING);
-        return orderBuySagaRepository.findByStatusIn(activeStatuses);
+    /**
+     * Page through active sagas, the longest-waiting step first
+     */
+    public SagaPage<OrderBuySagaState> findActiveSagas(String cursor, int limit) {
+        return sagaQueryRepository.findPage(OrderBuySagaState.class,
+                Criteria.where("status").in(SagaStatus.STARTED, SagaStatus.IN_PROGRESS,
+                        SagaStatus.COMPENSATING, SagaStatus.LIMIT_ORDER_PENDING),
+                "currentStepStartTime", OrderBuySagaState::getCurrentStepStartTime, Sort.Direction.ASC, cursor, limit);
     }
 
-    public List<OrderBuySagaState> findByUserId(String userId) {
-        return orderBuySagaRepository.findByUserId(userId);
+    /**
+     * Page through a user's sagas, newest first, archived ones included
+     */
+    public SagaPage<OrderBuySagaState> findByUserId(String userId, String cursor, int limit) {
+        return sagaQueryRepository.findPage(OrderBuySagaState.class,
+                sagaArchiver.collectionsWithArchive(OrderBuySagaState.class), Criteria.where("userId").is(userId),
+                "startTime", OrderBuySagaState::getStartTime, Sort.Direction.DESC, cursor, limit);
     }
 
     public OrderBuySagaState findByOrderId(String orderId) {
@@ -780,20 +946,36 @@ public class OrderBuySagaService {
      * @param sagaId The ID of the saga to cancel
      * @return The updated saga state
      * @throws SagaNotFoundException if the saga is not found
+     * @throws SagaNotOwnedException if another instance owns the saga's partition
      * @throws IllegalStateException if the saga cannot be cancelled in its current state
      */
     @Transactional
     public OrderBuySagaState cancelOrderByUser(String sagaId) {
         log.info("Processing cancellation request for saga: {}", sagaId);
 
+        // Only the owner may change the saga; it holds the current state in memory
+        if (!partitionOwnership.owns(sagaId)) {
+            throw new SagaNotOwnedException(sagaId, partitionOwnership.partitionOf(sagaId));
+        }
+
         // Find the saga and lock it to prevent concurrent modifications
-        Optional<OrderBuySagaState> optionalSaga = orderBuySagaRepository.findById(sagaId);
+        Optional<OrderBuySagaState> optionalSaga = sagaStateStore.find(sagaId);
         if (optionalSaga.isEmpty()) {
             log.warn("Saga not found for cancellation: {}", sagaId);
             throw new SagaNotFoundException(sagaId);
         }
 
         OrderBuySagaState saga = optionalSaga.get();
+        synchronized (saga) {
+            SagaTransition before = SagaTransition.of(saga);
+            OrderBuySagaState cancelled = cancelOrderByUser(saga);
+            afterTransition(before, saga);
+            return cancelled;
+        }
+    }
+
+    private OrderBuySagaState cancelOrderByUser(OrderBuySagaState saga) {
+        String sagaId = saga.getSagaId();
 
         // Check if the saga can be cancelled in its current state
         if (saga.getStatus() != SagaStatus.LIMIT_ORDER_PENDING &&
@@ -828,7 +1010,7 @@ public class OrderBuySagaService {
         saga.setLastUpdatedTime(Instant.now());
 
         // Save the updated saga state
-        orderBuySagaRepository.save(saga);
+        sagaStateStore.update(saga);
 
         log.info("Order marked as cancelled by user: {}", sagaId);
 
@@ -0,0 +1,227 @@
+package com.stocktrading.kafka.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.stocktrading.kafka.model.OutboxMessage;
+import com.stocktrading.kafka.model.enums.OutboxStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the saga outbox to Kafka.
+ *
+ * A single relay thread reads pending rows in creation order, sends a whole batch before
+ * waiting on any acknowledgement so the producer can fill its batches, then deletes the
+ * rows the broker acknowledged with one query. Failed sends are retried with exponential
+ * backoff and parked as FAILED after the configured number of attempts. The thread polls
+ * on an interval and is woken early whenever new rows are written.
+ *
+ * Only rows of the saga partitions this instance owns are relayed, so each command is sent
+ * by one instance; the relay is woken when partitions are assigned to pick up their backlog.
+ */
+@Slf4j
+@Service
+public class OutboxRelay implements SagaPartitionListener {
+
+    private final KafkaMessagePublisher messagePublisher;
+    private final MongoTemplate mongoTemplate;
+    private final SagaPartitionOwnership ownership;
+    private final ObjectReader commandReader;
+
+    @Value("${saga.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${saga.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${saga.outbox.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+
+    @Value("${saga.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${saga.outbox.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    private final Semaphore wakeUpSignal = new Semaphore(0);
+    private volatile boolean running;
+    private Thread relayThread;
+
+    public OutboxRelay(KafkaMessagePublisher messagePublisher, MongoTemplate mongoTemplate,
+                       SagaPartitionOwnership ownership, ObjectMapper objectMapper) {
+        this.messagePublisher = messagePublisher;
+        this.mongoTemplate = mongoTemplate;
+        this.ownership = ownership;
+        // Keep decimal amounts exact when the stored JSON is read back
+        this.commandReader = objectMapper.readerFor(CommandMessage.class)
+                .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        relayThread = new Thread(this::run, "outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (relayThread != null) {
+            relayThread.interrupt();
+        }
+    }
+
+    @Override
+    public void partitionsAssigned(Set<Integer> partitions) {
+        wakeUp();
+    }
+
+    /**
+     * Signal that new rows are waiting
+     */
+    public void wakeUp() {
+        if (wakeUpSignal.availablePermits() == 0) {
+            wakeUpSignal.release();
+        }
+    }
+
+    private void run() {
+        log.info("Outbox relay started");
+        while (running) {
+            try {
+                drain();
+            } catch (Exception e) {
+                log.error("Outbox relay iteration failed", e);
+            }
+
+            try {
+                wakeUpSignal.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeUpSignal.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.info("Outbox relay stopped");
+    }
+
+    /**
+     * Send every pending row that is due, one batch at a time
+     */
+    void drain() {
+        while (running) {
+            Set<Integer> partitions = ownership.getOwnedPartitions();
+            if (partitions.isEmpty()) {
+                return;
+            }
+
+            Query query = Query.query(Criteria.where("status").is(OutboxStatus.PENDING)
+                            .and("partition").in(partitions)
+                            .and("nextAttemptAt").lte(Instant.now()))
+                    .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                    .limit(batchSize);
+            List<OutboxMessage> batch = mongoTemplate.find(query, OutboxMessage.class);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            send(batch);
+
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void send(List<OutboxMessage> batch) {
+        Map<OutboxMessage, CompletableFuture<SendResult<String, CommandMessage>>> inFlight = new LinkedHashMap<>();
+        Map<OutboxMessage, Throwable> failed = new LinkedHashMap<>();
+
+        for (OutboxMessage message : batch) {
+            try {
+                CommandMessage command = commandReader.readValue(message.getPayload());
+                inFlight.put(message, messagePublisher.publishCommand(command, message.getTopic(), message.getSagaType()).completable());
+            } catch (Exception e) {
+                failed.put(message, e);
+            }
+        }
+
+        List<String> sent = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (Map.Entry<OutboxMessage, CompletableFuture<SendResult<String, CommandMessage>>> entry : inFlight.entrySet()) {
+            OutboxMessage message = entry.getKey();
+            try {
+                entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sent.add(message.getId());
+            } catch (ExecutionException e) {
+                failed.put(message, e.getCause());
+            } catch (TimeoutException e) {
+                failed.put(message, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.put(message, e);
+            }
+        }
+
+        if (!sent.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(sent)), OutboxMessage.class);
+        }
+        if (!failed.isEmpty()) {
+            scheduleRetries(failed);
+        }
+    }
+
+    private void scheduleRetries(Map<OutboxMessage, Throwable> failed) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxMessage.class);
+        Instant now = Instant.now();
+
+        for (Map.Entry<OutboxMessage, Throwable> entry : failed.entrySet()) {
+            OutboxMessage message = entry.getKey();
+            int attempts = message.getAttempts() + 1;
+            String error = String.valueOf(entry.getValue());
+
+            Update update = new Update()
+                    .set("attempts", attempts)
+                    .set("lastError", error);
+            if (attempts >= maxAttempts) {
+                update.set("status", OutboxStatus.FAILED);
+                log.error("Giving up on command [{}] for saga [{}] to topic {} after {} attempts: {}",
+                        message.getMessageType(), message.getSagaId(), message.getTopic(), attempts, error);
+            } else {
+                long backoff = retryBackoffMs * (1L << Math.min(attempts - 1, 16));
+                update.set("nextAttemptAt", now.plusMillis(backoff));
+                log.warn("Unable to send command [{}] for saga [{}] to topic {} (attempt {}), retrying in {} ms: {}",
+                        message.getMessageType(), message.getSagaId(), message.getTopic(), attempts, backoff, error);
+            }
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(message.getId())), update);
+        }
+        bulkOps.execute();
+    }
+}
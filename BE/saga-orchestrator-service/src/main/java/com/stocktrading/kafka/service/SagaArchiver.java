@@ -0,0 +1,249 @@
+package com.stocktrading.kafka.service;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.stocktrading.kafka.model.SagaState;
+import com.stocktrading.kafka.model.enums.SagaStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Moves finished sagas out of the saga collections once they are past the retention window.
+ *
+ * The saga collections are what the timeout, deadline rebuild and listing queries run
+ * against, so only sagas that can still change are kept there. Each saga collection has an
+ * archive collection next to it ({@code deposit_sagas_archive} etc.), created with a stronger
+ * block compressor since archived sagas are written once and rarely read. Archived sagas
+ * are copied unchanged and remain readable by sagaId through {@link #findArchived}, and in
+ * the user listings, which read {@link #collectionsWithArchive}.
+ *
+ * Each instance archives the sagas of the partitions it owns. A saga is first upserted into
+ * the archive and only then deleted from the saga collection, so a run that stops half way
+ * is simply repeated by the next one.
+ */
+@Slf4j
+@Service
+public class SagaArchiver {
+
+    private static final String ARCHIVE_SUFFIX = "_archive";
+    private static final List<SagaStatus> FINISHED_STATUSES =
+            List.of(SagaStatus.COMPLETED, SagaStatus.COMPENSATION_COMPLETED, SagaStatus.FAILED);
+
+    // MongoDB error code for a collection that already exists
+    private static final int NAMESPACE_EXISTS = 48;
+
+    private final MongoTemplate mongoTemplate;
+    private final SagaPartitionOwnership ownership;
+    private final List<SagaStateStore<?>> stores;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> preparedArchives = ConcurrentHashMap.newKeySet();
+    private final Map<Class<?>, Counter> archivedCounters = new ConcurrentHashMap<>();
+
+    @Value("${saga.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${saga.archive.retention-hours:168}")
+    private long retentionHours;
+
+    @Value("${saga.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${saga.archive.block-compressor:zstd}")
+    private String blockCompressor;
+
+    public SagaArchiver(MongoTemplate mongoTemplate, SagaPartitionOwnership ownership,
+                        List<SagaStateStore<?>> stores, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.ownership = ownership;
+        this.stores = stores;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Find an archived saga
+     */
+    public <T extends SagaState> Optional<T> findArchived(Class<T> stateType, String sagaId) {
+        String archive = archiveCollection(stateType);
+        if (!preparedArchives.contains(archive) && !mongoTemplate.collectionExists(archive)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(mongoTemplate.findOne(
+                Query.query(where("sagaId").is(sagaId)), stateType, archive));
+    }
+
+    /**
+     * The saga collection of the type followed by its archive. The archive may not exist yet,
+     * which reads as empty.
+     */
+    public List<String> collectionsWithArchive(Class<? extends SagaState> stateType) {
+        return List.of(mongoTemplate.getCollectionName(stateType), archiveCollection(stateType));
+    }
+
+    /**
+     * Archive the finished sagas of owned partitions that ended before the retention window
+     */
+    @Scheduled(fixedDelayString = "${saga.archive.interval-ms:60000}",
+            initialDelayString = "${saga.archive.initial-delay-ms:60000}")
+    public void archive() {
+        if (!enabled || ownership.getOwnedPartitions().isEmpty()) {
+            return;
+        }
+
+        Instant cutoff = Instant.now().minus(Duration.ofHours(retentionHours));
+        for (SagaStateStore<?> store : stores) {
+            try {
+                int archived = archive(store, cutoff);
+                if (archived > 0) {
+                    log.info("Archived {} finished {} instances", archived, store.getStateType().getSimpleName());
+                }
+            } catch (Exception e) {
+                log.error("Failed to archive finished {} instances, will retry on next run",
+                        store.getStateType().getSimpleName(), e);
+            }
+        }
+    }
+
+    private int archive(SagaStateStore<?> store, Instant cutoff) {
+        Class<?> stateType = store.getStateType();
+        String source = mongoTemplate.getCollectionName(stateType);
+        String archive = archiveCollection(stateType);
+        prepareArchive(archive);
+
+        int archived = 0;
+        Document after = null;
+        while (true) {
+            // Page through the candidates with an (endTime, sagaId) cursor, reading only the keys
+            Query candidates = Query.query(where("status").in(FINISHED_STATUSES).and("endTime").lt(cutoff));
+            if (after != null) {
+                Date endTime = after.getDate("endTime");
+                String sagaId = after.getString("sagaId");
+                candidates.addCriteria(new Criteria().orOperator(
+                        where("endTime").gt(endTime),
+                        where("endTime").is(endTime).and("sagaId").gt(sagaId)));
+            }
+            candidates.with(Sort.by(Sort.Direction.ASC, "endTime", "sagaId")).limit(batchSize);
+            candidates.fields().include("_id").include("sagaId").include("endTime");
+
+            List<Document> page = mongoTemplate.find(candidates, Document.class, source);
+            if (page.isEmpty()) {
+                return archived;
+            }
+            after = page.get(page.size() - 1);
+
+            List<Object> ids = new ArrayList<>(page.size());
+            for (Document candidate : page) {
+                String sagaId = candidate.getString("sagaId");
+                if (sagaId != null && ownership.owns(sagaId)) {
+                    ids.add(candidate.get("_id"));
+                }
+            }
+            if (!ids.isEmpty()) {
+                archived += move(store, ids, source, archive);
+            }
+
+            if (page.size() < batchSize) {
+                return archived;
+            }
+        }
+    }
+
+    private int move(SagaStateStore<?> store, List<Object> ids, String source, String archive) {
+        List<Document> sagas = mongoTemplate.find(Query.query(where("_id").in(ids)), Document.class, source);
+        if (sagas.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations copy = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, archive);
+        for (Document saga : sagas) {
+            copy.replaceOne(Query.query(where("_id").is(saga.get("_id"))), saga, FindAndReplaceOptions.options().upsert());
+        }
+        copy.execute();
+
+        // Only delete what was copied, and only while it is still finished
+        List<Object> copiedIds = new ArrayList<>(sagas.size());
+        for (Document saga : sagas) {
+            copiedIds.add(saga.get("_id"));
+            String sagaId = saga.getString("sagaId");
+            if (sagaId != null) {
+                store.evict(sagaId);
+            }
+        }
+        long deleted = mongoTemplate.remove(
+                Query.query(where("_id").in(copiedIds).and("status").in(FINISHED_STATUSES)), source)
+                .getDeletedCount();
+
+        archivedCounter(store).increment(deleted);
+        return (int) deleted;
+    }
+
+    /**
+     * Create the archive collection with the configured block compressor, and its indexes,
+     * the first time it is used
+     */
+    private void prepareArchive(String archive) {
+        if (preparedArchives.contains(archive)) {
+            return;
+        }
+
+        if (!mongoTemplate.collectionExists(archive)) {
+            try {
+                mongoTemplate.getDb().createCollection(archive, new CreateCollectionOptions()
+                        .storageEngineOptions(new Document("wiredTiger",
+                                new Document("configString", "block_compressor=" + blockCompressor))));
+                log.info("Created saga archive collection {} with {} compression", archive, blockCompressor);
+            } catch (MongoCommandException e) {
+                // Another instance created it first
+                if (e.getErrorCode() != NAMESPACE_EXISTS) {
+                    throw e;
+                }
+            }
+        }
+        mongoTemplate.indexOps(archive).ensureIndex(new Index()
+                .on("sagaId", Sort.Direction.ASC)
+                .unique()
+                .named("sagaId"));
+        // Serves the user listings, as on the saga collections
+        mongoTemplate.indexOps(archive).ensureIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("startTime", Sort.Direction.ASC)
+                .on("sagaId", Sort.Direction.ASC)
+                .named("userId_startTime_sagaId"));
+        preparedArchives.add(archive);
+    }
+
+    private String archiveCollection(Class<?> stateType) {
+        return mongoTemplate.getCollectionName(stateType) + ARCHIVE_SUFFIX;
+    }
+
+    private Counter archivedCounter(SagaStateStore<?> store) {
+        return archivedCounters.computeIfAbsent(store.getStateType(), type -> Counter.builder("saga.archived")
+                .description("Finished sagas moved to the archive")
+                .tag("type", store.getSagaType().name())
+                .register(meterRegistry));
+    }
+}
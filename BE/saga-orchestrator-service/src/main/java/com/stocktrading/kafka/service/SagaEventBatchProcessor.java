@@ -0,0 +1,232 @@
+package com.stocktrading.kafka.service;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkaplatform.SagaTypeHeader;
+import com.stocktrading.kafka.model.OutboxMessage;
+import com.stocktrading.kafka.model.enums.SagaType;
+import com.stocktrading.kafka.utils.StripedExecutor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Processes a poll of event records as one unit of work.
+ *
+ * Records are grouped by sagaId, keeping their topic order within each saga, and the
+ * affected sagas are loaded with one query per saga collection. Events of topics shared by
+ * several saga types only go to the service of their saga's type, taken from the saga-type
+ * header or else from the {@link SagaTypeIndex}, so the saga is looked up in one collection. Each saga's events are then
+ * handled on the worker lane its sagaId maps to, so one saga's events stay in order while
+ * unrelated sagas run in parallel, independent of the topics' partition count.
+ * All resulting state changes are persisted with one bulk write per collection, in the same
+ * operation as the outbox rows of the commands the new states wait on, followed by the
+ * processed-message records.
+ *
+ * A saga whose events fail is dropped from the batch and its events are handed to the
+ * {@link SagaRetryRouter}, so the other sagas of the partition commit and carry on. Records read
+ * from a retry topic are handled as if read from their original topic once they are due; a
+ * retry partition whose next record is not due yet is left for a later poll.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SagaEventBatchProcessor {
+
+    private final IdempotencyService idempotencyService;
+    private final SagaOutbox sagaOutbox;
+    private final StripedExecutor sagaEventExecutor;
+    private final SagaRetryRouter retryRouter;
+    private final SagaTypeIndex sagaTypeIndex;
+
+    /**
+     * @param handlersByTopic saga services interested in the events of each original topic
+     * @return offset to read again from, for each retry partition whose next record is not due
+     */
+    public Map<TopicPartition, Long> process(List<ConsumerRecord<String, EventMessage>> records,
+                                             Map<String, List<SagaEventHandler>> handlersByTopic) {
+        if (records.isEmpty()) {
+            return Map.of();
+        }
+
+        long now = System.currentTimeMillis();
+        Map<TopicPartition, Long> deferred = new HashMap<>();
+        Map<String, List<ConsumerRecord<String, EventMessage>>> recordsBySaga = new LinkedHashMap<>();
+        Map<SagaEventHandler, Set<String>> sagaIdsByHandler = new LinkedHashMap<>();
+
+        for (ConsumerRecord<String, EventMessage> record : records) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (deferred.containsKey(partition)) {
+                continue;
+            }
+
+            int tier = retryRouter.tierOf(record.topic());
+            if (tier > 0) {
+                long dueAt = retryRouter.dueAt(record);
+                if (dueAt > now) {
+                    // Records of a retry topic are due in offset order, so the rest of the partition waits too
+                    deferred.put(partition, record.offset());
+                    retryRouter.pauseUntil(partition, dueAt);
+                    continue;
+                }
+            }
+
+            EventMessage event = record.value();
+            List<SagaEventHandler> handlers = handlersFor(record, handlersByTopic);
+            if (event == null || event.getSagaId() == null || handlers.isEmpty()) {
+                log.error("Dead-lettering undeliverable event at {}-{}@{}",
+                        record.topic(), record.partition(), record.offset());
+                retryRouter.deadLetter(record,
+                        new IllegalStateException("Event could not be deserialized, has no sagaId or no handler"));
+                continue;
+            }
+
+            if (tier < retryRouter.parkedTier(event.getSagaId())) {
+                // Keep the saga's events behind the ones waiting for retry
+                retryRouter.followParked(event.getSagaId(), record);
+                continue;
+            }
+
+            recordsBySaga.computeIfAbsent(event.getSagaId(), id -> new ArrayList<>()).add(record);
+            for (SagaEventHandler handler : handlers) {
+                sagaIdsByHandler.computeIfAbsent(handler, h -> new HashSet<>()).add(event.getSagaId());
+            }
+        }
+
+        SagaWriteBatch batch = new SagaWriteBatch();
+        batch.bind();
+        try {
+            sagaIdsByHandler.forEach(SagaEventHandler::preload);
+        } finally {
+            batch.unbind();
+        }
+
+        Map<String, CompletableFuture<Void>> results = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ConsumerRecord<String, EventMessage>>> group : recordsBySaga.entrySet()) {
+            results.put(group.getKey(), sagaEventExecutor.submit(group.getKey(),
+                    () -> handleSagaEvents(batch, group.getValue(), handlersByTopic)));
+        }
+
+        Map<String, Exception> failures = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<Void>> result : results.entrySet()) {
+            String sagaId = result.getKey();
+            try {
+                result.getValue().join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.error("Error processing events for saga {}, dropping it from the batch: {}",
+                        sagaId, cause.getMessage(), cause);
+                batch.discard(sagaId);
+                failures.put(sagaId, cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause));
+            }
+        }
+
+        commit(batch);
+
+        // None of a failed saga's changes were kept, so all of its events of this batch are retried
+        recordsBySaga.forEach((sagaId, sagaRecords) -> {
+            Exception failure = failures.get(sagaId);
+            if (failure != null) {
+                retryRouter.retry(sagaId, sagaRecords, failure);
+            } else {
+                retryRouter.succeeded(sagaId, sagaRecords);
+            }
+        });
+
+        return deferred;
+    }
+
+    /**
+     * Apply one saga's events in order, on the worker lane owning that saga
+     */
+    private void handleSagaEvents(SagaWriteBatch batch, List<ConsumerRecord<String, EventMessage>> records,
+                                  Map<String, List<SagaEventHandler>> handlersByTopic) {
+        batch.bind();
+        try {
+            for (ConsumerRecord<String, EventMessage> record : records) {
+                for (SagaEventHandler handler : handlersFor(record, handlersByTopic)) {
+                    handler.handleEventMessage(record.value());
+                }
+            }
+        } finally {
+            batch.unbind();
+        }
+    }
+
+    /**
+     * Saga services to hand the event to: the one running the event's saga type when that is
+     * known, otherwise every service listening on the event's original topic
+     */
+    private List<SagaEventHandler> handlersFor(ConsumerRecord<String, EventMessage> record,
+                                               Map<String, List<SagaEventHandler>> handlersByTopic) {
+        List<SagaEventHandler> handlers = handlersByTopic.getOrDefault(retryRouter.originalTopic(record), List.of());
+        if (handlers.size() < 2) {
+            return handlers;
+        }
+
+        SagaType sagaType = sagaTypeOf(record);
+        if (sagaType != null) {
+            for (SagaEventHandler handler : handlers) {
+                if (handler.getSagaType() == sagaType) {
+                    return List.of(handler);
+                }
+            }
+        }
+        return handlers;
+    }
+
+    private SagaType sagaTypeOf(ConsumerRecord<String, EventMessage> record) {
+        Header header = record.headers().lastHeader(SagaTypeHeader.NAME);
+        if (header != null) {
+            try {
+                return SagaType.valueOf(new String(header.value(), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                log.debug("Ignoring unknown saga type header on {}-{}@{}",
+                        record.topic(), record.partition(), record.offset());
+            }
+        }
+        EventMessage event = record.value();
+        return event != null && event.getSagaId() != null ? sagaTypeIndex.get(event.getSagaId()) : null;
+    }
+
+    private void commit(SagaWriteBatch batch) {
+        List<OutboxMessage> outboxMessages = batch.getOutboxMessages();
+        try {
+            sagaOutbox.persist(
+                    () -> batch.getSagas().forEach((store, sagas) -> store.writeAll(sagas.values())),
+                    outboxMessages);
+        } catch (RuntimeException e) {
+            log.error("Failed to persist saga batch, discarding its changes", e);
+            batch.discardAll();
+            throw e;
+        }
+
+        idempotencyService.recordAll(batch.getProcessedMessages());
+
+        for (Runnable task : batch.getAfterCommitTasks()) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("After-commit task failed: {}", e.getMessage(), e);
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Committed saga batch: {} sagas, {} commands",
+                    batch.getSagas().values().stream().mapToInt(Map::size).sum(), outboxMessages.size());
+        }
+    }
+}
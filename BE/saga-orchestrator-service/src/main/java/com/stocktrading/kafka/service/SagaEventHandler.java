@@ -0,0 +1,27 @@
+package com.stocktrading.kafka.service;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.stocktrading.kafka.model.enums.SagaType;
+
+import java.util.Collection;
+
+/**
+ * Saga service that consumes participant events
+ */
+public interface SagaEventHandler {
+
+    /**
+     * Type of the sagas this service runs
+     */
+    SagaType getSagaType();
+
+    /**
+     * Load the given sagas into memory ahead of handling a batch of their events
+     */
+    void preload(Collection<String> sagaIds);
+
+    /**
+     * Handle a single event; events for the same saga are delivered in topic order
+     */
+    void handleEventMessage(EventMessage event);
+}
@@ -1,111 +1,260 @@
 package com.stocktrading.kafka.service;
 
 import com.stocktrading.kafka.model.DepositSagaState;
+import com.stocktrading.kafka.model.OrderBuySagaState;
+import com.stocktrading.kafka.model.SagaState;
+import com.stocktrading.kafka.model.SagaTransition;
+import com.stocktrading.kafka.model.WithdrawalSagaState;
 import com.stocktrading.kafka.model.enums.SagaStatus;
-import com.stocktrading.kafka.repository.DepositSagaRepository;
+import com.stocktrading.kafka.model.enums.SagaType;
+import com.stocktrading.kafka.scheduler.AdaptiveStepTimeouts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 /**
- * Service for monitoring saga metrics
+ * Service for monitoring saga metrics.
+ *
+ * Metrics are maintained incrementally: the saga services report every state transition
+ * and only the meters it affects are updated, so the cost is constant per event rather
+ * than proportional to the saga history. All meters are tagged by saga type.
+ *
+ * Only the instance owning a saga's partition records its transitions, so the active gauges
+ * count the sagas of the owned partitions, per partition: they are recounted from the
+ * database when partitions are assigned and dropped when partitions move away. Summed over
+ * all instances they give the cluster-wide count.
+ * <ul>
+ *   <li>{@code saga.active.count} - gauge of owned sagas per non-terminal status, including COMPENSATING</li>
+ *   <li>{@code saga.finished} - counter of sagas reaching a terminal status</li>
+ *   <li>{@code saga.execution.time} - start-to-end duration of finished sagas</li>
+ *   <li>{@code saga.step.latency} - time spent in each step, tagged by step</li>
+ * </ul>
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class SagaMonitoringService {
-    
-    private final DepositSagaRepository depositSagaRepository;
+public class SagaMonitoringService implements SagaPartitionListener {
+
+    private static final Set<SagaStatus> ACTIVE_STATUSES = EnumSet.of(
+            SagaStatus.STARTED, SagaStatus.IN_PROGRESS, SagaStatus.COMPENSATING, SagaStatus.LIMIT_ORDER_PENDING);
+
+    // Statuses in which a step can time out
+    private static final Set<SagaStatus> TIMED_STATUSES = EnumSet.of(SagaStatus.STARTED, SagaStatus.IN_PROGRESS);
+
+    // A step left for one of these statuses did not complete normally
+    private static final Set<SagaStatus> FAILURE_STATUSES = EnumSet.of(
+            SagaStatus.FAILED, SagaStatus.COMPENSATING, SagaStatus.COMPENSATION_COMPLETED, SagaStatus.CANCELLED_BY_USER);
+
+    private static final Map<SagaType, Class<? extends SagaState>> STATE_CLASSES = new EnumMap<>(SagaType.class);
+
+    static {
+        STATE_CLASSES.put(SagaType.DEPOSIT, DepositSagaState.class);
+        STATE_CLASSES.put(SagaType.WITHDRAWAL, WithdrawalSagaState.class);
+        STATE_CLASSES.put(SagaType.ORDER_BUY, OrderBuySagaState.class);
+    }
+
+    private final MongoTemplate mongoTemplate;
     private final MeterRegistry meterRegistry;
-    
-    // Metrics counters
-    private AtomicInteger activeSagasGauge;
-    private AtomicInteger completedSagasCounter;
-    private AtomicInteger failedSagasCounter;
-    private Timer sagaExecutionTimer;
-    
+    private final AdaptiveStepTimeouts stepTimeouts;
+    private final SagaPartitionOwnership ownership;
+
+    // Active sagas per type and status, by partition (partition -> count)
+    private final Map<SagaType, Map<SagaStatus, Map<Integer, AtomicInteger>>> activeCounts = new EnumMap<>(SagaType.class);
+    private final Map<SagaType, Map<SagaStatus, Counter>> finishedCounters = new EnumMap<>(SagaType.class);
+    private final Map<SagaType, Map<SagaStatus, Timer>> executionTimers = new EnumMap<>(SagaType.class);
+    private final Map<SagaType, Map<Enum<?>, Timer>> stepTimers = new EnumMap<>(SagaType.class);
+
+    // Recounts assigned partitions off the consumer thread so the rebalance is not held up
+    private ExecutorService loader;
+
     @PostConstruct
     public void init() {
-        // Initialize metrics
-        activeSagasGauge = meterRegistry.gauge("saga.active.count", new AtomicInteger(0));
-        
-        completedSagasCounter = new AtomicInteger(0);
-        meterRegistry.gauge("saga.completed.count", completedSagasCounter);
-        
-        failedSagasCounter = new AtomicInteger(0);
-        meterRegistry.gauge("saga.failed.count", failedSagasCounter);
-        
-        sagaExecutionTimer = Timer.builder("saga.execution.time")
-            .description("Time taken to complete sagas")
-            .publishPercentiles(0.5, 0.95, 0.99)
-            .register(meterRegistry);
-        
-        // Initial update
-        updateMetrics();
+        loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "saga-metrics-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (SagaType type : SagaType.values()) {
+            Map<SagaStatus, Map<Integer, AtomicInteger>> counts = new EnumMap<>(SagaStatus.class);
+            Map<SagaStatus, Counter> counters = new EnumMap<>(SagaStatus.class);
+            Map<SagaStatus, Timer> timers = new EnumMap<>(SagaStatus.class);
+
+            for (SagaStatus status : SagaStatus.values()) {
+                String typeTag = type.name();
+                String statusTag = status.name();
+                if (ACTIVE_STATUSES.contains(status)) {
+                    Map<Integer, AtomicInteger> byPartition = new ConcurrentHashMap<>();
+                    Gauge.builder("saga.active.count", byPartition, this::sumOwned)
+                            .description("Sagas of the owned partitions currently in a non-terminal status")
+                            .tags("type", typeTag, "status", statusTag)
+                            .register(meterRegistry);
+                    counts.put(status, byPartition);
+                } else {
+                    counters.put(status, Counter.builder("saga.finished")
+                            .description("Sagas that reached a terminal status")
+                            .tags("type", typeTag, "status", statusTag)
+                            .register(meterRegistry));
+                    timers.put(status, Timer.builder("saga.execution.time")
+                            .description("Time taken to complete sagas")
+                            .tags("type", typeTag, "status", statusTag)
+                            .publishPercentiles(0.5, 0.95, 0.99)
+                            .register(meterRegistry));
+                }
+            }
+
+            activeCounts.put(type, counts);
+            finishedCounters.put(type, counters);
+            executionTimers.put(type, timers);
+            stepTimers.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        loader.shutdownNow();
     }
-    
+
+    @Override
+    public void partitionsAssigned(Set<Integer> partitions) {
+        loader.execute(() -> recountActiveSagas(partitions));
+    }
+
+    @Override
+    public void partitionsReleased(Set<Integer> partitions) {
+        activeCounts.values().forEach(counts -> counts.values()
+                .forEach(byPartition -> byPartition.keySet().removeAll(partitions)));
+    }
+
     /**
-     * Update metrics every minute
+     * Count the active sagas of newly assigned partitions, which may have been started or
+     * moved on by another instance. Transitions applied while the counts are being taken may
+     * be off by one until those sagas finish.
      */
-    @Scheduled(fixedRate = 60000)
-    public void updateMetrics() {
+    void recountActiveSagas(Set<Integer> partitions) {
         try {
-            log.debug("Updating saga metrics");
-            
-            // Count active sagas
-            List<SagaStatus> activeStatuses = Arrays.asList(
-                SagaStatus.STARTED, SagaStatus.IN_PROGRESS, SagaStatus.COMPENSATING);
-            
-            List<DepositSagaState> activeSagas = depositSagaRepository.findByStatusIn(activeStatuses);
-            activeSagasGauge.set(activeSagas.size());
-            
-            // Count completed and failed sagas in the last hour
-            Instant oneHourAgo = Instant.now().minus(Duration.ofHours(1));
-            
-            int completedCount = 0;
-            int failedCount = 0;
-            
-            List<DepositSagaState> recentSagas = depositSagaRepository.findAll(); // In a real app, add a date filter
-            
-            for (DepositSagaState saga : recentSagas) {
-                if (saga.getEndTime() == null) {
-                    continue;
+            for (Map.Entry<SagaType, Class<? extends SagaState>> entry : STATE_CLASSES.entrySet()) {
+                Map<SagaStatus, Map<Integer, Integer>> counted = new EnumMap<>(SagaStatus.class);
+                Query active = new Query(where("status").in(ACTIVE_STATUSES));
+                active.fields().include("sagaId").include("status");
+                for (Document saga : mongoTemplate.find(active, Document.class,
+                        mongoTemplate.getCollectionName(entry.getValue()))) {
+                    String sagaId = saga.getString("sagaId");
+                    int partition = sagaId != null ? ownership.partitionOf(sagaId) : -1;
+                    if (partitions.contains(partition)) {
+                        counted.computeIfAbsent(SagaStatus.valueOf(saga.getString("status")), s -> new HashMap<>())
+                                .merge(partition, 1, Integer::sum);
+                    }
                 }
-                
-                if (saga.getEndTime().isAfter(oneHourAgo)) {
-                    if (saga.getStatus() == SagaStatus.COMPLETED) {
-                        completedCount++;
-                        
-                        // Record execution time
-                        long executionTime = Duration.between(saga.getStartTime(), saga.getEndTime()).toMillis();
-                        sagaExecutionTimer.record(executionTime, TimeUnit.MILLISECONDS);
-                        
-                    } else if (saga.getStatus() == SagaStatus.FAILED || 
-                              saga.getStatus() == SagaStatus.COMPENSATION_COMPLETED) {
-                        failedCount++;
+
+                for (Map.Entry<SagaStatus, Map<Integer, AtomicInteger>> counts : activeCounts.get(entry.getKey()).entrySet()) {
+                    Map<Integer, Integer> byPartition = counted.getOrDefault(counts.getKey(), Map.of());
+                    for (Integer partition : partitions) {
+                        counts.getValue().computeIfAbsent(partition, p -> new AtomicInteger())
+                                .set(byPartition.getOrDefault(partition, 0));
                     }
                 }
             }
-            
-            completedSagasCounter.set(completedCount);
-            failedSagasCounter.set(failedCount);
-            
-            log.debug("Metrics updated: active={}, completed={}, failed={}", 
-                activeSagas.size(), completedCount, failedCount);
-                
+            log.info("Saga metrics recounted for partitions {}", partitions);
         } catch (Exception e) {
-            log.error("Error updating saga metrics", e);
+            log.error("Error recounting saga metrics for partitions {}", partitions, e);
+        }
+    }
+
+    /**
+     * Record the effect of one event, timeout or user action on a saga.
+     *
+     * @param type   type of the saga
+     * @param before snapshot taken before the change, or null for a newly started saga
+     * @param saga   the saga after the change
+     */
+    public void recordTransition(SagaType type, SagaTransition before, SagaState saga) {
+        SagaStatus previousStatus = before != null ? before.getStatus() : null;
+        SagaStatus status = saga.getStatus();
+
+        if (before != null && before.getStep() != null && before.getStepStartTime() != null
+                && (before.getStep() != saga.getCurrentStep()
+                    || !before.getStepStartTime().equals(saga.getCurrentStepStartTime()))) {
+            Duration latency = Duration.between(before.getStepStartTime(), Instant.now());
+            recordStepLatency(type, before.getStep(), latency);
+            // A retried step keeps its step but restarts its clock; only steps that moved on count
+            if (before.getStep() != saga.getCurrentStep() && TIMED_STATUSES.contains(before.getStatus())
+                    && !FAILURE_STATUSES.contains(status)) {
+                stepTimeouts.recordCompletion(type, before.getStep(), latency);
+            }
+        }
+
+        if (previousStatus == status) {
+            return;
+        }
+
+        Map<SagaStatus, Map<Integer, AtomicInteger>> counts = activeCounts.get(type);
+        int partition = ownership.partitionOf(saga.getSagaId());
+        if (previousStatus != null && counts.containsKey(previousStatus)) {
+            activeCount(counts.get(previousStatus), partition).decrementAndGet();
+        }
+        if (status == null) {
+            return;
         }
+        if (counts.containsKey(status)) {
+            activeCount(counts.get(status), partition).incrementAndGet();
+            return;
+        }
+
+        // A saga moving between terminal statuses has already been counted
+        if (previousStatus == null || ACTIVE_STATUSES.contains(previousStatus)) {
+            finishedCounters.get(type).get(status).increment();
+            if (saga.getStartTime() != null) {
+                Instant endTime = saga.getEndTime() != null ? saga.getEndTime() : Instant.now();
+                executionTimers.get(type).get(status).record(Duration.between(saga.getStartTime(), endTime));
+            }
+        }
+    }
+
+    private static AtomicInteger activeCount(Map<Integer, AtomicInteger> byPartition, int partition) {
+        return byPartition.computeIfAbsent(partition, p -> new AtomicInteger());
+    }
+
+    /**
+     * Gauge value: the active sagas of the partitions this instance owns right now
+     */
+    private double sumOwned(Map<Integer, AtomicInteger> byPartition) {
+        Set<Integer> owned = ownership.getOwnedPartitions();
+        return byPartition.entrySet().stream()
+                .filter(count -> owned.contains(count.getKey()))
+                .mapToInt(count -> count.getValue().get())
+                .sum();
+    }
+
+    private void recordStepLatency(SagaType type, Enum<?> step, Duration latency) {
+        stepTimers.get(type).computeIfAbsent(step, s -> Timer.builder("saga.step.latency")
+                        .description("Time spent waiting for a saga step to complete")
+                        .tags("type", type.name(), "step", s.name())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(latency);
     }
 }
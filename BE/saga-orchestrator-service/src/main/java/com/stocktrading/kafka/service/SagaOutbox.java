@@ -0,0 +1,97 @@
+package com.stocktrading.kafka.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.stocktrading.kafka.model.OutboxMessage;
+import com.stocktrading.kafka.model.enums.OutboxStatus;
+import com.stocktrading.kafka.model.enums.SagaType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Writes commands to the outbox in the same operation as the saga state that produced them.
+ *
+ * With a transaction manager available the state write and the outbox insert commit
+ * atomically; otherwise the state is written first, so a lost outbox row shows up as a
+ * step timeout rather than a command for a state that was never persisted.
+ */
+@Slf4j
+@Service
+public class SagaOutbox {
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final OutboxRelay outboxRelay;
+    private final TransactionTemplate transactionTemplate;
+
+    public SagaOutbox(MongoTemplate mongoTemplate, ObjectMapper objectMapper, OutboxRelay outboxRelay,
+                      ObjectProvider<MongoTransactionManager> transactionManager) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.outboxRelay = outboxRelay;
+        MongoTransactionManager manager = transactionManager.getIfAvailable();
+        this.transactionTemplate = manager != null ? new TransactionTemplate(manager) : null;
+    }
+
+    /**
+     * Build the outbox row for a command of a saga of the given type
+     */
+    public OutboxMessage create(CommandMessage command, String topic, int partition, SagaType sagaType) {
+        if (command.getMessageId() == null) {
+            command.initialize();
+        }
+
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(command);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize command " + command.getType(), e);
+        }
+
+        Instant now = Instant.now();
+        return OutboxMessage.builder()
+                .id(command.getMessageId())
+                .sagaId(command.getSagaId())
+                .partition(partition)
+                .topic(topic)
+                .messageType(command.getType())
+                .sagaType(sagaType)
+                .payload(payload)
+                .status(OutboxStatus.PENDING)
+                .attempts(0)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
+    }
+
+    /**
+     * Run the state write and insert the outbox rows as one unit, then wake the relay
+     */
+    public void persist(Runnable stateWrite, Collection<OutboxMessage> messages) {
+        if (messages.isEmpty()) {
+            stateWrite.run();
+            return;
+        }
+
+        if (transactionTemplate != null) {
+            transactionTemplate.executeWithoutResult(status -> {
+                stateWrite.run();
+                mongoTemplate.insert(messages, OutboxMessage.class);
+            });
+        } else {
+            stateWrite.run();
+            mongoTemplate.insert(messages, OutboxMessage.class);
+        }
+
+        log.debug("Wrote {} outbox messages", messages.size());
+        outboxRelay.wakeUp();
+    }
+}
@@ -0,0 +1,29 @@
+package com.stocktrading.kafka.service;
+
+import java.util.Set;
+
+/**
+ * Notified by {@link SagaPartitionOwnership} as saga partitions move between instances.
+ * Callbacks run on the saga event consumer thread and hold up the rebalance, so slow work
+ * should be handed off.
+ */
+public interface SagaPartitionListener {
+
+    /**
+     * The partitions are being taken away; persist what is still only held in memory
+     */
+    default void partitionsRevoked(Set<Integer> partitions) {
+    }
+
+    /**
+     * The partitions now belong to another instance; drop everything held for their sagas
+     */
+    default void partitionsReleased(Set<Integer> partitions) {
+    }
+
+    /**
+     * The partitions are owned by this instance until the next rebalance
+     */
+    default void partitionsAssigned(Set<Integer> partitions) {
+    }
+}
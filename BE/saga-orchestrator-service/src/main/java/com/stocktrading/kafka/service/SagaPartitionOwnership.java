@@ -0,0 +1,161 @@
+package com.stocktrading.kafka.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Saga partitions owned by this orchestrator instance.
+ *
+ * Every saga command and event is keyed by sagaId, so a saga's traffic lands on the same
+ * partition number of every saga topic. The saga event consumers use the range assignor,
+ * which hands the same partition numbers of all subscribed topics to the same member, and the
+ * instance consuming a partition owns the sagas hashing to it: only it caches them, times out
+ * their steps and relays their outbox commands.
+ *
+ * On a rebalance, revoked partitions are flushed before their offsets are committed so the
+ * next owner reads the latest state from MongoDB. Partitions that are not assigned back are
+ * released once the new assignment arrives; lost partitions are released at once, since
+ * another instance may already be writing their sagas.
+ */
+@Slf4j
+@Component
+public class SagaPartitionOwnership implements ConsumerAwareRebalanceListener {
+
+    // Bounds the search for a sagaId this instance owns; each try hits an owned partition
+    // with probability owned/partitions
+    private static final int MAX_SAGA_ID_ATTEMPTS = 64;
+
+    private final int partitionCount;
+    private final ObjectProvider<SagaPartitionListener> listeners;
+
+    // Topic partitions assigned to the saga event consumers of this instance
+    private final Set<TopicPartition> assigned = new HashSet<>();
+
+    // Partitions revoked by the current rebalance, released unless they are assigned back
+    private final Set<Integer> revoked = new HashSet<>();
+
+    private volatile Set<Integer> owned = Set.of();
+
+    // Must match the partition count of the saga command/event topics
+    public SagaPartitionOwnership(@Value("${saga.state-store.partitions:3}") int partitionCount,
+                                  ObjectProvider<SagaPartitionListener> listeners) {
+        this.partitionCount = partitionCount;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Kafka partition the saga's commands and events are keyed to
+     */
+    public int partitionOf(String sagaId) {
+        return Utils.toPositive(Utils.murmur2(sagaId.getBytes(StandardCharsets.UTF_8))) % partitionCount;
+    }
+
+    /**
+     * Whether the saga belongs to a partition this instance owns
+     */
+    public boolean owns(String sagaId) {
+        return owned.contains(partitionOf(sagaId));
+    }
+
+    public Set<Integer> getOwnedPartitions() {
+        return owned;
+    }
+
+    /**
+     * A new sagaId that hashes to a partition this instance owns, so a saga started here is
+     * also driven from here. Falls back to any sagaId while nothing is owned.
+     */
+    public String newSagaId() {
+        Set<Integer> current = owned;
+        String sagaId = UUID.randomUUID().toString();
+        for (int attempt = 1; attempt < MAX_SAGA_ID_ATTEMPTS && !current.isEmpty()
+                && !current.contains(partitionOf(sagaId)); attempt++) {
+            sagaId = UUID.randomUUID().toString();
+        }
+        return sagaId;
+    }
+
+    @Override
+    public synchronized void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        assigned.removeAll(partitions);
+        Set<Integer> taken = withoutAssigned(partitionNumbers(partitions));
+        if (taken.isEmpty()) {
+            return;
+        }
+
+        owned = Set.copyOf(partitionNumbers(assigned));
+        revoked.addAll(taken);
+        log.info("Saga partitions {} revoked, flushing their sagas", taken);
+        notifyListeners(SagaPartitionListener::partitionsRevoked, taken);
+    }
+
+    @Override
+    public synchronized void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        assigned.removeAll(partitions);
+        Set<Integer> lost = withoutAssigned(partitionNumbers(partitions));
+        if (lost.isEmpty()) {
+            return;
+        }
+
+        owned = Set.copyOf(partitionNumbers(assigned));
+        revoked.removeAll(lost);
+        log.warn("Saga partitions {} lost, dropping their sagas without flushing", lost);
+        notifyListeners(SagaPartitionListener::partitionsReleased, lost);
+    }
+
+    @Override
+    public synchronized void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        assigned.addAll(partitions);
+        owned = Set.copyOf(partitionNumbers(assigned));
+
+        Set<Integer> released = new HashSet<>(revoked);
+        released.removeAll(owned);
+        revoked.clear();
+        if (!released.isEmpty()) {
+            log.info("Saga partitions {} moved to another instance", released);
+            notifyListeners(SagaPartitionListener::partitionsReleased, released);
+        }
+
+        Set<Integer> received = partitionNumbers(partitions);
+        if (!received.isEmpty()) {
+            log.info("Saga partitions {} assigned, now owning {}", received, owned);
+            notifyListeners(SagaPartitionListener::partitionsAssigned, received);
+        }
+    }
+
+    private Set<Integer> withoutAssigned(Set<Integer> partitions) {
+        // Another consumer of this instance may still hold the same partition of another topic
+        partitions.removeAll(partitionNumbers(assigned));
+        return partitions;
+    }
+
+    private void notifyListeners(BiConsumer<SagaPartitionListener, Set<Integer>> callback, Set<Integer> partitions) {
+        Set<Integer> view = Set.copyOf(partitions);
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                callback.accept(listener, view);
+            } catch (Exception e) {
+                log.error("Saga partition listener {} failed for partitions {}",
+                        listener.getClass().getSimpleName(), view, e);
+            }
+        });
+    }
+
+    private static Set<Integer> partitionNumbers(Collection<TopicPartition> partitions) {
+        return partitions.stream().map(TopicPartition::partition).collect(Collectors.toCollection(HashSet::new));
+    }
+}
@@ -0,0 +1,249 @@
+package com.stocktrading.kafka.service;
+
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.stocktrading.kafka.config.KafkaConfig;
+import com.stocktrading.kafka.utils.DeadLetterHeaders;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking retries of saga events.
+ *
+ * When a saga's events fail they are taken out of the batch and republished, in order, to the
+ * first retry tier, so the other sagas of the partition carry on. Each tier is a topic read by
+ * the saga event listener once the tier's delay has passed; events that keep failing move on
+ * tier by tier and end up in the DLQ. The original topic, partition and offset travel in the
+ * dead-letter headers, so a retried event is handled as if read from its original topic and a
+ * dead letter can be replayed there.
+ *
+ * Retry and dead-letter records keep the sagaId key, so they land on the saga's partition number
+ * and are read by the instance owning the saga. While a saga has events in a retry tier it is
+ * parked: its later events follow them to the same tier instead of overtaking them. Parked sagas
+ * are tracked in memory by their owner and forgotten when their partition moves.
+ */
+@Slf4j
+@Component
+public class SagaRetryRouter implements SagaPartitionListener {
+
+    public static final String RETRY_ATTEMPT_HEADER = "saga-retry-attempt";
+    public static final String RETRY_DUE_AT_HEADER = "saga-retry-due-at";
+
+    private final List<String> retryTopics;
+    private final SagaPartitionOwnership ownership;
+    private final ObjectProvider<KafkaListenerEndpointRegistry> listenerRegistry;
+
+    // One recoverer per retry tier, followed by the one publishing to the DLQ
+    private final DeadLetterPublishingRecoverer[] recoverers;
+
+    private final Map<String, ParkedSaga> parked = new ConcurrentHashMap<>();
+    private final Set<TopicPartition> paused = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService resumer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "saga-retry-resumer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SagaRetryRouter(@Value("${kafka.topics.saga-retry:saga.events.retry-1s,saga.events.retry-10s,saga.events.retry-1m}")
+                           List<String> retryTopics,
+                           @Value("${saga.retry.delays-ms:1000,10000,60000}") long[] retryDelaysMs,
+                           @Value("${kafka.topics.dlq:saga.dlq}") String dlqTopic,
+                           KafkaTemplate<String, EventMessage> eventKafkaTemplate,
+                           KafkaTemplate<String, byte[]> deadLetterKafkaTemplate,
+                           SagaPartitionOwnership ownership,
+                           ObjectProvider<KafkaListenerEndpointRegistry> listenerRegistry) {
+        if (retryTopics.size() != retryDelaysMs.length) {
+            throw new IllegalArgumentException("kafka.topics.saga-retry and saga.retry.delays-ms must have the same length");
+        }
+        this.retryTopics = List.copyOf(retryTopics);
+        this.ownership = ownership;
+        this.listenerRegistry = listenerRegistry;
+
+        // Records that failed deserialization are republished as the raw bytes they arrived as
+        Map<Class<?>, KafkaOperations<?, ?>> templates = new LinkedHashMap<>();
+        templates.put(byte[].class, deadLetterKafkaTemplate);
+        templates.put(EventMessage.class, eventKafkaTemplate);
+
+        this.recoverers = new DeadLetterPublishingRecoverer[retryTopics.size() + 1];
+        for (int tier = 1; tier <= recoverers.length; tier++) {
+            String topic = tier <= retryTopics.size() ? retryTopics.get(tier - 1) : dlqTopic;
+            long delayMs = tier <= retryTopics.size() ? retryDelaysMs[tier - 1] : 0;
+            int attempt = tier;
+            // Partition -1 lets the sagaId key pick the partition, as on the original topic
+            DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(templates,
+                    (record, ex) -> new TopicPartition(topic, -1));
+            // Keep the topic, partition and offset the event was first read from
+            recoverer.setAppendOriginalHeaders(false);
+            recoverer.setStripPreviousExceptionHeaders(true);
+            recoverer.setHeadersFunction((record, ex) -> {
+                RecordHeaders headers = new RecordHeaders();
+                headers.add(RETRY_ATTEMPT_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(attempt).array());
+                if (delayMs > 0) {
+                    long dueAt = System.currentTimeMillis() + delayMs;
+                    headers.add(RETRY_DUE_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAt).array());
+                }
+                return headers;
+            });
+            recoverers[tier - 1] = recoverer;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        resumer.shutdownNow();
+    }
+
+    /**
+     * Retry tier the topic belongs to: 0 for the original saga topics, 1 for the first retry topic
+     */
+    public int tierOf(String topic) {
+        return retryTopics.indexOf(topic) + 1;
+    }
+
+    /**
+     * Topic the event was first published to
+     */
+    public String originalTopic(ConsumerRecord<?, ?> record) {
+        if (tierOf(record.topic()) == 0) {
+            return record.topic();
+        }
+        String originalTopic = DeadLetterHeaders.originalTopic(record);
+        return originalTopic != null ? originalTopic : record.topic();
+    }
+
+    /**
+     * Epoch millis at which a retried event may be handled again, 0 when it is due at once
+     */
+    public long dueAt(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(RETRY_DUE_AT_HEADER);
+        return header != null && header.value().length == Long.BYTES ? ByteBuffer.wrap(header.value()).getLong() : 0;
+    }
+
+    /**
+     * Retry tier the saga's earlier events are waiting in, 0 when the saga is not parked
+     */
+    public int parkedTier(String sagaId) {
+        ParkedSaga saga = parked.get(sagaId);
+        return saga != null ? saga.tier : 0;
+    }
+
+    /**
+     * Send an event of a parked saga to its tier, after the events already waiting there
+     */
+    public void followParked(String sagaId, ConsumerRecord<?, ?> record) {
+        ParkedSaga saga = parked.get(sagaId);
+        if (saga == null) {
+            return;
+        }
+        publish(record, saga.tier, null);
+        // An event coming from a lower tier was already counted when it was first parked
+        if (tierOf(record.topic()) == 0) {
+            saga.outstanding++;
+        }
+    }
+
+    /**
+     * The saga's events failed: move them all to the next tier, or to the DLQ after the last
+     * tier, and park the saga until they have been handled
+     */
+    public void retry(String sagaId, List<? extends ConsumerRecord<?, ?>> records, Exception cause) {
+        int tier = records.stream().mapToInt(record -> tierOf(record.topic())).max().orElse(0) + 1;
+        for (ConsumerRecord<?, ?> record : records) {
+            publish(record, tier, cause);
+        }
+
+        if (tier > retryTopics.size()) {
+            log.error("Saga {} failed after {} retries, moved {} events to the DLQ: {}",
+                    sagaId, retryTopics.size(), records.size(), cause.getMessage());
+            parked.remove(sagaId);
+            return;
+        }
+
+        long fromRetryTopics = records.stream().filter(record -> tierOf(record.topic()) > 0).count();
+        log.warn("Saga {} failed, retrying {} events in {}: {}",
+                sagaId, records.size(), retryTopics.get(tier - 1), cause.getMessage());
+        parked.compute(sagaId, (id, saga) -> {
+            ParkedSaga target = saga != null ? saga : new ParkedSaga();
+            target.tier = tier;
+            target.outstanding += records.size() - fromRetryTopics;
+            return target;
+        });
+    }
+
+    /**
+     * The saga's events were handled; unpark it once none of them is waiting in a retry tier
+     */
+    public void succeeded(String sagaId, List<? extends ConsumerRecord<?, ?>> records) {
+        long fromRetryTopics = records.stream().filter(record -> tierOf(record.topic()) > 0).count();
+        if (fromRetryTopics == 0) {
+            return;
+        }
+        parked.computeIfPresent(sagaId, (id, saga) -> {
+            saga.outstanding -= fromRetryTopics;
+            return saga.outstanding > 0 ? saga : null;
+        });
+    }
+
+    /**
+     * Send a record that cannot be handled at all straight to the DLQ
+     */
+    public void deadLetter(ConsumerRecord<?, ?> record, Exception cause) {
+        publish(record, retryTopics.size() + 1, cause);
+    }
+
+    /**
+     * Stop reading a retry partition until its next record is due. Called from the consumer
+     * thread; the container pauses the partition before its next poll.
+     */
+    public void pauseUntil(TopicPartition partition, long dueAt) {
+        MessageListenerContainer container = listenerRegistry.getObject()
+                .getListenerContainer(KafkaConfig.SAGA_EVENTS_LISTENER_ID);
+        if (container == null || !paused.add(partition)) {
+            return;
+        }
+        container.pausePartition(partition);
+        long delayMs = Math.max(0, dueAt - System.currentTimeMillis());
+        resumer.schedule(() -> {
+            paused.remove(partition);
+            container.resumePartition(partition);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void partitionsReleased(Set<Integer> partitions) {
+        // The new owner reads the retry partitions from their committed offsets
+        parked.keySet().removeIf(sagaId -> partitions.contains(ownership.partitionOf(sagaId)));
+    }
+
+    private void publish(ConsumerRecord<?, ?> record, int tier, Exception cause) {
+        recoverers[tier - 1].accept(record, cause != null ? cause
+                : new IllegalStateException("Saga has earlier events waiting for retry"));
+    }
+
+    private static final class ParkedSaga {
+        private int tier;
+        // Events of the saga sent to retry tiers and not handled yet
+        private long outstanding;
+    }
+}
@@ -0,0 +1,409 @@
+package com.stocktrading.kafka.service;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.stocktrading.kafka.model.OutboxMessage;
+import com.stocktrading.kafka.model.SagaState;
+import com.stocktrading.kafka.model.enums.SagaType;
+import com.stocktrading.kafka.utils.DocumentDiff;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hot-state store for sagas with write-behind persistence to MongoDB.
+ *
+ * Reads are served from memory once a saga has been loaded. Intermediate state changes
+ * are only marked dirty and coalesced into a single write by the periodic flush, while
+ * {@link #checkpoint} writes through immediately, together with the outbox row of any
+ * command the new state is waiting on. Sagas are segmented by the Kafka partition their sagaId
+ * hashes to, which is the same partition all of their commands and events are keyed to.
+ *
+ * Only sagas of partitions this instance owns are kept in memory. Sagas of other partitions
+ * are read straight from MongoDB and written through, and a partition's sagas are flushed
+ * when it is revoked and dropped once it moves to another instance.
+ *
+ * Callers must hold the saga's monitor while mutating it so the flush never persists
+ * a half-applied transition.
+ *
+ * When a {@link SagaWriteBatch} is bound to the calling thread, updates and checkpoints
+ * are enlisted in it instead and written with one bulk operation when the batch commits.
+ *
+ * Each cached saga remembers the document it was last persisted as, and writes only send
+ * the difference as a targeted update ({@code $set} for changed fields, {@code $push} for
+ * appended events and steps). The full document is only replaced for sagas without a known
+ * persisted state, e.g. new ones or after a failed write.
+ */
+@Slf4j
+public class SagaStateStore<T extends SagaState> implements SagaPartitionListener {
+
+    private final Class<T> stateType;
+    private final SagaType sagaType;
+    private final String keyField;
+    private final MongoTemplate mongoTemplate;
+    private final SagaOutbox outbox;
+    private final SagaPartitionOwnership ownership;
+    private final long idleEvictionMillis;
+
+    private final Map<Integer, ConcurrentMap<String, Entry<T>>> partitions = new ConcurrentHashMap<>();
+
+    public SagaStateStore(Class<T> stateType, SagaType sagaType, String keyField, MongoTemplate mongoTemplate,
+                          SagaOutbox outbox, SagaPartitionOwnership ownership, long idleEvictionMillis) {
+        this.stateType = stateType;
+        this.sagaType = sagaType;
+        this.keyField = keyField;
+        this.mongoTemplate = mongoTemplate;
+        this.outbox = outbox;
+        this.ownership = ownership;
+        this.idleEvictionMillis = idleEvictionMillis;
+    }
+
+    /**
+     * Find a saga, loading it from MongoDB only on a cache miss
+     */
+    public Optional<T> find(String sagaId) {
+        ConcurrentMap<String, Entry<T>> segment = segmentFor(sagaId);
+        Entry<T> entry = segment.get(sagaId);
+        if (entry != null) {
+            entry.touch();
+            return Optional.of(entry.state);
+        }
+
+        SagaWriteBatch batch = SagaWriteBatch.current();
+        if (batch != null && batch.isAbsent(this, sagaId)) {
+            return Optional.empty();
+        }
+
+        T loaded = mongoTemplate.findOne(Query.query(Criteria.where(keyField).is(sagaId)), stateType);
+        if (loaded == null) {
+            return Optional.empty();
+        }
+
+        // Another instance owns the saga and may change it at any time, so do not keep it
+        if (!ownership.owns(sagaId)) {
+            return Optional.of(loaded);
+        }
+
+        // Another thread may have loaded the same saga in the meantime - keep the first instance
+        Entry<T> existing = segment.putIfAbsent(sagaId, loadedEntry(loaded));
+        return Optional.of(existing != null ? existing.state : loaded);
+    }
+
+    /**
+     * Load every saga in the list that is not already in memory with a single query.
+     * Inside a batch, IDs with no document are remembered so later lookups skip the database.
+     */
+    public void preload(Collection<String> sagaIds) {
+        SagaWriteBatch batch = SagaWriteBatch.current();
+        if (batch != null) {
+            batch.track(this);
+        }
+
+        List<String> missing = sagaIds.stream()
+                .filter(sagaId -> sagaId != null && !segmentFor(sagaId).containsKey(sagaId))
+                .distinct()
+                .collect(Collectors.toList());
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Set<String> notFound = new HashSet<>(missing);
+        for (T loaded : mongoTemplate.find(Query.query(Criteria.where(keyField).in(missing)), stateType)) {
+            segmentFor(loaded.getSagaId()).putIfAbsent(loaded.getSagaId(), loadedEntry(loaded));
+            notFound.remove(loaded.getSagaId());
+        }
+
+        if (batch != null && !notFound.isEmpty()) {
+            batch.markAbsent(this, notFound);
+        }
+    }
+
+    /**
+     * Record a state change in memory; it is persisted by the next flush
+     */
+    public void update(T saga) {
+        if (!ownership.owns(saga.getSagaId()) && SagaWriteBatch.current() == null) {
+            checkpoint(saga);
+            return;
+        }
+
+        Entry<T> entry = segmentFor(saga.getSagaId())
+                .computeIfAbsent(saga.getSagaId(), id -> new Entry<>(saga));
+        entry.touch();
+
+        SagaWriteBatch batch = SagaWriteBatch.current();
+        if (batch != null) {
+            batch.enlist(this, saga);
+            return;
+        }
+        entry.dirty = true;
+    }
+
+    /**
+     * Persist the saga immediately. Must be called before publishing a command so that
+     * the response event can never observe an older state than the one that produced it.
+     */
+    public void checkpoint(T saga) {
+        checkpoint(saga, List.of());
+    }
+
+    /**
+     * Persist the saga together with an outbox row for the command the new state is waiting
+     * on. Inside a batch both are deferred until the batch commits.
+     */
+    public void checkpoint(T saga, CommandMessage command, String topic) {
+        checkpoint(saga, List.of(outbox.create(command, topic, partitionOf(saga.getSagaId()), sagaType)));
+    }
+
+    /**
+     * Persist the saga together with the outbox rows of several commands issued at once,
+     * so that either all of them are published or none is
+     */
+    public void checkpoint(T saga, List<CommandMessage> commands, Function<CommandMessage, String> topicResolver) {
+        int partition = partitionOf(saga.getSagaId());
+        List<OutboxMessage> outboxMessages = new ArrayList<>(commands.size());
+        for (CommandMessage command : commands) {
+            outboxMessages.add(outbox.create(command, topicResolver.apply(command), partition, sagaType));
+        }
+        checkpoint(saga, outboxMessages);
+    }
+
+    private void checkpoint(T saga, List<OutboxMessage> outboxMessages) {
+        // Sagas of partitions owned elsewhere are written through without being cached
+        if (!ownership.owns(saga.getSagaId()) && SagaWriteBatch.current() == null
+                && !segmentFor(saga.getSagaId()).containsKey(saga.getSagaId())) {
+            synchronized (saga) {
+                outbox.persist(() -> writeAll(List.of(saga)), outboxMessages);
+            }
+            return;
+        }
+
+        Entry<T> entry = segmentFor(saga.getSagaId())
+                .computeIfAbsent(saga.getSagaId(), id -> new Entry<>(saga));
+
+        SagaWriteBatch batch = SagaWriteBatch.current();
+        if (batch != null) {
+            batch.enlist(this, saga);
+            outboxMessages.forEach(batch::addOutboxMessage);
+            entry.touch();
+            return;
+        }
+
+        synchronized (saga) {
+            entry.dirty = false;
+            try {
+                outbox.persist(() -> writeAll(List.of(saga)), outboxMessages);
+            } catch (RuntimeException e) {
+                entry.dirty = true;
+                throw e;
+            }
+        }
+        entry.touch();
+    }
+
+    /**
+     * Upsert the given sagas with a single bulk write
+     */
+    public void writeAll(Collection<? extends SagaState> sagas) {
+        if (sagas.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, stateType);
+        List<Entry<T>> written = new ArrayList<>(sagas.size());
+        int operations = 0;
+        for (SagaState saga : sagas) {
+            Query query = Query.query(Criteria.where(keyField).is(saga.getSagaId()));
+            Entry<T> entry = segmentFor(saga.getSagaId()).get(saga.getSagaId());
+
+            // The document is mapped here, so hold the saga still while it is read
+            synchronized (saga) {
+                Document current = toDocument(saga);
+                Document persisted = entry != null ? entry.persisted : null;
+                if (persisted == null) {
+                    bulkOps.replaceOne(query, current, FindAndReplaceOptions.options().upsert());
+                    operations++;
+                } else {
+                    Update update = DocumentDiff.diff(persisted, current);
+                    if (update != null) {
+                        bulkOps.updateOne(query, update);
+                        operations++;
+                    }
+                }
+
+                // Advance the snapshot before the write so a concurrent writer diffs against it
+                if (entry != null) {
+                    entry.persisted = current;
+                    written.add(entry);
+                }
+            }
+        }
+        if (operations == 0) {
+            return;
+        }
+
+        try {
+            bulkOps.execute();
+        } catch (RuntimeException e) {
+            // Part of an unordered bulk may have been applied; replace the documents next time
+            written.forEach(entry -> entry.persisted = null);
+            throw e;
+        }
+    }
+
+    /**
+     * Drop a saga from memory without writing it; the next access reloads it from MongoDB
+     */
+    public void evict(String sagaId) {
+        segmentFor(sagaId).remove(sagaId);
+    }
+
+    /**
+     * Write all dirty sagas and drop finished or idle ones from memory
+     */
+    @Scheduled(fixedDelayString = "${saga.state-store.flush-interval-ms:250}")
+    public void flush() {
+        flush(partitions.values());
+
+        long now = System.currentTimeMillis();
+        for (ConcurrentMap<String, Entry<T>> segment : partitions.values()) {
+            Iterator<Map.Entry<String, Entry<T>>> iterator = segment.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry<T> entry = iterator.next().getValue();
+                if (!entry.dirty && (entry.state.hasFinished() || now - entry.lastAccess > idleEvictionMillis)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the dirty sagas of revoked partitions before the next owner reads them
+     */
+    @Override
+    public void partitionsRevoked(Set<Integer> revoked) {
+        flush(segments(revoked));
+    }
+
+    /**
+     * Drop the sagas of partitions now owned by another instance
+     */
+    @Override
+    public void partitionsReleased(Set<Integer> released) {
+        for (Integer partition : released) {
+            ConcurrentMap<String, Entry<T>> segment = partitions.remove(partition);
+            if (segment == null) {
+                continue;
+            }
+            long unflushed = segment.values().stream().filter(entry -> entry.dirty).count();
+            if (unflushed > 0) {
+                log.warn("Dropping {} unflushed {} instances of partition {}", unflushed, stateType.getSimpleName(), partition);
+            }
+        }
+    }
+
+    private void flush(Collection<ConcurrentMap<String, Entry<T>>> segments) {
+        List<Entry<T>> dirtyEntries = new ArrayList<>();
+        for (ConcurrentMap<String, Entry<T>> segment : segments) {
+            for (Entry<T> entry : segment.values()) {
+                if (entry.dirty) {
+                    entry.dirty = false;
+                    dirtyEntries.add(entry);
+                }
+            }
+        }
+
+        if (!dirtyEntries.isEmpty()) {
+            try {
+                writeAll(dirtyEntries.stream().map(entry -> entry.state).collect(Collectors.toList()));
+                log.debug("Flushed {} dirty {} instances", dirtyEntries.size(), stateType.getSimpleName());
+            } catch (RuntimeException e) {
+                dirtyEntries.forEach(entry -> entry.dirty = true);
+                log.error("Failed to flush {} dirty {} instances, will retry on next flush",
+                        dirtyEntries.size(), stateType.getSimpleName(), e);
+            }
+        }
+    }
+
+    private List<ConcurrentMap<String, Entry<T>>> segments(Set<Integer> partitionNumbers) {
+        return partitionNumbers.stream()
+                .map(partitions::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Flushing {} store before shutdown", stateType.getSimpleName());
+        flush();
+    }
+
+    public Class<T> getStateType() {
+        return stateType;
+    }
+
+    public SagaType getSagaType() {
+        return sagaType;
+    }
+
+    /**
+     * Kafka partition the saga's commands and events are keyed to
+     */
+    public int partitionOf(String sagaId) {
+        return ownership.partitionOf(sagaId);
+    }
+
+    private Entry<T> loadedEntry(T loaded) {
+        Entry<T> entry = new Entry<>(loaded);
+        entry.persisted = toDocument(loaded);
+        return entry;
+    }
+
+    private Document toDocument(SagaState saga) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(saga, document);
+        return document;
+    }
+
+    private ConcurrentMap<String, Entry<T>> segmentFor(String sagaId) {
+        return partitions.computeIfAbsent(partitionOf(sagaId), p -> new ConcurrentHashMap<>());
+    }
+
+    private static final class Entry<T> {
+        private final T state;
+        private volatile boolean dirty;
+        private volatile long lastAccess;
+
+        // Document as last written to or read from MongoDB, null when unknown
+        private volatile Document persisted;
+
+        private Entry(T state) {
+            this.state = state;
+            touch();
+        }
+
+        private void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+}
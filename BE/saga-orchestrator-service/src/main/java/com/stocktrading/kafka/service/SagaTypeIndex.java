@@ -0,0 +1,50 @@
+package com.stocktrading.kafka.service;
+
+import com.stocktrading.kafka.model.SagaState;
+import com.stocktrading.kafka.model.enums.SagaType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Type of each running saga this instance owns, for routing events that arrive without the
+ * saga-type header, e.g. from participants that reply off their listener thread.
+ *
+ * The saga services record every transition; finished sagas are dropped, as are the sagas of
+ * partitions that move away. A saga missing from the index is handed to every saga service
+ * listening on the topic, as before.
+ */
+@Component
+@RequiredArgsConstructor
+public class SagaTypeIndex implements SagaPartitionListener {
+
+    private final SagaPartitionOwnership ownership;
+
+    private final Map<String, SagaType> sagaTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Record the saga after a transition
+     */
+    public void track(SagaType sagaType, SagaState saga) {
+        if (saga.hasFinished()) {
+            sagaTypes.remove(saga.getSagaId());
+        } else if (ownership.owns(saga.getSagaId())) {
+            sagaTypes.put(saga.getSagaId(), sagaType);
+        }
+    }
+
+    /**
+     * @return the saga's type, or null when it is not known here
+     */
+    public SagaType get(String sagaId) {
+        return sagaTypes.get(sagaId);
+    }
+
+    @Override
+    public void partitionsReleased(Set<Integer> partitions) {
+        sagaTypes.keySet().removeIf(sagaId -> partitions.contains(ownership.partitionOf(sagaId)));
+    }
+}
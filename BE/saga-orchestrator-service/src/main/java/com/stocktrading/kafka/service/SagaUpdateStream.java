@@ -0,0 +1,306 @@
+package com.stocktrading.kafka.service;
+
+import com.stocktrading.kafka.model.SagaState;
+import com.stocktrading.kafka.utils.StripedExecutor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Pushes saga state changes to HTTP clients waiting on them, instead of having them poll.
+ *
+ * The saga services publish every transition they apply; sagas nobody is watching cost one
+ * map lookup. Transitions applied inside an event batch are delivered once the batch has been
+ * committed, so clients never see a state that is rolled back. Delivery runs on lanes keyed by
+ * sagaId, keeping a saga's updates in order without blocking the saga workers on slow clients.
+ *
+ * Only the instance owning a saga's partition sees its transitions. Watched sagas owned by
+ * another instance are re-read from MongoDB at a fixed interval instead, once per saga however
+ * many clients watch it, which also covers sagas whose partition moves while being watched.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SagaUpdateStream {
+
+    private final SagaPartitionOwnership ownership;
+
+    @Value("${saga.stream.sse-timeout-ms:300000}")
+    private long sseTimeoutMs;
+
+    @Value("${saga.stream.await-max-ms:60000}")
+    private long awaitMaxMs;
+
+    @Value("${saga.stream.delivery-threads:2}")
+    private int deliveryThreads;
+
+    private final Map<String, WatchedSaga> watched = new ConcurrentHashMap<>();
+
+    private StripedExecutor deliveryExecutor;
+
+    @PostConstruct
+    public void start() {
+        deliveryExecutor = new StripedExecutor(deliveryThreads, "saga-stream-");
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Let clients reconnect to another instance instead of waiting for their timeout
+        watched.values().forEach(saga -> saga.subscribers.forEach(Subscriber::close));
+        watched.clear();
+        deliveryExecutor.shutdown();
+    }
+
+    /**
+     * Stream the saga's state as server-sent events: the current state first, then every
+     * change until the saga finishes
+     *
+     * @param loader finds the saga by id
+     * @param view   maps the saga to what is sent to the client; called while the saga is locked
+     * @return the emitter, or empty when there is no such saga
+     */
+    public <S extends SagaState, T> Optional<SseEmitter> stream(String sagaId, Function<String, Optional<S>> loader,
+                                                               Function<S, T> view) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        SseSubscriber subscriber = new SseSubscriber(sagaId, emitter);
+        if (!subscribe(sagaId, loader, view, subscriber)) {
+            return Optional.empty();
+        }
+
+        emitter.onCompletion(() -> unsubscribe(sagaId, subscriber));
+        emitter.onTimeout(() -> {
+            unsubscribe(sagaId, subscriber);
+            emitter.complete();
+        });
+        emitter.onError(error -> unsubscribe(sagaId, subscriber));
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Wait until the saga finishes or the timeout passes. Answers 200 with the final state, or
+     * 202 with the latest state when the saga is still running at the timeout.
+     *
+     * @param timeoutMs capped at saga.stream.await-max-ms
+     * @return the pending result, or empty when there is no such saga
+     */
+    public <S extends SagaState, T> Optional<DeferredResult<ResponseEntity<T>>> awaitFinished(
+            String sagaId, long timeoutMs, Function<String, Optional<S>> loader, Function<S, T> view) {
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(Math.max(1, Math.min(timeoutMs, awaitMaxMs)));
+        AwaitSubscriber<T> subscriber = new AwaitSubscriber<>(sagaId, result);
+        if (!subscribe(sagaId, loader, view, subscriber)) {
+            return Optional.empty();
+        }
+
+        result.onTimeout(subscriber::timedOut);
+        result.onCompletion(() -> unsubscribe(sagaId, subscriber));
+        return Optional.of(result);
+    }
+
+    /**
+     * Publish a saga's new state to its subscribers. Must be called while the saga is locked,
+     * right after the transition was applied.
+     */
+    public void publish(SagaState saga) {
+        WatchedSaga watchedSaga = watched.get(saga.getSagaId());
+        if (watchedSaga == null) {
+            return;
+        }
+
+        Object view = watchedSaga.view.apply(saga);
+        boolean finished = saga.hasFinished();
+        Runnable delivery = () -> deliver(saga.getSagaId(), watchedSaga.subscribers, view, finished);
+
+        SagaWriteBatch batch = SagaWriteBatch.current();
+        if (batch != null) {
+            batch.afterCommit(saga.getSagaId(), delivery);
+        } else {
+            delivery.run();
+        }
+    }
+
+    /**
+     * Re-read the watched sagas this instance does not own, whose transitions happen elsewhere
+     */
+    @Scheduled(fixedDelayString = "${saga.stream.fallback-poll-ms:1000}")
+    public void pollUnownedSagas() {
+        watched.forEach((sagaId, watchedSaga) -> {
+            if (ownership.owns(sagaId)) {
+                return;
+            }
+            try {
+                watchedSaga.loader.apply(sagaId).ifPresent(saga -> {
+                    Object view;
+                    synchronized (saga) {
+                        view = watchedSaga.view.apply(saga);
+                    }
+                    deliver(sagaId, watchedSaga.subscribers, view, saga.hasFinished());
+                });
+            } catch (Exception e) {
+                log.warn("Failed to refresh watched saga {}: {}", sagaId, e.getMessage());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S extends SagaState, T> boolean subscribe(String sagaId, Function<String, Optional<S>> loader,
+                                                       Function<S, T> view, Subscriber subscriber) {
+        Optional<S> found = loader.apply(sagaId);
+        if (found.isEmpty()) {
+            return false;
+        }
+
+        S saga = found.get();
+        // Registering under the saga's lock means no transition falls between the snapshot and
+        // the first published update
+        synchronized (saga) {
+            WatchedSaga watchedSaga = watched.compute(sagaId, (id, existing) -> {
+                WatchedSaga target = existing != null ? existing
+                        : new WatchedSaga((Function<SagaState, Object>) (Function<?, ?>) view, loader);
+                target.subscribers.add(subscriber);
+                return target;
+            });
+            Object snapshot = watchedSaga.view.apply(saga);
+            boolean finished = saga.hasFinished();
+            deliveryExecutor.submit(sagaId, () -> subscriber.onState(snapshot, finished));
+        }
+        return true;
+    }
+
+    private void unsubscribe(String sagaId, Subscriber subscriber) {
+        watched.computeIfPresent(sagaId, (id, watchedSaga) -> {
+            watchedSaga.subscribers.remove(subscriber);
+            return watchedSaga.subscribers.isEmpty() ? null : watchedSaga;
+        });
+    }
+
+    private void deliver(String sagaId, List<Subscriber> subscribers, Object view, boolean finished) {
+        deliveryExecutor.submit(sagaId, () -> subscribers.forEach(subscriber -> subscriber.onState(view, finished)));
+    }
+
+    private static final class WatchedSaga {
+
+        private final Function<SagaState, Object> view;
+        private final Function<String, ? extends Optional<? extends SagaState>> loader;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+        private WatchedSaga(Function<SagaState, Object> view,
+                            Function<String, ? extends Optional<? extends SagaState>> loader) {
+            this.view = view;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * A client waiting on a saga. Only called from the saga's delivery lane.
+     */
+    private abstract class Subscriber {
+
+        protected final String sagaId;
+
+        // Last state handed to this client, so unchanged states are not sent twice
+        private volatile Object lastView;
+
+        Subscriber(String sagaId) {
+            this.sagaId = sagaId;
+        }
+
+        void onState(Object view, boolean finished) {
+            if (Objects.equals(view, lastView)) {
+                return;
+            }
+            lastView = view;
+            send(view, finished);
+            if (finished) {
+                unsubscribe(sagaId, this);
+            }
+        }
+
+        Object getLastView() {
+            return lastView;
+        }
+
+        abstract void send(Object view, boolean finished);
+
+        abstract void close();
+    }
+
+    private final class SseSubscriber extends Subscriber {
+
+        private final SseEmitter emitter;
+        private long eventId;
+
+        SseSubscriber(String sagaId, SseEmitter emitter) {
+            super(sagaId);
+            this.emitter = emitter;
+        }
+
+        @Override
+        void send(Object view, boolean finished) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(++eventId))
+                        .name("saga")
+                        .data(view, MediaType.APPLICATION_JSON));
+                if (finished) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away
+                log.debug("Dropping saga stream for {}: {}", sagaId, e.getMessage());
+                unsubscribe(sagaId, this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        @Override
+        void close() {
+            emitter.complete();
+        }
+    }
+
+    private final class AwaitSubscriber<T> extends Subscriber {
+
+        private final DeferredResult<ResponseEntity<T>> result;
+
+        AwaitSubscriber(String sagaId, DeferredResult<ResponseEntity<T>> result) {
+            super(sagaId);
+            this.result = result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void send(Object view, boolean finished) {
+            if (finished) {
+                result.setResult(ResponseEntity.ok((T) view));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void timedOut() {
+            result.setResult(ResponseEntity.status(HttpStatus.ACCEPTED).body((T) getLastView()));
+        }
+
+        @Override
+        void close() {
+            timedOut();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.stocktrading.kafka.service;
+
+import com.stocktrading.kafka.model.OutboxMessage;
+import com.stocktrading.kafka.model.ProcessedMessage;
+import com.stocktrading.kafka.model.SagaState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit of work for a batch of consumed events.
+ *
+ * While a batch is bound to the current thread, saga state stores and the idempotency
+ * service enlist their writes here instead of going to MongoDB, together with the outbox
+ * rows of the commands the new states are waiting on. A whole poll is therefore persisted
+ * with one bulk write per collection.
+ * Everything is tracked per sagaId so a saga that fails can be dropped without affecting
+ * the rest of the batch. Work that must only happen once a saga's changes are durable, such
+ * as notifying clients, is queued per sagaId and run after the commit. The same batch is bound on every worker thread handling a saga
+ * of the poll, so all access is synchronized.
+ */
+public final class SagaWriteBatch {
+
+    private static final ThreadLocal<SagaWriteBatch> CURRENT = new ThreadLocal<>();
+
+    private final Map<SagaStateStore<?>, Map<String, SagaState>> sagas = new LinkedHashMap<>();
+    private final Map<String, ProcessedMessage> processedMessages = new LinkedHashMap<>();
+    private final Map<String, List<OutboxMessage>> outboxMessages = new LinkedHashMap<>();
+    private final Map<String, List<Runnable>> afterCommitTasks = new LinkedHashMap<>();
+
+    // sagaIds a preload found no document for, so lookups in this batch can skip the database
+    private final Map<SagaStateStore<?>, Set<String>> absent = new HashMap<>();
+
+    /**
+     * Batch bound to the current thread, or null when writes should go straight to the database
+     */
+    static SagaWriteBatch current() {
+        return CURRENT.get();
+    }
+
+    void bind() {
+        CURRENT.set(this);
+    }
+
+    void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Register a store whose sagas this batch may touch, so a discard also evicts from it
+     */
+    synchronized void track(SagaStateStore<?> store) {
+        sagas.computeIfAbsent(store, s -> new LinkedHashMap<>());
+    }
+
+    synchronized void enlist(SagaStateStore<?> store, SagaState saga) {
+        sagas.computeIfAbsent(store, s -> new LinkedHashMap<>()).put(saga.getSagaId(), saga);
+    }
+
+    synchronized void markAbsent(SagaStateStore<?> store, Collection<String> sagaIds) {
+        absent.computeIfAbsent(store, s -> new HashSet<>()).addAll(sagaIds);
+    }
+
+    synchronized boolean isAbsent(SagaStateStore<?> store, String sagaId) {
+        Set<String> ids = absent.get(store);
+        return ids != null && ids.contains(sagaId);
+    }
+
+    synchronized void addProcessedMessage(ProcessedMessage processedMessage) {
+        processedMessages.put(processedMessage.getMessageId(), processedMessage);
+    }
+
+    synchronized boolean hasProcessed(String messageId) {
+        return processedMessages.containsKey(messageId);
+    }
+
+    synchronized void addOutboxMessage(OutboxMessage outboxMessage) {
+        outboxMessages.computeIfAbsent(outboxMessage.getSagaId(), id -> new ArrayList<>()).add(outboxMessage);
+    }
+
+    /**
+     * Run the task once the batch has been committed, unless the saga is discarded first
+     */
+    synchronized void afterCommit(String sagaId, Runnable task) {
+        afterCommitTasks.computeIfAbsent(sagaId, id -> new ArrayList<>()).add(task);
+    }
+
+    /**
+     * Drop everything recorded for a saga and evict it from the stores so the next
+     * access reloads the last durable state
+     */
+    synchronized void discard(String sagaId) {
+        for (Map.Entry<SagaStateStore<?>, Map<String, SagaState>> entry : sagas.entrySet()) {
+            entry.getValue().remove(sagaId);
+            entry.getKey().evict(sagaId);
+        }
+        processedMessages.values().removeIf(message -> sagaId.equals(message.getSagaId()));
+        outboxMessages.remove(sagaId);
+        afterCommitTasks.remove(sagaId);
+    }
+
+    synchronized void discardAll() {
+        for (Map.Entry<SagaStateStore<?>, Map<String, SagaState>> entry : sagas.entrySet()) {
+            entry.getValue().keySet().forEach(entry.getKey()::evict);
+        }
+        sagas.clear();
+        processedMessages.clear();
+        outboxMessages.clear();
+        afterCommitTasks.clear();
+    }
+
+    synchronized Map<SagaStateStore<?>, Map<String, SagaState>> getSagas() {
+        return sagas;
+    }
+
+    synchronized Collection<ProcessedMessage> getProcessedMessages() {
+        return new ArrayList<>(processedMessages.values());
+    }
+
+    synchronized List<OutboxMessage> getOutboxMessages() {
+        List<OutboxMessage> messages = new ArrayList<>();
+        outboxMessages.values().forEach(messages::addAll);
+        return messages;
+    }
+
+    synchronized List<Runnable> getAfterCommitTasks() {
+        List<Runnable> tasks = new ArrayList<>();
+        afterCommitTasks.values().forEach(tasks::addAll);
+        return tasks;
+    }
+}
@@ -4,16 +4,40 @@ import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
 import com.project.kafkamessagemodels.model.enums.CommandType;
 import com.project.kafkamessagemodels.model.enums.EventType;
+import com.project.kafkamessagemodels.payload.command.AccountValidatePayload;
+import com.project.kafkamessagemodels.payload.command.BalanceReversalPayload;
+import com.project.kafkamessagemodels.payload.command.BalanceUpdatePayload;
+import com.project.kafkamessagemodels.payload.command.CheckBalancePayload;
+import com.project.kafkamessagemodels.payload.command.CreatePendingTransactionPayload;
+import com.project.kafkamessagemodels.payload.command.MarkTransactionFailedPayload;
+import com.project.kafkamessagemodels.payload.command.PaymentMethodValidatePayload;
+import com.project.kafkamessagemodels.payload.command.PaymentProcessPayload;
+import com.project.kafkamessagemodels.payload.command.PaymentReversalPayload;
+import com.project.kafkamessagemodels.payload.command.UpdateTransactionStatusPayload;
+import com.project.kafkamessagemodels.payload.command.UserVerifyIdentityPayload;
+import com.project.kafkamessagemodels.payload.event.PaymentProcessedPayload;
+import com.project.kafkamessagemodels.payload.event.TransactionCreatedPayload;
 import com.stocktrading.kafka.model.SagaEvent;
+import com.stocktrading.kafka.model.SagaPage;
+import com.stocktrading.kafka.model.SagaTransition;
 import com.stocktrading.kafka.model.WithdrawalSagaState;
 import com.stocktrading.kafka.model.enums.SagaStatus;
+import com.stocktrading.kafka.model.enums.SagaType;
 import com.stocktrading.kafka.model.enums.WithdrawalSagaStep;
+import com.stocktrading.kafka.repository.SagaQueryRepository;
 import com.stocktrading.kafka.repository.WithdrawalSagaRepository;
+import com.stocktrading.kafka.scheduler.AdaptiveStepTimeouts;
+import com.stocktrading.kafka.scheduler.SagaDeadlineTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
@@ -22,13 +46,25 @@ import java.util.*;
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class WithdrawalSagaService {
+public class WithdrawalSagaService implements SagaEventHandler {
     private final WithdrawalSagaRepository withdrawalSagaRepository;
 
-    private final KafkaMessagePublisher kafkaMessagePublisher;
+    private final SagaStateStore<WithdrawalSagaState> sagaStateStore;
 
     private final IdempotencyService idempotencyService;
 
+    private final SagaDeadlineTracker deadlineTracker;
+    private final AdaptiveStepTimeouts stepTimeouts;
+
+    private final SagaMonitoringService sagaMonitoringService;
+
+    private final SagaQueryRepository sagaQueryRepository;
+    private final SagaPartitionOwnership partitionOwnership;
+    private final SagaUpdateStream sagaUpdateStream;
+    private final SagaTypeIndex sagaTypeIndex;
+    private final SagaArchiver sagaArchiver;
+    private final MongoTemplate mongoTemplate;
+
     @Value("${saga.withdrawal.retry.max-attempts}")
     private int maxRetries;
 
@@ -64,7 +100,7 @@ public class WithdrawalSagaService {
 
     public WithdrawalSagaState startWithdrawalSaga(String userId, String accountId, BigDecimal amount, String currency,
                                                    String paymentMethodId, String description) {
-        String sagaId = UUID.randomUUID().toString();
+        String sagaId = partitionOwnership.newSagaId();
         log.debug("Starting saga with ID: {}, amount: {} (type: {})",
             sagaId, amount, amount.getClass().getName());
 
@@ -75,8 +111,11 @@ public class WithdrawalSagaService {
         log.debug("Saga before save: id={}, amount={} (type={})",
             saga.getSagaId(), saga.getAmount(), saga.getAmount().getClass().getName()
         );
-        withdrawalSagaRepository.save(saga);
-        nextSagaStep(saga);
+        synchronized (saga) {
+            sagaStateStore.update(saga);
+            nextSagaStep(saga);
+            afterTransition(null, saga);
+        }
 
         return saga;
     }
@@ -92,80 +131,102 @@ public class WithdrawalSagaService {
 
         if (nextStep.equals(WithdrawalSagaStep.USER_VERIFY_IDENTITY)) {
             command.setTargetService("USER_SERVICE");
-            command.setPayloadValue("userId", saga.getUserId());
-            command.setPayloadValue("verificationType", "BASIC");
+            UserVerifyIdentityPayload.builder()
+                    .userId(saga.getUserId())
+                    .verificationType("BASIC")
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.ACCOUNT_VALIDATE)) {
             command.setTargetService("ACCOUNT_SERVICE");
-            command.setPayloadValue("accountId", saga.getAccountId());
-            command.setPayloadValue("userId", saga.getUserId());
+            AccountValidatePayload.builder()
+                    .accountId(saga.getAccountId())
+                    .userId(saga.getUserId())
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.ACCOUNT_CHECK_BALANCE)) {
             command.setTargetService("ACCOUNT_SERVICE");
-            command.setPayloadValue("accountId", saga.getAccountId());
-            command.setPayloadValue("userId", saga.getUserId());
-            command.setPayloadValue("amount", saga.getAmount());
-            command.setPayloadValue("currency", saga.getCurrency());
-            command.setPayloadValue("paymentMethodId", saga.getPaymentMethodId());
+            CheckBalancePayload.builder()
+                    .accountId(saga.getAccountId())
+                    .userId(saga.getUserId())
+                    .amount(saga.getAmount())
+                    .currency(saga.getCurrency())
+                    .paymentMethodId(saga.getPaymentMethodId())
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.PAYMENT_METHOD_VALIDATE)) {
             command.setTargetService("ACCOUNT_SERVICE");
-            command.setPayloadValue("paymentMethodId", saga.getPaymentMethodId());
-            command.setPayloadValue("accountId", saga.getAccountId());
-            command.setPayloadValue("userId", saga.getUserId());
+            PaymentMethodValidatePayload.builder()
+                    .paymentMethodId(saga.getPaymentMethodId())
+                    .accountId(saga.getAccountId())
+                    .userId(saga.getUserId())
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.ACCOUNT_CREATE_WITHDRAWAL_PENDING_TRANSACTION)) {
             command.setTargetService("ACCOUNT_SERVICE");
-            command.setPayloadValue("accountId", saga.getAccountId());
-            command.setPayloadValue("userId", saga.getUserId());
-            command.setPayloadValue("paymentMethodId", saga.getPaymentMethodId());
-            command.setPayloadValue("amount", saga.getAmount());
-            command.setPayloadValue("currency", saga.getCurrency());
-            command.setPayloadValue("description", saga.getStepData().get("description"));
+            CreatePendingTransactionPayload.builder()
+                    .accountId(saga.getAccountId())
+                    .userId(saga.getUserId())
+                    .paymentMethodId(saga.getPaymentMethodId())
+                    .amount(saga.getAmount())
+                    .currency(saga.getCurrency())
+                    .description((String) saga.getStepData().get("description"))
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.PAYMENT_PROCESS_WITHDRAWAL)) {
             command.setTargetService("PAYMENT_SERVICE");
-            command.setPayloadValue("paymentMethodId", saga.getPaymentMethodId());
-            command.setPayloadValue("amount", saga.getAmount());
-            command.setPayloadValue("currency", saga.getCurrency());
-            command.setPayloadValue("accountId", saga.getAccountId());
-            command.setPayloadValue("transactionId", saga.getTransactionId());
+            PaymentProcessPayload.builder()
+                    .paymentMethodId(saga.getPaymentMethodId())
+                    .amount(saga.getAmount())
+                    .currency(saga.getCurrency())
+                    .accountId(saga.getAccountId())
+                    .transactionId(saga.getTransactionId())
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.ACCOUNT_UPDATE_TRANSACTION_STATUS)) {
             command.setTargetService("ACCOUNT_SERVICE");
-            command.setPayloadValue("transactionId", saga.getTransactionId());
-            command.setPayloadValue("status", "COMPLETED");
-            command.setPayloadValue("paymentReference", saga.getPaymentProcessorTransactionId());
+            UpdateTransactionStatusPayload.builder()
+                    .transactionId(saga.getTransactionId())
+                    .status("COMPLETED")
+                    .paymentReference(saga.getPaymentProcessorTransactionId())
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.ACCOUNT_WITHDRAWAL_UPDATE_BALANCE)) {
             command.setTargetService("ACCOUNT_SERVICE");
-            command.setPayloadValue("accountId", saga.getAccountId());
-            command.setPayloadValue("amount", saga.getAmount());
-            command.setPayloadValue("transactionId", saga.getTransactionId());
+            BalanceUpdatePayload.builder()
+                    .accountId(saga.getAccountId())
+                    .amount(saga.getAmount())
+                    .transactionId(saga.getTransactionId())
+                    .build().applyTo(command);
         }
 
         if (nextStep.equals(WithdrawalSagaStep.ACCOUNT_WITHDRAWAL_REVERSE_BALANCE_UPDATE)) {
             command.setIsCompensation(true);
             command.setTargetService("ACCOUNT_SERVICE");
-            command.setPayloadValue("accountId", saga.getAccountId());
-            command.setPayloadValue("amount", saga.getAmount());
-            command.setPayloadValue("transactionId", saga.getTransactionId());
-            command.setPayloadValue("reason", saga.getFailureReason());
+            BalanceReversalPayload.builder()
+                    .accountId(saga.getAccountId())
+                    .amount(saga.getAmount())
+                    .transactionId(saga.getTransactionId())
+                    .reason(saga.getFailureReason())
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.PAYMENT_REVERSE_WITHDRAWAL)) {
             command.setIsCompensation(true);
             command.setTargetService("PAYMENT_SERVICE");
-            command.setPayloadValue("paymentReference", saga.getPaymentProcessorTransactionId());
-            command.setPayloadValue("amount", saga.getAmount());
-            command.setPayloadValue("reason", saga.getFailureReason());
-            command.setPayloadValue("transactionId", saga.getTransactionId());
+            PaymentReversalPayload.builder()
+                    .paymentReference(saga.getPaymentProcessorTransactionId())
+                    .amount(saga.getAmount())
+                    .reason(saga.getFailureReason())
+                    .transactionId(saga.getTransactionId())
+                    .build().applyTo(command);
         }
         if (nextStep.equals(WithdrawalSagaStep.ACCOUNT_MARK_TRANSACTION_FAILED)) {
             command.setIsCompensation(true);
             command.setTargetService("ACCOUNT_SERVICE");
-            command.setPayloadValue("transactionId", saga.getTransactionId());
-            command.setPayloadValue("failureReason", saga.getFailureReason());
-            command.setPayloadValue("errorCode", "SAGA_FAILURE");
+            MarkTransactionFailedPayload.builder()
+                    .transactionId(saga.getTransactionId())
+                    .failureReason(saga.getFailureReason())
+                    .errorCode("SAGA_FAILURE")
+                    .build().applyTo(command);
         }
         command.setMetadataValue("retryCount", String.valueOf(saga.getRetryCount()));
 
@@ -201,26 +262,36 @@ public class WithdrawalSagaService {
 
         if (nextStep.equals(WithdrawalSagaStep.COMPLETE_SAGA) || nextStep.equals(WithdrawalSagaStep.COMPLETE_COMPENSATION)) {
             saga.getCompletedSteps().add(nextStep.equals(WithdrawalSagaStep.COMPLETE_SAGA) ? WithdrawalSagaStep.COMPLETE_SAGA.name() : WithdrawalSagaStep.COMPLETE_COMPENSATION.name());
-            withdrawalSagaRepository.save(saga);
+            sagaStateStore.checkpoint(saga);
             return;
         }
 
-        withdrawalSagaRepository.save(saga);
-
         String targetTopic = getTopicForCommandType(command);
-        kafkaMessagePublisher.publishCommand(command, targetTopic);
+        // Persist the saga together with the command; the outbox relay publishes it
+        sagaStateStore.checkpoint(saga, command, targetTopic);
 
-        log.info("Published command [{}] for saga [{}] to topic: {}",
+        log.info("Queued command [{}] for saga [{}] to topic: {}",
                 command.getType(), saga.getSagaId(), targetTopic);
     }
 
+    @Override
+    public SagaType getSagaType() {
+        return SagaType.WITHDRAWAL;
+    }
+
+    @Override
+    public void preload(Collection<String> sagaIds) {
+        sagaStateStore.preload(sagaIds);
+    }
+
+    @Override
     public void handleEventMessage(EventMessage event) {
         String sagaId = event.getSagaId();
 
         log.debug("Handling event [{}] for saga: {}", event.getType(), sagaId);
 
         // Find the saga
-        Optional<WithdrawalSagaState> optionalSaga = withdrawalSagaRepository.getWithdrawalSagaStateBySagaId(sagaId);
+        Optional<WithdrawalSagaState> optionalSaga = sagaStateStore.find(sagaId);
         if (optionalSaga.isEmpty()) {
             log.warn("Received event for unknown saga: {}", sagaId);
             return;
@@ -228,6 +299,17 @@ public class WithdrawalSagaService {
 
         WithdrawalSagaState saga = optionalSaga.get();
 
+        // Serialize with other events and timeouts touching the same saga
+        synchronized (saga) {
+            SagaTransition before = SagaTransition.of(saga);
+            handleEventMessage(saga, event);
+            afterTransition(before, saga);
+        }
+    }
+
+    private void handleEventMessage(WithdrawalSagaState saga, EventMessage event) {
+        String sagaId = saga.getSagaId();
+
         // Log saga state for debugging
         log.debug("Current saga state: id={}, status={}, currentStep={}",
                 saga.getSagaId(), saga.getStatus(),
@@ -260,15 +342,15 @@ public class WithdrawalSagaService {
         if (Boolean.TRUE.equals(event.getSuccess())) {
             log.debug("Processing success event for step: {}", saga.getCurrentStep());
             if (event.getType().equals(EventType.WITHDRAWAL_TRANSACTION_CREATED.name())) {
-                saga.setTransactionId(event.getPayloadValue("transactionId"));
+                saga.setTransactionId(TransactionCreatedPayload.from(event).getTransactionId());
             }
             if (event.getType().equals(EventType.WITHDRAWAL_PAYMENT_PROCESSED.name())) {
-                saga.setPaymentProcessorTransactionId(event.getPayloadValue("paymentReference"));
+                saga.setPaymentProcessorTransactionId(PaymentProcessedPayload.from(event).getPaymentReference());
             }
 
             saga.getStepData().put("isFirstCompensationStep", Boolean.FALSE);
 
-            withdrawalSagaRepository.save(saga);
+            sagaStateStore.update(saga);
 
             nextSagaStep(saga);
         } else {
@@ -286,10 +368,11 @@ public class WithdrawalSagaService {
                     || currentStep.equals(WithdrawalSagaStep.ACCOUNT_CREATE_WITHDRAWAL_PENDING_TRANSACTION)
                     || currentStep.equals(WithdrawalSagaStep.USER_VERIFY_IDENTITY)) {
 
+                    saga.setStatus(SagaStatus.FAILED);
                     saga.setEndTime(Instant.now());
                     saga.getSagaEvents().add(SagaEvent.of("SAGA_TERMINATED", "Saga terminated due to validation failure"));
 
-                    withdrawalSagaRepository.save(saga);
+                    sagaStateStore.checkpoint(saga);
 
                     log.error("Saga terminated with error code: {}, error message: {}", event.getErrorCode(), event.getErrorMessage());
                 }
@@ -304,7 +387,7 @@ public class WithdrawalSagaService {
 
                     saga.getStepData().put("isFirstCompensationStep", Boolean.TRUE);
 
-                    withdrawalSagaRepository.save(saga);
+                    sagaStateStore.update(saga);
                 }
                 else {
                     startCompensation(saga);
@@ -358,8 +441,19 @@ public class WithdrawalSagaService {
         List<WithdrawalSagaState> potentiallyTimedOutSagas =
                 withdrawalSagaRepository.findPotentiallyTimedOutSagas(activeStatuses, cutoffTime);
 
-        for (WithdrawalSagaState saga : potentiallyTimedOutSagas) {
-            handlePotentialTimeout(saga);
+        for (WithdrawalSagaState candidate : potentiallyTimedOutSagas) {
+            // Sagas of partitions owned by another instance are timed out there
+            if (!partitionOwnership.owns(candidate.getSagaId())) {
+                continue;
+            }
+            // Always act on the hot instance so in-flight changes are not overwritten
+            sagaStateStore.find(candidate.getSagaId()).ifPresent(saga -> {
+                synchronized (saga) {
+                    SagaTransition before = SagaTransition.of(saga);
+                    handlePotentialTimeout(saga);
+                    afterTransition(before, saga);
+                }
+            });
         }
     }
 
@@ -385,6 +479,7 @@ public class WithdrawalSagaService {
 
         if (isCurrentStepTimedOut(saga, timeout)) {
             log.warn("Step [{}] has timed out for saga: {}", saga.getCurrentStep(), saga.getSagaId());
+            stepTimeouts.recordTimeout(SagaType.WITHDRAWAL, saga.getCurrentStep());
 
             // Check if we can retry
             if (saga.getRetryCount() < saga.getMaxRetries()) {
@@ -392,8 +487,8 @@ public class WithdrawalSagaService {
                 saga.setRetryCount(saga.getRetryCount() + 1);
                 saga.getSagaEvents().add(SagaEvent.of("RETRY", "Retrying step " + saga.getCurrentStep() + " after timeout"));
 
-                // Save and retry the step
-                withdrawalSagaRepository.save(saga);
+                // Retry the step
+                sagaStateStore.update(saga);
 
                 nextSagaStep(saga);
 
@@ -404,17 +499,87 @@ public class WithdrawalSagaService {
                 saga.getSagaEvents().add(SagaEvent.of("STEP_FAILED", "Step " + saga.getCurrentStep().name() + " failed: " + "Step timed out after " + saga.getMaxRetries() + " retries"));
                 saga.setLastUpdatedTime(Instant.now());
 
-                withdrawalSagaRepository.save(saga);
+                sagaStateStore.update(saga);
 
                 startCompensation(saga);
             }
         }
     }
 
+    @PostConstruct
+    public void registerDeadlineHandler() {
+        deadlineTracker.registerHandler(SagaType.WITHDRAWAL, this::handleStepDeadline);
+    }
+
+    /**
+     * Arm the deadline for the saga's current step, or cancel it once the saga has left
+     * the states that time out
+     */
+    private void trackStepDeadline(WithdrawalSagaState saga) {
+        if ((saga.getStatus() == SagaStatus.STARTED || saga.getStatus() == SagaStatus.IN_PROGRESS)
+                && saga.getCurrentStep() != null && saga.getCurrentStepStartTime() != null) {
+            deadlineTracker.arm(SagaType.WITHDRAWAL, saga.getSagaId(),
+                    saga.getCurrentStepStartTime().plus(getTimeoutForStep(saga.getCurrentStep())));
+        } else {
+            deadlineTracker.cancel(SagaType.WITHDRAWAL, saga.getSagaId());
+        }
+    }
+
+    /**
+     * Bookkeeping after an event, timeout or user action has been applied to a saga
+     *
+     * @param before snapshot taken before the change, or null for a newly started saga
+     */
+    private void afterTransition(SagaTransition before, WithdrawalSagaState saga) {
+        trackStepDeadline(saga);
+        sagaMonitoringService.recordTransition(SagaType.WITHDRAWAL, before, saga);
+        sagaTypeIndex.track(SagaType.WITHDRAWAL, saga);
+        sagaUpdateStream.publish(saga);
+    }
+
+    /**
+     * Called by the deadline tracker when the current step's deadline expires
+     */
+    private void handleStepDeadline(String sagaId) {
+        sagaStateStore.find(sagaId).ifPresent(saga -> {
+            synchronized (saga) {
+                SagaTransition before = SagaTransition.of(saga);
+                handlePotentialTimeout(saga);
+                afterTransition(before, saga);
+            }
+        });
+    }
+
+    /**
+     * Re-arm the deadlines of the sagas in the given partitions that can time out, used when
+     * the partitions are assigned to this instance
+     */
+    public int rebuildDeadlines(Set<Integer> partitions) {
+        // Only the fields a deadline is computed from
+        Query active = new Query(Criteria.where("status").in(SagaStatus.STARTED, SagaStatus.IN_PROGRESS));
+        active.fields().include("sagaId").include("status").include("currentStep").include("currentStepStartTime");
+        int rebuilt = 0;
+        for (WithdrawalSagaState saga : mongoTemplate.find(active, WithdrawalSagaState.class)) {
+            if (partitions.contains(partitionOwnership.partitionOf(saga.getSagaId()))) {
+                sagaTypeIndex.track(SagaType.WITHDRAWAL, saga);
+                trackStepDeadline(saga);
+                rebuilt++;
+            }
+        }
+        return rebuilt;
+    }
+
     /**
-     * Get the timeout duration for a specific step
+     * Get the timeout duration for a specific step, adapted to the step's observed latency
      */
     private Duration getTimeoutForStep(WithdrawalSagaStep step) {
+        return stepTimeouts.timeoutFor(SagaType.WITHDRAWAL, step, getConfiguredTimeoutForStep(step));
+    }
+
+    /**
+     * Get the configured timeout for a specific step, used until its latency is known
+     */
+    private Duration getConfiguredTimeoutForStep(WithdrawalSagaStep step) {
         switch (step) {
             case USER_VERIFY_IDENTITY:
                 return Duration.ofMillis(verifyIdentityTimeout);
@@ -486,7 +651,7 @@ public class WithdrawalSagaService {
 
         saga.getStepData().put("isFirstCompensationStep", Boolean.TRUE);
 
-        withdrawalSagaRepository.save(saga);
+        sagaStateStore.update(saga);
 
         nextSagaStep(saga);
     }
@@ -555,4 +720,22 @@ public class WithdrawalSagaService {
             return false;
         }
     }
+
+    /**
+     * Page through active sagas, the longest-waiting step first
+     */
+    public SagaPage<WithdrawalSagaState> findActiveSagas(String cursor, int limit) {
+        return sagaQueryRepository.findPage(WithdrawalSagaState.class,
+                Criteria.where("status").in(SagaStatus.STARTED, SagaStatus.IN_PROGRESS, SagaStatus.COMPENSATING),
+                "currentStepStartTime", WithdrawalSagaState::getCurrentStepStartTime, Sort.Direction.ASC, cursor, limit);
+    }
+
+    /**
+     * Page through a user's sagas, newest first, archived ones included
+     */
+    public SagaPage<WithdrawalSagaState> findByUserId(String userId, String cursor, int limit) {
+        return sagaQueryRepository.findPage(WithdrawalSagaState.class,
+                sagaArchiver.collectionsWithArchive(WithdrawalSagaState.class), Criteria.where("userId").is(userId),
+                "startTime", WithdrawalSagaState::getStartTime, Sort.Direction.DESC, cursor, limit);
+    }
 }
@@ -0,0 +1,85 @@
+package com.stocktrading.kafka.utils;
+
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over string keys.
+ *
+ * A negative answer from {@link #mightContain} is definite; a positive answer may be
+ * false with roughly the configured probability while the filter holds no more than
+ * the expected number of keys.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong insertions = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long optimalBits = (long) (-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash1 = Utils.murmur2(bytes);
+        int hash2 = mix(key.hashCode());
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(hash1 + i * hash2) % bitCount;
+            setBit(bit);
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash1 = Utils.murmur2(bytes);
+        int hash2 = mix(key.hashCode());
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(hash1 + i * hash2) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of keys added so far (duplicates included)
+     */
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    private void setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = bits.get(index);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(index, current, current | mask));
+    }
+
+    // Finalisation step of MurmurHash3, decorrelates the second hash from the first
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
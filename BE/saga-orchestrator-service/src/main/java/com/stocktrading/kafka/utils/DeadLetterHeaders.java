@@ -0,0 +1,48 @@
+package com.stocktrading.kafka.utils;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the headers the dead-letter publishing recoverer writes on retried and dead-lettered
+ * records. Text headers are UTF-8, the original partition and offset are big-endian numbers.
+ */
+public final class DeadLetterHeaders {
+
+    // Prefix shared by every header the recoverer adds
+    public static final String PREFIX = "kafka_dlt-";
+
+    private DeadLetterHeaders() {
+    }
+
+    public static String originalTopic(ConsumerRecord<?, ?> record) {
+        return text(record, KafkaHeaders.DLT_ORIGINAL_TOPIC);
+    }
+
+    public static Integer originalPartition(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_PARTITION);
+        return header != null && header.value().length == Integer.BYTES ? ByteBuffer.wrap(header.value()).getInt() : null;
+    }
+
+    public static Long originalOffset(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET);
+        return header != null && header.value().length == Long.BYTES ? ByteBuffer.wrap(header.value()).getLong() : null;
+    }
+
+    public static String exceptionClass(ConsumerRecord<?, ?> record) {
+        return text(record, KafkaHeaders.DLT_EXCEPTION_FQCN);
+    }
+
+    public static String exceptionMessage(ConsumerRecord<?, ?> record) {
+        return text(record, KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+    }
+
+    private static String text(ConsumerRecord<?, ?> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null && header.value() != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.stocktrading.kafka.utils;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Computes the MongoDB update that turns one mapped document into another.
+ *
+ * Changed fields are written with {@code $set}, removed ones with {@code $unset}. Lists that
+ * only had elements appended, such as a saga's event history, are extended with
+ * {@code $push/$each} and embedded documents are diffed one level down, so the size of the
+ * update depends on what changed rather than on the size of the document.
+ */
+public final class DocumentDiff {
+
+    private DocumentDiff() {
+    }
+
+    /**
+     * @return the update, or null when both documents are equal
+     */
+    public static Update diff(Document previous, Document current) {
+        Update update = new Update();
+        boolean changed = false;
+
+        for (Map.Entry<String, Object> field : current.entrySet()) {
+            String key = field.getKey();
+            if ("_id".equals(key)) {
+                continue;
+            }
+            Object before = previous.get(key);
+            Object after = field.getValue();
+            if (previous.containsKey(key) && Objects.equals(before, after)) {
+                continue;
+            }
+
+            changed = true;
+            if (before instanceof List && after instanceof List && isPrefix((List<?>) before, (List<?>) after)) {
+                List<?> appended = ((List<?>) after).subList(((List<?>) before).size(), ((List<?>) after).size());
+                update.push(key).each(appended.toArray());
+            } else if (before instanceof Document && after instanceof Document
+                    && hasPlainKeys((Document) before) && hasPlainKeys((Document) after)) {
+                diffEmbedded(update, key, (Document) before, (Document) after);
+            } else {
+                update.set(key, after);
+            }
+        }
+
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                update.unset(key);
+                changed = true;
+            }
+        }
+
+        return changed ? update : null;
+    }
+
+    private static void diffEmbedded(Update update, String path, Document before, Document after) {
+        for (Map.Entry<String, Object> field : after.entrySet()) {
+            if (!before.containsKey(field.getKey()) || !Objects.equals(before.get(field.getKey()), field.getValue())) {
+                update.set(path + "." + field.getKey(), field.getValue());
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                update.unset(path + "." + key);
+            }
+        }
+    }
+
+    private static boolean isPrefix(List<?> prefix, List<?> list) {
+        return prefix.size() < list.size() && prefix.equals(list.subList(0, prefix.size()));
+    }
+
+    // Keys that cannot be addressed with dot notation force the embedded document to be replaced
+    private static boolean hasPlainKeys(Document document) {
+        for (String key : document.keySet()) {
+            if (key.isEmpty() || key.indexOf('.') >= 0 || key.charAt(0) == '$') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
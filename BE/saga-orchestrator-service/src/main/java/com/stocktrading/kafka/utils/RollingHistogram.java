@@ -0,0 +1,122 @@
+package com.stocktrading.kafka.utils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram over a sliding time window.
+ *
+ * Samples are counted in logarithmic buckets, each 10% wider than the one before, so a
+ * percentile is read back within 10% of its true value in constant memory. The window is
+ * split into slots; a slot is cleared when time comes back round to it, and reads only sum
+ * the slots still inside the window.
+ */
+public class RollingHistogram {
+
+    private static final double GROWTH = 1.1;
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+
+    // 1.1^200 ms is over two days, beyond any step latency worth telling apart
+    private static final int BUCKETS = 200;
+
+    private final long slotMs;
+    private final Slot[] slots;
+
+    public RollingHistogram(Duration window, int slotCount) {
+        this.slotMs = Math.max(1, window.toMillis() / slotCount);
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    public void record(long valueMs) {
+        long epoch = System.currentTimeMillis() / slotMs;
+        Slot slot = slots[(int) (epoch % slots.length)];
+        if (slot.epoch != epoch) {
+            synchronized (slot) {
+                if (slot.epoch != epoch) {
+                    slot.clear();
+                    slot.epoch = epoch;
+                }
+            }
+        }
+        slot.counts.incrementAndGet(bucketOf(valueMs));
+        slot.total.incrementAndGet();
+    }
+
+    /**
+     * Number of samples in the window
+     */
+    public long count() {
+        long epoch = System.currentTimeMillis() / slotMs;
+        long count = 0;
+        for (Slot slot : slots) {
+            if (slot.isCurrent(epoch, slots.length)) {
+                count += slot.total.get();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return upper bound of the bucket holding the quantile, or -1 when the window is empty
+     */
+    public long percentile(double quantile) {
+        long epoch = System.currentTimeMillis() / slotMs;
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (Slot slot : slots) {
+            if (slot.isCurrent(epoch, slots.length)) {
+                for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                    long count = slot.counts.get(bucket);
+                    counts[bucket] += count;
+                    total += count;
+                }
+            }
+        }
+        if (total == 0) {
+            return -1;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static int bucketOf(long valueMs) {
+        if (valueMs <= 1) {
+            return 0;
+        }
+        return (int) Math.min(BUCKETS - 1, Math.ceil(Math.log(valueMs) / LOG_GROWTH));
+    }
+
+    private static long upperBound(int bucket) {
+        return (long) Math.ceil(Math.pow(GROWTH, bucket));
+    }
+
+    private static final class Slot {
+        private volatile long epoch = -1;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+
+        private boolean isCurrent(long currentEpoch, int slotCount) {
+            return epoch > currentEpoch - slotCount;
+        }
+
+        private void clear() {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts.set(bucket, 0);
+            }
+            total.set(0);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.stocktrading.kafka.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of single-threaded lanes. Tasks submitted with the same key always run on the
+ * same lane, in submission order, while tasks for different keys run in parallel up to the
+ * number of stripes.
+ */
+public final class StripedExecutor {
+
+    private final ExecutorService[] stripes;
+
+    public StripedExecutor(int stripeCount, String threadNamePrefix) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("stripeCount must be positive");
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        stripes = new ExecutorService[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, threadNamePrefix + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public CompletableFuture<Void> submit(String key, Runnable task) {
+        return CompletableFuture.runAsync(task, stripes[stripeOf(key)]);
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    public void shutdown() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+        try {
+            for (ExecutorService stripe : stripes) {
+                stripe.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int stripeOf(String key) {
+        // Spread the String hash so keys that differ only in their last characters still disperse
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, stripes.length);
+    }
+}
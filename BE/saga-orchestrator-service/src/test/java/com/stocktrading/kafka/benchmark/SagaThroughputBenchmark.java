@@ -0,0 +1,304 @@
+package com.stocktrading.kafka.benchmark;
+
+import com.project.kafkaplatform.KafkaPlatform;
+import com.stocktrading.kafka.service.DepositSagaService;
+import com.stocktrading.kafka.service.OrderBuySagaService;
+import com.stocktrading.kafka.service.SagaPartitionOwnership;
+import com.stocktrading.kafka.service.WithdrawalSagaService;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ConsumerGroupListing;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end saga throughput benchmark.
+ *
+ * Runs the orchestrator against an embedded Kafka broker and an in-memory MongoDB stand-in,
+ * with {@link SimulatedParticipants} answering the commands of the other services. Order-buy,
+ * deposit and withdrawal sagas are started round-robin at a fixed rate, then the run waits for
+ * all of them to finish and reports sagas per second, end-to-end and per-step latency
+ * percentiles and the consumer lag of every group. The MongoDB stand-in is much slower than
+ * a real server, so compare runs with each other rather than with production numbers.
+ *
+ * Excluded from the normal build; run with {@code mvn test -Pbenchmark}, tuned with
+ * {@code -Dbenchmark.rate} (sagas started per second), {@code -Dbenchmark.duration-seconds}
+ * and {@code -Dbenchmark.drain-timeout-seconds}.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.data.mongodb.database=saga-benchmark",
+        // The in-memory stand-in has no replica set, so no multi-document transactions
+        "saga.outbox.transactional=false",
+        "management.metrics.distribution.percentiles.saga.step.latency=0.5,0.95,0.99",
+        "logging.level.com.stocktrading.kafka=WARN",
+        "logging.level.com.stocktrading.kafka.benchmark=INFO",
+        "logging.level.org.apache.kafka=WARN",
+        "logging.level.kafka=WARN",
+        "logging.level.org.apache.zookeeper=WARN",
+        "logging.level.de.bwaldvogel.mongo=WARN"
+})
+@EmbeddedKafka(partitions = 3, bootstrapServersProperty = "spring.kafka.bootstrap-servers", topics = {
+        "user.commands.common", "user.events.common",
+        "account.commands.common", "account.events.common",
+        "account.commands.deposit", "account.events.deposit",
+        "payment.commands.deposit", "payment.events.deposit",
+        "account.commands.withdrawal", "account.events.withdrawal",
+        "payment.commands.withdrawal", "payment.events.withdrawal",
+        "user.commands.order-buy", "user.events.order-buy",
+        "account.commands.order-buy", "account.events.order-buy",
+        "order.commands.order-buy", "order.events.order-buy",
+        "market.commands.order-buy", "market.events.order-buy",
+        "broker.commands.order-buy", "broker.events.order-buy",
+        "portfolio.commands.order-buy", "portfolio.events.order-buy",
+        "market.price.data", "saga.dlq"
+})
+class SagaThroughputBenchmark {
+
+    private static final String[] SAGA_TYPES = {"order-buy", "deposit", "withdrawal"};
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+
+    private final int rate = Integer.getInteger("benchmark.rate", 200);
+    private final int durationSeconds = Integer.getInteger("benchmark.duration-seconds", 30);
+    private final int drainTimeoutSeconds = Integer.getInteger("benchmark.drain-timeout-seconds", 120);
+
+    @Autowired
+    private OrderBuySagaService orderBuySagaService;
+
+    @Autowired
+    private DepositSagaService depositSagaService;
+
+    @Autowired
+    private WithdrawalSagaService withdrawalSagaService;
+
+    @Autowired
+    private SagaPartitionOwnership ownership;
+
+    @Autowired
+    private KafkaPlatform kafkaPlatform;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    // Highest lag seen per consumer group during the run
+    private final Map<String, Long> maxLag = new ConcurrentHashMap<>();
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        InetSocketAddress address = MONGO.bind();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHostString() + ":" + address.getPort() + "/saga-benchmark");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        MONGO.shutdownNow();
+    }
+
+    @Test
+    void sagaThroughput() throws Exception {
+        awaitPartitionOwnership();
+
+        try (SimulatedParticipants participants = new SimulatedParticipants(kafkaPlatform);
+             AdminClient admin = AdminClient.create(Map.of(
+                     AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafka.getBrokersAsString()))) {
+            participants.start();
+
+            ScheduledExecutorService lagSampler = Executors.newSingleThreadScheduledExecutor();
+            lagSampler.scheduleWithFixedDelay(() -> sampleLag(admin), 0, 250, TimeUnit.MILLISECONDS);
+
+            long started;
+            long runStart = System.nanoTime();
+            long drivenNanos;
+            long drainedNanos;
+            try {
+                started = drive();
+                drivenNanos = System.nanoTime() - runStart;
+                awaitFinished(started);
+                drainedNanos = System.nanoTime() - runStart;
+            } finally {
+                lagSampler.shutdownNow();
+            }
+
+            long finished = finishedCount(null);
+            long completed = finishedCount("COMPLETED");
+            report(started, finished, completed, drivenNanos, drainedNanos, participants.getCommandsAnswered());
+
+            assertThat(finished).as("finished sagas").isEqualTo(started);
+            assertThat(completed).as("completed sagas").isEqualTo(started);
+        }
+    }
+
+    /**
+     * Sagas are only started and driven on the instance owning their partition
+     */
+    private void awaitPartitionOwnership() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (ownership.getOwnedPartitions().size() < 3) {
+            assertThat(System.nanoTime()).as("saga partitions assigned in time").isLessThan(deadline);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Start sagas at the configured rate for the configured duration
+     *
+     * @return the number of sagas started
+     */
+    private long drive() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long next = System.nanoTime();
+        long started = 0;
+
+        while (next < end) {
+            startSaga(SAGA_TYPES[(int) (started % SAGA_TYPES.length)], started);
+            started++;
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+        return started;
+    }
+
+    private void startSaga(String type, long index) {
+        String userId = "bench-user-" + (index % 1000);
+        String accountId = "bench-account-" + (index % 1000);
+        switch (type) {
+            case "order-buy":
+                orderBuySagaService.startSaga(userId, accountId, "AAPL", "MARKET", 10, null, "DAY");
+                break;
+            case "deposit":
+                depositSagaService.startSaga(userId, accountId, new BigDecimal("100.00"), "USD", "bench-payment-method");
+                break;
+            default:
+                withdrawalSagaService.startWithdrawalSaga(userId, accountId, new BigDecimal("50.00"), "USD",
+                        "bench-payment-method", "Benchmark withdrawal");
+        }
+    }
+
+    private void awaitFinished(long started) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainTimeoutSeconds);
+        while (finishedCount(null) < started && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    /**
+     * Sagas that reached a terminal status, of any status when null
+     */
+    private long finishedCount(String status) {
+        return (long) meterRegistry.find("saga.finished").counters().stream()
+                .filter(counter -> status == null || status.equals(counter.getId().getTag("status")))
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private void sampleLag(AdminClient admin) {
+        try {
+            for (ConsumerGroupListing group : admin.listConsumerGroups().all().get()) {
+                Map<TopicPartition, OffsetAndMetadata> committed =
+                        admin.listConsumerGroupOffsets(group.groupId()).partitionsToOffsetAndMetadata().get();
+                if (committed.isEmpty()) {
+                    continue;
+                }
+                Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends = admin.listOffsets(
+                        committed.keySet().stream().collect(Collectors.toMap(tp -> tp, tp -> OffsetSpec.latest())))
+                        .all().get();
+                long lag = committed.entrySet().stream()
+                        .filter(entry -> entry.getValue() != null)
+                        .mapToLong(entry -> Math.max(0, ends.get(entry.getKey()).offset() - entry.getValue().offset()))
+                        .sum();
+                maxLag.merge(group.groupId(), lag, Math::max);
+            }
+        } catch (Exception e) {
+            log.debug("Lag sample failed: {}", e.getMessage());
+        }
+    }
+
+    private void report(long started, long finished, long completed, long drivenNanos, long drainedNanos,
+                        long commandsAnswered) {
+        double drivenSeconds = drivenNanos / 1e9;
+        double drainedSeconds = drainedNanos / 1e9;
+
+        StringBuilder report = new StringBuilder("\n=== Saga throughput benchmark ===\n");
+        report.append(String.format("offered rate      %d sagas/s for %d s%n", rate, durationSeconds));
+        report.append(String.format("started           %d sagas in %.1f s (%.1f sagas/s)%n",
+                started, drivenSeconds, started / drivenSeconds));
+        report.append(String.format("finished          %d sagas (%d completed) in %.1f s (%.1f sagas/s)%n",
+                finished, completed, drainedSeconds, finished / drainedSeconds));
+        report.append(String.format("commands answered %d%n", commandsAnswered));
+
+        report.append("\nend-to-end latency (ms)             count      p50      p95      p99\n");
+        meterRegistry.find("saga.execution.time").timers().stream()
+                .filter(timer -> timer.count() > 0)
+                .sorted(Comparator.comparing(timer -> timer.getId().getTag("type") + timer.getId().getTag("status")))
+                .forEach(timer -> appendTimer(report,
+                        timer.getId().getTag("type") + " " + timer.getId().getTag("status"), timer));
+
+        report.append("\nstep latency (ms)                   count      p50      p95      p99\n");
+        meterRegistry.find("saga.step.latency").timers().stream()
+                .sorted(Comparator.comparing(timer -> timer.getId().getTag("type") + timer.getId().getTag("step")))
+                .forEach(timer -> appendTimer(report,
+                        timer.getId().getTag("type") + " " + timer.getId().getTag("step"), timer));
+
+        report.append("\nmax consumer lag (records)\n");
+        new TreeMap<>(maxLag).forEach((group, lag) -> report.append(String.format("  %-40s %d%n", group, lag)));
+
+        log.info(report.toString());
+    }
+
+    private static void appendTimer(StringBuilder report, String name, Timer timer) {
+        Map<Double, Double> percentiles = new TreeMap<>();
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            percentiles.put(value.percentile(), value.value(TimeUnit.MILLISECONDS));
+        }
+        report.append(String.format("  %-32s %8d %8.1f %8.1f %8.1f%n", abbreviate(name), timer.count(),
+                percentiles.getOrDefault(0.5, Double.NaN),
+                percentiles.getOrDefault(0.95, Double.NaN),
+                percentiles.getOrDefault(0.99, Double.NaN)));
+    }
+
+    private static String abbreviate(String name) {
+        return name.length() <= 32 ? name : name.substring(0, 31) + "~";
+    }
+}
@@ -0,0 +1,149 @@
+package com.stocktrading.kafka.benchmark;
+
+import com.project.kafkamessagemodels.model.CommandMessage;
+import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.model.enums.CommandType;
+import com.project.kafkamessagemodels.model.enums.EventType;
+import com.project.kafkaplatform.KafkaPlatform;
+import com.project.kafkaplatform.SagaTypeHeader;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Stands in for the user, account, payment, order, market-data, portfolio and brokerage
+ * services: every saga command is answered with the success event of its type, on the events
+ * topic matching the command topic, carrying the ids and prices the orchestrator reads from
+ * the real replies. Market orders fill at once at a fixed price.
+ */
+@Slf4j
+class SimulatedParticipants implements AutoCloseable {
+
+    private static final Pattern COMMAND_TOPICS = Pattern.compile(".*\\.commands\\..*");
+    private static final BigDecimal PRICE = new BigDecimal("100.00");
+
+    // The success event of each command type is declared before its failure event
+    private static final Map<CommandType, EventType> REPLIES = new EnumMap<>(CommandType.class);
+
+    static {
+        for (EventType eventType : EventType.values()) {
+            CommandType commandType = eventType.getAssociatedCommandType();
+            if (commandType != null) {
+                REPLIES.putIfAbsent(commandType, eventType);
+            }
+        }
+    }
+
+    private final Consumer<String, CommandMessage> consumer;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Thread poller;
+    private final AtomicLong commandsAnswered = new AtomicLong();
+    private volatile boolean running = true;
+
+    SimulatedParticipants(KafkaPlatform kafkaPlatform) {
+        this.consumer = kafkaPlatform.<CommandMessage>consumerFactory("benchmark-participants",
+                Map.of(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest")).createConsumer();
+        this.kafkaTemplate = kafkaPlatform.kafkaTemplate(kafkaPlatform.producerFactory());
+        this.poller = new Thread(this::run, "benchmark-participants");
+        this.poller.setDaemon(true);
+    }
+
+    void start() {
+        consumer.subscribe(COMMAND_TOPICS);
+        poller.start();
+    }
+
+    long getCommandsAnswered() {
+        return commandsAnswered.get();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        consumer.wakeup();
+        poller.join(10_000);
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                ConsumerRecords<String, CommandMessage> records = consumer.poll(Duration.ofMillis(100));
+                for (ConsumerRecord<String, CommandMessage> record : records) {
+                    answer(record);
+                }
+                if (!records.isEmpty()) {
+                    consumer.commitAsync();
+                }
+            }
+        } catch (WakeupException e) {
+            // Closing
+        } finally {
+            consumer.close();
+        }
+    }
+
+    private void answer(ConsumerRecord<String, CommandMessage> record) {
+        CommandMessage command = record.value();
+        if (command == null || command.getType() == null) {
+            log.warn("Skipping undeliverable command at {}-{}@{}", record.topic(), record.partition(), record.offset());
+            return;
+        }
+
+        EventType replyType = REPLIES.get(CommandType.valueOf(command.getType()));
+        if (replyType == null) {
+            log.warn("No reply for command {}", command.getType());
+            return;
+        }
+
+        EventMessage event = EventMessage.createSuccessEvent(
+                command.getSagaId(), command.getStepId(), replyType.name(), command.getTargetService());
+        event.setMessageId(UUID.randomUUID().toString());
+        event.setTimestamp(Instant.now());
+        event.setPayload(replyPayload(command));
+
+        // Echo the saga type as participants running on platform listener containers do
+        ProducerRecord<String, Object> reply = new ProducerRecord<>(
+                record.topic().replace(".commands.", ".events."), command.getSagaId(), event);
+        Header sagaType = record.headers().lastHeader(SagaTypeHeader.NAME);
+        if (sagaType != null) {
+            reply.headers().add(sagaType);
+        }
+        kafkaTemplate.send(reply);
+        commandsAnswered.incrementAndGet();
+    }
+
+    private static Map<String, Object> replyPayload(CommandMessage command) {
+        Map<String, Object> payload = new HashMap<>();
+        if (command.getPayload() != null) {
+            payload.putAll(command.getPayload());
+        }
+        String sagaId = command.getSagaId();
+        payload.putIfAbsent("orderId", "order-" + sagaId);
+        payload.putIfAbsent("transactionId", "tx-" + sagaId);
+        payload.put("reservationId", "reservation-" + sagaId);
+        payload.put("paymentReference", "payment-" + sagaId);
+        payload.put("brokerOrderId", "broker-" + sagaId);
+        payload.put("currentPrice", PRICE);
+        payload.put("executionPrice", PRICE);
+        payload.putIfAbsent("executedQuantity", payload.get("quantity"));
+        payload.put("executedAt", Instant.now().toString());
+        payload.put("status", "SUCCESS");
+        return payload;
+    }
+}
@@ -2,6 +2,8 @@ package com.project.userservice.service.kafka;
 
 import com.project.kafkamessagemodels.model.CommandMessage;
 import com.project.kafkamessagemodels.model.EventMessage;
+import com.project.kafkamessagemodels.payload.command.UserVerifyTradingPermissionsPayload;
+import com.project.kafkaplatform.KafkaPublisher;
 import com.project.userservice.common.BaseResponse;
 
 import com.project.userservice.model.User;
@@ -11,7 +13,6 @@ import com.project.userservice.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -24,7 +25,7 @@ import java.util.UUID;
 public class KafkaCommandHandlerService {
 
 //    private final UserService userService;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaPublisher kafkaPublisher;
     private final UserRepository userRepository;
 
     @Value("${kafka.topics.user-events.common}")
@@ -75,7 +76,7 @@ public class KafkaCommandHandlerService {
 //        }
 //
 //        try {
-//            kafkaTemplate.send(userCommonEventsTopic, command.getSagaId(), event);
+//            kafkaPublisher.publish(userCommonEventsTopic, command.getSagaId(), event);
 //            log.info("Sent USER_IDENTITY_VERIFIED response for saga: {}, verified: {}",
 //                    command.getSagaId(), isVerified);
 //        } catch (Exception e) {
@@ -89,8 +90,9 @@ public class KafkaCommandHandlerService {
     public void handleVerifyTradingPermissionCommand(CommandMessage command) {
         log.info("Handling USER_VERIFY_TRADING_PERMISSIONS command for saga: {}", command.getSagaId());
 
-        String userId = command.getPayloadValue("userId");
-        String orderType = command.getPayloadValue("orderType");
+        UserVerifyTradingPermissionsPayload payload = UserVerifyTradingPermissionsPayload.from(command);
+        String userId = payload.getUserId();
+        String orderType = payload.getOrderType();
 
         // Create response event
         EventMessage event = new EventMessage();
@@ -147,7 +149,7 @@ public class KafkaCommandHandlerService {
 
         // Send the response event
         try {
-            kafkaTemplate.send(userOrderEventsTopic, command.getSagaId(), event);
+            kafkaPublisher.publish(userOrderEventsTopic, command.getSagaId(), event);
             log.info("Sent USER_TRADING_PERMISSIONS_VERIFIED response for saga: {}", command.getSagaId());
         } catch (Exception e) {
             log.error("Error sending event: {}", e.getMessage(), e);
@@ -165,7 +167,7 @@ public class KafkaCommandHandlerService {
         event.setPayloadValue("permissionVerified", false);
 
         try {
-            kafkaTemplate.send(userOrderEventsTopic, event.getSagaId(), event);
+            kafkaPublisher.publish(userOrderEventsTopic, event.getSagaId(), event);
             log.info("Sent USER_TRADING_PERMISSIONS_INVALID response for saga: {} - {}",
                     event.getSagaId(), errorMessage);
         } catch (Exception e) {